@@ -24,6 +24,7 @@ package com.hmdm.event;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hmdm.util.BackgroundTaskRunnerService;
+import com.hmdm.util.TaskCategory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -86,7 +87,7 @@ public class EventService {
             final List<EventListener<? extends Event>> eventListeners = this.eventListeners.get(event.getType());
             eventListeners.forEach(listener -> {
                 final HandleEventTask task = new HandleEventTask(event, listener);
-                this.taskRunner.submitTask(task);
+                this.taskRunner.submitTask(TaskCategory.EVENTS, task);
             });
         } catch (Exception e) {
             logger.error("Unexpected error when firing event: {}", event, e);
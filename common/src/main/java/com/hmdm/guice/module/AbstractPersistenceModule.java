@@ -21,10 +21,13 @@
 
 package com.hmdm.guice.module;
 
+import com.google.inject.matcher.Matchers;
 import com.google.inject.name.Names;
+import com.hmdm.persistence.PostCommitActions;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.mybatis.guice.MyBatisModule;
 import org.mybatis.guice.datasource.builtin.PooledDataSourceProvider;
+import org.mybatis.guice.transactional.Transactional;
 
 import javax.servlet.ServletContext;
 import java.util.Enumeration;
@@ -85,6 +88,26 @@ public abstract class AbstractPersistenceModule extends MyBatisModule {
         this.addSimpleAliases(getDomainObjectsPackageName());
     }
 
+    /**
+     * <p>Binds the transaction interceptors. The interceptor running the {@link PostCommitActions} is bound first, so it
+     * wraps the MyBatis transaction interceptor and runs the actions after the transaction is committed.</p>
+     */
+    @Override
+    protected void bindTransactionInterceptors() {
+        final PostCommitActions.Interceptor postCommitInterceptor = new PostCommitActions.Interceptor();
+        bindInterceptor(
+                Matchers.any(),
+                Matchers.not(SYNTHETIC).and(Matchers.not(DECLARED_BY_OBJECT)).and(Matchers.annotatedWith(Transactional.class)),
+                postCommitInterceptor
+        );
+        bindInterceptor(
+                Matchers.annotatedWith(Transactional.class),
+                Matchers.not(SYNTHETIC).and(Matchers.not(DECLARED_BY_OBJECT)).and(Matchers.not(Matchers.annotatedWith(Transactional.class))),
+                postCommitInterceptor
+        );
+        super.bindTransactionInterceptors();
+    }
+
     /**
      * <p>Gets the name of Java package containing the MyBatis mapper classes to be used by the persistence layer of the
      * application.</p>
@@ -57,6 +57,7 @@ import com.hmdm.persistence.domain.Customer;
 import com.hmdm.persistence.mapper.ApplicationMapper;
 import com.hmdm.security.SecurityContext;
 import com.hmdm.security.SecurityException;
+import com.hmdm.service.SyncSnapshotCache;
 
 import javax.validation.constraints.NotNull;
 
@@ -71,19 +72,22 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
     private final String baseUrl;
     private final String apkTrustedUrl;
     private APKFileAnalyzer apkFileAnalyzer;
+    private final SyncSnapshotCache syncSnapshotCache;
 
     @Inject
     public ApplicationDAO(ApplicationMapper mapper, CustomerDAO customerDAO,
                           @Named("files.directory") String filesDirectory,
                           @Named("base.url") String baseUrl,
                           @Named("apk.trusted.url") String apkTrustedUrl,
-                          APKFileAnalyzer apkFileAnalyzer) {
+                          APKFileAnalyzer apkFileAnalyzer,
+                          SyncSnapshotCache syncSnapshotCache) {
         this.mapper = mapper;
         this.customerDAO = customerDAO;
         this.filesDirectory = filesDirectory;
         this.baseUrl = baseUrl;
         this.apkTrustedUrl = apkTrustedUrl;
         this.apkFileAnalyzer = apkFileAnalyzer;
+        this.syncSnapshotCache = syncSnapshotCache;
     }
 
     public List<Application> getAllApplications() {
@@ -278,6 +282,7 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
     @Transactional
     public void updateApplication(Application application) {
         updateRecord(application, this.mapper::updateApplication, SecurityException::onApplicationAccessViolation);
+        this.syncSnapshotCache.invalidateAll();
     }
 
     /**
@@ -296,6 +301,7 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
             application.setVersion("0");
 
             updateRecord(application, this.mapper::updateApplication, SecurityException::onApplicationAccessViolation);
+            this.syncSnapshotCache.invalidateAll();
         } else {
             throw SecurityException.onAnonymousAccess();
         }
@@ -349,6 +355,7 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
             final ApplicationVersion newLatestVersion = this.mapper.findVersionById(newLatestVersionId);
             doAutoUpdateToApplicationVersion(newLatestVersion);
         }
+        this.syncSnapshotCache.invalidateAll();
     }
 
     /**
@@ -391,6 +398,7 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
             }
         }
 
+        this.syncSnapshotCache.invalidateAll();
     }
 
     private void removeVersionApk(Customer customer, Integer id, String url) {
@@ -471,6 +479,7 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
             this.mapper.recheckConfigurationKioskModes(user.getCustomerId());
         });
 
+        this.syncSnapshotCache.invalidateAll();
     }
 
     @Transactional
@@ -506,6 +515,8 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
         this.mapper.recheckConfigurationMainApplications(user.getCustomerId());
         this.mapper.recheckConfigurationContentApplications(user.getCustomerId());
         this.mapper.recheckConfigurationKioskModes(user.getCustomerId());
+
+        this.syncSnapshotCache.invalidateAll();
     }
 
     public void removeApplicationConfigurationsByVersionId(Integer applicationVersionId, User user) {
@@ -702,6 +713,8 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
 
                 // Evaluate the most recent version for new common app
                 this.mapper.recalculateLatestVersion(newCommonApplication.getId());
+
+                this.syncSnapshotCache.invalidateAll();
             }
         }
     }
@@ -819,6 +832,7 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
                 }
             }
 
+            this.syncSnapshotCache.invalidateAll();
 
             return dbApplicationVersion.getUrl();
         }
@@ -960,6 +974,8 @@ public class ApplicationDAO extends AbstractLinkedDAO<Application, ApplicationCo
             doAutoUpdateToApplicationVersion(applicationVersion);
         }
 
+        this.syncSnapshotCache.invalidateAll();
+
         return applicationVersion.getId();
     }
 
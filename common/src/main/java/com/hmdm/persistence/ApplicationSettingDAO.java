@@ -25,6 +25,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hmdm.persistence.domain.ApplicationSetting;
 import com.hmdm.persistence.mapper.ApplicationSettingMapper;
+import com.hmdm.service.SyncSnapshotCache;
 
 import java.util.List;
 
@@ -38,12 +39,15 @@ public class ApplicationSettingDAO {
 
     private final ApplicationSettingMapper mapper;
 
+    private final SyncSnapshotCache syncSnapshotCache;
+
     /**
      * <p>Constructs new <code>ApplicationSettingDAO</code> instance. This implementation does nothing.</p>
      */
     @Inject
-    public ApplicationSettingDAO(ApplicationSettingMapper mapper) {
+    public ApplicationSettingDAO(ApplicationSettingMapper mapper, SyncSnapshotCache syncSnapshotCache) {
         this.mapper = mapper;
+        this.syncSnapshotCache = syncSnapshotCache;
     }
 
     public List<ApplicationSetting> getApplicationSettingsByConfigurationId(int id) {
@@ -70,13 +74,16 @@ public class ApplicationSettingDAO {
     public void insertApplicationSetting(int configurationId, ApplicationSetting setting) {
         this.mapper.deleteApplicationSettingByName(configurationId, setting.getApplicationId(), setting.getName());
         this.mapper.insertApplicationSetting(configurationId, setting);
+        this.syncSnapshotCache.invalidate(configurationId);
     }
 
     public void deleteApplicationSetting(int configurationId, int applicationId, String name) {
         this.mapper.deleteApplicationSettingByName(configurationId, applicationId, name);
+        this.syncSnapshotCache.invalidate(configurationId);
     }
 
     public void deleteApplicationSettingByApp(int configurationId, int applicationId) {
         this.mapper.deleteApplicationSettingByApp(configurationId, applicationId);
+        this.syncSnapshotCache.invalidate(configurationId);
     }
 }
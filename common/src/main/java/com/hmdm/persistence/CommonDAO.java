@@ -29,6 +29,7 @@ import com.hmdm.persistence.mapper.CustomerMapper;
 import com.hmdm.persistence.mapper.DeviceMapper;
 import com.hmdm.security.SecurityContext;
 import com.hmdm.security.SecurityException;
+import com.hmdm.service.SyncSnapshotCache;
 
 @Singleton
 public class CommonDAO extends AbstractDAO<Settings> {
@@ -36,12 +37,15 @@ public class CommonDAO extends AbstractDAO<Settings> {
     private final CommonMapper mapper;
     private final CustomerMapper customerMapper;
     private final DeviceMapper deviceMapper;
+    private final SyncSnapshotCache syncSnapshotCache;
 
     @Inject
-    public CommonDAO(CommonMapper mapper, CustomerMapper customerMapper, DeviceMapper deviceMapper) {
+    public CommonDAO(CommonMapper mapper, CustomerMapper customerMapper, DeviceMapper deviceMapper,
+                     SyncSnapshotCache syncSnapshotCache) {
         this.mapper = mapper;
         this.customerMapper = customerMapper;
         this.deviceMapper = deviceMapper;
+        this.syncSnapshotCache = syncSnapshotCache;
     }
 
     public Settings getSettings() {
@@ -71,14 +75,17 @@ public class CommonDAO extends AbstractDAO<Settings> {
 
     public void saveDefaultDesignSettings(Settings settings) {
         insertRecord(settings, this.mapper::saveDefaultDesignSettings);
+        this.syncSnapshotCache.invalidateAll();
     }
 
     public void saveLanguageSettings(Settings settings) {
         insertRecord(settings, this.mapper::saveLanguageSettings);
+        this.syncSnapshotCache.invalidateAll();
     }
 
     public void saveMiscSettings(Settings settings) {
         insertRecord(settings, this.mapper::saveMiscSettings);
+        this.syncSnapshotCache.invalidateAll();
     }
 
     public void setTwoFactor(Settings settings) {
@@ -94,6 +101,7 @@ public class CommonDAO extends AbstractDAO<Settings> {
     public void saveDefaultDesignSettingsBySuperAdmin(Settings settings) {
 //        if (SecurityContext.get().getCurrentUser().get().isSuperAdmin()) {
             this.mapper.saveDefaultDesignSettings(settings);
+            this.syncSnapshotCache.invalidateAll();
 //        } else {
 //            throw SecurityException.onAdminDataAccessViolation("save customer settings");
 //        }
@@ -41,6 +41,7 @@ import com.hmdm.persistence.mapper.ApplicationMapper;
 import com.hmdm.persistence.domain.ConfigurationApplicationParameters;
 import com.hmdm.persistence.mapper.ConfigurationMapper;
 import com.hmdm.security.SecurityException;
+import com.hmdm.service.SyncSnapshotCache;
 import com.hmdm.util.CryptoUtil;
 import org.mybatis.guice.transactional.Transactional;
 import org.slf4j.Logger;
@@ -60,6 +61,7 @@ public class ConfigurationDAO extends AbstractLinkedDAO<Configuration, Applicati
     private final ConfigurationFileDAO configurationFileDAO;
     private String baseUrl;
     private final EventService eventService;
+    private final SyncSnapshotCache syncSnapshotCache;
 
 
     @Inject
@@ -68,13 +70,15 @@ public class ConfigurationDAO extends AbstractLinkedDAO<Configuration, Applicati
                             ApplicationSettingDAO applicationSettingDAO,
                             ConfigurationFileDAO configurationFileDAO,
                             @Named("base.url") String baseUrl,
-                            EventService eventService) {
+                            EventService eventService,
+                            SyncSnapshotCache syncSnapshotCache) {
         this.mapper = mapper;
         this.applicationMapper = applicationMapper;
         this.applicationSettingDAO = applicationSettingDAO;
         this.configurationFileDAO = configurationFileDAO;
         this.baseUrl = baseUrl;
         this.eventService = eventService;
+        this.syncSnapshotCache = syncSnapshotCache;
         log.info("Base URL: " + baseUrl);
     }
 
@@ -186,6 +190,7 @@ public class ConfigurationDAO extends AbstractLinkedDAO<Configuration, Applicati
                         });
                     } */
 
+                    this.syncSnapshotCache.invalidate(configuration.getId());
                     this.eventService.fireEvent(new ConfigurationUpdatedEvent(configuration.getId()));
                 },
                 SecurityException::onConfigurationAccessViolation
@@ -202,7 +207,10 @@ public class ConfigurationDAO extends AbstractLinkedDAO<Configuration, Applicati
         updateById(
                 id,
                 this.mapper::getConfigurationById,
-                configuration -> this.mapper.removeConfigurationById(configuration.getId()),
+                configuration -> {
+                    this.mapper.removeConfigurationById(configuration.getId());
+                    this.syncSnapshotCache.invalidate(configuration.getId());
+                },
                 SecurityException::onConfigurationAccessViolation
         );
     }
@@ -211,19 +219,16 @@ public class ConfigurationDAO extends AbstractLinkedDAO<Configuration, Applicati
         return getLinkedList(
                 id,
                 this.mapper::getConfigurationById,
-                customerId -> this.mapper.getConfigurationApplications(customerId, id, "ca" + CryptoUtil.randomHexString(8)),
+                customerId -> this.mapper.getConfigurationApplications(customerId, id),
                 SecurityException::onConfigurationAccessViolation
         );
     }
 
-    @Transactional
     public List<Application> getPlainConfigurationApplications(Integer id) {
-        String tblName = "ca" + CryptoUtil.randomHexString(8);
-        mapper.createTempConfigAppTable(tblName, id);
         return getLinkedList(
                 id,
                 this.mapper::getConfigurationById,
-                customerId -> this.mapper.getPlainConfigurationApplications(customerId, tblName, id),
+                customerId -> this.mapper.getPlainConfigurationApplications(customerId, id),
                 SecurityException::onConfigurationAccessViolation
         );
     }
@@ -267,6 +272,7 @@ public class ConfigurationDAO extends AbstractLinkedDAO<Configuration, Applicati
                 this.mapper::getConfigurationById,
                 configuration -> {
                     this.mapper.upgradeConfigurationApplication(configuration.getId(), applicationId);
+                    this.syncSnapshotCache.invalidate(configuration.getId());
                     log.debug("Upgraded application #{} to most recent version for configuration #{}",
                             applicationId, configurationId);
                 },
@@ -29,6 +29,7 @@ import com.hmdm.persistence.mapper.ConfigurationFileMapper;
 import com.hmdm.persistence.mapper.ConfigurationMapper;
 import com.hmdm.security.SecurityContext;
 import com.hmdm.security.SecurityException;
+import com.hmdm.service.SyncSnapshotCache;
 
 import java.util.List;
 
@@ -47,16 +48,20 @@ public class ConfigurationFileDAO {
 
     private final UploadedFileDAO uploadedFileDAO;
 
+    private final SyncSnapshotCache syncSnapshotCache;
+
     /**
      * <p>Constructs new <code>ConfigurationFileDAO</code> instance. This implementation does nothing.</p>
      */
     @Inject
     public ConfigurationFileDAO(ConfigurationFileMapper configurationFileMapper,
                                 ConfigurationMapper configurationMapper,
-                                UploadedFileDAO uploadedFileDAO) {
+                                UploadedFileDAO uploadedFileDAO,
+                                SyncSnapshotCache syncSnapshotCache) {
         this.configurationFileMapper = configurationFileMapper;
         this.configurationMapper = configurationMapper;
         this.uploadedFileDAO = uploadedFileDAO;
+        this.syncSnapshotCache = syncSnapshotCache;
     }
 
     public List<ConfigurationFile> getConfigurationFiles(Integer configurationId) {
@@ -79,6 +84,7 @@ public class ConfigurationFileDAO {
                     }
                     if (u.isSuperAdmin() || u.getCustomerId() == configuration.getCustomerId()) {
                         this.configurationFileMapper.insertConfigurationFile(configurationFile);
+                        this.syncSnapshotCache.invalidate(configurationFile.getConfigurationId());
                     } else {
                         throw SecurityException.onConfigurationAccessViolation(configurationFile.getConfigurationId());
                     }
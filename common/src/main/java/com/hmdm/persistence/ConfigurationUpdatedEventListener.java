@@ -27,18 +27,15 @@ import com.hmdm.event.EventType;
 import com.hmdm.persistence.domain.Device;
 import com.hmdm.persistence.mapper.DeviceMapper;
 import com.hmdm.service.DeviceStatusService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * <p>A listener for {@link EventType#CONFIGURATION_UPDATED} events.</p>
  */
 public class ConfigurationUpdatedEventListener implements EventListener<ConfigurationUpdatedEvent> {
 
-    private static final Logger logger = LoggerFactory.getLogger(ConfigurationUpdatedEventListener.class);
-
     private final DeviceMapper deviceMapper;
     private final DeviceStatusService deviceStatusService;
 
@@ -58,13 +55,8 @@ public class ConfigurationUpdatedEventListener implements EventListener<Configur
     @Override
     public void onEvent(ConfigurationUpdatedEvent event) {
         final List<Device> configurationDevices = this.deviceMapper.getDeviceIdsBySoleConfigurationId(event.getConfigurationId());
-        configurationDevices.forEach(device -> {
-            try {
-                this.deviceStatusService.recalcDeviceStatuses(device.getId());
-            } catch (Exception e) {
-                logger.warn("Failed to recalculate statuses for device: {}", device.getId(), e);
-            }
-        });
+        final List<Integer> deviceIds = configurationDevices.stream().map(Device::getId).collect(Collectors.toList());
+        this.deviceStatusService.recalcDeviceStatuses(deviceIds);
     }
 
     /**
@@ -33,6 +33,8 @@ import com.hmdm.persistence.mapper.ApplicationMapper;
 import com.hmdm.persistence.mapper.DeviceMapper;
 import com.hmdm.rest.json.CustomerSearchRequest;
 import com.hmdm.rest.json.PaginatedData;
+import com.hmdm.service.DeviceIdentityCache;
+import com.hmdm.service.UserPrincipalCache;
 import com.hmdm.util.PasswordUtil;
 import org.mybatis.guice.transactional.Transactional;
 import org.slf4j.Logger;
@@ -76,6 +78,8 @@ public class CustomerDAO {
     private final ApplicationSettingDAO applicationSettingDAO;
     private final int orgAdminRoleId;
     private final EventService eventService;
+    private final DeviceIdentityCache deviceIdentityCache;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Inject
     public CustomerDAO(CustomerMapper mapper,
@@ -87,7 +91,9 @@ public class CustomerDAO {
                        ApplicationSettingDAO applicationSettingDAO,
                        @Named("files.directory") String filesDirectory,
                        @Named("role.orgadmin.id") int orgAdminRoleId,
-                       EventService eventService) {
+                       EventService eventService,
+                       DeviceIdentityCache deviceIdentityCache,
+                       UserPrincipalCache userPrincipalCache) {
         this.mapper = mapper;
         this.configurationMapper = configurationMapper;
         this.applicationMapper = applicationMapper;
@@ -98,6 +104,8 @@ public class CustomerDAO {
         this.applicationSettingDAO = applicationSettingDAO;
         this.orgAdminRoleId = orgAdminRoleId;
         this.eventService = eventService;
+        this.deviceIdentityCache = deviceIdentityCache;
+        this.userPrincipalCache = userPrincipalCache;
     }
 
     public void removeCustomerById(Integer id) {
@@ -126,6 +134,8 @@ public class CustomerDAO {
                 log.warn("Skipping to delete the customer's files due to invalid files directory name: {}", customer.getFilesDir());
             }
             this.mapper.delete(id);
+            this.deviceIdentityCache.invalidateAll();
+            this.userPrincipalCache.invalidateAll();
             log.info("Deleted customer account {}", customer);
         }
     }
@@ -272,7 +282,7 @@ public class CustomerDAO {
     public Integer copyConfigurationForCustomer(Customer customer, int masterCustomerId, Integer configurationId) {
         Configuration configurationTemplate = this.configurationMapper.getConfigurationById(configurationId);
         List<Application> configApplications = this.configurationMapper.getPlainConfigurationApplications(
-                masterCustomerId, "configurationApplications", configurationId);
+                masterCustomerId, configurationId);
         configApplications = configApplications
                 .stream()
                 .filter(Application::isCommon)
@@ -302,6 +312,7 @@ public class CustomerDAO {
             throw SecurityException.onAdminDataAccessViolation("update customer account with ID " + customer.getId());
         }
         this.mapper.update(customer);
+        this.userPrincipalCache.invalidateAll();
 
         log.info("Updated customer account: {}", customer);
     }
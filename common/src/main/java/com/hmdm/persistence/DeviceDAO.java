@@ -36,6 +36,7 @@ import com.hmdm.persistence.domain.*;
 import com.hmdm.rest.json.*;
 import com.hmdm.service.DeviceApplicationsStatus;
 import com.hmdm.service.DeviceConfigFilesStatus;
+import com.hmdm.service.DeviceIdentityCache;
 import org.apache.commons.math3.stat.descriptive.summary.Sum;
 import org.mybatis.guice.transactional.Transactional;
 import com.hmdm.persistence.mapper.DeviceMapper;
@@ -49,14 +50,17 @@ public class DeviceDAO extends AbstractDAO<Device> {
 
     private final Set<DeviceListHook> deviceListHooks;
     private final EventService eventService;
+    private final DeviceIdentityCache deviceIdentityCache;
     private final int fastSearchChars;
 
     @Inject
     public DeviceDAO(DeviceMapper mapper, ApplicationSettingDAO applicationSettingDAO, Injector injector,
-                     EventService eventService, @Named("device.fast.search.chars") int fastSearchChars) {
+                     EventService eventService, DeviceIdentityCache deviceIdentityCache,
+                     @Named("device.fast.search.chars") int fastSearchChars) {
         this.mapper = mapper;
         this.applicationSettingDAO = applicationSettingDAO;
         this.eventService = eventService;
+        this.deviceIdentityCache = deviceIdentityCache;
         this.fastSearchChars = fastSearchChars;
 
         // TODO : Such a logic needs to be extracted into some utility service
@@ -168,7 +172,10 @@ public class DeviceDAO extends AbstractDAO<Device> {
         updateById(
                 id,
                 this.mapper::getDeviceById,
-                device -> this.mapper.removeDevice(device.getId()),
+                device -> {
+                    this.mapper.removeDevice(device.getId());
+                    this.deviceIdentityCache.invalidate(device.getId());
+                },
                 SecurityException::onDeviceAccessViolation
         );
     }
@@ -177,7 +184,10 @@ public class DeviceDAO extends AbstractDAO<Device> {
         updateById(
                 deviceId,
                 this.mapper::getDeviceById,
-                device -> this.mapper.updateDeviceConfiguration(device.getId(), configurationId),
+                device -> {
+                    this.mapper.updateDeviceConfiguration(device.getId(), configurationId);
+                    this.deviceIdentityCache.invalidate(device.getId());
+                },
                 SecurityException::onDeviceAccessViolation
         );
     }
@@ -225,6 +235,7 @@ public class DeviceDAO extends AbstractDAO<Device> {
                         device.getId(), device.getGroups().stream().map(LookupItem::getId).collect(Collectors.toList())
                 );
             }
+            this.deviceIdentityCache.invalidate(device.getId());
             this.eventService.fireEvent(new DeviceInfoUpdatedEvent(device.getId()));
         }, SecurityException::onDeviceAccessViolation);
     }
@@ -48,7 +48,7 @@ public class DeviceInfoUpdatedEventListener implements EventListener<DeviceInfoU
     @Override
     public void onEvent(DeviceInfoUpdatedEvent event) {
         final int deviceId = event.getDeviceId();
-        this.deviceStatusService.recalcDeviceStatuses(deviceId);
+        this.deviceStatusService.scheduleRecalc(deviceId);
     }
 
     /**
@@ -28,6 +28,7 @@ import com.hmdm.persistence.domain.User;
 import com.hmdm.persistence.mapper.DeviceMapper;
 import com.hmdm.security.SecurityContext;
 import com.hmdm.security.SecurityException;
+import com.hmdm.service.DeviceIdentityCache;
 
 import java.util.List;
 import java.util.Optional;
@@ -39,10 +40,12 @@ import java.util.Optional;
 public class GroupDAO extends AbstractDAO<Group> {
 
     private final DeviceMapper mapper;
+    private final DeviceIdentityCache deviceIdentityCache;
 
     @Inject
-    public GroupDAO(DeviceMapper mapper) {
+    public GroupDAO(DeviceMapper mapper, DeviceIdentityCache deviceIdentityCache) {
         this.mapper = mapper;
+        this.deviceIdentityCache = deviceIdentityCache;
     }
 
     public List<Group> getAllGroups() {
@@ -74,7 +77,10 @@ public class GroupDAO extends AbstractDAO<Group> {
         updateById(
                 id,
                 this.mapper::getGroupById,
-                group -> this.mapper.removeGroupById(group.getId()),
+                group -> {
+                    this.mapper.removeGroupById(group.getId());
+                    this.deviceIdentityCache.invalidateAll();
+                },
                 SecurityException::onGroupAccessViolation
         );
     }
@@ -0,0 +1,103 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.persistence;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A registry of actions to be run once the current transaction is completed. Used for dropping the cached data which
+ * has been changed by the transaction: if the data is dropped before the commit then a concurrent request may load the
+ * old data from the database and put it back into cache.</p>
+ *
+ * <p>The transaction boundaries are tracked by {@link Interceptor} which is bound to the methods annotated with
+ * {@link org.mybatis.guice.transactional.Transactional} before the MyBatis transaction interceptor, so the actions are
+ * run after the outermost transaction is committed (or rolled back). Outside of transaction the actions are run
+ * immediately.</p>
+ *
+ * @see com.hmdm.guice.module.AbstractPersistenceModule
+ */
+public final class PostCommitActions {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostCommitActions.class);
+
+    /**
+     * <p>The actions registered by the transaction in progress on the current thread.</p>
+     */
+    private static final ThreadLocal<List<Runnable>> pendingActions = new ThreadLocal<>();
+
+    /**
+     * <p>Constructs new <code>PostCommitActions</code> instance. This implementation does nothing.</p>
+     */
+    private PostCommitActions() {
+    }
+
+    /**
+     * <p>Runs the specified action after the transaction in progress on the current thread is completed or immediately
+     * if there is no such transaction.</p>
+     *
+     * @param action an action to run.
+     */
+    public static void run(Runnable action) {
+        final List<Runnable> actions = pendingActions.get();
+        if (actions != null) {
+            actions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * <p>An interceptor for transactional methods running the registered actions once the outermost transactional
+     * method is completed.</p>
+     */
+    public static final class Interceptor implements MethodInterceptor {
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (pendingActions.get() != null) {
+                return invocation.proceed();
+            }
+
+            final List<Runnable> actions = new ArrayList<>();
+            pendingActions.set(actions);
+            try {
+                return invocation.proceed();
+            } finally {
+                pendingActions.remove();
+                // The actions drop the cached data only, so they are run on rollback as well
+                for (Runnable action : actions) {
+                    try {
+                        action.run();
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to run post-commit action", e);
+                    }
+                }
+            }
+        }
+    }
+}
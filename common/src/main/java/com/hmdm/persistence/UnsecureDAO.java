@@ -34,7 +34,8 @@ import com.hmdm.rest.json.LookupItem;
 import com.hmdm.rest.json.PaginatedData;
 import com.hmdm.security.SecurityContext;
 import com.hmdm.security.SecurityException;
-import com.hmdm.util.CryptoUtil;
+import com.hmdm.service.DeviceIdentityCache;
+import com.hmdm.service.UserPrincipalCache;
 import com.hmdm.util.PasswordUtil;
 import org.mybatis.guice.transactional.Transactional;
 import org.slf4j.Logger;
@@ -74,9 +75,16 @@ public class UnsecureDAO {
     private final File filesDirectory;
     private final int orgAdminRoleId;
     private final EventService eventService;
+    private final DeviceIdentityCache deviceIdentityCache;
+    private final UserPrincipalCache userPrincipalCache;
 
     private static final int DEFAULT_CUSTOMER_ID = 1;
 
+    /**
+     * <p>A maximum number of devices updated by a single statement.</p>
+     */
+    private static final int DEVICE_INFO_BATCH_SIZE = 500;
+
     /**
      * <p>Constructs new <code>UnsecureDAO</code> instance. This implementation does nothing.</p>
      */
@@ -95,6 +103,8 @@ public class UnsecureDAO {
                        ConfigurationFileMapper configurationFileMapper,
                        CustomerMapper customerMapper,
                        EventService eventService,
+                       DeviceIdentityCache deviceIdentityCache,
+                       UserPrincipalCache userPrincipalCache,
                        @Named("files.directory") String filesDirectory,
                        @Named("role.orgadmin.id") int orgAdminRoleId,
                        @Named("launcher.package") String defaultLauncherPackage) {
@@ -112,6 +122,8 @@ public class UnsecureDAO {
         this.configurationFileMapper = configurationFileMapper;
         this.customerMapper = customerMapper;
         this.eventService = eventService;
+        this.deviceIdentityCache = deviceIdentityCache;
+        this.userPrincipalCache = userPrincipalCache;
         this.filesDirectory = new File(filesDirectory);
         this.orgAdminRoleId = orgAdminRoleId;
         this.defaultLauncherPackage = defaultLauncherPackage;
@@ -146,11 +158,13 @@ public class UnsecureDAO {
             userMapper.insert(user);
         } else {
             userMapper.updateUserMainDetails(user);
+            userPrincipalCache.invalidate(user.getId());
         }
     }
 
     public void setUserNewPasswordUnsecure(User user ) {
         userMapper.setNewPassword(user);
+        userPrincipalCache.invalidate(user.getId());
     }
 
     public void setUserLoginFailTime(User user, long ts) {
@@ -170,6 +184,28 @@ public class UnsecureDAO {
         return this.deviceMapper.getDeviceByOldNumber(number);
     }
 
+    /**
+     * <p>Gets the identity of the device with specified number. The identities are cached, so this method is preferred
+     * over {@link #getDeviceByNumber(String)} when the full device data is not required.</p>
+     *
+     * @param number a device number.
+     * @return an identity of the device or <code>null</code> if there is no such device found.
+     */
+    public DeviceIdentity getDeviceIdentityByNumber(String number) {
+        return this.deviceIdentityCache.getByNumber(number, this.deviceMapper::getDeviceIdentityByNumber);
+    }
+
+    /**
+     * <p>Gets the identity of the device with specified ID. The identities are cached, so this method is preferred
+     * over {@link #getDeviceById(Integer)} when the full device data is not required.</p>
+     *
+     * @param id an ID of a device.
+     * @return an identity of the device or <code>null</code> if there is no such device found.
+     */
+    public DeviceIdentity getDeviceIdentityById(Integer id) {
+        return this.deviceIdentityCache.getById(id, this.deviceMapper::getDeviceIdentityById);
+    }
+
     public Device getDeviceByImeiOrSerial(String number) {
         return this.deviceMapper.getDeviceByImeiOrSerial(number);
     }
@@ -184,12 +220,26 @@ public class UnsecureDAO {
         this.deviceMapper.updateDeviceInfo(id, info, imeiUpdateTs, publicIp);
     }
 
+    /**
+     * <p>Writes the pending updates of device info to the database in batches.</p>
+     *
+     * @param updates a list of updates, at most one per device.
+     */
+    public void updateDeviceInfoBatch(List<DeviceInfoUpdate> updates) {
+        for (int i = 0; i < updates.size(); i += DEVICE_INFO_BATCH_SIZE) {
+            this.deviceMapper.updateDeviceInfoBatch(
+                    updates.subList(i, Math.min(i + DEVICE_INFO_BATCH_SIZE, updates.size()))
+            );
+        }
+    }
+
     public void updateDeviceCustomProperties(Integer id, Device device) {
         this.deviceMapper.updateDeviceCustomProperties(id, device.getCustom1(), device.getCustom2(), device.getCustom3());
     }
 
     public void completeDeviceMigration(Integer id) {
         this.deviceMapper.clearOldNumber(id);
+        this.deviceIdentityCache.invalidate(id);
     }
 
     // This method should be called in a single-tenant mode only
@@ -204,11 +254,8 @@ public class UnsecureDAO {
         }
     }
 
-    @Transactional
     public List<Application> getPlainConfigurationApplications(Integer customerId, Integer id) {
-        String tblName = "ca" + CryptoUtil.randomHexString(8);
-        configurationMapper.createTempConfigAppTable(tblName, id);
-        return this.configurationMapper.getPlainConfigurationApplications(customerId, tblName, id);
+        return this.configurationMapper.getPlainConfigurationApplications(customerId, id);
     }
 
     public Configuration getConfigurationById(Integer id) {
@@ -399,6 +446,16 @@ public class UnsecureDAO {
         return this.configurationFileMapper.getConfigurationFiles(device.getConfigurationId());
     }
 
+    /**
+     * <p>Gets the list of configuration files to be used on devices of specified configuration.</p>
+     *
+     * @param configurationId an ID of a configuration to get the configuration files for.
+     * @return a list of configuration files to be used on devices.
+     */
+    public List<ConfigurationFile> getConfigurationFiles(int configurationId) {
+        return this.configurationFileMapper.getConfigurationFiles(configurationId);
+    }
+
 //    /**
 //     * <p>Gets the settings for the customer account mapped to specified device.</p>
 //     *
@@ -32,6 +32,7 @@ import com.hmdm.persistence.mapper.UserMapper;
 import com.hmdm.rest.json.LookupItem;
 import com.hmdm.security.SecurityContext;
 import com.hmdm.security.SecurityException;
+import com.hmdm.service.UserPrincipalCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -42,11 +43,14 @@ import java.util.stream.Collectors;
 public class UserDAO extends AbstractDAO<User> {
     private final UserMapper mapper;
     private final int orgAdminRoleId;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Inject
-    public UserDAO(UserMapper mapper, @Named("role.orgadmin.id") int orgAdminRoleId) {
+    public UserDAO(UserMapper mapper, @Named("role.orgadmin.id") int orgAdminRoleId,
+                   UserPrincipalCache userPrincipalCache) {
         this.mapper = mapper;
         this.orgAdminRoleId = orgAdminRoleId;
+        this.userPrincipalCache = userPrincipalCache;
     }
 
     public User findByLoginOrEmail( String login ) {
@@ -67,12 +71,14 @@ public class UserDAO extends AbstractDAO<User> {
     @Transactional
     public void updatePassword(User user ) {
         updateRecord(user, this.mapper::updatePassword, SecurityException::onUserAccessViolation);
+        this.userPrincipalCache.invalidate(user.getId());
     }
 
     @Transactional
     public void updatePasswordBySuperAdmin(User user ) {
         if (SecurityContext.get().isSuperAdmin()) {
             this.mapper.setNewPassword(user);
+            this.userPrincipalCache.invalidate(user.getId());
         } else {
             throw new IllegalArgumentException("Super-admin is allowed only");
         }
@@ -126,6 +132,7 @@ public class UserDAO extends AbstractDAO<User> {
                 }
             }
         }, SecurityException::onUserAccessViolation);
+        this.userPrincipalCache.invalidate(user.getId());
     }
 
     public void deleteUser(int id) {
@@ -134,6 +141,7 @@ public class UserDAO extends AbstractDAO<User> {
                 throw new IllegalArgumentException("Can't remove self");
             } else {
                 updateById(id, mapper::findById, this.mapper::deleteUser, SecurityException::onUserAccessViolation);
+                this.userPrincipalCache.invalidate(id);
             }
         });
     }
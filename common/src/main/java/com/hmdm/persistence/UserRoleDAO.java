@@ -27,6 +27,7 @@ import com.hmdm.persistence.domain.UserRole;
 import com.hmdm.persistence.domain.UserRolePermission;
 import com.hmdm.persistence.mapper.UserRoleMapper;
 import com.hmdm.security.SecurityContext;
+import com.hmdm.service.UserPrincipalCache;
 
 import javax.inject.Named;
 import java.util.List;
@@ -38,16 +39,19 @@ public class UserRoleDAO {
     private final UserDAO userDAO;
     private final UserRoleMapper mapper;
     private final int orgAdminRoleId;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Inject
     public UserRoleDAO(UnsecureDAO unsecureDAO,
                        UserDAO userDAO,
                        UserRoleMapper mapper,
-                       @Named("role.orgadmin.id") int orgAdminRoleId) {
+                       @Named("role.orgadmin.id") int orgAdminRoleId,
+                       UserPrincipalCache userPrincipalCache) {
         this.unsecureDAO = unsecureDAO;
         this.userDAO = userDAO;
         this.mapper = mapper;
         this.orgAdminRoleId = orgAdminRoleId;
+        this.userPrincipalCache = userPrincipalCache;
     }
 
     public boolean hasAccess() {
@@ -108,12 +112,14 @@ public class UserRoleDAO {
             mapper.insertPermissions(userRole.getId(),
                     userRole.getPermissions().stream().map(UserRolePermission::getId).collect(Collectors.toList()));
         }
+        userPrincipalCache.invalidateAll();
     }
 
     public void delete(int id) {
         checkAccess();
         if (id != orgAdminRoleId) {
             mapper.delete(id);
+            userPrincipalCache.invalidateAll();
         } else {
             throw new IllegalArgumentException("Cannot delete the admin role");
         }
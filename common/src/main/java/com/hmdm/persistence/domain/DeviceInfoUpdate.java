@@ -0,0 +1,111 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.persistence.domain;
+
+import com.hmdm.rest.json.DeviceInfo;
+
+/**
+ * <p>A pending update of the info reported by device. The info is serialized only when the update is written to the
+ * database, so the updates superseded by the later ones are never serialized.</p>
+ */
+public class DeviceInfoUpdate {
+
+    private final int deviceId;
+    private final DeviceInfo deviceInfo;
+    private final String publicIp;
+
+    /**
+     * <p>The custom properties; <code>null</code> value means the property is not changed.</p>
+     */
+    private String custom1;
+    private String custom2;
+    private String custom3;
+
+    /**
+     * <p>The serialized info.</p>
+     */
+    private String info;
+
+    public DeviceInfoUpdate(int deviceId, DeviceInfo deviceInfo, String publicIp) {
+        this.deviceId = deviceId;
+        this.deviceInfo = deviceInfo;
+        this.publicIp = publicIp;
+        this.custom1 = deviceInfo.getCustom1();
+        this.custom2 = deviceInfo.getCustom2();
+        this.custom3 = deviceInfo.getCustom3();
+    }
+
+    /**
+     * <p>Takes the custom properties changed by the previous update and not changed by this one.</p>
+     *
+     * @param previous a previous update for the same device.
+     * @return this update.
+     */
+    public DeviceInfoUpdate mergePrevious(DeviceInfoUpdate previous) {
+        if (this.custom1 == null) {
+            this.custom1 = previous.custom1;
+        }
+        if (this.custom2 == null) {
+            this.custom2 = previous.custom2;
+        }
+        if (this.custom3 == null) {
+            this.custom3 = previous.custom3;
+        }
+        return this;
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public DeviceInfo getDeviceInfo() {
+        return deviceInfo;
+    }
+
+    public String getImei() {
+        return deviceInfo.getImei();
+    }
+
+    public String getPublicIp() {
+        return publicIp;
+    }
+
+    public String getCustom1() {
+        return custom1;
+    }
+
+    public String getCustom2() {
+        return custom2;
+    }
+
+    public String getCustom3() {
+        return custom3;
+    }
+
+    public String getInfo() {
+        return info;
+    }
+
+    public void setInfo(String info) {
+        this.info = info;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.persistence.domain;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>A partition of the table partitioned by range of a <code>BIGINT</code> or <code>INT</code> column in
+ * <code>Postgres</code> database.</p>
+ *
+ * @author agent
+ */
+public class TablePartition {
+
+    private static final Pattern RANGE_BOUND = Pattern.compile("FOR VALUES FROM \\((.+)\\) TO \\((.+)\\)");
+
+    /**
+     * <p>A name of the partition table.</p>
+     */
+    private String name;
+
+    /**
+     * <p>A partition bound as reported by <code>pg_get_expr</code>, e.g.
+     * <code>FOR VALUES FROM ('1760745600000') TO ('1760832000000')</code> or <code>DEFAULT</code>.</p>
+     */
+    private String bound;
+
+    /**
+     * <p>Constructs new <code>TablePartition</code> instance. This implementation does nothing.</p>
+     */
+    public TablePartition() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getBound() {
+        return bound;
+    }
+
+    public void setBound(String bound) {
+        this.bound = bound;
+    }
+
+    /**
+     * <p>Checks if this is a default partition holding the records not matching any other partition.</p>
+     */
+    public boolean isDefault() {
+        return "DEFAULT".equals(bound);
+    }
+
+    /**
+     * <p>Gets the lower bound (inclusive) of the partition key in this partition.</p>
+     *
+     * @return a lower bound or <code>null</code> if there is no lower bound or it is not recognized.
+     */
+    public Long getFrom() {
+        return parseBound(1);
+    }
+
+    /**
+     * <p>Gets the upper bound (exclusive) of the partition key in this partition.</p>
+     *
+     * @return an upper bound or <code>null</code> if there is no upper bound or it is not recognized.
+     */
+    public Long getTo() {
+        return parseBound(2);
+    }
+
+    /**
+     * <p>Checks if this partition may hold the records with partition key within the specified range.</p>
+     *
+     * @param from a lower bound of the range (inclusive).
+     * @param to an upper bound of the range (exclusive).
+     */
+    public boolean overlaps(long from, long to) {
+        if (bound == null || isDefault()) {
+            return false;
+        }
+        final Long partitionFrom = getFrom();
+        final Long partitionTo = getTo();
+        return (partitionFrom == null || partitionFrom < to) && (partitionTo == null || partitionTo > from);
+    }
+
+    private Long parseBound(int group) {
+        if (bound == null) {
+            return null;
+        }
+        final Matcher matcher = RANGE_BOUND.matcher(bound);
+        if (!matcher.matches()) {
+            return null;
+        }
+        final String value = matcher.group(group).replace("'", "").trim();
+        if (value.equals("MINVALUE") || value.equals("MAXVALUE")) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            // An unknown bound is treated as no bound, so such partition is never dropped as outdated
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TablePartition{" +
+                "name='" + name + '\'' +
+                ", bound='" + bound + '\'' +
+                '}';
+    }
+}
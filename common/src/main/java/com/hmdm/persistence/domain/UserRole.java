@@ -25,8 +25,12 @@ import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.Set;
 
 @ApiModel(description = "A role of user within MDM web application")
 public class UserRole implements Serializable {
@@ -44,6 +48,11 @@ public class UserRole implements Serializable {
     @ApiModelProperty("A list of permissions granted to user role")
     private List<UserRolePermission> permissions;
 
+    /**
+     * <p>The names of granted permissions compiled for constant-time lookup on first check.</p>
+     */
+    private transient volatile CompiledPermissions compiledPermissions;
+
     public UserRole() {
     }
 
@@ -85,6 +94,44 @@ public class UserRole implements Serializable {
 
     public void setPermissions(List<UserRolePermission> permissions) {
         this.permissions = permissions;
+        this.compiledPermissions = null;
+    }
+
+    /**
+     * <p>Checks if this role is granted the specified permission. The permission names are compared ignoring case.</p>
+     *
+     * @param permission a name of the permission to check for granting.
+     * @return <code>true</code> if this role is granted a specified permission; <code>false</code> otherwise.
+     */
+    public boolean hasPermission(String permission) {
+        if (permission == null) {
+            return false;
+        }
+        final Set<String> names = compilePermissions();
+        return names.contains(permission) || names.contains(permission.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * <p>Gets the set of lower-cased names of granted permissions. The set is built once and re-built only if the list
+     * of permissions is replaced or changes its size, as MyBatis fills the list after it has been set.</p>
+     */
+    private Set<String> compilePermissions() {
+        final List<UserRolePermission> source = this.permissions;
+        final int size = source == null ? 0 : source.size();
+        CompiledPermissions compiled = this.compiledPermissions;
+        if (compiled == null || compiled.source != source || compiled.size != size) {
+            final Set<String> names = new HashSet<>(size * 2);
+            if (source != null) {
+                for (UserRolePermission permission : source) {
+                    if (permission.getName() != null) {
+                        names.add(permission.getName().toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            compiled = new CompiledPermissions(source, size, Collections.unmodifiableSet(names));
+            this.compiledPermissions = compiled;
+        }
+        return compiled.names;
     }
 
     @Override
@@ -108,4 +155,19 @@ public class UserRole implements Serializable {
                 ", superAdmin=" + superAdmin +
                 '}';
     }
+
+    /**
+     * <p>The compiled permission names along with the list they have been compiled from.</p>
+     */
+    private static final class CompiledPermissions {
+        private final List<UserRolePermission> source;
+        private final int size;
+        private final Set<String> names;
+
+        private CompiledPermissions(List<UserRolePermission> source, int size, Set<String> names) {
+            this.source = source;
+            this.size = size;
+            this.names = names;
+        }
+    }
 }
\ No newline at end of file
@@ -173,8 +173,7 @@ public interface ConfigurationMapper {
      * @param id an ID of a configuration.
      * @return a list of all existing applications with set parameters of usage by specified configuration.
      */
-    List<Application> getConfigurationApplications(@Param("customerId") Integer customerId, @Param("id") Integer id,
-                                                   @Param("tempTable") String tempTable);
+    List<Application> getConfigurationApplications(@Param("customerId") Integer customerId, @Param("id") Integer id);
 
     /**
      * <p>Gets the list of applications used by specified configuration.</p>
@@ -183,11 +182,7 @@ public interface ConfigurationMapper {
      * @param id an ID of a configuration.
      * @return a list of all existing applications with set parameters of usage by specified configuration.
      */
-    List<Application> getPlainConfigurationApplications(@Param("customerId") Integer customerId, @Param("caTableName") String caTableName, @Param("id") Integer id);
-
-    @Insert("CREATE TEMP TABLE ${tableName} ON COMMIT DROP AS SELECT * FROM configurationApplications WHERE configurationId=${configurationId};"
-    )
-    void createTempConfigAppTable(@Param("tableName") String tableName, @Param("configurationId") Integer configurationId);
+    List<Application> getPlainConfigurationApplications(@Param("customerId") Integer customerId, @Param("id") Integer id);
 
 
     /**
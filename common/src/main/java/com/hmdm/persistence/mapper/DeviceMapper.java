@@ -26,6 +26,7 @@ import java.util.List;
 import com.hmdm.persistence.domain.*;
 import com.hmdm.service.DeviceApplicationsStatus;
 import com.hmdm.service.DeviceConfigFilesStatus;
+import com.hmdm.service.DeviceStatuses;
 import org.apache.ibatis.annotations.*;
 import com.hmdm.rest.json.DeviceLookupItem;
 
@@ -65,6 +66,10 @@ public interface DeviceMapper {
 
     Device getDeviceById(@Param("id") Integer id);
 
+    DeviceIdentity getDeviceIdentityByNumber(@Param("number") String number);
+
+    DeviceIdentity getDeviceIdentityById(@Param("id") Integer id);
+
     @Select({"SELECT * FROM devices " +
             "WHERE configurationId = #{configurationId} AND customerId = #{customerId}"})
     List<Device> getAllConfigurationDevices(@Param("configurationId") int configurationId,
@@ -114,6 +119,8 @@ public interface DeviceMapper {
                           @Param("imeiUpdateTs") Long imeiUpdateTs,
                           @Param("publicIp") String publicIp);
 
+    void updateDeviceInfoBatch(@Param("updates") List<DeviceInfoUpdate> updates);
+
     @Update({"UPDATE devices SET " +
             "  custom1 = #{custom1}, " +
             "  custom2 = #{custom2}, " +
@@ -176,7 +183,8 @@ public interface DeviceMapper {
     @Select({"SELECT * FROM groups WHERE id = #{id}"})
     Group getGroupById(@Param("id") Integer id);
 
-    @Select("SELECT devices.id FROM devices WHERE customerId = #{customerId} AND configurationId = #{configurationId}")
+    @Select("SELECT devices.id, devices.number, devices.oldNumber FROM devices " +
+            "WHERE customerId = #{customerId} AND configurationId = #{configurationId}")
     List<Device> getDeviceIdsByConfigurationId(@Param("customerId") Integer customerId,
                                                @Param("configurationId") int configurationId);
 
@@ -208,6 +216,10 @@ public interface DeviceMapper {
                              @Param("filesStatus") DeviceConfigFilesStatus deviceConfigFilesStatus,
                              @Param("appsStatus") DeviceApplicationsStatus deviceApplicatiosStatus);
 
+    int updateDeviceStatusesBatch(@Param("statuses") List<DeviceStatuses> statuses);
+
+    List<Device> getDevicesForStatusRecalc(@Param("deviceIds") List<Integer> deviceIds);
+
     @Select("SELECT id FROM devices")
     List<Integer> getAllDeviceIds();
 }
@@ -26,6 +26,7 @@ import com.google.inject.Singleton;
 import com.hmdm.persistence.UserDAO;
 import com.hmdm.persistence.domain.User;
 import com.hmdm.security.SecurityContext;
+import com.hmdm.service.UserPrincipalCache;
 
 import java.io.IOException;
 import javax.servlet.Filter;
@@ -46,12 +47,15 @@ public class AuthFilter implements Filter {
 
     private UserDAO userDAO;
 
+    private UserPrincipalCache userPrincipalCache;
+
     public AuthFilter() {
     }
 
     @Inject
-    public AuthFilter(UserDAO userDAO) {
+    public AuthFilter(UserDAO userDAO, UserPrincipalCache userPrincipalCache) {
         this.userDAO = userDAO;
+        this.userPrincipalCache = userPrincipalCache;
     }
 
     public void init(FilterConfig filterConfig) throws ServletException {
@@ -103,7 +107,7 @@ public class AuthFilter implements Filter {
         // Set-up the security context
         try {
             SecurityContext.init(currentUser);
-            User dbUser = userDAO.getUserDetails(currentUser.getId());
+            User dbUser = userPrincipalCache.getById(currentUser.getId(), userDAO::getUserDetails);
             if (dbUser.isPasswordReset() || dbUser.getAuthToken() == null || currentUser.getAuthToken() == null ||
                     !currentUser.getAuthToken().equals(dbUser.getAuthToken())) {
                 ((HttpServletResponse)servletResponse).sendError(403);
@@ -1,64 +1,45 @@
 package com.hmdm.rest.filter;
 
+import com.hmdm.util.IPAddressUtil;
+import com.hmdm.util.IPPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
 
 public class BaseIPFilter {
 
     private Logger logger = LoggerFactory.getLogger(BaseIPFilter.class);
 
-    public class Net {
-        private byte[] value;
-        private byte[] mask = new byte[4];
-
-        public Net(String net) throws Exception {
-            String[] s = net.split("/");
-            if (s.length > 2) {
-                throw new Exception("Wrong network description, should be at most one / sign");
-            }
-            value = InetAddress.getByName(s[0]).getAddress();
-            int maskLength;
-            if (s.length == 1) {
-                // Single IP address
-                maskLength = 32;
-            } else {
-                maskLength = Integer.parseInt(s[1]);
-            }
-            mask[0] = (byte)(maskLength < 8 ? (0xff << (8 - maskLength)) : 0xff);
-            mask[1] = (byte)(maskLength < 16 ? (0xff << (16 - maskLength)) : 0xff);
-            mask[2] = (byte)(maskLength < 24 ? (0xff << (24 - maskLength)) : 0xff);
-            mask[3] = (byte)(maskLength < 32 ? (0xff << (32 - maskLength)) : 0xff);
-        }
+    /**
+     * <p>A prefix of the whitelist referring to a file with allowed networks</p>
+     */
+    public static final String FILE_PREFIX = "file:";
 
-        public boolean match(byte[] ip) {
-            if (ip.length != mask.length) {
-                logger.warn("Wrong IP address length: " + ip.length);
-                return false;
-            }
-            for (int i = 0; i < ip.length; i++) {
-                if ((ip[i] & mask[i]) != value[i]) {
-                    return false;
-                }
-            }
-            return true;
-        }
-    }
+    /**
+     * <p>An interval of checking the whitelist file for modifications (in milliseconds)</p>
+     */
+    private static final long RELOAD_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(10);
 
     /**
-     * <p>Whitelist of allowed networks/addresses</p>
+     * <p>Whitelist of allowed networks/addresses compiled into a prefix trie, or null if all IPs are allowed.
+     * Replaced as a whole when the whitelist is reloaded</p>
      */
-    private List<Net> whitelist;
+    private volatile IPPrefixTrie whitelist;
 
     /**
-     * <p>Empty whitelist means all IPs are allowed</p>
+     * <p>A file containing the whitelist, or null if the whitelist is configured directly</p>
      */
-    private boolean allAllowed = false;
+    private final File whitelistFile;
+
+    private volatile long whitelistFileModified;
+    private volatile long nextReloadCheck;
 
     /**
      * <p>IP addresses of reverse proxies</p>
@@ -70,51 +51,129 @@ public class BaseIPFilter {
      */
     private String ipHeader;
 
+    /**
+     * @param allowedNets comma-separated networks (like 192.168.0.0/24 or 2001:db8::/32) and addresses; empty
+     *                    whitelist means all IPs are allowed. If starts with "file:" then the networks are read from
+     *                    the file which is re-read when modified
+     */
     public BaseIPFilter(String allowedNets, String proxyIps, String ipHeader) {
-        if (null == allowedNets || "".equals(allowedNets)) {
-            allAllowed = true;
+        if (allowedNets != null && allowedNets.startsWith(FILE_PREFIX)) {
+            whitelistFile = new File(allowedNets.substring(FILE_PREFIX.length()).trim());
+            reloadFileIfModified();
         } else {
-            whitelist = new LinkedList<Net>();
-            String[] nets = allowedNets.split(",");
-            for (String net : nets) {
-                try {
-                    whitelist.add(new Net(net));
-                } catch (Exception e) {
-                    logger.error(e.getMessage());
-                }
-            }
+            whitelistFile = null;
+            reload(allowedNets);
         }
         this.ipHeader = !"".equals(ipHeader) ? ipHeader : "X-Real-IP";
         this.proxies = !"".equals(proxyIps) ? proxyIps.split(",") : new String[0];
     }
 
+    /**
+     * <p>Replaces the whitelist without interrupting the requests being checked</p>
+     *
+     * @param allowedNets networks and addresses separated by commas or whitespaces; empty whitelist means all IPs are
+     *                    allowed
+     */
+    public void reload(String allowedNets) {
+        if (null == allowedNets || allowedNets.trim().isEmpty()) {
+            whitelist = null;
+            return;
+        }
+        IPPrefixTrie.Builder builder = IPPrefixTrie.builder();
+        for (String net : allowedNets.split("[,\\s]+")) {
+            if (net.isEmpty()) {
+                continue;
+            }
+            try {
+                addNet(builder, net);
+            } catch (Exception e) {
+                logger.error("Wrong network description {}: {}", net, e.getMessage());
+            }
+        }
+        whitelist = builder.build();
+    }
+
+    private static void addNet(IPPrefixTrie.Builder builder, String net) throws Exception {
+        String[] s = net.split("/");
+        if (s.length > 2) {
+            throw new Exception("Wrong network description, should be at most one / sign");
+        }
+        byte[] value = IPAddressUtil.parse(s[0]);
+        if (value == null) {
+            // Host names are resolved once when the whitelist is loaded
+            value = InetAddress.getByName(s[0]).getAddress();
+        }
+        int maskLength = s.length == 1 ? value.length * 8 : Integer.parseInt(s[1].trim());
+        builder.add(value, maskLength);
+    }
+
+    /**
+     * <p>Re-reads the whitelist file if it has been modified since the last reading. The file may contain comments
+     * starting with # sign</p>
+     */
+    private synchronized void reloadFileIfModified() {
+        long modified = whitelistFile.lastModified();
+        if (modified == whitelistFileModified && modified != 0) {
+            return;
+        }
+        try {
+            StringBuilder nets = new StringBuilder();
+            for (String line : Files.readAllLines(whitelistFile.toPath(), StandardCharsets.UTF_8)) {
+                int comment = line.indexOf('#');
+                nets.append(comment >= 0 ? line.substring(0, comment) : line).append('\n');
+            }
+            if (nets.toString().trim().isEmpty()) {
+                // Unlike the configured whitelist, an empty file allows nothing: it may be truncated while updated
+                whitelist = IPPrefixTrie.builder().build();
+            } else {
+                reload(nets.toString());
+            }
+            whitelistFileModified = modified;
+            logger.info("IP whitelist loaded from {}: {} networks", whitelistFile,
+                    whitelist != null ? whitelist.size() : 0);
+        } catch (IOException e) {
+            if (whitelistFileModified == 0 && whitelist == null) {
+                // Never allow everything because of the missing file
+                whitelist = IPPrefixTrie.builder().build();
+            }
+            logger.error("Failed to read IP whitelist from {}, keeping the previous one: {}", whitelistFile, e.toString());
+        }
+    }
+
+    private void checkReload() {
+        if (whitelistFile != null) {
+            long now = System.currentTimeMillis();
+            if (now >= nextReloadCheck) {
+                nextReloadCheck = now + RELOAD_CHECK_INTERVAL;
+                reloadFileIfModified();
+            }
+        }
+    }
+
     public boolean match(HttpServletRequest request) {
-        if (allAllowed) {
+        checkReload();
+        IPPrefixTrie nets = whitelist;
+        if (nets == null) {
             return true;
         }
-        return match(getRemoteAddr(request));
+        return match(nets, getRemoteAddr(request));
     }
 
     // For tests only, don't use this directly
     // because if a proxy is used, this will return false result
     public boolean match(String ipStr) {
-        if (allAllowed) {
+        checkReload();
+        IPPrefixTrie nets = whitelist;
+        if (nets == null) {
             return true;
         }
-        InetAddress addr;
-        try {
-            addr = InetAddress.getByName(ipStr);
-        } catch (UnknownHostException e) {
-            // We shouldn't be here!
-            logger.warn(e.getMessage());
-            // Attempt to hack? Let's block it!
-            return false;
-        }
-        byte[] ipBytes = addr.getAddress();
-        for (Net net : whitelist) {
-            if (net.match(ipBytes)) {
-                return true;
-            }
+        return match(nets, ipStr);
+    }
+
+    private boolean match(IPPrefixTrie nets, String ipStr) {
+        // Client addresses are never resolved, a host name here is an attempt to hack, let's block it!
+        if (nets.contains(IPAddressUtil.parse(ipStr))) {
+            return true;
         }
         logger.info(ipStr + " doesn't match the whitelist, blocked");
         return false;
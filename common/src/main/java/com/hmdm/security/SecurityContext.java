@@ -22,6 +22,7 @@
 package com.hmdm.security;
 
 import com.hmdm.persistence.domain.User;
+import com.hmdm.persistence.domain.UserRole;
 
 import java.util.Optional;
 
@@ -135,12 +136,7 @@ public class SecurityContext {
      * @return <code>true</code> if current user is granted a specified permission; <code>false</code> otherwise.
      */
     public boolean hasPermission(String permission) {
-        return isSuperAdmin() ||
-                getCurrentUser()
-                        .map(u -> u.getUserRole()
-                                .getPermissions()
-                                .stream()
-                                .anyMatch(p -> p.getName().equalsIgnoreCase(permission))
-                        ).orElse(false);
+        final UserRole role = this.currentUser != null ? this.currentUser.getUserRole() : null;
+        return role != null && (role.isSuperAdmin() || role.hasPermission(permission));
     }
 }
@@ -0,0 +1,253 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hmdm.persistence.PostCommitActions;
+import com.hmdm.persistence.domain.DeviceIdentity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * <p>A cache for the device identities looked up by the public endpoints on every request from device. The identities
+ * are available both by device number and by device ID.</p>
+ *
+ * <p>The identity is dropped when the device is updated, deleted or completes the migration to new number, and in any
+ * case after the configured time-to-live has expired. The missing devices are not cached, so a newly enrolled device is
+ * found immediately.</p>
+ *
+ * <p>The identities are dropped only once the transaction changing the device is completed, so a request served in the
+ * meantime can not put the old identity back into cache. The cache is local to the node: other nodes of the cluster
+ * keep serving the old identity until its time-to-live expires.</p>
+ */
+@Singleton
+public class DeviceIdentityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceIdentityCache.class);
+
+    /**
+     * <p>An interval for logging the cache statistics (in milliseconds).</p>
+     */
+    private static final long STATS_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * <p>The cached identities mapped to device numbers.</p>
+     */
+    private final ConcurrentMap<String, Entry> entriesByNumber = new ConcurrentHashMap<>();
+
+    /**
+     * <p>The cached identities mapped to device IDs.</p>
+     */
+    private final ConcurrentMap<Integer, Entry> entriesById = new ConcurrentHashMap<>();
+
+    /**
+     * <p>A counter of invalidations. The identity loaded from the database is not cached if some device has been
+     * invalidated during the loading, as the loaded data may be already outdated.</p>
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong lastStatsTime = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * <p>A time-to-live for a single identity in milliseconds; zero or negative value disables the cache.</p>
+     */
+    private final long ttl;
+
+    /**
+     * <p>A maximum number of cached identities.</p>
+     */
+    private final int maxSize;
+
+    /**
+     * <p>Constructs new <code>DeviceIdentityCache</code> instance. This implementation does nothing.</p>
+     *
+     * @param ttl a time-to-live for the identities (in seconds).
+     * @param maxSize a maximum number of cached identities.
+     */
+    @Inject
+    public DeviceIdentityCache(@Named("device.cache.ttl") int ttl,
+                               @Named("device.cache.size") int maxSize) {
+        this.ttl = TimeUnit.SECONDS.toMillis(ttl);
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * <p>Gets the identity of the device with specified number. If there is no valid identity in cache then it is
+     * loaded by the specified loader and put into the cache.</p>
+     *
+     * @param number a device number.
+     * @param loader a loader for the identity to be used if there is no valid identity in cache.
+     * @return an identity of the device or <code>null</code> if there is no such device.
+     */
+    public DeviceIdentity getByNumber(String number, Function<String, DeviceIdentity> loader) {
+        return get(this.entriesByNumber, number, loader);
+    }
+
+    /**
+     * <p>Gets the identity of the device with specified ID. If there is no valid identity in cache then it is loaded by
+     * the specified loader and put into the cache.</p>
+     *
+     * @param id a device ID.
+     * @param loader a loader for the identity to be used if there is no valid identity in cache.
+     * @return an identity of the device or <code>null</code> if there is no such device.
+     */
+    public DeviceIdentity getById(Integer id, Function<Integer, DeviceIdentity> loader) {
+        return get(this.entriesById, id, loader);
+    }
+
+    private <K> DeviceIdentity get(ConcurrentMap<K, Entry> entries, K key, Function<K, DeviceIdentity> loader) {
+        if (this.ttl <= 0 || key == null) {
+            return loader.apply(key);
+        }
+
+        final long now = System.currentTimeMillis();
+        logStats(now);
+
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.expires >= now) {
+            this.hitCount.incrementAndGet();
+            return entry.identity;
+        }
+
+        this.missCount.incrementAndGet();
+        final long invalidations = this.invalidationCount.get();
+        final DeviceIdentity identity = loader.apply(key);
+        if (identity != null && identity.getId() != null && this.invalidationCount.get() == invalidations) {
+            put(identity, now + this.ttl);
+        }
+        return identity;
+    }
+
+    private void put(DeviceIdentity identity, long expires) {
+        if (this.entriesById.size() >= this.maxSize) {
+            evict();
+        }
+
+        final Entry entry = new Entry(identity, expires);
+        final Entry previous = this.entriesById.put(identity.getId(), entry);
+        if (previous != null && !previous.identity.getNumber().equals(identity.getNumber())) {
+            this.entriesByNumber.remove(previous.identity.getNumber(), previous);
+        }
+        this.entriesByNumber.put(identity.getNumber(), entry);
+    }
+
+    /**
+     * <p>Drops the expired identities and, if the cache is still full, some arbitrary identities to make a room for
+     * new ones.</p>
+     */
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        this.entriesById.values().removeIf(entry -> entry.expires < now);
+        this.entriesByNumber.values().removeIf(entry -> entry.expires < now);
+
+        final int targetSize = this.maxSize - this.maxSize / 10;
+        final Iterator<Entry> iterator = this.entriesById.values().iterator();
+        while (this.entriesById.size() > targetSize && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            iterator.remove();
+            this.entriesByNumber.remove(entry.identity.getNumber(), entry);
+        }
+    }
+
+    /**
+     * <p>Drops the identity of specified device once the current transaction is completed.</p>
+     *
+     * @param deviceId an ID of the device.
+     */
+    public void invalidate(Integer deviceId) {
+        PostCommitActions.run(() -> {
+            this.invalidationCount.incrementAndGet();
+            final Entry entry = this.entriesById.remove(deviceId);
+            if (entry != null) {
+                this.entriesByNumber.remove(entry.identity.getNumber(), entry);
+            }
+        });
+    }
+
+    /**
+     * <p>Drops all identities once the current transaction is completed. Used when the changed data may be shared by
+     * many devices.</p>
+     */
+    public void invalidateAll() {
+        PostCommitActions.run(() -> {
+            this.invalidationCount.incrementAndGet();
+            this.entriesById.clear();
+            this.entriesByNumber.clear();
+        });
+    }
+
+    /**
+     * <p>Gets the number of cached identities.</p>
+     */
+    public int getSize() {
+        return this.entriesById.size();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * <p>Gets the ratio of lookups served from cache.</p>
+     */
+    public double getHitRate() {
+        final long hits = this.hitCount.get();
+        final long total = hits + this.missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private void logStats(long now) {
+        final long last = this.lastStatsTime.get();
+        if (now - last >= STATS_INTERVAL && this.lastStatsTime.compareAndSet(last, now)) {
+            logger.info("Device identity cache: {} entries, {} hits, {} misses, hit rate {}%",
+                    getSize(), getHitCount(), getMissCount(), String.format("%.1f", getHitRate() * 100));
+        }
+    }
+
+    /**
+     * <p>A cached identity along with its expiration time.</p>
+     */
+    private static final class Entry {
+        private final DeviceIdentity identity;
+        private final long expires;
+
+        private Entry(DeviceIdentity identity, long expires) {
+            this.identity = identity;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hmdm.event.DeviceInfoUpdatedEvent;
+import com.hmdm.event.EventService;
+import com.hmdm.persistence.UnsecureDAO;
+import com.hmdm.persistence.domain.DeviceInfoUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>A write-behind buffer for the info reported by devices.</p>
+ *
+ * <p>The info is kept in memory until the next {@link #flush()}; if the device reports the info again before that, only
+ * the latest info is written. The info is written in batches, and the {@link DeviceInfoUpdatedEvent} is fired for the
+ * updated devices after that, so the listeners see the new info in the database. The update time is taken from the
+ * database clock when the info is written, as it used to be when the info was written within the request.</p>
+ *
+ * <p>The buffer is not persistent: the info received since the last flush (one flush interval at most) is lost if the
+ * server crashes. This is acceptable as the devices report their info on each configuration update and on a regular
+ * basis anyway; a graceful shutdown flushes the buffer. The info failed to be written is kept for the next flush
+ * unless a newer info from the same device has been received in the meantime.</p>
+ */
+@Singleton
+public class DeviceInfoUpdateBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceInfoUpdateBuffer.class);
+
+    private final UnsecureDAO unsecureDAO;
+    private final EventService eventService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * <p>The latest info not written to the database yet mapped to device IDs.</p>
+     */
+    private final ConcurrentMap<Integer, DeviceInfoUpdate> pendingUpdates = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Constructs new <code>DeviceInfoUpdateBuffer</code> instance. This implementation does nothing.</p>
+     */
+    @Inject
+    public DeviceInfoUpdateBuffer(UnsecureDAO unsecureDAO, EventService eventService, ObjectMapper objectMapper) {
+        this.unsecureDAO = unsecureDAO;
+        this.eventService = eventService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * <p>Stores the info reported by device to be written on next flush. The previous info from the same device is
+     * replaced.</p>
+     *
+     * @param update an update of device info.
+     */
+    public void submit(DeviceInfoUpdate update) {
+        this.pendingUpdates.merge(update.getDeviceId(), update, (previous, latest) -> latest.mergePrevious(previous));
+    }
+
+    /**
+     * <p>Writes the pending info to the database.</p>
+     */
+    public void flush() {
+        final List<DeviceInfoUpdate> updates = new ArrayList<>();
+        for (Integer deviceId : new ArrayList<>(this.pendingUpdates.keySet())) {
+            final DeviceInfoUpdate update = this.pendingUpdates.remove(deviceId);
+            if (update == null) {
+                continue;
+            }
+            try {
+                update.setInfo(this.objectMapper.writeValueAsString(update.getDeviceInfo()));
+                updates.add(update);
+            } catch (Exception e) {
+                logger.error("Failed to serialize the info of device #{}, skipping", deviceId, e);
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        // The devices are always locked in the same order
+        updates.sort(Comparator.comparingInt(DeviceInfoUpdate::getDeviceId));
+        try {
+            this.unsecureDAO.updateDeviceInfoBatch(updates);
+        } catch (Exception e) {
+            logger.error("Failed to update the info of {} devices, will retry", updates.size(), e);
+            updates.forEach(update -> this.pendingUpdates.merge(
+                    update.getDeviceId(), update, (latest, failed) -> latest.mergePrevious(failed)
+            ));
+            return;
+        }
+        logger.debug("Updated the info of {} devices", updates.size());
+
+        updates.forEach(update -> this.eventService.fireEvent(new DeviceInfoUpdatedEvent(update.getDeviceId())));
+    }
+
+    /**
+     * <p>Gets the number of devices with the info not written to the database yet.</p>
+     */
+    public int getPendingCount() {
+        return this.pendingUpdates.size();
+    }
+}
@@ -19,6 +19,7 @@
  *
  */
 
+
 package com.hmdm.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -30,28 +31,68 @@ import com.hmdm.persistence.mapper.ConfigurationMapper;
 import com.hmdm.persistence.mapper.DeviceMapper;
 import com.hmdm.rest.json.DeviceConfigurationFile;
 import com.hmdm.rest.json.DeviceInfo;
-import com.hmdm.util.ApplicationUtil;
-import org.mybatis.guice.transactional.Transactional;
+import com.hmdm.util.ParsedVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.BiPredicate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
- * <p>$</p>
+ * <p>A service evaluating the statuses of applications and configuration files installed on devices against their
+ * configurations.</p>
+ *
+ * <p>The devices are processed in batches: the rules of each configuration are loaded once per batch, the devices are
+ * evaluated in parallel and the statuses of the whole batch are written by a single statement. The recalculations
+ * requested by device info updates are coalesced, so a burst of updates is processed by a few batches.</p>
  */
 @Singleton
 public class DeviceStatusService {
 
     private static final Logger logger = LoggerFactory.getLogger(DeviceStatusService.class);
 
+    /**
+     * <p>A maximum number of devices processed in a single batch.</p>
+     */
+    static final int BATCH_SIZE = 500;
+
+    /**
+     * <p>A minimum number of devices in a batch to evaluate them in parallel.</p>
+     */
+    private static final int PARALLEL_THRESHOLD = 50;
+
+    /**
+     * <p>A maximum difference between the update times of configuration file and the file on device.</p>
+     */
+    private static final long FILE_UPDATE_TOLERANCE = TimeUnit.HOURS.toMillis(1);
+
     private final DeviceMapper deviceMapper;
     private final ConfigurationMapper configurationMapper;
     private final ConfigurationFileMapper configurationFileMapper;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * <p>The IDs of devices waiting for recalculation of statuses.</p>
+     */
+    private final Set<Integer> pendingDeviceIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * <p>A flag indicating that some thread recalculates the statuses of pending devices.</p>
+     */
+    private final AtomicBoolean draining = new AtomicBoolean();
 
     /**
      * <p>Constructs new <code>DeviceStatusService</code> instance. This implementation does nothing.</p>
@@ -59,185 +100,282 @@ public class DeviceStatusService {
     @Inject
     public DeviceStatusService(DeviceMapper deviceMapper,
                                ConfigurationMapper configurationMapper,
-                               ConfigurationFileMapper configurationFileMapper) {
+                               ConfigurationFileMapper configurationFileMapper,
+                               ObjectMapper objectMapper) {
         this.deviceMapper = deviceMapper;
         this.configurationMapper = configurationMapper;
         this.configurationFileMapper = configurationFileMapper;
+        this.objectMapper = objectMapper;
     }
 
-    @Transactional
     public void recalcDeviceStatuses(int deviceId) {
-        final Device dbDevice = this.deviceMapper.getDeviceById(deviceId);
-        if (dbDevice != null) {
-            try {
-                DeviceConfigFilesStatus deviceConfigFilesStatus = DeviceConfigFilesStatus.OTHER;
-                DeviceApplicationsStatus deviceApplicatiosStatus = DeviceApplicationsStatus.FAILURE;
-
-                if (dbDevice.getInfo() != null) {
-                    if (!dbDevice.getInfo().trim().isEmpty()) {
-                        final String deviceInfoString = dbDevice.getInfo();
-                        ObjectMapper jsonMapper = new ObjectMapper();
-                        DeviceInfo info = jsonMapper.readValue(deviceInfoString, DeviceInfo.class);
-
-                        deviceConfigFilesStatus = evaluateDeviceConfigurationFilesStatus(dbDevice, info);
-                        deviceApplicatiosStatus = evaluateDeviceApplicationsStatus(dbDevice, info);
-                    }
-                }
+        recalcDeviceStatuses(Collections.singletonList(deviceId));
+    }
 
-                this.deviceMapper.updateDeviceStatuses(dbDevice.getId(), deviceConfigFilesStatus, deviceApplicatiosStatus);
-                
-            } catch (IOException e) {
-                logger.error("Failed to parse JSON data from info property", e);
+    /**
+     * <p>Schedules the recalculation of statuses for specified device. If no other thread recalculates the statuses at
+     * the moment, then the current thread recalculates them for all pending devices; otherwise the device is picked up
+     * by that thread.</p>
+     *
+     * @param deviceId an ID of the device.
+     */
+    public void scheduleRecalc(int deviceId) {
+        pendingDeviceIds.add(deviceId);
+        // The check is repeated after releasing the flag, so the devices added meanwhile are not left behind
+        while (!pendingDeviceIds.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                final List<Integer> deviceIds = new ArrayList<>(pendingDeviceIds);
+                pendingDeviceIds.removeAll(deviceIds);
+                recalcDeviceStatuses(deviceIds);
+            } catch (Exception e) {
+                logger.warn("Failed to recalculate statuses for pending devices", e);
+            } finally {
+                draining.set(false);
             }
+        }
+    }
 
+    /**
+     * <p>Recalculates the statuses for specified devices.</p>
+     *
+     * @param deviceIds the IDs of devices.
+     */
+    public void recalcDeviceStatuses(Collection<Integer> deviceIds) {
+        final List<Integer> ids = new ArrayList<>(deviceIds);
+        for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+            final List<Integer> batch = ids.subList(i, Math.min(ids.size(), i + BATCH_SIZE));
+            try {
+                recalcBatch(batch);
+            } catch (Exception e) {
+                logger.warn("Failed to recalculate statuses for {} devices starting from device: {}",
+                        batch.size(), batch.get(0), e);
+            }
         }
     }
 
-    private DeviceApplicationsStatus evaluateDeviceApplicationsStatus(Device dbDevice, DeviceInfo info) {
-        AtomicInteger versionMismatchCount = new AtomicInteger();
-        AtomicInteger notRemovedCount = new AtomicInteger();
-        AtomicInteger notInstalledCount = new AtomicInteger();
+    private void recalcBatch(List<Integer> deviceIds) {
+        final List<Device> devices = this.deviceMapper.getDevicesForStatusRecalc(deviceIds);
+
+        final Map<Integer, ConfigurationRules> rules = new HashMap<>();
+        for (Device device : devices) {
+            if (device.getConfigurationId() != null) {
+                rules.computeIfAbsent(device.getConfigurationId(), this::loadConfigurationRules);
+            }
+        }
+
+        final Stream<Device> stream = devices.size() >= PARALLEL_THRESHOLD ? devices.parallelStream() : devices.stream();
+        final List<DeviceStatuses> statuses = stream
+                .map(device -> device.getConfigurationId() != null
+                        ? evaluateDeviceStatuses(device, rules.get(device.getConfigurationId()))
+                        : getUnconfiguredDeviceStatuses(device))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
-        final List<Application> configApplications = this.configurationMapper.getPlainConfigurationAppsOptimized(dbDevice.getConfigurationId());
+        if (!statuses.isEmpty()) {
+            this.deviceMapper.updateDeviceStatusesBatch(statuses);
+        }
+    }
 
-        configApplications.forEach(configApp -> {
+    private ConfigurationRules loadConfigurationRules(int configurationId) {
+        final List<ApplicationRule> applications = new ArrayList<>();
+        for (Application configApp : this.configurationMapper.getPlainConfigurationAppsOptimized(configurationId)) {
             // Do not test apps without URL (they are mostly system apps) as well as web pages
             if ((configApp.getUrl() == null && configApp.getUrlArm64() == null && configApp.getUrlArmeabi() == null)
                     || configApp.getType() != ApplicationType.app) {
-                return;
+                continue;
+            }
+            applications.add(new ApplicationRule(configApp));
+        }
+
+        return new ConfigurationRules(applications, this.configurationFileMapper.getConfigurationFiles(configurationId));
+    }
+
+    /**
+     * <p>Evaluates the statuses of specified device.</p>
+     *
+     * @return the statuses of device or <code>null</code> if the info reported by device can not be parsed.
+     */
+    private DeviceStatuses evaluateDeviceStatuses(Device dbDevice, ConfigurationRules rules) {
+        DeviceConfigFilesStatus deviceConfigFilesStatus = DeviceConfigFilesStatus.OTHER;
+        DeviceApplicationsStatus deviceApplicatiosStatus = DeviceApplicationsStatus.FAILURE;
+
+        if (dbDevice.getInfo() != null && !dbDevice.getInfo().trim().isEmpty()) {
+            final DeviceInfo info;
+            try {
+                info = this.objectMapper.readValue(dbDevice.getInfo(), DeviceInfo.class);
+            } catch (IOException e) {
+                logger.error("Failed to parse JSON data from info property of device: {}", dbDevice.getId(), e);
+                return null;
             }
 
-            final List<Application> deviceApps = info.getApplications();
-            boolean foundOnDevice = false;
-            for (int i = 0; i < deviceApps.size(); i++) {
-                final Application deviceApp = deviceApps.get(i);
-                if (deviceApp.getPkg().equals(configApp.getPkg())) {
-                    foundOnDevice = true;
-
-                    if (configApp.getAction() == 2) {
-                        if (configApp.getVersion().equals(deviceApp.getVersion())) {
-                            // Needs to be removed but not removed
-                            notRemovedCount.incrementAndGet();
-                        }
-                    } else if (!configApp.getVersion().equals("0")
-                            && !configApp.isSkipVersion()
-                            && !isVersionUpToDate.test(deviceApp.getVersion(), configApp.getVersion())) {
-                        // Version mismatch
-                        versionMismatchCount.incrementAndGet();
-                    }
-                    break;
+            deviceConfigFilesStatus = evaluateDeviceConfigurationFilesStatus(rules.files, info);
+            deviceApplicatiosStatus = evaluateDeviceApplicationsStatus(rules.applications, info);
+        }
+
+        return new DeviceStatuses(dbDevice.getId(), deviceConfigFilesStatus, deviceApplicatiosStatus);
+    }
+
+    /**
+     * <p>Gets the statuses of device having no configuration. Nothing can be evaluated for such device, so its previous
+     * statuses are reset to the ones of a device which has not reported its info yet; these are also displayed for the
+     * devices having no statuses at all.</p>
+     */
+    private static DeviceStatuses getUnconfiguredDeviceStatuses(Device dbDevice) {
+        return new DeviceStatuses(dbDevice.getId(), DeviceConfigFilesStatus.OTHER, DeviceApplicationsStatus.FAILURE);
+    }
+
+    private static DeviceApplicationsStatus evaluateDeviceApplicationsStatus(List<ApplicationRule> configApplications,
+                                                                             DeviceInfo info) {
+        final Map<String, String> deviceVersions = new HashMap<>();
+        if (info.getApplications() != null) {
+            for (Application deviceApp : info.getApplications()) {
+                if (deviceApp.getPkg() != null && !deviceVersions.containsKey(deviceApp.getPkg())) {
+                    deviceVersions.put(deviceApp.getPkg(), deviceApp.getVersion());
+                }
+            }
+        }
+
+        int versionMismatchCount = 0;
+        int notRemovedCount = 0;
+        int notInstalledCount = 0;
+
+        for (ApplicationRule configApp : configApplications) {
+            if (!deviceVersions.containsKey(configApp.pkg)) {
+                if (configApp.action == 1) {
+                    notInstalledCount++;
                 }
+                continue;
             }
 
-            if (!foundOnDevice && configApp.getAction() == 1) {
-                notInstalledCount.incrementAndGet();
+            final String installedVersion = deviceVersions.get(configApp.pkg);
+            if (configApp.action == 2) {
+                if (configApp.version != null && configApp.version.equals(installedVersion)) {
+                    // Needs to be removed but not removed
+                    notRemovedCount++;
+                }
+            } else if (configApp.parsedVersion != null
+                    && compareVersions(ParsedVersion.of(installedVersion), configApp.parsedVersion) < 0) {
+                // Version mismatch
+                versionMismatchCount++;
             }
-        });
+        }
 
-        if (notInstalledCount.get() > 0) {
+        if (notInstalledCount > 0) {
             return DeviceApplicationsStatus.FAILURE;
-        } else if (versionMismatchCount.get() > 0 || notRemovedCount.get() > 0) {
+        } else if (versionMismatchCount > 0 || notRemovedCount > 0) {
             return DeviceApplicationsStatus.VERSION_MISMATCH;
         } else {
             return DeviceApplicationsStatus.SUCCESS;
         }
     }
 
-    private DeviceConfigFilesStatus evaluateDeviceConfigurationFilesStatus(Device dbDevice, DeviceInfo info) {
-        final List<ConfigurationFile> configurationFiles
-                = this.configurationFileMapper.getConfigurationFiles(dbDevice.getConfigurationId());
-
-        AtomicInteger correctCount = new AtomicInteger();
-        AtomicInteger notInstalledCount = new AtomicInteger();
-        AtomicInteger lastUpdateMismatchCount = new AtomicInteger();
-
-        configurationFiles.forEach(configFile -> {
-            final List<DeviceConfigurationFile> deviceFiles = info.getFiles();
-            boolean foundOnDevice = false;
-            boolean skip = false;
-            for (int i = 0; i < deviceFiles.size(); i++) {
-                final DeviceConfigurationFile deviceFile = deviceFiles.get(i);
-                if (deviceFile.getPath().equals(configFile.getDevicePath())) {
-                    foundOnDevice = true;
-                    if (!configFile.getLastUpdate().equals(deviceFile.getLastUpdate())
-                            && Math.abs(configFile.getLastUpdate() - deviceFile.getLastUpdate()) > 1 * 60 * 60 * 1000) {
-                        lastUpdateMismatchCount.incrementAndGet();
-                        skip = true;
-                    }
-                    break;
+    private static DeviceConfigFilesStatus evaluateDeviceConfigurationFilesStatus(List<ConfigurationFile> configurationFiles,
+                                                                                  DeviceInfo info) {
+        final Map<String, Long> deviceFiles = new HashMap<>();
+        if (info.getFiles() != null) {
+            for (DeviceConfigurationFile deviceFile : info.getFiles()) {
+                if (deviceFile.getPath() != null && !deviceFiles.containsKey(deviceFile.getPath())) {
+                    deviceFiles.put(deviceFile.getPath(), deviceFile.getLastUpdate());
+                }
+            }
+        }
+
+        int correctCount = 0;
+        int notInstalledCount = 0;
+
+        for (ConfigurationFile configFile : configurationFiles) {
+            if (!deviceFiles.containsKey(configFile.getDevicePath())) {
+                if (!configFile.isRemove()) {
+                    notInstalledCount++;
                 }
+                continue;
             }
 
-            if (!foundOnDevice && !configFile.isRemove()) {
-                notInstalledCount.incrementAndGet();
-            } else if (foundOnDevice && !skip) {
-                correctCount.incrementAndGet();
+            final Long configLastUpdate = configFile.getLastUpdate();
+            final Long deviceLastUpdate = deviceFiles.get(configFile.getDevicePath());
+            final boolean lastUpdateMismatch = !Objects.equals(configLastUpdate, deviceLastUpdate)
+                    && (configLastUpdate == null || deviceLastUpdate == null
+                    || Math.abs(configLastUpdate - deviceLastUpdate) > FILE_UPDATE_TOLERANCE);
+            if (!lastUpdateMismatch) {
+                correctCount++;
             }
-        });
+        }
 
-        if (correctCount.get() == configurationFiles.size()) {
+        if (correctCount == configurationFiles.size()) {
             return DeviceConfigFilesStatus.UP_TO_DATE;
-        } else if (notInstalledCount.get() > 0) {
+        } else if (notInstalledCount > 0) {
             return DeviceConfigFilesStatus.MISSING;
         } else {
             return DeviceConfigFilesStatus.OTHER;
         }
     }
 
-
-    /**
-     * <p>Checks if specified application versions are equal. Removes all non-digit characters from version numbers when
-     * analyzing.</p>
-     */
-    BiPredicate<String, String> areVersionsEqual = (v1, v2) -> {
-        String v1d = ApplicationUtil.normalizeVersion(v1);
-        String v2d = ApplicationUtil.normalizeVersion(v2);
-        return v1d.equals(v2d);
-
-    };
-
-    /**
-     * <p>Checks if the installed version is up to date. </p>
-     */
-    BiPredicate<String, String> isVersionUpToDate = (installed, required) -> {
-        return compareVersions(installed, required) >= 0;
-    };
-
     // Returns -1 if v1 < v2, 0 if v1 == v2 and 1 if v1 > v2
     public static int compareVersions(String v1, String v2) {
-        // Versions are numbers separated by a dot
-        String v1d = v1.replaceAll("[^\\d.]", "");
-        String v2d = v2.replaceAll("[^\\d.]", "");
-
-        String[] v1n = v1d.split("\\.");
-        String[] v2n = v2d.split("\\.");
+        return compareVersions(ParsedVersion.of(v1), ParsedVersion.of(v2));
+    }
 
+    /**
+     * <p>Compares the versions of installed and required applications. Unlike {@link ParsedVersion#compareTo} a version
+     * having more parts is considered as greater, and if any of the common parts is empty or does not fit into int
+     * then the versions are considered as equal.</p>
+     */
+    static int compareVersions(ParsedVersion v1, ParsedVersion v2) {
         // One version could contain more digits than another
-        int count = v1n.length < v2n.length ? v1n.length : v2n.length;
+        final int count = Math.min(v1.getPartCount(), v2.getPartCount());
 
         for (int n = 0; n < count; n++) {
-            try {
-                int n1 = Integer.parseInt(v1n[n]);
-                int n2 = Integer.parseInt(v2n[n]);
-                if (n1 < n2) {
-                    return -1;
-                } else if (n1 > n2) {
-                    return 1;
-                }
-                // If major version numbers are equals, continue to compare minor version numbers
-            } catch (Exception e) {
+            final long n1 = v1.getPart(n);
+            final long n2 = v2.getPart(n);
+            if (n1 < 0 || n2 < 0 || n1 > Integer.MAX_VALUE || n2 > Integer.MAX_VALUE) {
                 return 0;
             }
+            if (n1 < n2) {
+                return -1;
+            } else if (n1 > n2) {
+                return 1;
+            }
+            // If major version numbers are equals, continue to compare minor version numbers
         }
 
         // Here we are if common parts are equal
         // Now we decide that if a version has more parts, it is considered as greater
-        if (v1n.length < v2n.length) {
-            return -1;
-        } else if (v1n.length > v2n.length) {
-            return 1;
+        return Integer.compare(v1.getPartCount(), v2.getPartCount());
+    }
+
+    /**
+     * <p>The rules of configuration applied to devices.</p>
+     */
+    private static class ConfigurationRules {
+        private final List<ApplicationRule> applications;
+        private final List<ConfigurationFile> files;
+
+        private ConfigurationRules(List<ApplicationRule> applications, List<ConfigurationFile> files) {
+            this.applications = applications;
+            this.files = files;
+        }
+    }
+
+    /**
+     * <p>An application required by configuration.</p>
+     */
+    private static class ApplicationRule {
+        private final String pkg;
+        private final int action;
+        private final String version;
+
+        /**
+         * <p>The required version parsed in advance; <code>null</code> if the version is not checked.</p>
+         */
+        private final ParsedVersion parsedVersion;
+
+        private ApplicationRule(Application configApp) {
+            this.pkg = configApp.getPkg();
+            this.action = configApp.getAction();
+            this.version = configApp.getVersion();
+            final boolean checkVersion = version != null && !version.equals("0") && !configApp.isSkipVersion();
+            this.parsedVersion = checkVersion ? ParsedVersion.of(version) : null;
         }
-        return 0;
     }
 
 }
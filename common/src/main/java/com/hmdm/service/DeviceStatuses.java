@@ -0,0 +1,61 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+/**
+ * <p>The statuses of configuration files and applications evaluated for the device.</p>
+ */
+public class DeviceStatuses {
+
+    private final int deviceId;
+    private final DeviceConfigFilesStatus configFilesStatus;
+    private final DeviceApplicationsStatus applicationsStatus;
+
+    public DeviceStatuses(int deviceId,
+                          DeviceConfigFilesStatus configFilesStatus,
+                          DeviceApplicationsStatus applicationsStatus) {
+        this.deviceId = deviceId;
+        this.configFilesStatus = configFilesStatus;
+        this.applicationsStatus = applicationsStatus;
+    }
+
+    public int getDeviceId() {
+        return deviceId;
+    }
+
+    public DeviceConfigFilesStatus getConfigFilesStatus() {
+        return configFilesStatus;
+    }
+
+    public DeviceApplicationsStatus getApplicationsStatus() {
+        return applicationsStatus;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceStatuses{" +
+                "deviceId=" + deviceId +
+                ", configFilesStatus=" + configFilesStatus +
+                ", applicationsStatus=" + applicationsStatus +
+                '}';
+    }
+}
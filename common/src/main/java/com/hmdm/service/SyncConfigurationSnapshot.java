@@ -0,0 +1,119 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.hmdm.persistence.domain.Configuration;
+import com.hmdm.persistence.domain.Settings;
+import com.hmdm.rest.json.SyncApplicationInt;
+import com.hmdm.rest.json.SyncConfigurationFileInt;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A precompiled, device-independent part of the response to configuration synchronization request. The snapshot is
+ * shared by all devices using the same configuration and CPU architecture and must be treated as read-only.</p>
+ */
+public class SyncConfigurationSnapshot {
+
+    /**
+     * <p>An ID of the configuration.</p>
+     */
+    private final int configurationId;
+
+    /**
+     * <p>A CPU architecture the application URLs were resolved for.</p>
+     */
+    private final String cpuArch;
+
+    /**
+     * <p>The settings of the customer account owning the configuration.</p>
+     */
+    private final Settings settings;
+
+    /**
+     * <p>The configuration including the configuration-level application settings.</p>
+     */
+    private final Configuration configuration;
+
+    /**
+     * <p>The applications with icon and download URLs already resolved.</p>
+     */
+    private final List<SyncApplicationInt> applications;
+
+    /**
+     * <p>The configuration files with download URLs already resolved.</p>
+     */
+    private final List<SyncConfigurationFileInt> files;
+
+    /**
+     * <p>A package ID of the main application for kiosk mode or <code>null</code>.</p>
+     */
+    private final String mainApp;
+
+    /**
+     * <p>Constructs new <code>SyncConfigurationSnapshot</code> instance. This implementation does nothing.</p>
+     */
+    public SyncConfigurationSnapshot(int configurationId,
+                                     String cpuArch,
+                                     Settings settings,
+                                     Configuration configuration,
+                                     List<SyncApplicationInt> applications,
+                                     List<SyncConfigurationFileInt> files,
+                                     String mainApp) {
+        this.configurationId = configurationId;
+        this.cpuArch = cpuArch;
+        this.settings = settings;
+        this.configuration = configuration;
+        this.applications = Collections.unmodifiableList(applications);
+        this.files = Collections.unmodifiableList(files);
+        this.mainApp = mainApp;
+    }
+
+    public int getConfigurationId() {
+        return configurationId;
+    }
+
+    public String getCpuArch() {
+        return cpuArch;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    public List<SyncApplicationInt> getApplications() {
+        return applications;
+    }
+
+    public List<SyncConfigurationFileInt> getFiles() {
+        return files;
+    }
+
+    public String getMainApp() {
+        return mainApp;
+    }
+}
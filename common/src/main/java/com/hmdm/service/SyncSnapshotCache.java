@@ -0,0 +1,223 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hmdm.persistence.PostCommitActions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * <p>A cache for the precompiled configuration snapshots used for responding to configuration synchronization requests
+ * from devices. The snapshots are keyed by configuration ID and CPU architecture.</p>
+ *
+ * <p>The snapshots are dropped when the configuration is updated, when the applications, files or settings are
+ * changed, and in any case after the configured time-to-live has expired. The snapshots are dropped after the
+ * transaction changing the data is committed (see {@link PostCommitActions}), so the snapshot compiled by a concurrent
+ * request from the old data can not outlive the change.</p>
+ */
+@Singleton
+public class SyncSnapshotCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncSnapshotCache.class);
+
+    /**
+     * <p>The compiled snapshots mapped to their keys.</p>
+     */
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * <p>The snapshots being compiled mapped to their keys. The snapshot is compiled outside of the map locks, while
+     * other requests for the same key are waiting for the result.</p>
+     */
+    private final ConcurrentMap<Key, CompletableFuture<SyncConfigurationSnapshot>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * <p>A counter of invalidations. The compiled snapshot is not cached if the cache has been invalidated during the
+     * compilation, as the snapshot may be compiled from outdated data.</p>
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * <p>A time-to-live for a single snapshot in milliseconds; zero or negative value disables the cache.</p>
+     */
+    private final long ttl;
+
+    /**
+     * <p>Constructs new <code>SyncSnapshotCache</code> instance. This implementation does nothing.</p>
+     *
+     * @param ttl a time-to-live for the snapshots (in seconds).
+     */
+    @Inject
+    public SyncSnapshotCache(@Named("sync.snapshot.ttl") int ttl) {
+        this.ttl = TimeUnit.SECONDS.toMillis(ttl);
+    }
+
+    /**
+     * <p>Gets the snapshot for specified configuration and CPU architecture. If there is no valid snapshot in cache then
+     * it is compiled by the specified compiler and put into the cache.</p>
+     *
+     * @param configurationId an ID of the configuration.
+     * @param cpuArch a CPU architecture the snapshot is compiled for.
+     * @param compiler a compiler for the snapshot to be used if there is no valid snapshot in cache.
+     * @return a snapshot for the configuration.
+     */
+    public SyncConfigurationSnapshot get(int configurationId, String cpuArch, Supplier<SyncConfigurationSnapshot> compiler) {
+        if (this.ttl <= 0) {
+            return compiler.get();
+        }
+
+        final Key key = new Key(configurationId, cpuArch);
+
+        final Entry entry = this.entries.get(key);
+        if (entry != null && entry.expires >= System.currentTimeMillis()) {
+            return entry.snapshot;
+        }
+
+        // Devices of the same configuration tend to come in bursts, so the snapshot is compiled by a single thread
+        // while others are waiting for the result
+        final CompletableFuture<SyncConfigurationSnapshot> future = new CompletableFuture<>();
+        final CompletableFuture<SyncConfigurationSnapshot> existing = this.pending.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            final Entry compiled = this.entries.get(key);
+            if (compiled != null && compiled.expires >= System.currentTimeMillis()) {
+                future.complete(compiled.snapshot);
+                return compiled.snapshot;
+            }
+
+            final long invalidations = this.invalidationCount.get();
+            final SyncConfigurationSnapshot snapshot = compiler.get();
+            logger.debug("Compiled sync snapshot for configuration #{} ({})", configurationId, cpuArch);
+            if (this.invalidationCount.get() == invalidations) {
+                this.entries.put(key, new Entry(snapshot, System.currentTimeMillis() + this.ttl));
+            }
+            future.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.pending.remove(key, future);
+        }
+    }
+
+    /**
+     * <p>Waits for the snapshot compiled by another thread.</p>
+     *
+     * @param future a snapshot being compiled.
+     * @return a compiled snapshot.
+     */
+    private static SyncConfigurationSnapshot await(CompletableFuture<SyncConfigurationSnapshot> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for sync snapshot", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * <p>Drops the snapshots for specified configuration once the current transaction is completed.</p>
+     *
+     * @param configurationId an ID of the configuration.
+     */
+    public void invalidate(int configurationId) {
+        PostCommitActions.run(() -> {
+            this.invalidationCount.incrementAndGet();
+            this.entries.keySet().removeIf(key -> key.configurationId == configurationId);
+        });
+    }
+
+    /**
+     * <p>Drops all snapshots once the current transaction is completed. Used when the changed data may be shared by
+     * several configurations.</p>
+     */
+    public void invalidateAll() {
+        PostCommitActions.run(() -> {
+            this.invalidationCount.incrementAndGet();
+            this.entries.clear();
+        });
+    }
+
+    /**
+     * <p>A key for the snapshot.</p>
+     */
+    private static final class Key {
+        private final int configurationId;
+        private final String cpuArch;
+
+        private Key(int configurationId, String cpuArch) {
+            this.configurationId = configurationId;
+            this.cpuArch = cpuArch;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return configurationId == key.configurationId && Objects.equals(cpuArch, key.cpuArch);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * configurationId + Objects.hashCode(cpuArch);
+        }
+    }
+
+    /**
+     * <p>A cached snapshot along with its expiration time.</p>
+     */
+    private static final class Entry {
+        private final SyncConfigurationSnapshot snapshot;
+        private final long expires;
+
+        private Entry(SyncConfigurationSnapshot snapshot, long expires) {
+            this.snapshot = snapshot;
+            this.expires = expires;
+        }
+    }
+}
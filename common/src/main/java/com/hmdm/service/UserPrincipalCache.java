@@ -0,0 +1,245 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hmdm.persistence.PostCommitActions;
+import com.hmdm.persistence.domain.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>A cache for the users resolved by the authentication filters on every request to private resources. The cached
+ * user carries the role and permissions, so the request is authorized without querying the database. The users are
+ * looked up either by login (or e-mail) used in JWT tokens or by ID stored in the session; these lookups are cached
+ * separately as they load different details of the user.</p>
+ *
+ * <p>The user is dropped when the user, the password or the auth token is changed, all users are dropped when any role
+ * or customer is changed, and in any case the user is dropped after the configured time-to-live has expired. The
+ * cached users are shared by the requests and must not be modified.</p>
+ *
+ * <p>The users are dropped only once the transaction changing them is completed, so a request served in the meantime
+ * can not put the old user (e.g. with the old auth token) back into cache.</p>
+ */
+@Singleton
+public class UserPrincipalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPrincipalCache.class);
+
+    /**
+     * <p>An interval for logging the cache statistics (in milliseconds).</p>
+     */
+    private static final long STATS_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * <p>The cached users mapped to lower-cased logins or e-mails they were looked up by.</p>
+     */
+    private final ConcurrentMap<String, Entry> entriesByLogin = new ConcurrentHashMap<>();
+
+    /**
+     * <p>The cached users mapped to user IDs.</p>
+     */
+    private final ConcurrentMap<Integer, Entry> entriesById = new ConcurrentHashMap<>();
+
+    /**
+     * <p>A counter of invalidations. The user loaded from the database is not cached if some user has been
+     * invalidated during the loading, as the loaded data may be already outdated.</p>
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong lastStatsTime = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * <p>A time-to-live for a single user in milliseconds; zero or negative value disables the cache.</p>
+     */
+    private final long ttl;
+
+    /**
+     * <p>A maximum number of cached users.</p>
+     */
+    private final int maxSize;
+
+    /**
+     * <p>Constructs new <code>UserPrincipalCache</code> instance. This implementation does nothing.</p>
+     *
+     * @param ttl a time-to-live for the users (in seconds).
+     * @param maxSize a maximum number of cached users.
+     */
+    @Inject
+    public UserPrincipalCache(@Named("user.cache.ttl") int ttl,
+                              @Named("user.cache.size") int maxSize) {
+        this.ttl = TimeUnit.SECONDS.toMillis(ttl);
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * <p>Gets the user with specified login or e-mail. If there is no valid user in cache then it is loaded by the
+     * specified loader and put into the cache.</p>
+     *
+     * @param login a login or e-mail of the user.
+     * @param loader a loader for the user to be used if there is no valid user in cache.
+     * @return a user or <code>null</code> if there is no such user.
+     */
+    public User getByLogin(String login, Function<String, User> loader) {
+        if (this.ttl <= 0 || login == null) {
+            return loader.apply(login);
+        }
+        final String key = login.toLowerCase(Locale.ROOT);
+        return get(this.entriesByLogin, key, () -> loader.apply(login));
+    }
+
+    /**
+     * <p>Gets the user with specified ID. If there is no valid user in cache then it is loaded by the specified loader
+     * and put into the cache.</p>
+     *
+     * @param id a user ID.
+     * @param loader a loader for the user to be used if there is no valid user in cache.
+     * @return a user or <code>null</code> if there is no such user.
+     */
+    public User getById(Integer id, Function<Integer, User> loader) {
+        if (this.ttl <= 0 || id == null) {
+            return loader.apply(id);
+        }
+        return get(this.entriesById, id, () -> loader.apply(id));
+    }
+
+    private <K> User get(ConcurrentMap<K, Entry> entries, K key, Supplier<User> loader) {
+        final long now = System.currentTimeMillis();
+        logStats(now);
+
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.expires >= now) {
+            this.hitCount.incrementAndGet();
+            return entry.user;
+        }
+
+        this.missCount.incrementAndGet();
+        final long invalidations = this.invalidationCount.get();
+        final User user = loader.get();
+        if (user != null && user.getId() != null && this.invalidationCount.get() == invalidations) {
+            if (entries.size() >= this.maxSize) {
+                evict(entries);
+            }
+            entries.put(key, new Entry(user, now + this.ttl));
+        }
+        return user;
+    }
+
+    /**
+     * <p>Drops the expired users and, if the cache is still full, some arbitrary users to make a room for new
+     * ones.</p>
+     */
+    private void evict(ConcurrentMap<?, Entry> entries) {
+        final long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expires < now);
+
+        final int targetSize = this.maxSize - this.maxSize / 10;
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > targetSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * <p>Drops the specified user once the current transaction is completed.</p>
+     *
+     * @param userId an ID of the user.
+     */
+    public void invalidate(Integer userId) {
+        PostCommitActions.run(() -> {
+            this.invalidationCount.incrementAndGet();
+            this.entriesById.remove(userId);
+            this.entriesByLogin.values().removeIf(entry -> entry.user.getId().equals(userId));
+        });
+    }
+
+    /**
+     * <p>Drops all users once the current transaction is completed. Used when the changed data may be shared by many
+     * users, e.g. roles and permissions.</p>
+     */
+    public void invalidateAll() {
+        PostCommitActions.run(() -> {
+            this.invalidationCount.incrementAndGet();
+            this.entriesById.clear();
+            this.entriesByLogin.clear();
+        });
+    }
+
+    /**
+     * <p>Gets the number of cached users.</p>
+     */
+    public int getSize() {
+        return this.entriesById.size() + this.entriesByLogin.size();
+    }
+
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * <p>Gets the ratio of lookups served from cache.</p>
+     */
+    public double getHitRate() {
+        final long hits = this.hitCount.get();
+        final long total = hits + this.missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private void logStats(long now) {
+        final long last = this.lastStatsTime.get();
+        if (now - last >= STATS_INTERVAL && this.lastStatsTime.compareAndSet(last, now)) {
+            logger.info("User principal cache: {} entries, {} hits, {} misses, hit rate {}%",
+                    getSize(), getHitCount(), getMissCount(), String.format("%.1f", getHitRate() * 100));
+        }
+    }
+
+    /**
+     * <p>A cached user along with its expiration time.</p>
+     */
+    private static final class Entry {
+        private final User user;
+        private final long expires;
+
+        private Entry(User user, long expires) {
+            this.user = user;
+            this.expires = expires;
+        }
+    }
+}
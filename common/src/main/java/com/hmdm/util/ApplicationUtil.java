@@ -21,8 +21,6 @@
 
 package com.hmdm.util;
 
-import org.apache.commons.lang3.StringUtils;
-
 /**
  * <p>An utility class for manipulating with application data.</p>
  *
@@ -55,35 +53,7 @@ public final class ApplicationUtil {
             return -1;
         }
 
-        final String[] split1 = normalizeVersion(version1).split("\\.");
-        final String[] split2 = normalizeVersion(version2).split("\\.");
-
-        final StringBuilder b1 = new StringBuilder();
-        final StringBuilder b2 = new StringBuilder();
-        final int N = Math.max(split1.length, split2.length);
-        for (int i = 0; i < N; i++) {
-            String s1 = i < split1.length ? split1[i] : "";
-            if (s1.isEmpty()) {
-                s1 = "0";
-            }
-
-            b1.append(StringUtils.leftPad(s1, 10, "0"));
-
-            String s2 = i < split2.length ? split2[i] : "";
-            if (s2.isEmpty()) {
-                s2 = "0";
-            }
-            b2.append(StringUtils.leftPad(s2, 10, "0"));
-        }
-
-        int result = b1.toString().compareTo(b2.toString());
-        if (result < 0) {
-            return -1;
-        } else if (result > 0) {
-            return 1;
-        } else {
-            return 0;
-        }
+        return ParsedVersion.of(version1).compareTo(ParsedVersion.of(version2));
     }
 
     /**
@@ -93,6 +63,6 @@ public final class ApplicationUtil {
      * @return a normalized version text.
      */
     public static String normalizeVersion(String version) {
-        return (version == null ? "" : version).replaceAll("[^\\d.]", "");
+        return ParsedVersion.of(version).getNormalized();
     }
 }
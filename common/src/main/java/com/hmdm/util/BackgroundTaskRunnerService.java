@@ -21,19 +21,25 @@
 
 package com.hmdm.util;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * <p>A service used for running the standalone tasks in background.</p>
  *
+ * <p>The tasks are run by the bounded executors dedicated to the categories of tasks, see {@link TaskCategory}.</p>
+ *
  * @author isv
  */
 @Singleton
@@ -42,9 +48,19 @@ public class BackgroundTaskRunnerService {
     private final static Logger logger = LoggerFactory.getLogger(BackgroundTaskRunnerService.class);
 
     /**
-     * <p>An executor for the tasks to be executed in background.</p>
+     * <p>A maximum time to wait for the queued tasks to complete on shutdown (in seconds).</p>
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10;
+
+    /**
+     * <p>An interval for logging the state of executors (in minutes).</p>
      */
-    private final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(10);
+    private static final long STATS_INTERVAL = 1;
+
+    /**
+     * <p>The executors for the tasks to be executed in background mapped to the categories of tasks.</p>
+     */
+    private final Map<TaskCategory, BoundedExecutor> executors = new EnumMap<>(TaskCategory.class);
 
     /**
      * <p>An executor for the repeatable tasks to be executed in background.</p>
@@ -53,11 +69,27 @@ public class BackgroundTaskRunnerService {
             = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(2);
 
     /**
-     * <p>Constructs new <code>BackgroundTaskRunnerService</code> instance. This implementation does nothing.</p>
+     * <p>The numbers of rejected tasks at the moment of previous logging of executor state.</p>
+     */
+    private final Map<TaskCategory, Long> loggedRejectedCounts = new EnumMap<>(TaskCategory.class);
+
+    /**
+     * <p>Constructs new <code>BackgroundTaskRunnerService</code> instance. The executors for the categories missing in
+     * specified mapping are created with the default settings.</p>
+     *
+     * @param executors the configured executors mapped to the categories of tasks.
      */
-    public BackgroundTaskRunnerService() {
-        Runtime.getRuntime().addShutdownHook(new Thread(executor::shutdown));
-        Runtime.getRuntime().addShutdownHook(new Thread(scheduledExecutor::shutdown));
+    @Inject
+    public BackgroundTaskRunnerService(Map<TaskCategory, BoundedExecutor> executors) {
+        for (TaskCategory category : TaskCategory.values()) {
+            final BoundedExecutor executor = executors.get(category);
+            this.executors.put(category, executor != null ? executor
+                    : category.createExecutor(category.getDefaultThreads(), category.getDefaultQueueCapacity()));
+            this.loggedRejectedCounts.put(category, 0L);
+        }
+
+        this.scheduledExecutor.scheduleAtFixedRate(this::logStats, STATS_INTERVAL, STATS_INTERVAL, TimeUnit.MINUTES);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
     }
 
     /**
@@ -66,10 +98,19 @@ public class BackgroundTaskRunnerService {
      * @param task a task to be executed in background.
      */
     public void submitTask(Runnable task) {
-        logger.debug("Submitting task for execution: {}. The current state of executor: active tasks: {}, " +
-                        "tasks count: {}, queue size: {}",
-                task, executor.getActiveCount(), executor.getTaskCount(), executor.getQueue().size());
-        this.executor.submit(task);
+        submitTask(TaskCategory.GENERAL, task);
+    }
+
+    /**
+     * <p>Submits the specified task for execution by the executor dedicated to specified category of tasks.</p>
+     *
+     * @param category a category of the task.
+     * @param task a task to be executed in background.
+     */
+    public void submitTask(TaskCategory category, Runnable task) {
+        logger.debug("Submitting task for execution: {}. The current state of executor: {}",
+                task, this.executors.get(category));
+        this.executors.get(category).submit(task);
     }
 
     /**
@@ -86,8 +127,41 @@ public class BackgroundTaskRunnerService {
     public Future<?> submitRepeatableTask(Runnable task, long initialDelay, long period, TimeUnit unit) {
         logger.debug("Submitting task for repeatable execution: {}. The current state of executor: active tasks: {}, " +
                         "tasks count: {}, queue size: {}",
-                task, executor.getActiveCount(), executor.getTaskCount(), executor.getQueue().size());
+                task, scheduledExecutor.getActiveCount(), scheduledExecutor.getTaskCount(),
+                scheduledExecutor.getQueue().size());
         return this.scheduledExecutor.scheduleAtFixedRate(task, initialDelay, period, unit);
     }
 
+    /**
+     * <p>Gets the executors for background tasks.</p>
+     *
+     * @return a collection of executors.
+     */
+    public Collection<BoundedExecutor> getExecutors() {
+        return new ArrayList<>(this.executors.values());
+    }
+
+    /**
+     * <p>Logs the state of executors. The state is logged at INFO level if the tasks are queued or rejected.</p>
+     */
+    private void logStats() {
+        this.executors.forEach((category, executor) -> {
+            final long rejected = executor.getRejectedCount();
+            final boolean rejectedRecently = rejected > this.loggedRejectedCounts.get(category);
+            this.loggedRejectedCounts.put(category, rejected);
+            if (rejectedRecently || executor.getQueueSize() > 0) {
+                logger.info("Executor {}", executor);
+            } else {
+                logger.debug("Executor {}", executor);
+            }
+        });
+    }
+
+    /**
+     * <p>Stops the executors letting them complete the queued tasks.</p>
+     */
+    private void shutdown() {
+        this.scheduledExecutor.shutdown();
+        this.executors.values().forEach(executor -> executor.shutdown(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS));
+    }
 }
@@ -0,0 +1,260 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A named executor with a fixed number of threads and a bounded queue. When the queue is full, the task is either
+ * run by the submitting thread, which slows down the producer, or discarded, depending on the rejection policy.</p>
+ *
+ * <p>The executor tracks the number of submitted, completed and rejected tasks as well as the time the tasks spend in
+ * the queue and in execution.</p>
+ */
+public class BoundedExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedExecutor.class);
+
+    /**
+     * <p>A number of discarded tasks between the subsequent warnings.</p>
+     */
+    private static final long DISCARD_LOG_INTERVAL = 1000;
+
+    /**
+     * <p>A policy for the tasks submitted when the queue is full.</p>
+     */
+    public enum RejectionPolicy {
+        /**
+         * <p>The task is run by the submitting thread.</p>
+         */
+        CALLER_RUNS,
+
+        /**
+         * <p>The task is discarded.</p>
+         */
+        DISCARD
+    }
+
+    private final String name;
+    private final RejectionPolicy rejectionPolicy;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong waitTimeTotal = new AtomicLong();
+    private final AtomicLong waitTimeMax = new AtomicLong();
+    private final AtomicLong runTimeTotal = new AtomicLong();
+
+    /**
+     * <p>Constructs new <code>BoundedExecutor</code> instance.</p>
+     *
+     * @param name a name of the executor used for naming its threads and for logging.
+     * @param threads a number of threads.
+     * @param queueCapacity a maximum number of tasks waiting for execution.
+     * @param rejectionPolicy a policy for the tasks submitted when the queue is full.
+     */
+    public BoundedExecutor(String name, int threads, int queueCapacity, RejectionPolicy rejectionPolicy) {
+        this.name = name;
+        this.rejectionPolicy = rejectionPolicy;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity), new NamedThreadFactory(name), new RejectionHandler());
+    }
+
+    /**
+     * <p>Submits the task for execution.</p>
+     *
+     * @param task a task to execute.
+     */
+    public void submit(Runnable task) {
+        this.submittedCount.incrementAndGet();
+        this.executor.execute(new TimedTask(task));
+    }
+
+    /**
+     * <p>Stops accepting new tasks and waits for the queued tasks to complete. The tasks still running after the
+     * specified timeout are interrupted.</p>
+     *
+     * @param timeout a maximum time to wait.
+     * @param unit a unit of the timeout.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(timeout, unit)) {
+                logger.warn("Executor {} did not complete {} tasks in time, interrupting",
+                        this.name, this.executor.getQueue().size() + this.executor.getActiveCount());
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * <p>Gets the average time the tasks spend in the queue (in milliseconds).</p>
+     */
+    public double getAverageWaitTime() {
+        final long count = completedCount.get() + failedCount.get();
+        return count == 0 ? 0 : waitTimeTotal.get() / 1000000.0 / count;
+    }
+
+    /**
+     * <p>Gets the maximum time a task has spent in the queue (in milliseconds).</p>
+     */
+    public double getMaxWaitTime() {
+        return waitTimeMax.get() / 1000000.0;
+    }
+
+    /**
+     * <p>Gets the average time of task execution (in milliseconds).</p>
+     */
+    public double getAverageRunTime() {
+        final long count = completedCount.get() + failedCount.get();
+        return count == 0 ? 0 : runTimeTotal.get() / 1000000.0 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: queue %d/%d, active %d, submitted %d, completed %d, failed %d, rejected %d, " +
+                        "wait avg %.1f ms max %.1f ms, run avg %.1f ms",
+                name, getQueueSize(), queueCapacity, getActiveCount(), getSubmittedCount(), getCompletedCount(),
+                getFailedCount(), getRejectedCount(), getAverageWaitTime(), getMaxWaitTime(), getAverageRunTime());
+    }
+
+    /**
+     * <p>A wrapper for the task measuring its wait and execution time.</p>
+     */
+    private final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submitTime = System.nanoTime();
+
+        private TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            final long wait = start - submitTime;
+            waitTimeTotal.addAndGet(wait);
+            waitTimeMax.accumulateAndGet(wait, Math::max);
+            try {
+                task.run();
+                completedCount.incrementAndGet();
+            } catch (RuntimeException e) {
+                failedCount.incrementAndGet();
+                logger.error("Unexpected error in task {} executed by {}", task, name, e);
+            } finally {
+                runTimeTotal.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    /**
+     * <p>A handler for the tasks which do not fit into the queue.</p>
+     */
+    private final class RejectionHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            final long rejected = rejectedCount.incrementAndGet();
+            if (rejectionPolicy == RejectionPolicy.CALLER_RUNS && !executor.isShutdown()) {
+                if (rejected % DISCARD_LOG_INTERVAL == 1) {
+                    logger.warn("Executor {} is saturated, running task in caller thread ({} times so far)",
+                            name, rejected);
+                }
+                task.run();
+            } else if (rejected % DISCARD_LOG_INTERVAL == 1) {
+                logger.warn("Executor {} is saturated, task discarded ({} times so far)", name, rejected);
+            }
+        }
+    }
+
+    /**
+     * <p>A factory for the threads named after the executor.</p>
+     */
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private NamedThreadFactory(String name) {
+            this.prefix = "hmdm-" + name + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
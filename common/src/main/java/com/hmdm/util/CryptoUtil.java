@@ -30,6 +30,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
@@ -40,6 +41,8 @@ public class CryptoUtil {
 
     private static final char[] hexArray = "0123456789abcdef".toCharArray();
 
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     public CryptoUtil() {
     }
 
@@ -126,16 +129,58 @@ public class CryptoUtil {
     }
 
     public static String getDataSignature(String hashSecret, Object data) {
-        ObjectMapper objectMapper = new ObjectMapper();
         String s = "";
         try {
             s = objectMapper.writeValueAsString(data);
         } catch (Exception e) {
             e.printStackTrace();
         }
-        s = s.replaceAll("\\s", "");
-        String signature = CryptoUtil.getSHA1String(hashSecret + s);
-        return signature;
+        return getDataSignature(hashSecret, s.toCharArray(), 0, s.length());
+    }
+
+    /**
+     * <p>Calculates the signature for the specified serialized data. The whitespace characters are not taken into
+     * account, so the result is the same as if the JSON was stripped of them prior to calculating the signature. The
+     * characters are signed in UTF-8 encoding.</p>
+     *
+     * @param hashSecret a secret to prepend to data.
+     * @param json a buffer containing the JSON.
+     * @param offset an offset of the JSON within the buffer.
+     * @param length a length of the JSON within the buffer.
+     * @return an upper-case hex SHA-1 signature.
+     */
+    public static String getDataSignature(String hashSecret, char[] json, int offset, int length) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(hashSecret.getBytes(StandardCharsets.UTF_8));
+
+            // Feed the digest with the runs of non-whitespace characters. Whitespaces are never a part of surrogate
+            // pair, so the runs are always encoded correctly
+            final int end = offset + length;
+            int start = offset;
+            for (int i = offset; i < end; i++) {
+                if (isWhitespace(json[i])) {
+                    if (i > start) {
+                        md.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(json, start, i - start)));
+                    }
+                    start = i + 1;
+                }
+            }
+            if (end > start) {
+                md.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(json, start, end - start)));
+            }
+
+            return getHexString(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * <p>Checks if specified character is a whitespace character as defined by <code>\s</code> regular expression.</p>
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
     }
 
     public static boolean checkRequestSignature(String signature, String value) {
@@ -0,0 +1,88 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+/**
+ * <p>Utilities for handling the entity tags in conditional requests.</p>
+ */
+public final class EntityTagUtil {
+
+    /**
+     * <p>Constructs new <code>EntityTagUtil</code> instance. This implementation does nothing.</p>
+     */
+    private EntityTagUtil() {
+    }
+
+    /**
+     * <p>Checks if the specified value of <code>If-None-Match</code> header matches the specified entity tag. The weak
+     * comparison is used as required for <code>If-None-Match</code>, so the weak tags match the same strong tag.</p>
+     *
+     * @param ifNoneMatch a value of the header: <code>*</code> or a list of comma-separated, possibly weak, quoted tags.
+     *                    The unquoted tags sent by some clients are accepted as well.
+     * @param tag a value of the tag of current representation (without quotes).
+     * @return <code>true</code> if the header is <code>*</code> or the tag is listed in the header; <code>false</code>
+     *         otherwise.
+     */
+    public static boolean isMatched(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        final int length = ifNoneMatch.length();
+        int pos = 0;
+        while (pos < length) {
+            final char c = ifNoneMatch.charAt(pos);
+            if (c == ',' || Character.isWhitespace(c)) {
+                pos++;
+                continue;
+            }
+            if (c == '*') {
+                return true;
+            }
+
+            if (ifNoneMatch.startsWith("W/", pos)) {
+                pos += 2;
+            }
+
+            final int start;
+            final int end;
+            if (pos < length && ifNoneMatch.charAt(pos) == '"') {
+                // A quoted tag may contain commas, so it ends at the closing quote only
+                start = pos + 1;
+                final int closingQuote = ifNoneMatch.indexOf('"', start);
+                end = closingQuote < 0 ? length : closingQuote;
+                pos = end + 1;
+            } else {
+                start = pos;
+                final int comma = ifNoneMatch.indexOf(',', start);
+                end = comma < 0 ? length : comma;
+                pos = end;
+            }
+
+            if (ifNoneMatch.substring(start, end).trim().equals(tag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+/**
+ * <p>An utility class for parsing the textual IPv4 and IPv6 addresses without resolving host names.</p>
+ *
+ * @author agent
+ */
+public final class IPAddressUtil {
+
+    private static final int IPV4_LENGTH = 4;
+    private static final int IPV6_LENGTH = 16;
+
+    /**
+     * <p>Constructs new <code>IPAddressUtil</code> instance. This implementation does nothing.</p>
+     */
+    private IPAddressUtil() {
+    }
+
+    /**
+     * <p>Parses the specified IP address literal. The IPv6 address may be enclosed in brackets and may have a zone
+     * index; the IPv4-mapped IPv6 address is converted to IPv4 address like {@link java.net.InetAddress} does.</p>
+     *
+     * @param address an IPv4 address in dotted-decimal notation or an IPv6 address.
+     * @return the address bytes (4 bytes for IPv4 and 16 bytes for IPv6) or <code>null</code> if specified string is
+     *         not a valid IP address.
+     */
+    public static byte[] parse(String address) {
+        if (address == null) {
+            return null;
+        }
+        address = address.trim();
+        if (address.indexOf(':') < 0) {
+            final byte[] result = new byte[IPV4_LENGTH];
+            return parseIPv4(address, 0, address.length(), result, 0) ? result : null;
+        }
+
+        int start = 0;
+        int end = address.length();
+        if (end > 1 && address.charAt(0) == '[' && address.charAt(end - 1) == ']') {
+            start++;
+            end--;
+        }
+        final int zone = address.indexOf('%', start);
+        if (zone >= 0 && zone < end) {
+            end = zone;
+        }
+        final byte[] result = parseIPv6(address, start, end);
+        if (result != null && isIPv4Mapped(result)) {
+            final byte[] ipv4 = new byte[IPV4_LENGTH];
+            System.arraycopy(result, 12, ipv4, 0, IPV4_LENGTH);
+            return ipv4;
+        }
+        return result;
+    }
+
+    /**
+     * <p>Parses the dotted-decimal IPv4 address from the specified part of string into specified array.</p>
+     *
+     * @return <code>true</code> if the address is valid; <code>false</code> otherwise.
+     */
+    private static boolean parseIPv4(String s, int start, int end, byte[] result, int offset) {
+        int octet = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            final char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return false;
+                }
+            } else if (c == '.' && digits > 0 && octet < 3) {
+                result[offset + octet++] = (byte) value;
+                value = 0;
+                digits = 0;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0 || octet != 3) {
+            return false;
+        }
+        result[offset + octet] = (byte) value;
+        return true;
+    }
+
+    /**
+     * <p>Parses the IPv6 address from the specified part of string.</p>
+     *
+     * @return the address bytes or <code>null</code> if the address is not valid.
+     */
+    private static byte[] parseIPv6(String s, int start, int end) {
+        final byte[] result = new byte[IPV6_LENGTH];
+        // A position in result where "::" has been found, or -1
+        int gap = -1;
+        int pos = 0;
+        int i = start;
+
+        if (end - start >= 2 && s.charAt(i) == ':' && s.charAt(i + 1) == ':') {
+            gap = 0;
+            i += 2;
+        } else if (i < end && s.charAt(i) == ':') {
+            return null;
+        }
+
+        while (i < end) {
+            int groupEnd = i;
+            int value = 0;
+            while (groupEnd < end && groupEnd - i <= 4) {
+                final int digit = Character.digit(s.charAt(groupEnd), 16);
+                if (digit < 0) {
+                    break;
+                }
+                value = (value << 4) | digit;
+                groupEnd++;
+            }
+            if (groupEnd < end && s.charAt(groupEnd) == '.') {
+                // The trailing IPv4 address
+                if (pos > IPV6_LENGTH - IPV4_LENGTH || !parseIPv4(s, i, end, result, pos)) {
+                    return null;
+                }
+                pos += IPV4_LENGTH;
+                i = end;
+                break;
+            }
+            if (groupEnd == i || groupEnd - i > 4 || pos > IPV6_LENGTH - 2) {
+                return null;
+            }
+            result[pos++] = (byte) (value >> 8);
+            result[pos++] = (byte) value;
+
+            i = groupEnd;
+            if (i < end) {
+                if (s.charAt(i) != ':') {
+                    return null;
+                }
+                i++;
+                if (i < end && s.charAt(i) == ':') {
+                    if (gap >= 0) {
+                        return null;
+                    }
+                    gap = pos;
+                    i++;
+                } else if (i == end) {
+                    // Trailing single colon
+                    return null;
+                }
+            }
+        }
+
+        if (gap >= 0) {
+            if (pos == IPV6_LENGTH) {
+                return null;
+            }
+            final int shift = IPV6_LENGTH - pos;
+            System.arraycopy(result, gap, result, gap + shift, pos - gap);
+            for (int k = gap; k < gap + shift; k++) {
+                result[k] = 0;
+            }
+        } else if (pos != IPV6_LENGTH) {
+            return null;
+        }
+        return result;
+    }
+
+    private static boolean isIPv4Mapped(byte[] address) {
+        for (int i = 0; i < 10; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[10] == (byte) 0xff && address[11] == (byte) 0xff;
+    }
+}
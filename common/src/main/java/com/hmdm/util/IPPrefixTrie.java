@@ -0,0 +1,185 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>A set of IPv4 and IPv6 networks compiled into binary prefix trees, one per address family. Checking an address
+ * takes at most one step per address bit regardless of the number of networks.</p>
+ *
+ * <p>The trie is built by {@link Builder} and is immutable afterwards, so it can be shared by threads without
+ * synchronization.</p>
+ *
+ * @author agent
+ */
+public final class IPPrefixTrie {
+
+    private final Tree ipv4;
+    private final Tree ipv6;
+    private final int size;
+
+    private IPPrefixTrie(Tree ipv4, Tree ipv6, int size) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+        this.size = size;
+    }
+
+    /**
+     * <p>Creates new builder for the trie.</p>
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * <p>Gets the number of networks added to this trie.</p>
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * <p>Checks if the specified address belongs to any network of this trie.</p>
+     *
+     * @param address the address bytes: 4 bytes for IPv4 or 16 bytes for IPv6.
+     * @return <code>true</code> if the address belongs to some network; <code>false</code> otherwise.
+     */
+    public boolean contains(byte[] address) {
+        if (address == null) {
+            return false;
+        }
+        if (address.length == 4) {
+            return this.ipv4.contains(address);
+        } else if (address.length == 16) {
+            return this.ipv6.contains(address);
+        }
+        return false;
+    }
+
+    /**
+     * <p>A binary tree of network prefixes for single address family. The nodes are stored in arrays indexed by node
+     * number; the root is node 0 and zero child means no child, as the root is never a child.</p>
+     */
+    private static final class Tree {
+        private int[] zero = new int[16];
+        private int[] one = new int[16];
+        private boolean[] terminal = new boolean[16];
+        private int nodeCount = 1;
+
+        private void add(byte[] address, int prefixLength) {
+            int node = 0;
+            for (int bit = 0; bit < prefixLength; bit++) {
+                if (this.terminal[node]) {
+                    // The wider network is already added
+                    return;
+                }
+                final boolean zeroBit = bitAt(address, bit) == 0;
+                int child = zeroBit ? this.zero[node] : this.one[node];
+                if (child == 0) {
+                    child = newNode();
+                    // The arrays may be re-allocated by newNode(), so they are not cached in local variables
+                    if (zeroBit) {
+                        this.zero[node] = child;
+                    } else {
+                        this.one[node] = child;
+                    }
+                }
+                node = child;
+            }
+            this.terminal[node] = true;
+            // The narrower networks are covered now
+            this.zero[node] = 0;
+            this.one[node] = 0;
+        }
+
+        private int newNode() {
+            if (this.nodeCount == this.terminal.length) {
+                final int capacity = this.nodeCount * 2;
+                this.zero = Arrays.copyOf(this.zero, capacity);
+                this.one = Arrays.copyOf(this.one, capacity);
+                this.terminal = Arrays.copyOf(this.terminal, capacity);
+            }
+            return this.nodeCount++;
+        }
+
+        private boolean contains(byte[] address) {
+            final int bits = address.length * 8;
+            int node = 0;
+            for (int bit = 0; ; bit++) {
+                if (this.terminal[node]) {
+                    return true;
+                }
+                if (bit == bits) {
+                    return false;
+                }
+                node = bitAt(address, bit) == 0 ? this.zero[node] : this.one[node];
+                if (node == 0) {
+                    return false;
+                }
+            }
+        }
+
+        private static int bitAt(byte[] address, int bit) {
+            return (address[bit >> 3] >> (7 - (bit & 7))) & 1;
+        }
+    }
+
+    /**
+     * <p>A builder for the trie. The builder is not thread-safe and must not be used after the trie is built.</p>
+     */
+    public static final class Builder {
+        private final Tree ipv4 = new Tree();
+        private final Tree ipv6 = new Tree();
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * <p>Adds the network to the trie. The host bits of the address beyond the prefix are ignored.</p>
+         *
+         * @param address the network address bytes: 4 bytes for IPv4 or 16 bytes for IPv6.
+         * @param prefixLength the number of leading bits identifying the network.
+         * @return this builder.
+         * @throws IllegalArgumentException if the address or the prefix length is not valid.
+         */
+        public Builder add(byte[] address, int prefixLength) {
+            if (address == null || (address.length != 4 && address.length != 16)) {
+                throw new IllegalArgumentException("Wrong IP address length");
+            }
+            if (prefixLength < 0 || prefixLength > address.length * 8) {
+                throw new IllegalArgumentException("Wrong network prefix length: " + prefixLength);
+            }
+            (address.length == 4 ? this.ipv4 : this.ipv6).add(address, prefixLength);
+            this.size++;
+            return this;
+        }
+
+        /**
+         * <p>Builds the trie from the added networks.</p>
+         */
+        public IPPrefixTrie build() {
+            return new IPPrefixTrie(this.ipv4, this.ipv6, this.size);
+        }
+    }
+}
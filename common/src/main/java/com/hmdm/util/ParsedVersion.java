@@ -0,0 +1,186 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>An application version parsed into numeric parts. Versions are numbers separated by a dot; all other characters
+ * are ignored.</p>
+ *
+ * <p>The parsed versions are cached per distinct version text, so the versions reported by devices are parsed once and
+ * the comparison of cached versions does not allocate any objects.</p>
+ *
+ * <p>Note: the natural ordering is inconsistent with equals: the versions "1.0" and "1.00" are ordered as equal while
+ * their normalized texts are different.</p>
+ */
+public final class ParsedVersion implements Comparable<ParsedVersion> {
+
+    /**
+     * <p>A value of the part having no digits (e.g. the first part of ".1").</p>
+     */
+    public static final long EMPTY_PART = -1;
+
+    /**
+     * <p>A maximum number of cached versions. When exceeded, the cache is cleared.</p>
+     */
+    static final int MAX_CACHED_VERSIONS = 10000;
+
+    private static final ConcurrentMap<String, ParsedVersion> cache = new ConcurrentHashMap<>();
+
+    /**
+     * <p>A version text with all non-digit and non-dot characters stripped off.</p>
+     */
+    private final String normalized;
+
+    /**
+     * <p>The numeric parts of the version. The trailing empty parts are dropped; the values which do not fit into long
+     * are replaced with {@link Long#MAX_VALUE}.</p>
+     */
+    private final long[] parts;
+
+    private ParsedVersion(String normalized, long[] parts) {
+        this.normalized = normalized;
+        this.parts = parts;
+    }
+
+    /**
+     * <p>Gets the parsed version for specified version text.</p>
+     *
+     * @param version a version text; <code>null</code> is considered as an empty text.
+     * @return a parsed version.
+     */
+    public static ParsedVersion of(String version) {
+        final String key = version == null ? "" : version;
+        ParsedVersion result = cache.get(key);
+        if (result == null) {
+            result = parse(key);
+            if (cache.size() >= MAX_CACHED_VERSIONS) {
+                cache.clear();
+            }
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    private static ParsedVersion parse(String version) {
+        final StringBuilder normalized = new StringBuilder(version.length());
+        final long[] parts = new long[version.length() + 1];
+        int count = 0;
+        long value = EMPTY_PART;
+
+        for (int i = 0; i < version.length(); i++) {
+            final char c = version.charAt(i);
+            if (c >= '0' && c <= '9') {
+                normalized.append(c);
+                final int digit = c - '0';
+                if (value == EMPTY_PART) {
+                    value = digit;
+                } else if (value <= (Long.MAX_VALUE - digit) / 10) {
+                    value = value * 10 + digit;
+                } else {
+                    value = Long.MAX_VALUE;
+                }
+            } else if (c == '.') {
+                normalized.append(c);
+                parts[count++] = value;
+                value = EMPTY_PART;
+            }
+        }
+        parts[count++] = value;
+
+        // The parts are the same as produced by String.split(): a text without separators is a single part, while
+        // the trailing empty parts are dropped otherwise
+        if (normalized.length() > 0) {
+            while (count > 0 && parts[count - 1] == EMPTY_PART) {
+                count--;
+            }
+        }
+
+        final long[] result = new long[count];
+        System.arraycopy(parts, 0, result, 0, count);
+        return new ParsedVersion(normalized.toString(), result);
+    }
+
+    /**
+     * <p>Gets the version text with all non-digit and non-dot characters stripped off.</p>
+     */
+    public String getNormalized() {
+        return normalized;
+    }
+
+    /**
+     * <p>Gets the number of version parts.</p>
+     */
+    public int getPartCount() {
+        return parts.length;
+    }
+
+    /**
+     * <p>Gets the numeric value of the version part.</p>
+     *
+     * @param index an index of the part.
+     * @return a value of the part or {@link #EMPTY_PART} if the part has no digits.
+     */
+    public long getPart(int index) {
+        return parts[index];
+    }
+
+    /**
+     * <p>Compares the versions part by part. The empty and the missing parts are considered as zeros, so "1.0" and
+     * "1" are equal versions.</p>
+     */
+    @Override
+    public int compareTo(ParsedVersion other) {
+        final int count = Math.max(parts.length, other.parts.length);
+        for (int i = 0; i < count; i++) {
+            final long p1 = i < parts.length ? Math.max(parts[i], 0) : 0;
+            final long p2 = i < other.parts.length ? Math.max(other.parts[i], 0) : 0;
+            if (p1 != p2) {
+                return p1 < p2 ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return normalized.equals(((ParsedVersion) o).normalized);
+    }
+
+    @Override
+    public int hashCode() {
+        return normalized.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return normalized;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdm.rest.json.Response;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>A successful response to client serialized to JSON along with the signature of its data. The data is serialized
+ * only once and the signature is calculated over the same characters which are sent to client.</p>
+ */
+public final class SignedJsonResponse {
+
+    /**
+     * <p>An object mapper shared by all threads. The mapper is thread-safe once configured and is never exposed, so
+     * it can not be reconfigured while in use.</p>
+     */
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * <p>A size of the buffer (in characters) exceeding which the buffer is not retained by the thread.</p>
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * <p>A buffer reused by the subsequent requests handled by the same thread.</p>
+     */
+    private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    /**
+     * <p>A serialized response.</p>
+     */
+    private final byte[] content;
+
+    /**
+     * <p>A signature of the response data.</p>
+     */
+    private final String signature;
+
+    private SignedJsonResponse(byte[] content, String signature) {
+        this.content = content;
+        this.signature = signature;
+    }
+
+    /**
+     * <p>Serializes the successful response with specified data and signs the data.</p>
+     *
+     * @param hashSecret a secret used for calculating the signature.
+     * @param data a data to be sent to client.
+     * @return a serialized response along with signature.
+     * @throws IOException if an unexpected error occurs while serializing the data.
+     */
+    public static SignedJsonResponse OK(String hashSecret, Object data) throws IOException {
+        final Buffer buffer = buffers.get();
+        buffer.reset();
+        try {
+            int dataStart;
+            final int dataEnd;
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+                generator.writeStartObject();
+                generator.writeObjectField("status", Response.ResponseStatus.OK);
+                generator.writeNullField("message");
+                generator.writeFieldName("data");
+                generator.flush();
+                dataStart = buffer.size();
+                objectMapper.writeValue(generator, data);
+                generator.flush();
+                dataEnd = buffer.size();
+                generator.writeEndObject();
+            }
+
+            // The name/value separator is written along with the value, so it has to be excluded from the data
+            final char[] chars = buffer.getBuffer();
+            while (dataStart < dataEnd && chars[dataStart] != ':') {
+                dataStart++;
+            }
+            dataStart++;
+
+            final String signature = CryptoUtil.getDataSignature(
+                    hashSecret, chars, dataStart, dataEnd - dataStart
+            );
+
+            // The JSON is encoded once it is complete: the byte generator would escape the characters outside of BMP,
+            // and the signature would not match the data parsed by device
+            final ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars, 0, buffer.size()));
+            final byte[] content = new byte[bytes.remaining()];
+            bytes.get(content);
+
+            return new SignedJsonResponse(content, signature);
+        } finally {
+            if (buffer.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+                buffers.remove();
+            }
+        }
+    }
+
+    /**
+     * <p>Gets the serialized response.</p>
+     *
+     * @return a UTF-8 encoded JSON.
+     */
+    public byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * <p>Gets the signature of the response data.</p>
+     *
+     * @return an upper-case hex SHA-1 signature.
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * <p>A character array writer providing the access to underlying buffer.</p>
+     */
+    private static final class Buffer extends CharArrayWriter {
+        private Buffer() {
+            super(16 * 1024);
+        }
+
+        private char[] getBuffer() {
+            return buf;
+        }
+    }
+}
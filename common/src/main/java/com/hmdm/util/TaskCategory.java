@@ -0,0 +1,122 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import com.hmdm.util.BoundedExecutor.RejectionPolicy;
+
+/**
+ * <p>A category of background tasks. The tasks of each category are run by a dedicated executor, so a burst of tasks
+ * of one category does not delay the tasks of others.</p>
+ *
+ * <p>The number of threads and the queue capacity of the executor are configured by
+ * <code>executor.&lt;name&gt;.threads</code> and <code>executor.&lt;name&gt;.queue</code> parameters.</p>
+ */
+public enum TaskCategory {
+
+    /**
+     * <p>The tasks not falling into other categories.</p>
+     */
+    GENERAL("general", 10, 1000, RejectionPolicy.CALLER_RUNS),
+
+    /**
+     * <p>The notifications of event listeners.</p>
+     */
+    EVENTS("events", 10, 10000, RejectionPolicy.CALLER_RUNS),
+
+    /**
+     * <p>The writing of audit log records.</p>
+     */
+    AUDIT("audit", 2, 10000, RejectionPolicy.CALLER_RUNS),
+
+    /**
+     * <p>The writing of log records uploaded by devices. These are discarded under overload.</p>
+     */
+    DEVICE_LOG("devicelog", 5, 1000, RejectionPolicy.DISCARD),
+
+    /**
+     * <p>The writing of device info records uploaded by devices. These are discarded under overload.</p>
+     */
+    DEVICE_INFO("deviceinfo", 2, 100, RejectionPolicy.DISCARD),
+
+    /**
+     * <p>The sending of push messages to devices.</p>
+     */
+    PUSH("push", 4, 1000, RejectionPolicy.CALLER_RUNS),
+
+    /**
+     * <p>The export of data into files split into parts exported in parallel.</p>
+     */
+    EXPORT("export", 4, 100, RejectionPolicy.CALLER_RUNS);
+
+    private final String name;
+    private final int defaultThreads;
+    private final int defaultQueueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+
+    TaskCategory(String name, int defaultThreads, int defaultQueueCapacity, RejectionPolicy rejectionPolicy) {
+        this.name = name;
+        this.defaultThreads = defaultThreads;
+        this.defaultQueueCapacity = defaultQueueCapacity;
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDefaultThreads() {
+        return defaultThreads;
+    }
+
+    public int getDefaultQueueCapacity() {
+        return defaultQueueCapacity;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    /**
+     * <p>Creates new executor for the tasks of this category.</p>
+     *
+     * @param threads a number of threads.
+     * @param queueCapacity a maximum number of queued tasks.
+     * @return a new executor.
+     */
+    public BoundedExecutor createExecutor(int threads, int queueCapacity) {
+        return new BoundedExecutor(name, threads, queueCapacity, rejectionPolicy);
+    }
+
+    /**
+     * <p>Gets the name of the parameter configuring the number of threads.</p>
+     */
+    public String getThreadsParameter() {
+        return "executor." + name + ".threads";
+    }
+
+    /**
+     * <p>Gets the name of the parameter configuring the queue capacity.</p>
+     */
+    public String getQueueParameter() {
+        return "executor." + name + ".queue";
+    }
+}
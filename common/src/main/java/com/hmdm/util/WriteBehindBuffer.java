@@ -0,0 +1,429 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A base write-behind buffer for the records written to the database in background.</p>
+ *
+ * <p>The records are accumulated in memory and written to the database in chunks when either the number of pending
+ * records reaches the flush size or the flush interval elapses (the periodic {@link #flush()} is scheduled by the
+ * owner of the buffer). If a chunk fails to be written, its records are written again in groups (e.g. by device), so
+ * the records of a device removed in the meantime do not prevent the others from being written. If the buffer is
+ * full, the records are either rejected by {@link #queue(List)} and the caller decides what to do with them, or
+ * written by the caller after waiting for a free space by {@link #queueOrWrite(List, long)}.</p>
+ *
+ * <p>The buffer is not persistent: the records not written yet are lost if the server crashes. On a graceful shutdown
+ * the owner is expected to call {@link #shutdown()}.</p>
+ *
+ * @param <T> a type of buffered records.
+ */
+public abstract class WriteBehindBuffer<T> {
+
+    private static final long STATS_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * <p>A maximum time to wait for the pending records to be written on shutdown (in milliseconds).</p>
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * <p>A name of the buffered records used in the log, e.g. <code>device log</code>.</p>
+     */
+    private final String name;
+
+    private final BackgroundTaskRunnerService taskRunner;
+
+    /**
+     * <p>A category of the flush tasks submitted when the buffer reaches the flush size.</p>
+     */
+    private final TaskCategory taskCategory;
+
+    /**
+     * <p>A maximum number of records waiting for writing.</p>
+     */
+    private final int capacity;
+
+    /**
+     * <p>A number of records which triggers the flush before the flush interval elapses; also a maximum number of
+     * records written at once.</p>
+     */
+    private final int flushSize;
+
+    private final Queue<QueuedRecord<T>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicBoolean flushSubmitted = new AtomicBoolean();
+
+    /**
+     * <p>A monitor notified when the flush frees the space in the buffer.</p>
+     */
+    private final Object spaceLock = new Object();
+
+    /**
+     * <p>Metrics.</p>
+     */
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushTimeTotal = new AtomicLong();
+    private final AtomicLong flushTimeMax = new AtomicLong();
+    private final AtomicLong lastStatsTime = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * <p>Constructs new <code>WriteBehindBuffer</code> instance.</p>
+     *
+     * @param name a name of the buffered records used in the log.
+     * @param taskRunner a runner for the flush tasks.
+     * @param taskCategory a category of the flush tasks.
+     * @param capacity a maximum number of records waiting for writing.
+     * @param flushSize a number of records triggering the flush.
+     */
+    protected WriteBehindBuffer(String name,
+                                BackgroundTaskRunnerService taskRunner,
+                                TaskCategory taskCategory,
+                                int capacity,
+                                int flushSize) {
+        this.name = name;
+        this.taskRunner = taskRunner;
+        this.taskCategory = taskCategory;
+        this.capacity = Math.max(1, capacity);
+        this.flushSize = Math.max(1, flushSize);
+    }
+
+    /**
+     * <p>Writes the records to the database.</p>
+     *
+     * @param records a list of records to write, not larger than the flush size.
+     * @return a number of written records; the others are counted as dropped (e.g. the records referring to the
+     *         objects not existing anymore).
+     * @throws Exception if records can not be written.
+     */
+    protected abstract int write(List<T> records) throws Exception;
+
+    /**
+     * <p>Gets the key of the group the record is written with if the whole chunk fails to be written. The key is also
+     * used to identify the dropped records in the log.</p>
+     *
+     * @param record a record.
+     * @return a key of the group, e.g. <code>device #1</code>.
+     */
+    protected abstract String getGroupKey(T record);
+
+    /**
+     * <p>Queues the records for writing.</p>
+     *
+     * @param records a list of records.
+     * @return <code>true</code> if records are queued; <code>false</code> if the buffer is full.
+     */
+    public boolean queue(List<T> records) {
+        if (offer(records)) {
+            return true;
+        }
+        this.rejectedCount.addAndGet(records.size());
+        return false;
+    }
+
+    /**
+     * <p>Queues the records for writing. If the buffer is full then waits for the flush to free the space and, if
+     * there is still no space when the timeout elapses, writes the records in the calling thread. Such records are
+     * counted as overflowed rather than rejected, as they are not lost.</p>
+     *
+     * @param records a list of records.
+     * @param timeout a maximum time to wait for a free space in the buffer (in milliseconds).
+     */
+    public void queueOrWrite(List<T> records, long timeout) {
+        if (offer(records)) {
+            return;
+        }
+        submitFlush();
+        final long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this.spaceLock) {
+            // The flush notifies the monitor under the lock, so the space freed after the check is not missed
+            boolean queued;
+            long remaining;
+            while (!(queued = offer(records)) && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    this.spaceLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (queued) {
+                return;
+            }
+        }
+        this.overflowCount.addAndGet(records.size());
+        writeNow(records);
+    }
+
+    /**
+     * <p>Queues the records if there is a space in the buffer.</p>
+     */
+    private boolean offer(List<T> records) {
+        if (records == null || records.isEmpty()) {
+            return true;
+        }
+        final int count = this.pendingCount.addAndGet(records.size());
+        if (count > this.capacity && count > records.size()) {
+            // A single list larger than the buffer is accepted when the buffer is empty
+            this.pendingCount.addAndGet(-records.size());
+            return false;
+        }
+
+        final long now = System.currentTimeMillis();
+        for (T record : records) {
+            this.queue.add(new QueuedRecord<>(record, now));
+        }
+
+        if (count >= this.flushSize) {
+            submitFlush();
+        }
+        return true;
+    }
+
+    private void submitFlush() {
+        if (!this.flushing.get() && this.flushSubmitted.compareAndSet(false, true)) {
+            this.taskRunner.submitTask(this.taskCategory, this::flush);
+        }
+    }
+
+    /**
+     * <p>Writes the records in the calling thread bypassing the buffer, e.g. when the buffer is full.</p>
+     *
+     * @param records a list of records.
+     */
+    public void writeNow(List<T> records) {
+        for (int from = 0; from < records.size(); from += this.flushSize) {
+            writeChunk(records.subList(from, Math.min(records.size(), from + this.flushSize)));
+        }
+    }
+
+    /**
+     * <p>Writes the pending records to the database in chunks of flush size. Does nothing if another thread is
+     * flushing the buffer at the moment.</p>
+     */
+    public void flush() {
+        this.flushSubmitted.set(false);
+        if (!this.flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<T> chunk;
+            while (!(chunk = takeChunk()).isEmpty()) {
+                try {
+                    writeChunk(chunk);
+                } finally {
+                    this.pendingCount.addAndGet(-chunk.size());
+                    synchronized (this.spaceLock) {
+                        this.spaceLock.notifyAll();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Unexpected error when flushing the {} records", this.name, e);
+        } finally {
+            this.flushing.set(false);
+        }
+        logStats();
+    }
+
+    /**
+     * <p>Writes all pending records to the database waiting for the flush which is in progress to finish. Used on
+     * application shutdown.</p>
+     */
+    public void shutdown() {
+        final long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+        while ((getPendingCount() > 0 || this.flushing.get()) && System.currentTimeMillis() < deadline) {
+            flush();
+            if (this.flushing.get()) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (getPendingCount() > 0) {
+            logger.error("{} {} records are not written on shutdown", getPendingCount(), this.name);
+        }
+    }
+
+    private List<T> takeChunk() {
+        final List<T> chunk = new ArrayList<>();
+        QueuedRecord<T> queued;
+        while (chunk.size() < this.flushSize && (queued = this.queue.poll()) != null) {
+            chunk.add(queued.record);
+        }
+        return chunk;
+    }
+
+    private void writeChunk(List<T> chunk) {
+        final long start = System.nanoTime();
+        try {
+            count(chunk.size(), write(chunk));
+        } catch (Exception e) {
+            logger.warn("Failed to write {} {} records, writing them by group: {}", chunk.size(), this.name,
+                    e.toString());
+            writeByGroup(chunk);
+        }
+
+        final long time = System.nanoTime() - start;
+        this.flushCount.incrementAndGet();
+        this.flushTimeTotal.addAndGet(time);
+        this.flushTimeMax.accumulateAndGet(time, Math::max);
+        logger.debug("Written {} {} records in {} ms", chunk.size(), this.name, TimeUnit.NANOSECONDS.toMillis(time));
+    }
+
+    /**
+     * <p>Writes the records of each group separately, so the failing records do not prevent the others from being
+     * written.</p>
+     */
+    private void writeByGroup(List<T> records) {
+        final Map<String, List<T>> recordsByGroup = new LinkedHashMap<>();
+        for (T record : records) {
+            recordsByGroup.computeIfAbsent(getGroupKey(record), key -> new ArrayList<>()).add(record);
+        }
+        recordsByGroup.forEach((key, groupRecords) -> {
+            try {
+                count(groupRecords.size(), write(groupRecords));
+            } catch (Exception e) {
+                this.droppedCount.addAndGet(groupRecords.size());
+                logger.error("Failed to write {} {} records for {}, the records are dropped",
+                        groupRecords.size(), this.name, key, e);
+            }
+        });
+    }
+
+    private void count(int total, int written) {
+        this.writtenCount.addAndGet(written);
+        this.droppedCount.addAndGet(total - written);
+    }
+
+    private void logStats() {
+        final long now = System.currentTimeMillis();
+        final long last = this.lastStatsTime.get();
+        if (now - last >= STATS_INTERVAL && this.lastStatsTime.compareAndSet(last, now)) {
+            logger.info("Buffer of {} records: {} pending, lag {} ms, {} written, {} rejected, {} overflowed, " +
+                            "{} dropped, {} records/s, flush time avg {} ms, max {} ms",
+                    this.name, getPendingCount(), getLag(), getWrittenCount(), getRejectedCount(), getOverflowCount(),
+                    getDroppedCount(),
+                    String.format("%.0f", getWriteRate()),
+                    String.format("%.1f", getAverageFlushTime()), String.format("%.1f", getMaxFlushTime()));
+        }
+    }
+
+    /**
+     * <p>Gets the number of records waiting for writing.</p>
+     */
+    public int getPendingCount() {
+        return this.pendingCount.get();
+    }
+
+    /**
+     * <p>Gets the time the oldest pending record waits for writing (in milliseconds).</p>
+     */
+    public long getLag() {
+        final QueuedRecord<T> oldest = this.queue.peek();
+        return oldest == null ? 0 : System.currentTimeMillis() - oldest.queuedAt;
+    }
+
+    public long getWrittenCount() {
+        return this.writtenCount.get();
+    }
+
+    /**
+     * <p>Gets the number of records not queued as the buffer was full.</p>
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * <p>Gets the number of records written by the caller as the buffer was full for too long.</p>
+     */
+    public long getOverflowCount() {
+        return this.overflowCount.get();
+    }
+
+    /**
+     * <p>Gets the number of records failed to be written to the database.</p>
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * <p>Gets the number of records written per second of flush time.</p>
+     */
+    public double getWriteRate() {
+        final long time = this.flushTimeTotal.get();
+        return time == 0 ? 0 : this.writtenCount.get() * 1000000000.0 / time;
+    }
+
+    /**
+     * <p>Gets the average time of writing a chunk of records (in milliseconds).</p>
+     */
+    public double getAverageFlushTime() {
+        final long count = this.flushCount.get();
+        return count == 0 ? 0 : this.flushTimeTotal.get() / 1000000.0 / count;
+    }
+
+    /**
+     * <p>Gets the maximum time of writing a chunk of records (in milliseconds).</p>
+     */
+    public double getMaxFlushTime() {
+        return this.flushTimeMax.get() / 1000000.0;
+    }
+
+    /**
+     * <p>A record waiting for writing.</p>
+     */
+    private static class QueuedRecord<T> {
+        private final T record;
+        private final long queuedAt;
+
+        private QueuedRecord(T record, long queuedAt) {
+            this.record = record;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
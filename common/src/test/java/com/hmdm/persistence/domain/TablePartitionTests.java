@@ -0,0 +1,140 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.persistence.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>A test suite for the parsing of partition bounds in {@link TablePartition} class.</p>
+ *
+ * @author agent
+ */
+public class TablePartitionTests {
+
+    /**
+     * <p>Constructs new <code>TablePartitionTests</code> instance. This implementation does nothing.</p>
+     */
+    public TablePartitionTests() {
+    }
+
+    @Test
+    public void testQuotedBounds() {
+        final TablePartition partition = partition("FOR VALUES FROM ('1760745600000') TO ('1760832000000')");
+
+        Assert.assertFalse(partition.isDefault());
+        Assert.assertEquals(Long.valueOf(1760745600000L), partition.getFrom());
+        Assert.assertEquals(Long.valueOf(1760832000000L), partition.getTo());
+    }
+
+    @Test
+    public void testUnquotedBounds() {
+        final TablePartition partition = partition("FOR VALUES FROM (1100002) TO (1200002)");
+
+        Assert.assertEquals(Long.valueOf(1100002L), partition.getFrom());
+        Assert.assertEquals(Long.valueOf(1200002L), partition.getTo());
+    }
+
+    @Test
+    public void testNegativeBound() {
+        final TablePartition partition = partition("FOR VALUES FROM ('-100') TO ('0')");
+
+        Assert.assertEquals(Long.valueOf(-100L), partition.getFrom());
+        Assert.assertEquals(Long.valueOf(0L), partition.getTo());
+    }
+
+    @Test
+    public void testMinValueBound() {
+        final TablePartition partition = partition("FOR VALUES FROM (MINVALUE) TO ('1760832000000')");
+
+        Assert.assertNull(partition.getFrom());
+        Assert.assertEquals(Long.valueOf(1760832000000L), partition.getTo());
+        Assert.assertTrue(partition.overlaps(0, 1));
+        Assert.assertTrue(partition.overlaps(Long.MIN_VALUE, 1760832000000L));
+        Assert.assertFalse(partition.overlaps(1760832000000L, 1760918400000L));
+    }
+
+    @Test
+    public void testMaxValueBound() {
+        final TablePartition partition = partition("FOR VALUES FROM ('1760832000000') TO (MAXVALUE)");
+
+        Assert.assertEquals(Long.valueOf(1760832000000L), partition.getFrom());
+        Assert.assertNull(partition.getTo());
+        Assert.assertTrue(partition.overlaps(1760918400000L, Long.MAX_VALUE));
+        Assert.assertFalse(partition.overlaps(0, 1760832000000L));
+    }
+
+    @Test
+    public void testDefaultPartition() {
+        final TablePartition partition = partition("DEFAULT");
+
+        Assert.assertTrue(partition.isDefault());
+        Assert.assertNull(partition.getFrom());
+        Assert.assertNull(partition.getTo());
+        Assert.assertFalse(partition.overlaps(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMissingBound() {
+        final TablePartition partition = partition(null);
+
+        Assert.assertFalse(partition.isDefault());
+        Assert.assertNull(partition.getFrom());
+        Assert.assertNull(partition.getTo());
+        Assert.assertFalse(partition.overlaps(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMalformedBounds() {
+        assertNoBounds("FOR VALUES IN ('1', '2')");
+        assertNoBounds("FOR VALUES WITH (modulus 4, remainder 0)");
+        assertNoBounds("FOR VALUES FROM ('abc') TO ('1760832000000x')");
+        assertNoBounds("FOR VALUES FROM ('1', '2') TO ('3', '4')");
+        assertNoBounds("FOR VALUES FROM ('99999999999999999999') TO ('99999999999999999999')");
+        assertNoBounds("");
+    }
+
+    @Test
+    public void testOverlaps() {
+        final TablePartition partition = partition("FOR VALUES FROM ('100') TO ('200')");
+
+        Assert.assertTrue(partition.overlaps(100, 200));
+        Assert.assertTrue(partition.overlaps(150, 160));
+        Assert.assertTrue(partition.overlaps(50, 101));
+        Assert.assertTrue(partition.overlaps(199, 300));
+        Assert.assertFalse("Upper bound is exclusive", partition.overlaps(200, 300));
+        Assert.assertFalse("Upper bound of range is exclusive", partition.overlaps(50, 100));
+    }
+
+    private static void assertNoBounds(String bound) {
+        final TablePartition partition = partition(bound);
+        Assert.assertNull("Unexpected lower bound parsed from " + bound, partition.getFrom());
+        Assert.assertNull("Unexpected upper bound parsed from " + bound, partition.getTo());
+    }
+
+    private static TablePartition partition(String bound) {
+        final TablePartition partition = new TablePartition();
+        partition.setName("plugin_test_p1");
+        partition.setBound(bound);
+        return partition;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.security;
+
+import com.hmdm.persistence.domain.User;
+import com.hmdm.persistence.domain.UserRole;
+import com.hmdm.persistence.domain.UserRolePermission;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A test suite for {@link SecurityContext} permission checks. The benchmark is skipped unless the
+ * <code>benchmark</code> system property is set, and it logs the timings without asserting them.</p>
+ *
+ * @author agent
+ */
+public class SecurityContextTests {
+
+    /**
+     * <p>All built-in and plugin permissions.</p>
+     */
+    private static final String[] PERMISSIONS = {
+            "settings", "configurations", "edit_devices", "edit_device_desc", "add_config", "copy_config",
+            "applications", "edit_applications", "edit_application_versions", "edit_device_app_settings",
+            "files", "edit_files", "enroll_devices", "get_updates", "push_api",
+            "plugins_customer_access_management", "plugin_audit_access", "plugin_deviceinfo_access",
+            "plugin_devicelog_access", "plugin_messaging_send", "plugin_messaging_delete",
+            "plugin_push_send", "plugin_push_delete", "plugin_xtra_access"
+    };
+
+    private static final Logger logger = LoggerFactory.getLogger(SecurityContextTests.class);
+
+    private static final int BENCHMARK_ITERATIONS = 2000000;
+
+    /**
+     * <p>Constructs new <code>SecurityContextTests</code> instance. This implementation does nothing.</p>
+     */
+    public SecurityContextTests() {
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContext.release();
+    }
+
+    @Test
+    public void testHasPermission() {
+        SecurityContext.init(newUser(newRole(false, "settings", "Edit_Devices")));
+        Assert.assertTrue("Granted permission must be found", SecurityContext.get().hasPermission("settings"));
+        Assert.assertTrue("Case must be ignored", SecurityContext.get().hasPermission("edit_devices"));
+        Assert.assertTrue("Case must be ignored", SecurityContext.get().hasPermission("SETTINGS"));
+        Assert.assertFalse("Missing permission must not be found", SecurityContext.get().hasPermission("files"));
+        Assert.assertFalse("Null permission must not be found", SecurityContext.get().hasPermission(null));
+    }
+
+    @Test
+    public void testSuperAdminHasAllPermissions() {
+        SecurityContext.init(newUser(newRole(true)));
+        Assert.assertTrue("Super-admin must be granted any permission", SecurityContext.get().hasPermission("files"));
+    }
+
+    @Test
+    public void testNoUser() {
+        SecurityContext.init(1);
+        Assert.assertFalse("No permissions without user", SecurityContext.get().hasPermission("settings"));
+    }
+
+    @Test
+    public void testPermissionsAddedAfterCheck() {
+        // MyBatis sets the empty list first and then adds the loaded permissions to it
+        final UserRole role = newRole(false);
+        Assert.assertFalse(role.hasPermission("files"));
+        role.getPermissions().add(newPermission("files"));
+        Assert.assertTrue("Added permission must be found", role.hasPermission("files"));
+
+        role.setPermissions(new ArrayList<>());
+        Assert.assertFalse("Replaced permissions must be re-compiled", role.hasPermission("files"));
+    }
+
+    @Test
+    public void testAllPermissionsFound() {
+        final UserRole role = newRole(false, PERMISSIONS);
+        SecurityContext.init(newUser(role));
+        for (String permission : PERMISSIONS) {
+            Assert.assertTrue("Granted permission must be found: " + permission, scan(role, permission));
+            Assert.assertTrue("Granted permission must be found: " + permission,
+                    SecurityContext.get().hasPermission(permission));
+        }
+    }
+
+    /**
+     * <p>Measures {@link SecurityContext#hasPermission(String)}, which looks the name up in the permission set of the
+     * role, against the case-insensitive stream scan of the role permission list it replaced. The role is granted all
+     * built-in and plugin permissions, so the scan walks half of the list on average.</p>
+     */
+    @Test
+    public void benchmarkHasPermission() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+
+        final UserRole role = newRole(false, PERMISSIONS);
+        SecurityContext.init(newUser(role));
+        final SecurityContext context = SecurityContext.get();
+
+        int found = 0;
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            found += scan(role, PERMISSIONS[i % PERMISSIONS.length]) ? 1 : 0;
+            found += context.hasPermission(PERMISSIONS[i % PERMISSIONS.length]) ? 1 : 0;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            found += scan(role, PERMISSIONS[i % PERMISSIONS.length]) ? 1 : 0;
+        }
+        final long scanTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            found += context.hasPermission(PERMISSIONS[i % PERMISSIONS.length]) ? 1 : 0;
+        }
+        final long checkTime = System.nanoTime() - start;
+
+        Assert.assertEquals("All permissions must be found", BENCHMARK_ITERATIONS * 4, found);
+        logger.info("Permission check over {} permissions: scan {} ns/op, hasPermission {} ns/op",
+                PERMISSIONS.length, scanTime / BENCHMARK_ITERATIONS, checkTime / BENCHMARK_ITERATIONS);
+    }
+
+    private static boolean scan(UserRole role, String permission) {
+        return role.getPermissions().stream().anyMatch(p -> p.getName().equalsIgnoreCase(permission));
+    }
+
+    private static User newUser(UserRole role) {
+        final User user = new User();
+        user.setId(1);
+        user.setCustomerId(1);
+        user.setUserRole(role);
+        return user;
+    }
+
+    private static UserRole newRole(boolean superAdmin, String... permissions) {
+        final List<UserRolePermission> list = new ArrayList<>();
+        for (String permission : permissions) {
+            list.add(newPermission(permission));
+        }
+        final UserRole role = new UserRole();
+        role.setId(1);
+        role.setSuperAdmin(superAdmin);
+        role.setPermissions(list);
+        return role;
+    }
+
+    private static UserRolePermission newPermission(String name) {
+        final UserRolePermission permission = new UserRolePermission();
+        permission.setName(name);
+        return permission;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.hmdm.persistence.PostCommitActions;
+import com.hmdm.persistence.domain.DeviceIdentity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * <p>A test suite for {@link DeviceIdentityCache} class.</p>
+ */
+public class DeviceIdentityCacheTests {
+
+    /**
+     * <p>Constructs new <code>DeviceIdentityCacheTests</code> instance. This implementation does nothing.</p>
+     */
+    public DeviceIdentityCacheTests() {
+    }
+
+    @Test
+    public void testIdentityIsCachedByNumberAndId() {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        final DeviceIdentity first = cache.getByNumber("h0001", byNumber(1, loaded));
+        final DeviceIdentity second = cache.getByNumber("h0001", byNumber(1, loaded));
+        final DeviceIdentity third = cache.getById(1, byId("h0001", loaded));
+
+        Assert.assertSame(first, second);
+        Assert.assertSame(first, third);
+        Assert.assertEquals(1, loaded.get());
+        Assert.assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testDisabledCache() {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(0, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        cache.getByNumber("h0001", byNumber(1, loaded));
+        cache.getByNumber("h0001", byNumber(1, loaded));
+
+        Assert.assertEquals(2, loaded.get());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testExpiredIdentityIsReloaded() throws Exception {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(1, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        final DeviceIdentity first = cache.getByNumber("h0001", byNumber(1, loaded));
+        Thread.sleep(1100);
+        final DeviceIdentity second = cache.getByNumber("h0001", byNumber(1, loaded));
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, loaded.get());
+    }
+
+    @Test
+    public void testMissingDeviceIsNotCached() {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+        final Function<String, DeviceIdentity> missing = number -> {
+            loaded.incrementAndGet();
+            return null;
+        };
+
+        Assert.assertNull(cache.getByNumber("h0001", missing));
+        Assert.assertNull(cache.getByNumber("h0001", missing));
+
+        Assert.assertEquals(2, loaded.get());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidate() {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        final DeviceIdentity first = cache.getByNumber("h0001", byNumber(1, loaded));
+        cache.getByNumber("h0002", byNumber(2, loaded));
+        cache.invalidate(1);
+
+        Assert.assertNotSame(first, cache.getByNumber("h0001", byNumber(1, loaded)));
+        cache.getByNumber("h0002", byNumber(2, loaded));
+        Assert.assertEquals(3, loaded.get());
+
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testChangedNumberIsNotServed() {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        cache.getByNumber("h0001", byNumber(1, loaded));
+        cache.invalidate(1);
+        cache.getById(1, byId("h0002", loaded));
+
+        final DeviceIdentity renamed = cache.getByNumber("h0001", number -> null);
+        Assert.assertNull(renamed);
+        Assert.assertEquals("h0002", cache.getByNumber("h0002", byNumber(1, loaded)).getNumber());
+        Assert.assertEquals(2, loaded.get());
+    }
+
+    @Test
+    public void testInvalidatedDuringLoadIsNotCached() {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        cache.getByNumber("h0001", number -> {
+            final DeviceIdentity identity = byNumber(1, loaded).apply(number);
+            cache.invalidate(1);
+            return identity;
+        });
+
+        Assert.assertEquals(0, cache.getSize());
+        cache.getByNumber("h0001", byNumber(1, loaded));
+        Assert.assertEquals(2, loaded.get());
+    }
+
+    @Test
+    public void testInvalidationIsDeferredUntilTransactionCompletes() throws Throwable {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+        final DeviceIdentity identity = cache.getByNumber("h0001", byNumber(1, loaded));
+
+        new PostCommitActions.Interceptor().invoke(new SyncSnapshotCacheTests.TestInvocation(() -> {
+            cache.invalidate(1);
+            // Not committed yet, so concurrent requests must keep getting the cached identity
+            Assert.assertSame(identity, cache.getByNumber("h0001", byNumber(1, loaded)));
+        }));
+
+        Assert.assertNotSame(identity, cache.getByNumber("h0001", byNumber(1, loaded)));
+        Assert.assertEquals(2, loaded.get());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        final DeviceIdentityCache cache = new DeviceIdentityCache(60, 10);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        for (int i = 1; i <= 100; i++) {
+            cache.getByNumber("h" + i, byNumber(i, loaded));
+        }
+
+        Assert.assertTrue(cache.getSize() <= 10);
+        Assert.assertEquals(100, loaded.get());
+    }
+
+    private static Function<String, DeviceIdentity> byNumber(int id, AtomicInteger counter) {
+        return number -> identity(id, number, counter);
+    }
+
+    private static Function<Integer, DeviceIdentity> byId(String number, AtomicInteger counter) {
+        return id -> identity(id, number, counter);
+    }
+
+    private static DeviceIdentity identity(int id, String number, AtomicInteger counter) {
+        counter.incrementAndGet();
+        final DeviceIdentity identity = new DeviceIdentity();
+        identity.setId(id);
+        identity.setNumber(number);
+        return identity;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdm.event.DeviceInfoUpdatedEvent;
+import com.hmdm.event.Event;
+import com.hmdm.event.EventService;
+import com.hmdm.persistence.UnsecureDAO;
+import com.hmdm.persistence.domain.DeviceInfoUpdate;
+import com.hmdm.rest.json.DeviceInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A test suite for {@link DeviceInfoUpdateBuffer} class.</p>
+ */
+public class DeviceInfoUpdateBufferTests {
+
+    /**
+     * <p>Constructs new <code>DeviceInfoUpdateBufferTests</code> instance. This implementation does nothing.</p>
+     */
+    public DeviceInfoUpdateBufferTests() {
+    }
+
+    @Test
+    public void testLatestInfoIsWritten() {
+        final TestUnsecureDAO dao = new TestUnsecureDAO();
+        final TestEventService events = new TestEventService();
+        final DeviceInfoUpdateBuffer buffer = new DeviceInfoUpdateBuffer(dao, events, new ObjectMapper());
+
+        buffer.submit(update(2, "first", "a", null));
+        buffer.submit(update(1, "first", null, null));
+        buffer.submit(update(2, "second", null, "b"));
+        Assert.assertEquals(2, buffer.getPendingCount());
+
+        buffer.flush();
+
+        Assert.assertEquals(1, dao.batches.size());
+        final List<DeviceInfoUpdate> written = dao.batches.get(0);
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals(1, written.get(0).getDeviceId());
+        Assert.assertEquals(2, written.get(1).getDeviceId());
+        Assert.assertTrue(written.get(1).getInfo().contains("\"model\":\"second\""));
+        // The custom properties not changed by the latest info are kept
+        Assert.assertEquals("a", written.get(1).getCustom1());
+        Assert.assertEquals("b", written.get(1).getCustom2());
+        Assert.assertNull(written.get(1).getCustom3());
+
+        Assert.assertEquals(0, buffer.getPendingCount());
+        Assert.assertEquals(2, events.deviceIds.size());
+    }
+
+    @Test
+    public void testEmptyBufferIsNotWritten() {
+        final TestUnsecureDAO dao = new TestUnsecureDAO();
+        final DeviceInfoUpdateBuffer buffer = new DeviceInfoUpdateBuffer(dao, new TestEventService(), new ObjectMapper());
+
+        buffer.flush();
+
+        Assert.assertEquals(0, dao.batches.size());
+    }
+
+    @Test
+    public void testFailedInfoIsRetried() {
+        final TestUnsecureDAO dao = new TestUnsecureDAO();
+        final TestEventService events = new TestEventService();
+        final DeviceInfoUpdateBuffer buffer = new DeviceInfoUpdateBuffer(dao, events, new ObjectMapper());
+
+        buffer.submit(update(1, "first", "a", null));
+        buffer.submit(update(2, "first", null, null));
+        dao.failing = true;
+        buffer.flush();
+
+        Assert.assertEquals(2, buffer.getPendingCount());
+        Assert.assertEquals(0, events.deviceIds.size());
+
+        // A newer info received after the failure wins but keeps the custom properties of the failed one
+        buffer.submit(update(1, "second", null, "b"));
+        dao.failing = false;
+        buffer.flush();
+
+        final List<DeviceInfoUpdate> written = dao.batches.get(dao.batches.size() - 1);
+        Assert.assertEquals(2, written.size());
+        Assert.assertTrue(written.get(0).getInfo().contains("\"model\":\"second\""));
+        Assert.assertEquals("a", written.get(0).getCustom1());
+        Assert.assertEquals("b", written.get(0).getCustom2());
+        Assert.assertEquals(0, buffer.getPendingCount());
+        Assert.assertEquals(2, events.deviceIds.size());
+    }
+
+    private static DeviceInfoUpdate update(int deviceId, String model, String custom1, String custom2) {
+        final DeviceInfo info = new DeviceInfo();
+        info.setModel(model);
+        info.setCustom1(custom1);
+        info.setCustom2(custom2);
+        return new DeviceInfoUpdate(deviceId, info, "127.0.0.1");
+    }
+
+    /**
+     * <p>A DAO recording the written batches instead of writing them to database.</p>
+     */
+    private static class TestUnsecureDAO extends UnsecureDAO {
+        private final List<List<DeviceInfoUpdate>> batches = new ArrayList<>();
+        private boolean failing;
+
+        private TestUnsecureDAO() {
+            super(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+                    ".", 1, "");
+        }
+
+        @Override
+        public void updateDeviceInfoBatch(List<DeviceInfoUpdate> updates) {
+            if (this.failing) {
+                throw new IllegalStateException("Database is not available");
+            }
+            this.batches.add(new ArrayList<>(updates));
+        }
+    }
+
+    /**
+     * <p>An event service recording the fired events instead of notifying the listeners.</p>
+     */
+    private static class TestEventService extends EventService {
+        private final List<Integer> deviceIds = new ArrayList<>();
+
+        private TestEventService() {
+            super(null);
+        }
+
+        @Override
+        public void fireEvent(Event event) {
+            this.deviceIds.add(((DeviceInfoUpdatedEvent) event).getDeviceId());
+        }
+    }
+}
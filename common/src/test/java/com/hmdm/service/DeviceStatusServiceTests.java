@@ -0,0 +1,251 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdm.persistence.domain.Application;
+import com.hmdm.persistence.domain.ApplicationType;
+import com.hmdm.persistence.domain.ConfigurationFile;
+import com.hmdm.persistence.domain.Device;
+import com.hmdm.persistence.mapper.ConfigurationFileMapper;
+import com.hmdm.persistence.mapper.ConfigurationMapper;
+import com.hmdm.persistence.mapper.DeviceMapper;
+import com.hmdm.rest.json.DeviceConfigurationFile;
+import com.hmdm.rest.json.DeviceInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * <p>A test suite for {@link DeviceStatusService} class.</p>
+ */
+public class DeviceStatusServiceTests {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<Integer, Device> devices = new HashMap<>();
+    private final Map<Integer, List<Application>> configurationApps = new HashMap<>();
+    private final Map<Integer, List<ConfigurationFile>> configurationFiles = new HashMap<>();
+    private final Map<Integer, DeviceStatuses> written = new HashMap<>();
+    private final List<Integer> loadedConfigurations = new ArrayList<>();
+
+    private final DeviceStatusService service = new DeviceStatusService(
+            mapper(DeviceMapper.class), mapper(ConfigurationMapper.class), mapper(ConfigurationFileMapper.class),
+            objectMapper
+    );
+
+    /**
+     * <p>Constructs new <code>DeviceStatusServiceTests</code> instance. This implementation does nothing.</p>
+     */
+    public DeviceStatusServiceTests() {
+    }
+
+    @Test
+    public void testUpToDateDevice() throws Exception {
+        configure(1, Collections.singletonList(app("com.example", "1.2", 1)),
+                Collections.singletonList(file("/sdcard/file.txt", 1000L)));
+        device(1, 1, info(Collections.singletonList(installed("com.example", "1.10")),
+                Collections.singletonList(installedFile("/sdcard/file.txt", 2000L))));
+
+        service.recalcDeviceStatuses(1);
+
+        assertStatuses(1, DeviceConfigFilesStatus.UP_TO_DATE, DeviceApplicationsStatus.SUCCESS);
+    }
+
+    @Test
+    public void testMissingApplicationAndFile() throws Exception {
+        configure(1, Arrays.asList(app("com.example", "1.0", 1), app("com.other", "0", 1)),
+                Collections.singletonList(file("/sdcard/file.txt", 1000L)));
+        device(1, 1, info(Collections.singletonList(installed("com.example", "1.0")), Collections.emptyList()));
+
+        service.recalcDeviceStatuses(1);
+
+        assertStatuses(1, DeviceConfigFilesStatus.MISSING, DeviceApplicationsStatus.FAILURE);
+    }
+
+    @Test
+    public void testVersionMismatchAndOutdatedFile() throws Exception {
+        configure(1, Arrays.asList(app("com.example", "2.0", 1), app("com.removed", "1.0", 2)),
+                Collections.singletonList(file("/sdcard/file.txt", 1000L)));
+        device(1, 1, info(Arrays.asList(installed("com.example", "1.9.9"), installed("com.removed", "0.9")),
+                Collections.singletonList(installedFile("/sdcard/file.txt", 1000L + 2 * 3600 * 1000L))));
+
+        service.recalcDeviceStatuses(1);
+
+        assertStatuses(1, DeviceConfigFilesStatus.OTHER, DeviceApplicationsStatus.VERSION_MISMATCH);
+    }
+
+    @Test
+    public void testDeviceWithoutInfo() {
+        configure(1, Collections.emptyList(), Collections.emptyList());
+        device(1, 1, null);
+
+        service.recalcDeviceStatuses(1);
+
+        assertStatuses(1, DeviceConfigFilesStatus.OTHER, DeviceApplicationsStatus.FAILURE);
+    }
+
+    @Test
+    public void testDeviceWithoutConfigurationIsReset() throws Exception {
+        device(1, null, info(Collections.singletonList(installed("com.example", "1.0")), Collections.emptyList()));
+
+        service.recalcDeviceStatuses(1);
+
+        assertStatuses(1, DeviceConfigFilesStatus.OTHER, DeviceApplicationsStatus.FAILURE);
+        Assert.assertTrue(loadedConfigurations.isEmpty());
+    }
+
+    @Test
+    public void testInvalidInfoIsSkipped() throws Exception {
+        configure(1, Collections.emptyList(), Collections.emptyList());
+        device(1, 1, "{not a json");
+        device(2, 1, info(Collections.emptyList(), Collections.emptyList()));
+
+        service.recalcDeviceStatuses(Arrays.asList(1, 2));
+
+        Assert.assertFalse(written.containsKey(1));
+        assertStatuses(2, DeviceConfigFilesStatus.UP_TO_DATE, DeviceApplicationsStatus.SUCCESS);
+    }
+
+    @Test
+    public void testConfigurationIsLoadedOncePerBatch() throws Exception {
+        configure(1, Collections.singletonList(app("com.example", "1.0", 1)), Collections.emptyList());
+        configure(2, Collections.emptyList(), Collections.emptyList());
+        final List<Integer> deviceIds = new ArrayList<>();
+        for (int id = 1; id <= 100; id++) {
+            device(id, id % 2 + 1, info(Collections.singletonList(installed("com.example", "1.0")),
+                    Collections.emptyList()));
+            deviceIds.add(id);
+        }
+
+        service.recalcDeviceStatuses(deviceIds);
+
+        Assert.assertEquals(100, written.size());
+        Assert.assertEquals(2, loadedConfigurations.size());
+        for (DeviceStatuses statuses : written.values()) {
+            Assert.assertEquals(DeviceApplicationsStatus.SUCCESS, statuses.getApplicationsStatus());
+        }
+    }
+
+    @Test
+    public void testScheduledRecalc() throws Exception {
+        configure(1, Collections.emptyList(), Collections.emptyList());
+        device(1, 1, info(Collections.emptyList(), Collections.emptyList()));
+
+        service.scheduleRecalc(1);
+
+        assertStatuses(1, DeviceConfigFilesStatus.UP_TO_DATE, DeviceApplicationsStatus.SUCCESS);
+    }
+
+    private void assertStatuses(int deviceId, DeviceConfigFilesStatus files, DeviceApplicationsStatus apps) {
+        final DeviceStatuses statuses = written.get(deviceId);
+        Assert.assertNotNull(statuses);
+        Assert.assertEquals(files, statuses.getConfigFilesStatus());
+        Assert.assertEquals(apps, statuses.getApplicationsStatus());
+    }
+
+    private void configure(int configurationId, List<Application> apps, List<ConfigurationFile> files) {
+        configurationApps.put(configurationId, apps);
+        configurationFiles.put(configurationId, files);
+    }
+
+    private void device(int id, Integer configurationId, String info) {
+        final Device device = new Device();
+        device.setId(id);
+        device.setConfigurationId(configurationId);
+        device.setInfo(info);
+        devices.put(id, device);
+    }
+
+    private static Application app(String pkg, String version, int action) {
+        final Application app = new Application();
+        app.setPkg(pkg);
+        app.setVersion(version);
+        app.setAction(action);
+        app.setType(ApplicationType.app);
+        app.setUrl("https://example.com/" + pkg + ".apk");
+        return app;
+    }
+
+    private static Application installed(String pkg, String version) {
+        final Application app = new Application();
+        app.setPkg(pkg);
+        app.setVersion(version);
+        return app;
+    }
+
+    private static ConfigurationFile file(String path, Long lastUpdate) {
+        final ConfigurationFile file = new ConfigurationFile();
+        file.setDevicePath(path);
+        file.setLastUpdate(lastUpdate);
+        return file;
+    }
+
+    private static DeviceConfigurationFile installedFile(String path, Long lastUpdate) {
+        final DeviceConfigurationFile file = new DeviceConfigurationFile();
+        file.setPath(path);
+        file.setLastUpdate(lastUpdate);
+        return file;
+    }
+
+    private static String info(List<Application> apps, List<DeviceConfigurationFile> files) throws Exception {
+        final DeviceInfo info = new DeviceInfo();
+        info.setApplications(apps);
+        info.setFiles(files);
+        return objectMapper.writeValueAsString(info);
+    }
+
+    /**
+     * <p>Creates a mapper serving the data of this test instead of database.</p>
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T mapper(Class<T> type) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getDevicesForStatusRecalc":
+                    return ((List<Integer>) args[0]).stream()
+                            .map(devices::get)
+                            .collect(Collectors.toList());
+                case "updateDeviceStatusesBatch":
+                    synchronized (written) {
+                        ((List<DeviceStatuses>) args[0]).forEach(s -> written.put(s.getDeviceId(), s));
+                    }
+                    return 0;
+                case "getPlainConfigurationAppsOptimized":
+                    loadedConfigurations.add((Integer) args[0]);
+                    return new ArrayList<>(configurationApps.get((Integer) args[0]));
+                case "getConfigurationFiles":
+                    return new ArrayList<>(configurationFiles.get((Integer) args[0]));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
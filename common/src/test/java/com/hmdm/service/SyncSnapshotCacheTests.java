@@ -0,0 +1,228 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.hmdm.persistence.PostCommitActions;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * <p>A test suite for {@link SyncSnapshotCache} class.</p>
+ */
+public class SyncSnapshotCacheTests {
+
+    /**
+     * <p>Constructs new <code>SyncSnapshotCacheTests</code> instance. This implementation does nothing.</p>
+     */
+    public SyncSnapshotCacheTests() {
+    }
+
+    @Test
+    public void testSnapshotIsCached() {
+        final SyncSnapshotCache cache = new SyncSnapshotCache(60);
+        final AtomicInteger compiled = new AtomicInteger();
+
+        final SyncConfigurationSnapshot first = cache.get(1, "", compiler(1, compiled));
+        final SyncConfigurationSnapshot second = cache.get(1, "", compiler(1, compiled));
+        final SyncConfigurationSnapshot other = cache.get(1, "arm64-v8a", compiler(1, compiled));
+
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, other);
+        Assert.assertEquals(2, compiled.get());
+    }
+
+    @Test
+    public void testDisabledCache() {
+        final SyncSnapshotCache cache = new SyncSnapshotCache(0);
+        final AtomicInteger compiled = new AtomicInteger();
+
+        final SyncConfigurationSnapshot first = cache.get(1, "", compiler(1, compiled));
+        final SyncConfigurationSnapshot second = cache.get(1, "", compiler(1, compiled));
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, compiled.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsCompileOnce() throws Exception {
+        final SyncSnapshotCache cache = new SyncSnapshotCache(60);
+        final AtomicInteger compiled = new AtomicInteger();
+        final CountDownLatch compiling = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Supplier<SyncConfigurationSnapshot> slowCompiler = () -> {
+            compiling.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return compiler(1, compiled).get();
+        };
+
+        final List<SyncConfigurationSnapshot> results = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final Thread thread = new Thread(() -> results.add(cache.get(1, "", slowCompiler)));
+            threads.add(thread);
+            thread.start();
+        }
+        Assert.assertTrue("Snapshot is not compiled", compiling.await(5, TimeUnit.SECONDS));
+
+        // Other configurations are not blocked by the compilation in progress
+        Assert.assertNotNull(cache.get(2, "", compiler(2, new AtomicInteger())));
+
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        Assert.assertEquals(8, results.size());
+        Assert.assertEquals(1, compiled.get());
+        for (SyncConfigurationSnapshot snapshot : results) {
+            Assert.assertSame(results.get(0), snapshot);
+        }
+    }
+
+    @Test
+    public void testFailedCompilationIsNotCached() {
+        final SyncSnapshotCache cache = new SyncSnapshotCache(60);
+        final AtomicInteger compiled = new AtomicInteger();
+
+        try {
+            cache.get(1, "", () -> {
+                throw new IllegalStateException("Database is down");
+            });
+            Assert.fail("Compilation failure is not reported");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("Database is down", e.getMessage());
+        }
+
+        Assert.assertNotNull(cache.get(1, "", compiler(1, compiled)));
+        Assert.assertEquals(1, compiled.get());
+    }
+
+    @Test
+    public void testSnapshotInvalidatedDuringCompilationIsNotCached() {
+        final SyncSnapshotCache cache = new SyncSnapshotCache(60);
+        final AtomicInteger compiled = new AtomicInteger();
+
+        cache.get(1, "", () -> {
+            // The configuration is changed by another request while the snapshot is being compiled
+            cache.invalidate(1);
+            return compiler(1, compiled).get();
+        });
+        cache.get(1, "", compiler(1, compiled));
+
+        Assert.assertEquals(2, compiled.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        final SyncSnapshotCache cache = new SyncSnapshotCache(60);
+        final AtomicInteger compiled = new AtomicInteger();
+
+        cache.get(1, "", compiler(1, compiled));
+        cache.get(2, "", compiler(2, compiled));
+        cache.invalidate(1);
+        cache.get(1, "", compiler(1, compiled));
+        cache.get(2, "", compiler(2, compiled));
+        Assert.assertEquals(3, compiled.get());
+
+        cache.invalidateAll();
+        cache.get(1, "", compiler(1, compiled));
+        cache.get(2, "", compiler(2, compiled));
+        Assert.assertEquals(5, compiled.get());
+    }
+
+    @Test
+    public void testInvalidationIsDeferredUntilTransactionIsCompleted() throws Throwable {
+        final SyncSnapshotCache cache = new SyncSnapshotCache(60);
+        final AtomicInteger compiled = new AtomicInteger();
+        final SyncConfigurationSnapshot snapshot = cache.get(1, "", compiler(1, compiled));
+
+        new PostCommitActions.Interceptor().invoke(new TestInvocation(() -> {
+            cache.invalidate(1);
+            // Not committed yet, so concurrent requests must keep getting the cached snapshot
+            Assert.assertSame(snapshot, cache.get(1, "", compiler(1, compiled)));
+        }));
+
+        Assert.assertNotSame(snapshot, cache.get(1, "", compiler(1, compiled)));
+        Assert.assertEquals(2, compiled.get());
+    }
+
+    private static Supplier<SyncConfigurationSnapshot> compiler(int configurationId, AtomicInteger counter) {
+        return () -> {
+            counter.incrementAndGet();
+            return new SyncConfigurationSnapshot(configurationId, "", null, null,
+                    new ArrayList<>(), new ArrayList<>(), null);
+        };
+    }
+
+    /**
+     * <p>An invocation of transactional method running the specified code.</p>
+     */
+    static class TestInvocation implements MethodInvocation {
+        private final Runnable body;
+
+        TestInvocation(Runnable body) {
+            this.body = body;
+        }
+
+        @Override
+        public Object proceed() {
+            body.run();
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return null;
+        }
+
+        @Override
+        public Object[] getArguments() {
+            return new Object[0];
+        }
+
+        @Override
+        public Object getThis() {
+            return null;
+        }
+
+        @Override
+        public AccessibleObject getStaticPart() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.service;
+
+import com.hmdm.persistence.PostCommitActions;
+import com.hmdm.persistence.domain.User;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * <p>A test suite for {@link UserPrincipalCache} class.</p>
+ */
+public class UserPrincipalCacheTests {
+
+    /**
+     * <p>Constructs new <code>UserPrincipalCacheTests</code> instance. This implementation does nothing.</p>
+     */
+    public UserPrincipalCacheTests() {
+    }
+
+    @Test
+    public void testUserIsCachedByLogin() {
+        final UserPrincipalCache cache = new UserPrincipalCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        final User first = cache.getByLogin("admin", byLogin(1, "token1", loaded));
+        final User second = cache.getByLogin("ADMIN", byLogin(1, "token1", loaded));
+
+        Assert.assertSame("Login case must be ignored", first, second);
+        Assert.assertEquals(1, loaded.get());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testUserIsCachedById() {
+        final UserPrincipalCache cache = new UserPrincipalCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        final User first = cache.getById(1, byId("admin", "token1", loaded));
+        final User second = cache.getById(1, byId("admin", "token1", loaded));
+        cache.getByLogin("admin", byLogin(1, "token1", loaded));
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals("Lookups by login and by ID are cached separately", 2, loaded.get());
+        Assert.assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testDisabledCache() {
+        final UserPrincipalCache cache = new UserPrincipalCache(0, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        cache.getByLogin("admin", byLogin(1, "token1", loaded));
+        cache.getByLogin("admin", byLogin(1, "token1", loaded));
+
+        Assert.assertEquals(2, loaded.get());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testExpiredUserIsReloaded() throws Exception {
+        final UserPrincipalCache cache = new UserPrincipalCache(1, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        final User first = cache.getByLogin("admin", byLogin(1, "token1", loaded));
+        Thread.sleep(1100);
+        final User second = cache.getByLogin("admin", byLogin(1, "token2", loaded));
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("token2", second.getAuthToken());
+        Assert.assertEquals(2, loaded.get());
+    }
+
+    @Test
+    public void testMissingUserIsNotCached() {
+        final UserPrincipalCache cache = new UserPrincipalCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+        final Function<String, User> missing = login -> {
+            loaded.incrementAndGet();
+            return null;
+        };
+
+        Assert.assertNull(cache.getByLogin("admin", missing));
+        Assert.assertNull(cache.getByLogin("admin", missing));
+
+        Assert.assertEquals(2, loaded.get());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        final UserPrincipalCache cache = new UserPrincipalCache(60, 10);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        for (int i = 1; i <= 100; i++) {
+            cache.getByLogin("user" + i, byLogin(i, "token" + i, loaded));
+            cache.getById(i, byId("user" + i, "token" + i, loaded));
+        }
+
+        Assert.assertTrue(cache.getSize() <= 20);
+        Assert.assertEquals(200, loaded.get());
+
+        // The recently cached user is still served
+        cache.getByLogin("user100", byLogin(100, "token100", loaded));
+        Assert.assertEquals(200, loaded.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        final UserPrincipalCache cache = new UserPrincipalCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        cache.getByLogin("admin", byLogin(1, "token1", loaded));
+        cache.getByLogin("admin@example.com", byLogin(1, "token1", loaded));
+        cache.getById(1, byId("admin", "token1", loaded));
+        cache.getByLogin("user", byLogin(2, "token2", loaded));
+        cache.invalidate(1);
+
+        Assert.assertEquals("All lookups of invalidated user must be dropped", 1, cache.getSize());
+        Assert.assertEquals("new", cache.getByLogin("admin", byLogin(1, "new", loaded)).getAuthToken());
+        Assert.assertEquals("new", cache.getByLogin("admin@example.com", byLogin(1, "new", loaded)).getAuthToken());
+        Assert.assertEquals("new", cache.getById(1, byId("admin", "new", loaded)).getAuthToken());
+        Assert.assertEquals("token2", cache.getByLogin("user", byLogin(2, "new", loaded)).getAuthToken());
+        Assert.assertEquals(7, loaded.get());
+
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidatedDuringLoadIsNotCached() {
+        final UserPrincipalCache cache = new UserPrincipalCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+
+        cache.getByLogin("admin", login -> {
+            final User user = byLogin(1, "token1", loaded).apply(login);
+            cache.invalidate(1);
+            return user;
+        });
+        Assert.assertEquals(0, cache.getSize());
+
+        cache.getById(1, id -> {
+            final User user = byId("admin", "token1", loaded).apply(id);
+            cache.invalidateAll();
+            return user;
+        });
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidationIsDeferredUntilTransactionCompletes() throws Throwable {
+        final UserPrincipalCache cache = new UserPrincipalCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+        final User user = cache.getByLogin("admin", byLogin(1, "token1", loaded));
+
+        new PostCommitActions.Interceptor().invoke(new SyncSnapshotCacheTests.TestInvocation(() -> {
+            cache.invalidate(1);
+            cache.invalidateAll();
+            // Not committed yet, so the requests keep getting the cached user
+            Assert.assertSame(user, cache.getByLogin("admin", byLogin(1, "token1", loaded)));
+        }));
+
+        Assert.assertEquals("new", cache.getByLogin("admin", byLogin(1, "new", loaded)).getAuthToken());
+        Assert.assertEquals(2, loaded.get());
+    }
+
+    /**
+     * <p>A request loads the user while the transaction resetting the auth token is being committed: the user loaded
+     * before the commit must not be cached, otherwise the old token keeps working until the user expires.</p>
+     */
+    @Test
+    public void testUserLoadedBeforeCommitIsNotCached() throws Throwable {
+        final UserPrincipalCache cache = new UserPrincipalCache(60, 100);
+        final AtomicInteger loaded = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch committed = new CountDownLatch(1);
+
+        final CompletableFuture<User> request = CompletableFuture.supplyAsync(() -> cache.getByLogin("admin", login -> {
+            // The old row is read from the database before the transaction is committed
+            final User user = byLogin(1, "old", loaded).apply(login);
+            loading.countDown();
+            await(committed);
+            return user;
+        }));
+
+        Assert.assertTrue(loading.await(10, TimeUnit.SECONDS));
+        new PostCommitActions.Interceptor().invoke(new SyncSnapshotCacheTests.TestInvocation(() -> cache.invalidate(1)));
+        committed.countDown();
+
+        Assert.assertEquals("old", request.get(10, TimeUnit.SECONDS).getAuthToken());
+        Assert.assertEquals("Old token must not be served after the commit",
+                "new", cache.getByLogin("admin", byLogin(1, "new", loaded)).getAuthToken());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Function<String, User> byLogin(int id, String authToken, AtomicInteger counter) {
+        return login -> user(id, login, authToken, counter);
+    }
+
+    private static Function<Integer, User> byId(String login, String authToken, AtomicInteger counter) {
+        return id -> user(id, login, authToken, counter);
+    }
+
+    private static User user(int id, String login, String authToken, AtomicInteger counter) {
+        counter.incrementAndGet();
+        final User user = new User();
+        user.setId(id);
+        user.setLogin(login);
+        user.setAuthToken(authToken);
+        return user;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>A test suite for {@link EntityTagUtil} class.</p>
+ */
+public class EntityTagUtilTests {
+
+    private static final String TAG = "5D41402ABC4B2A76B9719D911017C592";
+
+    /**
+     * <p>Constructs new <code>EntityTagUtilTests</code> instance. This implementation does nothing.</p>
+     */
+    public EntityTagUtilTests() {
+    }
+
+    @Test
+    public void testMissingHeader() {
+        Assert.assertFalse(EntityTagUtil.isMatched(null, TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("", TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("  ", TAG));
+    }
+
+    @Test
+    public void testSingleTag() {
+        Assert.assertTrue(EntityTagUtil.isMatched("\"" + TAG + "\"", TAG));
+        Assert.assertTrue(EntityTagUtil.isMatched("  \"" + TAG + "\"  ", TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("\"" + TAG.toLowerCase() + "\"", TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("\"" + TAG + "0\"", TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("\"\"", TAG));
+    }
+
+    @Test
+    public void testWeakTag() {
+        Assert.assertTrue(EntityTagUtil.isMatched("W/\"" + TAG + "\"", TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("W/\"other\"", TAG));
+    }
+
+    @Test
+    public void testUnquotedTag() {
+        Assert.assertTrue(EntityTagUtil.isMatched(TAG, TAG));
+        Assert.assertTrue(EntityTagUtil.isMatched("W/" + TAG, TAG));
+        Assert.assertTrue(EntityTagUtil.isMatched("other, " + TAG, TAG));
+    }
+
+    @Test
+    public void testListOfTags() {
+        Assert.assertTrue(EntityTagUtil.isMatched("\"a\", \"" + TAG + "\"", TAG));
+        Assert.assertTrue(EntityTagUtil.isMatched("\"" + TAG + "\",\"b\"", TAG));
+        Assert.assertTrue(EntityTagUtil.isMatched("W/\"a\" , W/\"" + TAG + "\" ,\"c\"", TAG));
+        Assert.assertTrue(EntityTagUtil.isMatched(",,\"" + TAG + "\",", TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("\"a\", W/\"b\", \"c\"", TAG));
+    }
+
+    @Test
+    public void testCommaInsideQuotedTag() {
+        Assert.assertTrue(EntityTagUtil.isMatched("\"a,b\"", "a,b"));
+        Assert.assertFalse(EntityTagUtil.isMatched("\"a,b\"", "a"));
+        Assert.assertFalse(EntityTagUtil.isMatched("\"a,b\"", "b"));
+    }
+
+    @Test
+    public void testAnyTag() {
+        Assert.assertTrue(EntityTagUtil.isMatched("*", TAG));
+        Assert.assertTrue(EntityTagUtil.isMatched(" * ", TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("\"*\"", TAG));
+    }
+
+    @Test
+    public void testMalformedHeader() {
+        Assert.assertFalse(EntityTagUtil.isMatched("\"" + TAG, "other"));
+        Assert.assertTrue(EntityTagUtil.isMatched("\"" + TAG, TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("W/", TAG));
+        Assert.assertFalse(EntityTagUtil.isMatched("\"", TAG));
+    }
+}
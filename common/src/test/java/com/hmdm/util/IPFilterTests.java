@@ -23,15 +23,31 @@ package com.hmdm.util;
 
 import com.hmdm.rest.filter.BaseIPFilter;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
- * <p>A test suite for {@link BaseIPFilter} class.</p>
+ * <p>A test suite for {@link BaseIPFilter} class. The benchmark logs the time per check and runs only when the
+ * <code>benchmark</code> system property is <code>true</code>.</p>
  *
  * @author seva
  */
 public class IPFilterTests {
 
+    private static final Logger logger = LoggerFactory.getLogger(IPFilterTests.class);
+
+    private static final int RANGE_COUNT = 5000;
+    private static final int BENCHMARK_ITERATIONS = 1000000;
+
     /**
      * <p>Constructs new <code>IPFilterTests</code> instance. This implementation does nothing.</p>
      */
@@ -44,4 +60,162 @@ public class IPFilterTests {
         Assert.assertEquals(filter.match("192.168.0.1"), true);
         Assert.assertEquals(filter.match("213.110.2.1"), false);
     }
+
+    @Test
+    public void testMatchIPv6() {
+        BaseIPFilter filter = new BaseIPFilter("2001:db8::/32, fe80::1, 10.0.0.0/8", "", "");
+        Assert.assertTrue(filter.match("2001:db8:1::5"));
+        Assert.assertTrue(filter.match("[2001:0DB8::ffff]"));
+        Assert.assertTrue(filter.match("fe80::1%eth0"));
+        Assert.assertFalse(filter.match("2001:db9::1"));
+        Assert.assertTrue("IPv4-mapped address must match IPv4 network", filter.match("::ffff:10.1.2.3"));
+        Assert.assertFalse(filter.match("::10.1.2.3"));
+    }
+
+    @Test
+    public void testHostNamesAreNotResolved() {
+        BaseIPFilter filter = new BaseIPFilter("127.0.0.0/8", "", "");
+        Assert.assertFalse(filter.match("localhost"));
+        Assert.assertFalse(filter.match("127.0.0.1.example.com"));
+        Assert.assertFalse(filter.match(""));
+        Assert.assertFalse(filter.match((String) null));
+    }
+
+    @Test
+    public void testParseAddress() throws Exception {
+        String[] valid = {"0.0.0.0", "255.255.255.255", "10.1.2.3", "::", "::1", "1::", "2001:db8::8:800:200c:417a",
+                "1:2:3:4:5:6:7:8", "1:2:3:4:5:6:1.2.3.4", "::ffff:192.168.1.1", "64:ff9b::192.0.2.33", "fe80::1%1"};
+        for (String address : valid) {
+            Assert.assertArrayEquals(address, InetAddress.getByName(address).getAddress(), IPAddressUtil.parse(address));
+        }
+        String[] invalid = {"256.1.1.1", "1.2.3", "1.2.3.4.5", "01234.1.1.1", "1..2.3", "1.2.3.", ":", ":1", "1:",
+                "1:::2", "1::2::3", "1:2:3:4:5:6:7:8:9", "12345::", "g::", "::1.2.3", "example.com"};
+        for (String address : invalid) {
+            Assert.assertNull(address, IPAddressUtil.parse(address));
+        }
+    }
+
+    @Test
+    public void testThousandsOfRanges() {
+        Random random = new Random(1);
+        int[] networks = new int[RANGE_COUNT];
+        int[] prefixes = new int[RANGE_COUNT];
+        StringBuilder nets = new StringBuilder();
+        for (int i = 0; i < RANGE_COUNT; i++) {
+            networks[i] = random.nextInt();
+            prefixes[i] = 8 + random.nextInt(25);
+            nets.append(i > 0 ? "," : "").append(toString(networks[i])).append('/').append(prefixes[i]);
+        }
+        BaseIPFilter filter = new BaseIPFilter(nets.toString(), "", "");
+
+        for (int i = 0; i < 20000; i++) {
+            // Half of addresses are taken from the networks
+            int address = random.nextInt();
+            if (i % 2 == 0) {
+                int n = i % RANGE_COUNT;
+                address = (networks[n] & mask(prefixes[n])) | (address & ~mask(prefixes[n]));
+            }
+            boolean expected = false;
+            for (int n = 0; n < RANGE_COUNT && !expected; n++) {
+                expected = ((address ^ networks[n]) & mask(prefixes[n])) == 0;
+            }
+            Assert.assertEquals(toString(address), expected, filter.match(toString(address)));
+        }
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        BaseIPFilter filter = new BaseIPFilter("10.0.0.0/8", "", "");
+        Assert.assertFalse(filter.match("192.168.1.1"));
+        filter.reload("192.168.0.0/16");
+        Assert.assertTrue(filter.match("192.168.1.1"));
+        Assert.assertFalse(filter.match("10.1.1.1"));
+        filter.reload("");
+        Assert.assertTrue("Empty whitelist must allow all", filter.match("10.1.1.1"));
+
+        File file = File.createTempFile("whitelist", ".txt");
+        try {
+            Files.write(file.toPath(), Arrays.asList("# Office", "192.168.0.0/24", "10.1.2.3 # Gateway", ""),
+                    StandardCharsets.UTF_8);
+            filter = new BaseIPFilter(BaseIPFilter.FILE_PREFIX + file.getAbsolutePath(), "", "");
+            Assert.assertTrue(filter.match("192.168.0.10"));
+            Assert.assertTrue(filter.match("10.1.2.3"));
+            Assert.assertFalse(filter.match("10.1.2.4"));
+
+            Files.write(file.toPath(), Arrays.asList("# Nothing"), StandardCharsets.UTF_8);
+            filter = new BaseIPFilter(BaseIPFilter.FILE_PREFIX + file.getAbsolutePath(), "", "");
+            Assert.assertFalse("Empty file must allow nothing", filter.match("192.168.0.10"));
+        } finally {
+            file.delete();
+        }
+        filter = new BaseIPFilter(BaseIPFilter.FILE_PREFIX + file.getAbsolutePath(), "", "");
+        Assert.assertFalse("Missing file must allow nothing", filter.match("192.168.0.10"));
+    }
+
+    @Test
+    public void testManyNetworks() {
+        final Random random = new Random(2);
+        final int[] networks = randomNetworks(random, RANGE_COUNT);
+        final BaseIPFilter filter = new BaseIPFilter(toList(networks), "", "");
+        for (int i = 0; i < networks.length; i++) {
+            Assert.assertTrue(filter.match(toString(networks[i] | random.nextInt(256))));
+        }
+        Assert.assertFalse("Address outside the networks must not match", filter.match("::1"));
+    }
+
+    /**
+     * <p>Measures the prefix trie lookup of client addresses for a whitelist of 10 networks and of 5000 networks.
+     * The time per check should stay nearly the same, since it depends on the prefix length rather than on the
+     * number of networks.</p>
+     */
+    @Test
+    public void benchmarkMatch() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+
+        Random random = new Random(2);
+        for (int count : new int[]{10, RANGE_COUNT}) {
+            int[] networks = randomNetworks(random, count);
+            // The addresses belong to the networks, so every check walks 24 levels of the trie
+            String[] addresses = new String[1024];
+            for (int i = 0; i < addresses.length; i++) {
+                addresses[i] = toString(networks[i % count] | random.nextInt(256));
+            }
+            BaseIPFilter filter = new BaseIPFilter(toList(networks), "", "");
+            int matched = 0;
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                matched += filter.match(addresses[i & 1023]) ? 1 : 0;
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                matched += filter.match(addresses[i & 1023]) ? 1 : 0;
+            }
+            long time = System.nanoTime() - start;
+            Assert.assertEquals(BENCHMARK_ITERATIONS * 2, matched);
+            logger.info("IP filter check over {} networks: {} ns/op", count, time / BENCHMARK_ITERATIONS);
+        }
+    }
+
+    private static int[] randomNetworks(Random random, int count) {
+        int[] networks = new int[count];
+        for (int i = 0; i < count; i++) {
+            networks[i] = random.nextInt() & mask(24);
+        }
+        return networks;
+    }
+
+    private static String toList(int[] networks) {
+        StringBuilder nets = new StringBuilder();
+        for (int i = 0; i < networks.length; i++) {
+            nets.append(i > 0 ? "," : "").append(toString(networks[i])).append("/24");
+        }
+        return nets.toString();
+    }
+
+    private static int mask(int prefix) {
+        return prefix == 0 ? 0 : -1 << (32 - prefix);
+    }
+
+    private static String toString(int address) {
+        return (address >>> 24) + "." + ((address >> 16) & 0xff) + "." + ((address >> 8) & 0xff) + "." + (address & 0xff);
+    }
 }
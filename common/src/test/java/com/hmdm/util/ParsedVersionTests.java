@@ -0,0 +1,85 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>A test suite for {@link ParsedVersion} class.</p>
+ *
+ * @author agent
+ */
+public class ParsedVersionTests {
+
+    /**
+     * <p>Constructs new <code>ParsedVersionTests</code> instance. This implementation does nothing.</p>
+     */
+    public ParsedVersionTests() {
+    }
+
+    @Test
+    public void testParts() {
+        assertParts("a12.334tyz.78x", 12, 334, 78);
+        assertParts("1.a.12", 1, ParsedVersion.EMPTY_PART, 12);
+        assertParts("1.", 1);
+        assertParts("...");
+        assertParts("aaaa", ParsedVersion.EMPTY_PART);
+        assertParts(null, ParsedVersion.EMPTY_PART);
+        assertParts("99999999999999999999.1", Long.MAX_VALUE, 1);
+    }
+
+    @Test
+    public void testNormalized() {
+        Assert.assertEquals("Incorrect version normalization", "12.334.78", ParsedVersion.of("a12.334tyz.78x").getNormalized());
+        Assert.assertEquals("Incorrect version normalization", "1.03", ParsedVersion.of("v1.03-a").getNormalized());
+        Assert.assertEquals("Incorrect version normalization", "1.", ParsedVersion.of("1.").getNormalized());
+        Assert.assertEquals("Incorrect version normalization", "", ParsedVersion.of(null).getNormalized());
+    }
+
+    @Test
+    public void testCompare() {
+        Assert.assertEquals("Should be equal", 0, ParsedVersion.of("1.0").compareTo(ParsedVersion.of("1")));
+        Assert.assertEquals("Should be equal", 0, ParsedVersion.of("1.01").compareTo(ParsedVersion.of("1.1")));
+        Assert.assertEquals("Should be less", -1, ParsedVersion.of("1.9").compareTo(ParsedVersion.of("1.10")));
+        Assert.assertEquals("Should be less", -1, ParsedVersion.of("1.1").compareTo(ParsedVersion.of("1.1.1")));
+        Assert.assertEquals("Should be greater", 1, ParsedVersion.of("1.2").compareTo(ParsedVersion.of("1.a.12")));
+        Assert.assertEquals("Should be greater", 1, ParsedVersion.of("9999999999").compareTo(ParsedVersion.of("2147483648")));
+    }
+
+    @Test
+    public void testCache() {
+        Assert.assertSame("Parsed version must be cached", ParsedVersion.of("5.3.1"), ParsedVersion.of("5.3.1"));
+        for (int i = 0; i < ParsedVersion.MAX_CACHED_VERSIONS * 2; i++) {
+            Assert.assertEquals("Incorrect version normalization", "1." + i, ParsedVersion.of("v1." + i).getNormalized());
+        }
+    }
+
+    private static void assertParts(String version, long... expected) {
+        final ParsedVersion parsed = ParsedVersion.of(version);
+        final long[] actual = new long[parsed.getPartCount()];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = parsed.getPart(i);
+        }
+        Assert.assertArrayEquals("Incorrect parts of version: " + version, expected, actual);
+    }
+}
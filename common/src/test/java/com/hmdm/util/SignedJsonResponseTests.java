@@ -0,0 +1,145 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdm.rest.json.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A test suite for {@link SignedJsonResponse} class. The response and signature must be the same as produced by
+ * serializing the response and the data separately and signing the whitespace-stripped JSON of the data.</p>
+ */
+public class SignedJsonResponseTests {
+
+    private static final String SECRET = "changeme-C3z9vi54";
+
+    /**
+     * <p>Constructs new <code>SignedJsonResponseTests</code> instance. This implementation does nothing.</p>
+     */
+    public SignedJsonResponseTests() {
+    }
+
+    @Test
+    public void testPlainValues() throws Exception {
+        assertSameAsTwoPass("text");
+        assertSameAsTwoPass(12345);
+        assertSameAsTwoPass(-1.5);
+        assertSameAsTwoPass(true);
+        assertSameAsTwoPass(Collections.emptyList());
+        assertSameAsTwoPass(Collections.emptyMap());
+    }
+
+    @Test
+    public void testNullData() throws Exception {
+        assertSameAsTwoPass(null);
+    }
+
+    @Test
+    public void testWhitespacesInsideValues() throws Exception {
+        final Map<String, Object> data = new LinkedHashMap<>();
+        data.put("name", "Kiosk  configuration with spaces ");
+        data.put("description", "Line 1\nLine 2\r\n\tindented");
+        data.put("key with spaces", " ");
+        assertSameAsTwoPass(data);
+    }
+
+    @Test
+    public void testNonAsciiValues() throws Exception {
+        final Map<String, Object> data = new LinkedHashMap<>();
+        data.put("name", "Конфигурация по умолчанию");
+        data.put("emoji", "📱 phone");
+        data.put("nbsp", "a b c");
+        data.put("url", "https://example.com/files/ic%20on.png?x=1&y=\"2\"");
+        assertSameAsTwoPass(data);
+    }
+
+    @Test
+    public void testNestedData() throws Exception {
+        final List<Object> applications = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final Map<String, Object> application = new LinkedHashMap<>();
+            application.put("id", i);
+            application.put("pkg", "com.example.app" + i);
+            application.put("name", "Application " + i);
+            application.put("version", "1." + i);
+            application.put("showIcon", i % 2 == 0);
+            application.put("icon", null);
+            application.put("screenOrder", i % 3 == 0 ? null : -i);
+            applications.add(application);
+        }
+        final Map<String, Object> data = new LinkedHashMap<>();
+        data.put("applications", applications);
+        data.put("files", Arrays.asList("a b", "c\td", null));
+        data.put("kioskMode", false);
+        assertSameAsTwoPass(data);
+    }
+
+    @Test
+    public void testLargeResponseIsNotRetained() throws Exception {
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            value.append("data ");
+        }
+        assertSameAsTwoPass(Collections.singletonMap("large", value.toString()));
+
+        // The buffer of the same thread is used by the subsequent response
+        assertSameAsTwoPass(Collections.singletonMap("small", "value"));
+    }
+
+    private static void assertSameAsTwoPass(Object data) throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final String expectedSignature = twoPassSignature(objectMapper.writeValueAsString(data));
+        final String expectedContent = objectMapper.writeValueAsString(Response.OK(data));
+
+        final SignedJsonResponse response = SignedJsonResponse.OK(SECRET, data);
+
+        Assert.assertEquals("Signature differs", expectedSignature, response.getSignature());
+        Assert.assertEquals("Content differs", expectedContent, new String(response.getContent(), StandardCharsets.UTF_8));
+        Assert.assertEquals("Signature differs", expectedSignature, CryptoUtil.getDataSignature(SECRET, data));
+    }
+
+    /**
+     * <p>Calculates the signature the way it was calculated before the response was serialized in a single pass. The
+     * string was converted to bytes with the platform charset, which is UTF-8 on the servers, so UTF-8 is used here to
+     * keep the test independent of the locale of the build machine.</p>
+     */
+    private static String twoPassSignature(String json) throws Exception {
+        final MessageDigest md = MessageDigest.getInstance("SHA-1");
+        final byte[] digest = md.digest((SECRET + json.replaceAll("\\s", "")).getBytes(StandardCharsets.UTF_8));
+        final StringBuilder result = new StringBuilder();
+        for (byte b : digest) {
+            result.append(String.format("%02X", b & 0xFF));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A test suite for {@link WriteBehindBuffer} class.</p>
+ */
+public class WriteBehindBufferTests {
+
+    /**
+     * <p>Constructs new <code>WriteBehindBufferTests</code> instance. This implementation does nothing.</p>
+     */
+    public WriteBehindBufferTests() {
+    }
+
+    @Test
+    public void testRecordsAreWrittenInChunksOnFlush() {
+        final TestTaskRunner taskRunner = new TestTaskRunner();
+        final TestBuffer buffer = new TestBuffer(taskRunner, 10, 2);
+
+        Assert.assertTrue(buffer.queue(Collections.singletonList("a1")));
+        Assert.assertTrue(taskRunner.tasks.isEmpty());
+        for (String record : Arrays.asList("a2", "a3", "a4", "a5")) {
+            Assert.assertTrue(buffer.queue(Collections.singletonList(record)));
+        }
+        Assert.assertEquals("A single flush is submitted until it starts", 1, taskRunner.tasks.size());
+        Assert.assertEquals(5, buffer.getPendingCount());
+
+        taskRunner.tasks.get(0).run();
+
+        Assert.assertEquals(Arrays.asList(
+                Arrays.asList("a1", "a2"), Arrays.asList("a3", "a4"), Collections.singletonList("a5")
+        ), buffer.written);
+        Assert.assertEquals(0, buffer.getPendingCount());
+        Assert.assertEquals(5, buffer.getWrittenCount());
+        Assert.assertEquals(0, buffer.getLag());
+    }
+
+    @Test
+    public void testFullBufferRejectsRecords() {
+        final TestBuffer buffer = new TestBuffer(new TestTaskRunner(), 3, 100);
+
+        Assert.assertTrue(buffer.queue(Arrays.asList("a1", "a2")));
+        Assert.assertFalse(buffer.queue(Arrays.asList("a3", "a4")));
+        Assert.assertTrue(buffer.queue(Collections.singletonList("a5")));
+        Assert.assertFalse(buffer.queue(Collections.singletonList("a6")));
+
+        Assert.assertEquals(3, buffer.getPendingCount());
+        Assert.assertEquals(3, buffer.getRejectedCount());
+
+        buffer.flush();
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("a1", "a2", "a5")), buffer.written);
+    }
+
+    @Test
+    public void testLargeListIsAcceptedByEmptyBuffer() {
+        final TestBuffer buffer = new TestBuffer(new TestTaskRunner(), 3, 100);
+
+        Assert.assertTrue(buffer.queue(Arrays.asList("a1", "a2", "a3", "a4")));
+        Assert.assertFalse(buffer.queue(Collections.singletonList("a5")));
+
+        Assert.assertEquals(4, buffer.getPendingCount());
+        Assert.assertEquals(1, buffer.getRejectedCount());
+    }
+
+    @Test
+    public void testFailedChunkIsWrittenByGroup() {
+        final TestBuffer buffer = new TestBuffer(new TestTaskRunner(), 10, 100);
+        buffer.failing = "b";
+
+        buffer.queue(Arrays.asList("a1", "b1", "c1", "a2"));
+        buffer.flush();
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a1", "a2"), Collections.singletonList("c1")), buffer.written);
+        Assert.assertEquals(3, buffer.getWrittenCount());
+        Assert.assertEquals(1, buffer.getDroppedCount());
+        Assert.assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    public void testSkippedRecordsAreDropped() {
+        final TestBuffer buffer = new TestBuffer(new TestTaskRunner(), 10, 100);
+        buffer.skipped = "b";
+
+        buffer.queue(Arrays.asList("a1", "b1", "b2"));
+        buffer.flush();
+
+        Assert.assertEquals(1, buffer.getWrittenCount());
+        Assert.assertEquals(2, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void testRecordsAreWrittenNowBypassingBuffer() {
+        final TestBuffer buffer = new TestBuffer(new TestTaskRunner(), 10, 2);
+
+        buffer.writeNow(Arrays.asList("a1", "a2", "a3"));
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a1", "a2"), Collections.singletonList("a3")), buffer.written);
+        Assert.assertEquals(0, buffer.getPendingCount());
+        Assert.assertEquals(3, buffer.getWrittenCount());
+    }
+
+    @Test
+    public void testFullBufferIsWrittenByCallerAfterTimeout() {
+        final TestTaskRunner taskRunner = new TestTaskRunner();
+        final TestBuffer buffer = new TestBuffer(taskRunner, 2, 100);
+        buffer.queue(Arrays.asList("a1", "a2"));
+
+        final long start = System.currentTimeMillis();
+        buffer.queueOrWrite(Collections.singletonList("a3"), 100);
+
+        Assert.assertTrue(System.currentTimeMillis() - start >= 100);
+        Assert.assertEquals("The flush must be requested to free the space", 1, taskRunner.tasks.size());
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList("a3")), buffer.written);
+        Assert.assertEquals(1, buffer.getOverflowCount());
+        Assert.assertEquals("Overflowed records are not rejected", 0, buffer.getRejectedCount());
+        Assert.assertEquals(2, buffer.getPendingCount());
+    }
+
+    @Test
+    public void testFullBufferIsQueuedWhenFlushFreesSpace() throws Exception {
+        final TestTaskRunner taskRunner = new TestTaskRunner();
+        final TestBuffer buffer = new TestBuffer(taskRunner, 2, 100);
+        buffer.queue(Arrays.asList("a1", "a2"));
+
+        final CompletableFuture<Void> queued = CompletableFuture.runAsync(
+                () -> buffer.queueOrWrite(Collections.singletonList("a3"), 10000));
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (taskRunner.tasks.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        taskRunner.tasks.get(0).run();
+        queued.get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(0, buffer.getOverflowCount());
+        Assert.assertEquals(0, buffer.getRejectedCount());
+        // The queued record is written either by the running flush or by the next one
+        buffer.flush();
+        Assert.assertEquals(3, buffer.getWrittenCount());
+        Assert.assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    public void testShutdownWaitsForRunningFlush() throws Exception {
+        final TestBuffer buffer = new TestBuffer(new TestTaskRunner(), 10, 1);
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        buffer.blocking = () -> {
+            writing.countDown();
+            Assert.assertTrue(released.await(10, TimeUnit.SECONDS));
+        };
+
+        buffer.queue(Collections.singletonList("a1"));
+        final CompletableFuture<Void> flush = CompletableFuture.runAsync(buffer::flush);
+        Assert.assertTrue(writing.await(10, TimeUnit.SECONDS));
+        buffer.blocking = null;
+        buffer.queue(Collections.singletonList("a2"));
+
+        // The plain flush gives up as the other flush is running
+        buffer.flush();
+        Assert.assertEquals(2, buffer.getPendingCount());
+
+        final CompletableFuture<Void> shutdown = CompletableFuture.runAsync(buffer::shutdown);
+        Thread.sleep(200);
+        Assert.assertFalse("Shutdown must wait for the running flush", shutdown.isDone());
+
+        released.countDown();
+        shutdown.get(10, TimeUnit.SECONDS);
+        flush.get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(0, buffer.getPendingCount());
+        Assert.assertEquals(2, buffer.getWrittenCount());
+    }
+
+    /**
+     * <p>A buffer of strings grouped by the first character.</p>
+     */
+    private static class TestBuffer extends WriteBehindBuffer<String> {
+
+        private final List<List<String>> written = new CopyOnWriteArrayList<>();
+
+        /**
+         * <p>A prefix of the records failing the writing of the whole list.</p>
+         */
+        private volatile String failing;
+
+        /**
+         * <p>A prefix of the records not written.</p>
+         */
+        private volatile String skipped;
+
+        private volatile Blocking blocking;
+
+        private TestBuffer(BackgroundTaskRunnerService taskRunner, int capacity, int flushSize) {
+            super("test", taskRunner, TaskCategory.GENERAL, capacity, flushSize);
+        }
+
+        @Override
+        protected int write(List<String> records) throws Exception {
+            final Blocking blocking = this.blocking;
+            if (blocking != null) {
+                blocking.await();
+            }
+            if (this.failing != null && records.stream().anyMatch(r -> r.startsWith(this.failing))) {
+                throw new IllegalStateException("Failed to write " + records);
+            }
+            final List<String> accepted = new ArrayList<>();
+            for (String record : records) {
+                if (this.skipped == null || !record.startsWith(this.skipped)) {
+                    accepted.add(record);
+                }
+            }
+            this.written.add(accepted);
+            return accepted.size();
+        }
+
+        @Override
+        protected String getGroupKey(String record) {
+            return record.substring(0, 1);
+        }
+    }
+
+    private interface Blocking {
+        void await() throws Exception;
+    }
+
+    /**
+     * <p>A task runner collecting the submitted tasks instead of running them.</p>
+     */
+    private static class TestTaskRunner extends BackgroundTaskRunnerService {
+
+        private final List<Runnable> tasks = new CopyOnWriteArrayList<>();
+
+        private TestTaskRunner() {
+            super(Collections.emptyMap());
+        }
+
+        @Override
+        public void submitTask(TaskCategory category, Runnable task) {
+            this.tasks.add(task);
+        }
+    }
+}
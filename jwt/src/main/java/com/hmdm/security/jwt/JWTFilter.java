@@ -26,6 +26,7 @@ import com.google.inject.Singleton;
 import com.hmdm.persistence.UnsecureDAO;
 import com.hmdm.persistence.domain.User;
 import com.hmdm.security.SecurityContext;
+import com.hmdm.service.UserPrincipalCache;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -59,16 +60,24 @@ public class JWTFilter implements Filter {
 
     private final UnsecureDAO userDAO;
 
+    /**
+     * <p>A cache for the users authenticated by the tokens.</p>
+     */
+    private final UserPrincipalCache userPrincipalCache;
+
     /**
      * <p>Constructs new <code>JWTFilter</code> instance using the specified authentication token provider.</p>
      *
      * @param tokenProvider an authentication token provider used for validating and parsing the authentication tokens
      *                      provided by incoming request.
+     * @param userDAO a DAO used for loading the users authenticated by the tokens.
+     * @param userPrincipalCache a cache for the users authenticated by the tokens.
      */
     @Inject
-    public JWTFilter(TokenProvider tokenProvider, UnsecureDAO userDAO) {
+    public JWTFilter(TokenProvider tokenProvider, UnsecureDAO userDAO, UserPrincipalCache userPrincipalCache) {
         this.tokenProvider = tokenProvider;
         this.userDAO = userDAO;
+        this.userPrincipalCache = userPrincipalCache;
     }
 
     /**
@@ -100,9 +109,9 @@ public class JWTFilter implements Filter {
         throws IOException, ServletException {
         HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
         String jwt = resolveToken(httpServletRequest);
-        if (jwt != null && !jwt.trim().isEmpty() && this.tokenProvider.validateToken(jwt)) {
-            User authUser = this.tokenProvider.getAuthentication(jwt);
-            User dbUser = userDAO.findByLoginOrEmail(authUser.getLogin());
+        User authUser = jwt != null && !jwt.trim().isEmpty() ? this.tokenProvider.parseToken(jwt) : null;
+        if (authUser != null) {
+            User dbUser = userPrincipalCache.getByLogin(authUser.getLogin(), userDAO::findByLoginOrEmail);
             if (dbUser == null || dbUser.getAuthToken() == null ||
                     !dbUser.getAuthToken().equals(authUser.getAuthToken())) {
                 ((HttpServletResponse)servletResponse).sendError(403);
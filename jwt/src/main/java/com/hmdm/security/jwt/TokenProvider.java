@@ -123,36 +123,26 @@ public class TokenProvider {
     }
 
     /**
-     * <p>Parses the specified JWT token into authenticated principal.</p>
+     * <p>Validates the specified authentication token provided by the client and parses it into authenticated
+     * principal. The token is parsed and its signature is verified only once.</p>
      *
-     * @param jwtToken a JWT token to be parsed.
-     * @return an authenticated principal presentation constructed from the data provided by specified token.
+     * @param jwtToken a JWT authentication token to be validated and parsed.
+     * @return an authenticated principal presentation constructed from the data provided by specified token or
+     *         <code>null</code> if specified token is not valid.
      */
-    User getAuthentication(String jwtToken) throws IOException {
-        Claims claims = Jwts.parser()
-            .setSigningKey(secretKey)
-            .parseClaimsJws(jwtToken)
-            .getBody();
-
-        String login = claims.getSubject();
-        String authToken = claims.get(TOKEN_KEY).toString();
-        User user = new User();
-        user.setLogin(login);
-        user.setAuthToken(authToken);
-
-        return user;
-    }
-
-    /**
-     * <p>Validates the specified authentication token provided by the client.</p>
-     *
-     * @param jwtToken a JWT authentication token to be validated.
-     * @return <code>true</code> if specified token is valid; <code>false</code> otherwise.
-     */
-    boolean validateToken(String jwtToken) {
+    User parseToken(String jwtToken) {
         try {
-            Jwts.parser().setSigningKey(secretKey).parseClaimsJws(jwtToken);
-            return true;
+            Claims claims = Jwts.parser()
+                .setSigningKey(secretKey)
+                .parseClaimsJws(jwtToken)
+                .getBody();
+
+            Object authToken = claims.get(TOKEN_KEY);
+            User user = new User();
+            user.setLogin(claims.getSubject());
+            user.setAuthToken(authToken != null ? authToken.toString() : null);
+
+            return user;
         } catch (SignatureException e) {
             log.info("Invalid JWT signature.");
             log.trace("Invalid JWT signature trace:", e);
@@ -169,6 +159,6 @@ public class TokenProvider {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace:", e);
         }
-        return false;
+        return null;
     }
 }
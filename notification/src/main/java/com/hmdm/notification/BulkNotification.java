@@ -0,0 +1,116 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.notification;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A progress of sending the same message to a large number of devices in background.</p>
+ */
+public class BulkNotification {
+
+    /**
+     * <p>A description of the notification used for logging.</p>
+     */
+    private final String description;
+
+    /**
+     * <p>A number of devices to notify.</p>
+     */
+    private final int total;
+
+    /**
+     * <p>A number of devices notified so far.</p>
+     */
+    private final AtomicInteger sent = new AtomicInteger();
+
+    /**
+     * <p>A number of devices failed to be notified so far.</p>
+     */
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * <p>A number of devices processed so far, either notified or failed.</p>
+     */
+    private final AtomicInteger processed = new AtomicInteger();
+
+    /**
+     * <p>A time when the notification has been started.</p>
+     */
+    private final long startTime = System.currentTimeMillis();
+
+    public BulkNotification(String description, int total) {
+        this.description = description;
+        this.total = total;
+    }
+
+    /**
+     * <p>Records the specified number of devices as notified.</p>
+     *
+     * @param count a number of notified devices.
+     * @return a total number of devices processed so far.
+     */
+    int addSent(int count) {
+        sent.addAndGet(count);
+        return processed.addAndGet(count);
+    }
+
+    /**
+     * <p>Records the specified number of devices as failed to be notified.</p>
+     *
+     * @param count a number of devices failed to be notified.
+     * @return a total number of devices processed so far.
+     */
+    int addFailed(int count) {
+        failed.addAndGet(count);
+        return processed.addAndGet(count);
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getSent() {
+        return sent.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public boolean isCompleted() {
+        return processed.get() >= total;
+    }
+
+    @Override
+    public String toString() {
+        return description + ": " + sent.get() + " of " + total + " devices notified, " + failed.get() + " failed";
+    }
+}
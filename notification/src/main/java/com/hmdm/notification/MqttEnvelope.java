@@ -5,6 +5,7 @@ import org.eclipse.paho.client.mqttv3.MqttMessage;
 public class MqttEnvelope {
     private String address;
     private MqttMessage message;
+    private String messageType;
 
     public MqttEnvelope() {}
 
@@ -13,6 +14,12 @@ public class MqttEnvelope {
         this.message = message;
     }
 
+    public MqttEnvelope(String address, MqttMessage message, String messageType) {
+        this.address = address;
+        this.message = message;
+        this.messageType = messageType;
+    }
+
     public MqttMessage getMessage() {
         return message;
     }
@@ -28,4 +35,12 @@ public class MqttEnvelope {
     public void setAddress(String address) {
         this.address = address;
     }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public void setMessageType(String messageType) {
+        this.messageType = messageType;
+    }
 }
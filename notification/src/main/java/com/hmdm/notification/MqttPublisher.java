@@ -0,0 +1,214 @@
+package com.hmdm.notification;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.hmdm.notification.persistence.domain.PushMessage;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A publisher of MQTT messages. The messages are queued and published by several workers, each using its own
+ * connection to MQTT server, at the rate limited by the token bucket.</p>
+ *
+ * <p>The queue is bounded: when it is full the message is dropped at once, so the senders (request threads and the
+ * push workers sending the batches) never wait for the publishing workers. The configuration update message is not queued if the same message to the same device is already waiting in the
+ * queue.</p>
+ */
+@Singleton
+public class MqttPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(MqttPublisher.class);
+
+    private final BlockingQueue<MqttEnvelope> queue;
+    private final TokenBucket tokenBucket;
+    private final int publisherCount;
+
+    /**
+     * <p>The queued configuration update messages mapped to their addresses.</p>
+     */
+    private final ConcurrentMap<String, MqttEnvelope> queuedConfigUpdates = new ConcurrentHashMap<>();
+
+    /**
+     * <p>The clients used by workers. The list is replaced once on start and read by the sending threads.</p>
+     */
+    private volatile List<MqttClient> clients = Collections.emptyList();
+    private ExecutorService executor;
+
+    /**
+     * <p>Metrics.</p>
+     */
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong publishTimeTotal = new AtomicLong();
+    private final AtomicLong publishTimeMax = new AtomicLong();
+
+    /**
+     * <p>A flag indicating that the messages are being dropped as the queue is full; used to log the overflow once
+     * rather than for every message.</p>
+     */
+    private final AtomicBoolean overflow = new AtomicBoolean();
+
+    /**
+     * <p>Constructs new <code>MqttPublisher</code> instance.</p>
+     *
+     * @param rate a maximum number of messages published per second; zero means no limit.
+     * @param burst a maximum number of messages published at once after idle period.
+     * @param publisherCount a number of publishing workers (and connections to MQTT server).
+     * @param queueSize a maximum number of messages waiting for publishing.
+     */
+    @Inject
+    public MqttPublisher(@Named("mqtt.publish.rate") double rate,
+                         @Named("mqtt.publish.burst") int burst,
+                         @Named("mqtt.publishers") int publisherCount,
+                         @Named("mqtt.queue.size") int queueSize) {
+        this.tokenBucket = new TokenBucket(rate, burst);
+        this.publisherCount = Math.max(1, publisherCount);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueSize));
+    }
+
+    /**
+     * <p>Gets the number of publishing workers.</p>
+     */
+    public int getPublisherCount() {
+        return publisherCount;
+    }
+
+    /**
+     * <p>Starts the workers publishing the messages with specified clients; one worker per client.</p>
+     *
+     * @param clients the connected MQTT clients.
+     */
+    public synchronized void start(List<MqttClient> clients) {
+        if (executor != null) {
+            return;
+        }
+        this.clients = Collections.unmodifiableList(new ArrayList<>(clients));
+        this.executor = Executors.newFixedThreadPool(clients.size());
+        for (MqttClient client : clients) {
+            executor.submit(() -> publish(client));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(executor::shutdownNow));
+        log.info("MQTT publishing started: {} workers", clients.size());
+    }
+
+    /**
+     * <p>Checks if at least one of the clients is connected to MQTT server.</p>
+     */
+    public boolean isConnected() {
+        for (MqttClient client : clients) {
+            if (client.isConnected()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>Queues the message for publishing. Does not block: if the queue is full then the message is dropped.</p>
+     *
+     * @param msg a message to publish.
+     */
+    public void send(MqttEnvelope msg) {
+        final boolean configUpdate = PushMessage.TYPE_CONFIG_UPDATED.equals(msg.getMessageType());
+        if (configUpdate && queuedConfigUpdates.putIfAbsent(msg.getAddress(), msg) != null) {
+            // The device will get the latest configuration anyway
+            coalescedCount.incrementAndGet();
+            return;
+        }
+        if (queue.offer(msg)) {
+            if (overflow.compareAndSet(true, false)) {
+                log.info("MQTT queue accepts messages again, {} messages dropped so far", droppedCount.get());
+            }
+            return;
+        }
+        droppedCount.incrementAndGet();
+        if (configUpdate) {
+            queuedConfigUpdates.remove(msg.getAddress(), msg);
+        }
+        if (overflow.compareAndSet(false, true)) {
+            log.warn("MQTT queue is full, messages are dropped until it is drained; first dropped message to {}",
+                    msg.getAddress());
+        } else {
+            log.debug("MQTT queue is full, message to {} dropped", msg.getAddress());
+        }
+    }
+
+    private void publish(MqttClient client) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                final MqttEnvelope msg = queue.take();
+                queuedConfigUpdates.remove(msg.getAddress(), msg);
+                tokenBucket.acquire();
+
+                final long start = System.nanoTime();
+                try {
+                    client.publish(msg.getAddress(), msg.getMessage());
+                    publishedCount.incrementAndGet();
+                    log.debug("Sending MQTT message to " + msg.getAddress());
+                } catch (Exception e) {
+                    failedCount.incrementAndGet();
+                    log.warn("Failed to send MQTT message to {}: {}", msg.getAddress(), e.getMessage());
+                }
+                final long time = System.nanoTime() - start;
+                publishTimeTotal.addAndGet(time);
+                publishTimeMax.accumulateAndGet(time, Math::max);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * <p>Gets the number of messages waiting for publishing.</p>
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * <p>Gets the average time of publishing a single message (in milliseconds).</p>
+     */
+    public double getAveragePublishTime() {
+        final long count = publishedCount.get() + failedCount.get();
+        return count == 0 ? 0 : publishTimeTotal.get() / 1000000.0 / count;
+    }
+
+    /**
+     * <p>Gets the maximum time of publishing a single message (in milliseconds).</p>
+     */
+    public double getMaxPublishTime() {
+        return publishTimeMax.get() / 1000000.0;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.notification;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hmdm.notification.persistence.NotificationDAO;
+import com.hmdm.notification.persistence.domain.PushMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A write-behind buffer between the long-polling transport and the database.</p>
+ *
+ * <p>The messages for offline devices are kept in memory and written to the database in batches by
+ * {@link #flush()}; a device which connects before that gets them directly from memory. The delivery of stored
+ * messages is also acknowledged in batches. The devices known to have no stored messages are not queried at all when
+ * they re-connect, so the load on database depends on the number of offline messages rather than on the re-connect
+ * rate.</p>
+ *
+ * <p>The buffer trades durability for the database load:</p>
+ * <ul>
+ *     <li>The messages are kept in memory until the next flush (once a second), so the messages stored since the last
+ *     flush are lost if the node crashes. A graceful shutdown flushes the buffer. The lost messages only notify devices
+ *     of changes; a device picks up the changes anyway on its next periodic configuration sync.</li>
+ *     <li>The buffer and the knowledge of devices without messages are local to the node. In a multi-node setup a
+ *     message stored by one node becomes visible to a device connected to another node after it is flushed, and no
+ *     later than {@link #NO_MESSAGES_TTL} after that node last found no messages for the device.</li>
+ * </ul>
+ */
+@Singleton
+public class PendingPushBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(PendingPushBuffer.class);
+
+    /**
+     * <p>A maximum number of messages kept in memory. If exceeded the messages are written to the database
+     * immediately. The limit is never exceeded, as the room for the messages is reserved before they are added.</p>
+     */
+    static final int MAX_BUFFERED_MESSAGES = 50000;
+
+    /**
+     * <p>A period after which the device known to have no stored messages is queried again. This covers the messages
+     * stored by other nodes or within the transactions not committed at the moment of the previous query.</p>
+     */
+    private static final long NO_MESSAGES_TTL = TimeUnit.MINUTES.toMillis(1);
+
+    private final NotificationDAO notificationDAO;
+
+    /**
+     * <p>The messages not written to the database yet mapped to device IDs.</p>
+     */
+    private final ConcurrentMap<Integer, List<PushMessage>> bufferedMessages = new ConcurrentHashMap<>();
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+
+    /**
+     * <p>The IDs of messages delivered to devices but not marked as delivered in the database yet.</p>
+     */
+    private final Set<Integer> deliveredMessageIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * <p>The devices having no stored messages mapped to the time when this was checked.</p>
+     */
+    private final ConcurrentMap<Integer, Long> devicesWithoutMessages = new ConcurrentHashMap<>();
+
+    @Inject
+    public PendingPushBuffer(NotificationDAO notificationDAO) {
+        this.notificationDAO = notificationDAO;
+    }
+
+    /**
+     * <p>Stores the message to be retrieved by device later.</p>
+     *
+     * @param message a message to store.
+     */
+    public void store(PushMessage message) {
+        if (!reserve(1)) {
+            notificationDAO.send(message);
+            devicesWithoutMessages.remove(message.getDeviceId());
+            return;
+        }
+        add(message);
+    }
+
+    /**
+     * <p>Stores the messages to be retrieved by devices later. If the messages do not fit into the buffer then they are
+     * written to the database immediately.</p>
+     *
+     * @param messages a list of messages to store.
+     */
+    public void storeAll(List<PushMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (!reserve(messages.size())) {
+            notificationDAO.sendAll(messages);
+            messages.forEach(message -> devicesWithoutMessages.remove(message.getDeviceId()));
+            return;
+        }
+        messages.forEach(this::add);
+    }
+
+    /**
+     * <p>Reserves the room for the specified number of messages in the buffer.</p>
+     *
+     * @param count a number of messages.
+     * @return <code>true</code> if the messages fit into the buffer; <code>false</code> otherwise.
+     */
+    private boolean reserve(int count) {
+        while (true) {
+            final int current = bufferedCount.get();
+            if (current + count > MAX_BUFFERED_MESSAGES) {
+                return false;
+            }
+            if (bufferedCount.compareAndSet(current, current + count)) {
+                return true;
+            }
+        }
+    }
+
+    private void add(PushMessage message) {
+        bufferedMessages.compute(message.getDeviceId(), (deviceId, messages) -> {
+            if (messages == null) {
+                messages = new ArrayList<>();
+            }
+            messages.add(message);
+            return messages;
+        });
+    }
+
+    /**
+     * <p>Takes the messages to be delivered to specified device: the buffered ones and those stored in the database.
+     * The stored messages are considered as delivered and acknowledged on next flush.</p>
+     *
+     * @param deviceId an ID of the device.
+     * @return a list of messages to deliver.
+     */
+    public List<PushMessage> take(int deviceId) {
+        final List<PushMessage> result = new ArrayList<>();
+
+        final Long checked = devicesWithoutMessages.get(deviceId);
+        if (checked == null || checked < System.currentTimeMillis() - NO_MESSAGES_TTL) {
+            // Set the mark before querying, so a message stored concurrently resets it
+            devicesWithoutMessages.put(deviceId, System.currentTimeMillis());
+            for (PushMessage message : notificationDAO.getPendingMessages(deviceId)) {
+                if (deliveredMessageIds.add(message.getId())) {
+                    result.add(message);
+                }
+            }
+        }
+
+        final List<PushMessage> buffered = bufferedMessages.remove(deviceId);
+        if (buffered != null) {
+            bufferedCount.addAndGet(-buffered.size());
+            result.addAll(buffered);
+        }
+
+        return result;
+    }
+
+    /**
+     * <p>Writes the buffered messages to the database and marks the delivered messages.</p>
+     *
+     * @return a set of IDs of devices which got new stored messages.
+     */
+    public Set<Integer> flush() {
+        final List<PushMessage> messages = new ArrayList<>();
+        for (Integer deviceId : new ArrayList<>(bufferedMessages.keySet())) {
+            final List<PushMessage> buffered = bufferedMessages.remove(deviceId);
+            if (buffered != null) {
+                messages.addAll(buffered);
+            }
+        }
+
+        Set<Integer> deviceIds = Collections.emptySet();
+        if (!messages.isEmpty()) {
+            try {
+                notificationDAO.sendAll(messages);
+                bufferedCount.addAndGet(-messages.size());
+                deviceIds = new HashSet<>();
+                for (PushMessage message : messages) {
+                    deviceIds.add(message.getDeviceId());
+                }
+                deviceIds.forEach(devicesWithoutMessages::remove);
+            } catch (Exception e) {
+                log.error("Failed to store {} push messages, will retry", messages.size(), e);
+                messages.forEach(this::add);
+            }
+        }
+
+        if (!deliveredMessageIds.isEmpty()) {
+            final List<Integer> messageIds = new ArrayList<>(deliveredMessageIds);
+            try {
+                notificationDAO.markMessagesAsDelivered(messageIds);
+                deliveredMessageIds.removeAll(messageIds);
+            } catch (Exception e) {
+                log.error("Failed to mark {} push messages as delivered, will retry", messageIds.size(), e);
+            }
+        }
+
+        return deviceIds;
+    }
+
+    /**
+     * <p>Gets the number of messages kept in memory.</p>
+     */
+    public int getBufferedCount() {
+        return bufferedCount.get();
+    }
+}
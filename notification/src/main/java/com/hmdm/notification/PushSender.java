@@ -1,8 +1,32 @@
 package com.hmdm.notification;
 
 import com.hmdm.notification.persistence.domain.PushMessage;
+import com.hmdm.persistence.domain.Device;
+
+import java.util.List;
+import java.util.Map;
 
 public interface PushSender {
     public void init();
     public int send(PushMessage message);
+
+    /**
+     * <p>Sends the specified messages.</p>
+     *
+     * @param messages a list of messages to send.
+     */
+    public default void sendAll(List<PushMessage> messages) {
+        messages.forEach(this::send);
+    }
+
+    /**
+     * <p>Sends the specified messages. The senders which need the device details may take them from the specified map
+     * instead of looking them up one by one; the others send the messages as {@link #sendAll(List)} does.</p>
+     *
+     * @param messages a list of messages to send.
+     * @param devices the recipient devices (with IDs and numbers at least) mapped to device IDs.
+     */
+    public default void sendAll(List<PushMessage> messages, Map<Integer, Device> devices) {
+        sendAll(messages);
+    }
 }
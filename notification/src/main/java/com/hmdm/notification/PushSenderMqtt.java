@@ -7,7 +7,7 @@ import com.hmdm.notification.guice.module.NotificationMqttTaskModule;
 import com.hmdm.notification.persistence.domain.PushMessage;
 import com.hmdm.persistence.UnsecureDAO;
 import com.hmdm.persistence.domain.Device;
-import com.hmdm.util.BackgroundTaskRunnerService;
+import com.hmdm.persistence.domain.DeviceIdentity;
 import com.hmdm.util.CryptoUtil;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.eclipse.paho.client.mqttv3.MqttClient;
@@ -18,7 +18,9 @@ import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.fusesource.mqtt.client.MQTTException;
 
 import javax.jms.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Singleton
@@ -28,48 +30,42 @@ public class PushSenderMqtt implements PushSender {
     private boolean mqttAuth;
     private String mqttAdminPassword;
     private UnsecureDAO unsecureDAO;
-    private MqttClient client;
-    private MqttThrottledSender throttledSender;
-    private BackgroundTaskRunnerService taskRunner;
-    private MemoryPersistence persistence = new MemoryPersistence();
-    private long mqttDelay;
+    private MqttPublisher publisher;
 
     @Inject
     public PushSenderMqtt(@Named("mqtt.server.uri") String serverUri,
                           @Named("mqtt.client.tag") String clientTag,
                           @Named("mqtt.auth") boolean mqttAuth,
                           @Named("mqtt.admin.password") String mqttAdminPassword,
-                          @Named("mqtt.message.delay") long mqttDelay,
-                          MqttThrottledSender throttledSender,
-                          BackgroundTaskRunnerService taskRunner,
+                          MqttPublisher publisher,
                           UnsecureDAO unsecureDAO) {
         this.serverUri = serverUri;
         this.clientTag = clientTag;
         this.mqttAuth = mqttAuth;
         this.mqttAdminPassword = mqttAdminPassword;
-        this.mqttDelay = mqttDelay;
-        this.throttledSender = throttledSender;
-        this.taskRunner = taskRunner;
+        this.publisher = publisher;
         this.unsecureDAO = unsecureDAO;
     }
 
     @Override
     public void init() {
         try {
-            client = new MqttClient("tcp://" + serverUri, "HMDMServer" + clientTag, persistence);
-            MqttConnectOptions options = new MqttConnectOptions();
-            options.setCleanSession(true);
-            options.setAutomaticReconnect(true);
-            if (mqttAuth) {
-                options.setUserName(NotificationMqttTaskModule.MQTT_ADMIN_USERNAME);
-                options.setPassword(mqttAdminPassword.toCharArray());
-            }
-            client.connect(options);
-
-            if (mqttDelay > 0) {
-                throttledSender.setClient(client);
-                taskRunner.submitTask(throttledSender);
+            // Each publisher uses its own connection; the first one keeps the original client ID
+            List<MqttClient> clients = new ArrayList<>();
+            for (int i = 0; i < publisher.getPublisherCount(); i++) {
+                String clientId = "HMDMServer" + clientTag + (i == 0 ? "" : "-" + i);
+                MqttClient client = new MqttClient("tcp://" + serverUri, clientId, new MemoryPersistence());
+                MqttConnectOptions options = new MqttConnectOptions();
+                options.setCleanSession(true);
+                options.setAutomaticReconnect(true);
+                if (mqttAuth) {
+                    options.setUserName(NotificationMqttTaskModule.MQTT_ADMIN_USERNAME);
+                    options.setPassword(mqttAdminPassword.toCharArray());
+                }
+                client.connect(options);
+                clients.add(client);
             }
+            publisher.start(clients);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -77,17 +73,41 @@ public class PushSenderMqtt implements PushSender {
 
     @Override
     public int send(PushMessage message) {
-        if (client == null || !client.isConnected()) {
+        if (!publisher.isConnected()) {
             // Not initialized
             return 0;
         }
         // Since this method is used by scheduled task service which is impersonated,
         // we use UnsecureDAO here (which doesn't check the signed user).
-        Device device = unsecureDAO.getDeviceById(message.getDeviceId());
+        DeviceIdentity device = unsecureDAO.getDeviceIdentityById(message.getDeviceId());
         if (device == null) {
             // We shouldn't be here!
             return 0;
         }
+        publish(message, device.getOldNumber() == null ? device.getNumber() : device.getOldNumber());
+        return 0;
+    }
+
+    @Override
+    public void sendAll(List<PushMessage> messages, Map<Integer, Device> devices) {
+        if (!publisher.isConnected()) {
+            // Not initialized
+            return;
+        }
+        for (PushMessage message : messages) {
+            final Device device = devices.get(message.getDeviceId());
+            if (device != null) {
+                publish(message, device.getOldNumber() == null ? device.getNumber() : device.getOldNumber());
+                continue;
+            }
+            final DeviceIdentity identity = unsecureDAO.getDeviceIdentityById(message.getDeviceId());
+            if (identity != null) {
+                publish(message, identity.getOldNumber() == null ? identity.getNumber() : identity.getOldNumber());
+            }
+        }
+    }
+
+    private void publish(PushMessage message, String number) {
         try {
             String strMessage = "{messageType: \"" + message.getMessageType() + "\"";
             if (message.getPayload() != null) {
@@ -97,16 +117,10 @@ public class PushSenderMqtt implements PushSender {
 
             MqttMessage mqttMessage = new MqttMessage(strMessage.getBytes());
             mqttMessage.setQos(2);
-            String number = device.getOldNumber() == null ? device.getNumber() : device.getOldNumber();
-            if (mqttDelay == 0) {
-                client.publish(number, mqttMessage);
-            } else {
-                throttledSender.send(new MqttEnvelope(number, mqttMessage));
-            }
+            publisher.send(new MqttEnvelope(number, mqttMessage, message.getMessageType()));
 
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return 0;
     }
 }
@@ -2,22 +2,52 @@ package com.hmdm.notification;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
-import com.google.inject.name.Named;
-import com.hmdm.notification.persistence.NotificationDAO;
 import com.hmdm.notification.persistence.domain.PushMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.servlet.AsyncContext;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Singleton
 public class PushSenderPolling implements PushSender {
-    private final NotificationDAO notificationDAO;
-    private final Map<Integer, DeviceEntry> deviceIdMap = new HashMap<>();
-    private final Map<AsyncContext, DeviceEntry> deviceContextMap = new HashMap<>();
+
+    private static final Logger log = LoggerFactory.getLogger(PushSenderPolling.class);
+
+    /**
+     * <p>A maximum number of messages queued for a single connected device. The messages exceeding this limit are
+     * stored in the database and delivered on the next poll.</p>
+     */
+    static final int MAX_QUEUED_MESSAGES = 100;
+
+    /**
+     * <p>A buffer for the messages to be delivered to devices on next poll.</p>
+     */
+    private final PendingPushBuffer pendingPushBuffer;
+
+    /**
+     * <p>The connected devices mapped to device IDs and to their asynchronous contexts. The maps are updated from
+     * request threads, async listener callbacks and the push senders concurrently.</p>
+     */
+    private final ConcurrentMap<Integer, DeviceEntry> deviceIdMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AsyncContext, DeviceEntry> deviceContextMap = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Metrics.</p>
+     */
+    private final AtomicInteger pendingMessageCount = new AtomicInteger();
+    private final AtomicLong completionCount = new AtomicLong();
+    private long lastRateTime = System.currentTimeMillis();
+    private long lastRateCount;
 
     @Inject
-    public PushSenderPolling(NotificationDAO notificationDAO) {
-        this.notificationDAO = notificationDAO;
+    public PushSenderPolling(PendingPushBuffer pendingPushBuffer) {
+        this.pendingPushBuffer = pendingPushBuffer;
     }
 
     @Override
@@ -29,65 +59,202 @@ public class PushSenderPolling implements PushSender {
     public int send(PushMessage message) {
         DeviceEntry deviceEntry = deviceIdMap.get(message.getDeviceId());
         if (deviceEntry == null) {
-            // Device is offline,
-            return notificationDAO.send(message);
+            // Device is offline, the message is delivered on next poll
+            pendingPushBuffer.store(message);
+            return 0;
         }
-        List<PushMessage> pendingMessages = notificationDAO.getPendingMessagesForDelivery(message.getDeviceId());
-        synchronized (deviceEntry.messages) {
-            for (PushMessage pending : pendingMessages) {
-                deviceEntry.messages.add(pending);
+        List<PushMessage> messages = pendingPushBuffer.take(message.getDeviceId());
+        messages.add(message);
+        enqueue(deviceEntry, messages);
+        return 0;
+    }
+
+    @Override
+    public void sendAll(List<PushMessage> messages) {
+        final List<PushMessage> offlineMessages = new ArrayList<>();
+        for (PushMessage message : messages) {
+            if (deviceIdMap.containsKey(message.getDeviceId())) {
+                send(message);
+            } else {
+                offlineMessages.add(message);
             }
-            deviceEntry.messages.add(message);
         }
-        deviceEntry.context.complete();
-        return 0;
+        pendingPushBuffer.storeAll(offlineMessages);
     }
 
     public void sendPending(int deviceId, List<PushMessage> messages) {
         DeviceEntry deviceEntry = deviceIdMap.get(deviceId);
         if (deviceEntry == null) {
-            // We shouldn't be here as this method is called from LongPollingServlet when a device is online
+            // The device has disconnected meanwhile
+            messages.forEach(pendingPushBuffer::store);
             return;
         }
-        synchronized (deviceEntry.messages) {
-            for (PushMessage pending : messages) {
-                deviceEntry.messages.add(pending);
+        enqueue(deviceEntry, messages);
+    }
+
+    /**
+     * <p>Puts the messages to the queue of the connected device and completes the pending request. The messages which
+     * can not be queued (the queue is full or the request is already completed) are stored in the database.</p>
+     */
+    private void enqueue(DeviceEntry deviceEntry, List<PushMessage> messages) {
+        final List<PushMessage> rejected = new ArrayList<>();
+        synchronized (deviceEntry) {
+            for (PushMessage message : messages) {
+                if (!deviceEntry.closed && deviceEntry.messages.size() < MAX_QUEUED_MESSAGES) {
+                    deviceEntry.messages.add(message);
+                    pendingMessageCount.incrementAndGet();
+                } else {
+                    rejected.add(message);
+                }
             }
         }
-        deviceEntry.context.complete();
+        if (!rejected.isEmpty()) {
+            log.debug("Storing {} push messages for device #{} for the next poll", rejected.size(), deviceEntry.deviceId);
+            rejected.forEach(pendingPushBuffer::store);
+        }
+        complete(deviceEntry);
+    }
 
+    /**
+     * <p>Completes the pending request of the device. The request is completed only once even if messages are sent
+     * by several threads simultaneously.</p>
+     */
+    private void complete(DeviceEntry deviceEntry) {
+        if (deviceEntry.completing.compareAndSet(false, true)) {
+            try {
+                deviceEntry.context.complete();
+                completionCount.incrementAndGet();
+            } catch (IllegalStateException e) {
+                // The request has been already completed by timeout
+                log.debug("Request of device #{} is already completed", deviceEntry.deviceId);
+            }
+        }
     }
 
+    /**
+     * <p>Gets the messages queued for the device and closes its queue so the messages sent later are stored in the
+     * database until the next poll.</p>
+     */
     public List<PushMessage> getPendingMessages(AsyncContext asyncContext) {
         DeviceEntry deviceEntry = deviceContextMap.get(asyncContext);
-        List<PushMessage> result = new LinkedList<>();
+        List<PushMessage> result = new ArrayList<>();
         if (deviceEntry != null) {
-            synchronized (deviceEntry.messages) {
+            synchronized (deviceEntry) {
                 result.addAll(deviceEntry.messages);
                 deviceEntry.messages.clear();
+                deviceEntry.closed = true;
             }
+            pendingMessageCount.addAndGet(-result.size());
         }
         return result;
     }
 
     public void register(Integer deviceId, AsyncContext asyncContext) {
         DeviceEntry deviceEntry = new DeviceEntry(deviceId, asyncContext);
-        deviceIdMap.put(deviceId, deviceEntry);
         deviceContextMap.put(asyncContext, deviceEntry);
+        deviceIdMap.put(deviceId, deviceEntry);
     }
 
     public void unregister(AsyncContext asyncContext) {
-        DeviceEntry deviceEntry = deviceContextMap.get(asyncContext);
+        DeviceEntry deviceEntry = deviceContextMap.remove(asyncContext);
         if (deviceEntry != null) {
-            deviceIdMap.remove(deviceEntry.deviceId);
-            deviceContextMap.remove(asyncContext);
+            // The device may have already re-connected with another request, so only its own entry is removed
+            deviceIdMap.remove(deviceEntry.deviceId, deviceEntry);
+
+            final List<PushMessage> undelivered;
+            synchronized (deviceEntry) {
+                undelivered = new ArrayList<>(deviceEntry.messages);
+                deviceEntry.messages.clear();
+                deviceEntry.closed = true;
+            }
+            if (!undelivered.isEmpty()) {
+                pendingMessageCount.addAndGet(-undelivered.size());
+                undelivered.forEach(pendingPushBuffer::store);
+            }
+        }
+    }
+
+    /**
+     * <p>Gets the messages stored for the device while it was offline.</p>
+     *
+     * @param deviceId an ID of the device.
+     * @return a list of messages to deliver.
+     */
+    public List<PushMessage> takeStoredMessages(int deviceId) {
+        return pendingPushBuffer.take(deviceId);
+    }
+
+    /**
+     * <p>Stores the message to be delivered to device on next poll.</p>
+     *
+     * @param message a message to store.
+     */
+    public void store(PushMessage message) {
+        pendingPushBuffer.store(message);
+    }
+
+    /**
+     * <p>Writes the stored messages and delivery acknowledgements to the database. The devices which have connected
+     * since their messages were buffered get them immediately.</p>
+     */
+    public void flush() {
+        for (Integer deviceId : pendingPushBuffer.flush()) {
+            if (deviceIdMap.containsKey(deviceId)) {
+                List<PushMessage> messages = pendingPushBuffer.take(deviceId);
+                if (!messages.isEmpty()) {
+                    sendPending(deviceId, messages);
+                }
+            }
         }
     }
 
-    public class DeviceEntry {
-        public Integer deviceId;
-        public AsyncContext context;
-        public final List<PushMessage> messages = new LinkedList<>();
+    /**
+     * <p>Gets the number of messages stored for offline devices and not written to the database yet.</p>
+     */
+    public int getBufferedMessageCount() {
+        return pendingPushBuffer.getBufferedCount();
+    }
+
+    /**
+     * <p>Gets the number of devices connected at the moment.</p>
+     */
+    public int getRegisteredCount() {
+        return deviceIdMap.size();
+    }
+
+    /**
+     * <p>Gets the number of messages queued for the connected devices and not delivered yet.</p>
+     */
+    public int getPendingMessageCount() {
+        return pendingMessageCount.get();
+    }
+
+    /**
+     * <p>Gets the total number of requests completed by sending the messages.</p>
+     */
+    public long getCompletionCount() {
+        return completionCount.get();
+    }
+
+    /**
+     * <p>Gets the average number of requests completed by sending the messages per second since the previous call of
+     * this method.</p>
+     */
+    public synchronized double getCompletionsPerSecond() {
+        final long now = System.currentTimeMillis();
+        final long count = completionCount.get();
+        final double rate = now > lastRateTime ? (count - lastRateCount) * 1000.0 / (now - lastRateTime) : 0;
+        lastRateTime = now;
+        lastRateCount = count;
+        return rate;
+    }
+
+    public static class DeviceEntry {
+        public final Integer deviceId;
+        public final AsyncContext context;
+        private final Deque<PushMessage> messages = new ArrayDeque<>();
+        private final AtomicBoolean completing = new AtomicBoolean();
+        private boolean closed;
 
         public DeviceEntry(Integer deviceId, AsyncContext context) {
             this.deviceId = deviceId;
@@ -9,25 +9,45 @@ import com.hmdm.persistence.ConfigurationDAO;
 import com.hmdm.persistence.DeviceDAO;
 import com.hmdm.persistence.domain.Configuration;
 import com.hmdm.persistence.domain.Device;
+import com.hmdm.service.SyncSnapshotCache;
+import com.hmdm.util.BackgroundTaskRunnerService;
+import com.hmdm.util.TaskCategory;
 import org.mybatis.guice.transactional.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class PushService {
 
+    private static final Logger log = LoggerFactory.getLogger(PushService.class);
+
+    /**
+     * <p>A number of devices notified by a single background task.</p>
+     */
+    private static final int NOTIFICATION_BATCH_SIZE = 500;
+
     private final PushSender pushSenderMqtt;
     private final PushSender pushSenderPolling;
     private final ConfigurationDAO configurationDAO;
     private final DeviceDAO deviceDAO;
+    private final SyncSnapshotCache syncSnapshotCache;
+    private final BackgroundTaskRunnerService taskRunner;
 
     @Inject
     public PushService(@Named("MQTT") PushSender pushSenderMqtt, @Named("Polling") PushSender pushSenderPolling,
-                       ConfigurationDAO configurationDAO, DeviceDAO deviceDAO) {
+                       ConfigurationDAO configurationDAO, DeviceDAO deviceDAO, SyncSnapshotCache syncSnapshotCache,
+                       BackgroundTaskRunnerService taskRunner) {
         this.pushSenderMqtt = pushSenderMqtt;
         this.pushSenderPolling = pushSenderPolling;
         this.configurationDAO = configurationDAO;
         this.deviceDAO = deviceDAO;
+        this.syncSnapshotCache = syncSnapshotCache;
+        this.taskRunner = taskRunner;
     }
 
     // Use both ways to send a message, because the decision how to receive messages is done on the device (configuration)
@@ -43,17 +63,70 @@ public class PushService {
      */
     @Transactional
     public void notifyDevicesOnUpdate(Integer configurationId) {
+        // The changes are committed at this point, so make sure the devices won't get a snapshot compiled before that
+        this.syncSnapshotCache.invalidate(configurationId);
+
         final Configuration configuration = this.configurationDAO.getConfigurationById(configurationId);
         if (configuration != null) {
             final List<Device> devices
                     = this.deviceDAO.getDeviceIdsByConfigurationId(configurationId);
-            devices.forEach(device -> {
-                PushMessage message = new PushMessage();
-                message.setDeviceId(device.getId());
-                message.setMessageType(PushMessage.TYPE_CONFIG_UPDATED);
+            notifyDevices(devices, PushMessage.TYPE_CONFIG_UPDATED, "Configuration #" + configurationId + " update");
+        }
+    }
+
+    /**
+     * <p>Sends the simple message of a certain type to specified devices. The messages are sent in batches by
+     * background tasks, so this method returns immediately.</p>
+     *
+     * @param devices the devices to notify (with IDs and numbers at least).
+     * @param messageType Message type
+     * @param description a description of the notification used for progress reporting.
+     * @return a progress of the notification.
+     */
+    public BulkNotification notifyDevices(List<Device> devices, String messageType, String description) {
+        final BulkNotification notification = new BulkNotification(description, devices.size());
+        if (devices.isEmpty()) {
+            return notification;
+        }
 
-                this.send(message);
-            });
+        log.info("{}: notifying {} devices", description, devices.size());
+
+        for (int i = 0; i < devices.size(); i += NOTIFICATION_BATCH_SIZE) {
+            final List<Device> batch = new ArrayList<>(devices.subList(i, Math.min(i + NOTIFICATION_BATCH_SIZE, devices.size())));
+            this.taskRunner.submitTask(TaskCategory.PUSH, () -> sendBatch(notification, batch, messageType));
+        }
+
+        return notification;
+    }
+
+    /**
+     * <p>Sends the simple message of a certain type to specified devices as a part of the bulk notification.</p>
+     */
+    private void sendBatch(BulkNotification notification, List<Device> devices, String messageType) {
+        final List<PushMessage> messages = new ArrayList<>(devices.size());
+        final Map<Integer, Device> devicesById = new HashMap<>();
+        for (Device device : devices) {
+            PushMessage message = new PushMessage();
+            message.setDeviceId(device.getId());
+            message.setMessageType(messageType);
+            messages.add(message);
+            devicesById.put(device.getId(), device);
+        }
+
+        int processed;
+        try {
+            this.pushSenderPolling.sendAll(messages, devicesById);
+            this.pushSenderMqtt.sendAll(messages, devicesById);
+            processed = notification.addSent(devices.size());
+        } catch (Exception e) {
+            log.error("{}: failed to notify {} devices", notification.getDescription(), devices.size(), e);
+            processed = notification.addFailed(devices.size());
+        }
+        log.debug("{}", notification);
+        if (processed >= notification.getTotal()) {
+            log.info("{}: {} of {} devices notified, {} failed, in {} ms", notification.getDescription(),
+                    notification.getSent(), notification.getTotal(), notification.getFailed(),
+                    System.currentTimeMillis() - notification.getStartTime());
         }
     }
 
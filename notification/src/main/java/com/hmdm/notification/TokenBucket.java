@@ -0,0 +1,63 @@
+package com.hmdm.notification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A token bucket rate limiter. The tokens are added at the constant rate up to the bucket capacity, so the short
+ * bursts are allowed while the average rate is limited.</p>
+ */
+public class TokenBucket {
+
+    /**
+     * <p>A number of tokens added per nanosecond; zero or negative value means no limit.</p>
+     */
+    private final double tokensPerNano;
+
+    /**
+     * <p>A maximum number of tokens in the bucket.</p>
+     */
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * <p>Constructs new <code>TokenBucket</code> instance.</p>
+     *
+     * @param ratePerSecond a number of tokens added per second; zero or negative value disables the limit.
+     * @param burst a maximum number of tokens which can be acquired at once after idle period.
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * <p>Acquires a single token waiting for it if necessary.</p>
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        if (tokensPerNano <= 0) {
+            return;
+        }
+        final long wait;
+        synchronized (this) {
+            refill();
+            tokens -= 1;
+            // The token is reserved even if the bucket is empty, so the waiting threads are served in order
+            wait = tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
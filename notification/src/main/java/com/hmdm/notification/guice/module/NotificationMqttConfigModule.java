@@ -66,6 +66,24 @@ public class NotificationMqttConfigModule extends AbstractModule {
         }
         this.bindConstant().annotatedWith(Names.named("mqtt.message.delay")).to(mqttDelay);
 
+        // The legacy delay between messages is turned into the equivalent publishing rate
+        double mqttPublishRate = mqttDelay > 0 ? 1000.0 / mqttDelay : 0;
+        String mqttPublishRateTag = this.context.getInitParameter("mqtt.publish.rate");
+        try {
+            if (mqttPublishRateTag != null && !mqttPublishRateTag.isEmpty()) {
+                mqttPublishRate = Double.parseDouble(mqttPublishRateTag);
+            }
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+        }
+        this.bindConstant().annotatedWith(Names.named("mqtt.publish.rate")).to(mqttPublishRate);
+
+        this.bindConstant().annotatedWith(Names.named("mqtt.publish.burst")).to(
+                getIntParameter("mqtt.publish.burst", (int) Math.max(1, Math.ceil(mqttPublishRate)))
+        );
+        this.bindConstant().annotatedWith(Names.named("mqtt.publishers")).to(getIntParameter("mqtt.publishers", 1));
+        this.bindConstant().annotatedWith(Names.named("mqtt.queue.size")).to(getIntParameter("mqtt.queue.size", 100000));
+
         String pollTimeoutTag = this.context.getInitParameter("polling.timeout");
         long pollTimeout = 60;
         try {
@@ -78,4 +96,16 @@ public class NotificationMqttConfigModule extends AbstractModule {
         this.bindConstant().annotatedWith(Names.named("polling.timeout")).to(pollTimeout);
 
     }
+
+    private int getIntParameter(String name, int defaultValue) {
+        String value = this.context.getInitParameter(name);
+        try {
+            if (value != null && !value.isEmpty()) {
+                return Integer.parseInt(value);
+            }
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+        }
+        return defaultValue;
+    }
 }
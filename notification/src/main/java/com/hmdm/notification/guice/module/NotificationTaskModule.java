@@ -22,6 +22,8 @@
 package com.hmdm.notification.guice.module;
 
 import com.google.inject.Inject;
+import com.hmdm.notification.MqttPublisher;
+import com.hmdm.notification.PushSenderPolling;
 import com.hmdm.notification.persistence.NotificationDAO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,21 +41,42 @@ public class NotificationTaskModule {
 
     private final ScheduledExecutorService messagePurgeService = Executors.newScheduledThreadPool(1);
 
+    private final ScheduledExecutorService messageFlushService = Executors.newScheduledThreadPool(1);
+
     private final NotificationDAO notificationDAO;
 
+    private final PushSenderPolling pushSenderPolling;
+
+    private final MqttPublisher mqttPublisher;
+
     /**
      * <p>Constructs new <code>NotificationTaskModule</code> instance. This implementation does nothing.</p>
      */
     @Inject
-    public NotificationTaskModule(NotificationDAO notificationDAO) {
+    public NotificationTaskModule(NotificationDAO notificationDAO,
+                                  PushSenderPolling pushSenderPolling,
+                                  MqttPublisher mqttPublisher) {
         this.notificationDAO = notificationDAO;
+        this.pushSenderPolling = pushSenderPolling;
+        this.mqttPublisher = mqttPublisher;
     }
 
     public void init() {
         messagePurgeService.scheduleWithFixedDelay(new MessagePurgeWorker(notificationDAO),
                 1, 1, TimeUnit.HOURS);
+        messagePurgeService.scheduleWithFixedDelay(new PollingStatsWorker(pushSenderPolling),
+                1, 1, TimeUnit.MINUTES);
+        messagePurgeService.scheduleWithFixedDelay(new MqttStatsWorker(mqttPublisher),
+                1, 1, TimeUnit.MINUTES);
+
+        messageFlushService.scheduleWithFixedDelay(new MessageFlushWorker(pushSenderPolling),
+                1, 1, TimeUnit.SECONDS);
 
         Runtime.getRuntime().addShutdownHook(new Thread(messagePurgeService::shutdown));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            messageFlushService.shutdown();
+            new MessageFlushWorker(pushSenderPolling).run();
+        }));
     }
 
     /**
@@ -79,4 +102,77 @@ public class NotificationTaskModule {
         }
     }
 
+    /**
+     * <p>A task to write the push messages buffered for offline devices and the delivery acknowledgements to the
+     * database.</p>
+     */
+    public static class MessageFlushWorker implements Runnable {
+        private final static Logger log = LoggerFactory.getLogger(MessageFlushWorker.class);
+        private final PushSenderPolling pushSenderPolling;
+
+        public MessageFlushWorker(PushSenderPolling pushSenderPolling) {
+            this.pushSenderPolling = pushSenderPolling;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.pushSenderPolling.flush();
+            } catch (Exception e) {
+                log.error("Unexpected error when flushing the push messages", e);
+            }
+        }
+    }
+
+    /**
+     * <p>A task to log the state of the long-polling connections.</p>
+     */
+    public static class PollingStatsWorker implements Runnable {
+        private final static Logger log = LoggerFactory.getLogger(PollingStatsWorker.class);
+        private final PushSenderPolling pushSenderPolling;
+
+        public PollingStatsWorker(PushSenderPolling pushSenderPolling) {
+            this.pushSenderPolling = pushSenderPolling;
+        }
+
+        @Override
+        public void run() {
+            final int registered = this.pushSenderPolling.getRegisteredCount();
+            final double rate = this.pushSenderPolling.getCompletionsPerSecond();
+            if (registered > 0 || rate > 0) {
+                log.info("Long-polling connections: {}, pending messages: {}, buffered messages: {}, completions/sec: {}",
+                        registered, this.pushSenderPolling.getPendingMessageCount(),
+                        this.pushSenderPolling.getBufferedMessageCount(), String.format("%.2f", rate));
+            }
+        }
+    }
+
+    /**
+     * <p>A task to log the state of the MQTT publishing queue.</p>
+     */
+    public static class MqttStatsWorker implements Runnable {
+        private final static Logger log = LoggerFactory.getLogger(MqttStatsWorker.class);
+        private final MqttPublisher mqttPublisher;
+        private long lastPublishedCount;
+
+        public MqttStatsWorker(MqttPublisher mqttPublisher) {
+            this.mqttPublisher = mqttPublisher;
+        }
+
+        @Override
+        public void run() {
+            final long published = this.mqttPublisher.getPublishedCount();
+            final int queueSize = this.mqttPublisher.getQueueSize();
+            if (published != lastPublishedCount || queueSize > 0) {
+                log.info("MQTT queue: {}, published: {}, coalesced: {}, dropped: {}, failed: {}, " +
+                                "publish time avg/max: {}/{} ms",
+                        queueSize, published, this.mqttPublisher.getCoalescedCount(),
+                        this.mqttPublisher.getDroppedCount(), this.mqttPublisher.getFailedCount(),
+                        String.format("%.2f", this.mqttPublisher.getAveragePublishTime()),
+                        String.format("%.2f", this.mqttPublisher.getMaxPublishTime()));
+            }
+            lastPublishedCount = published;
+        }
+    }
+
 }
@@ -38,6 +38,11 @@ import java.util.stream.Collectors;
 @Singleton
 public class NotificationDAO {
 
+    /**
+     * <p>A maximum number of rows affected by a single multi-row statement.</p>
+     */
+    private static final int BATCH_SIZE = 500;
+
     private final NotificationMapper notificationMapper;
 
     /**
@@ -82,6 +87,44 @@ public class NotificationDAO {
         return messages;
     }
 
+    /**
+     * <p>Gets the list of messages to be delivered to specified device. Unlike
+     * {@link #getPendingMessagesForDelivery(int)} the messages are not marked as delivered.</p>
+     *
+     * @param deviceId a device id in the database.
+     * @return a list of messages to be delivered to device.
+     */
+    public List<PushMessage> getPendingMessages(int deviceId) {
+        return this.notificationMapper.getPendingMessagesById(deviceId);
+    }
+
+    /**
+     * <p>Marks the specified messages as delivered.</p>
+     *
+     * @param messageIds a list of message IDs.
+     */
+    @Transactional
+    public void markMessagesAsDelivered(List<Integer> messageIds) {
+        for (int i = 0; i < messageIds.size(); i += BATCH_SIZE) {
+            this.notificationMapper.markMessagesAsDelivered(
+                    messageIds.subList(i, Math.min(i + BATCH_SIZE, messageIds.size()))
+            );
+        }
+    }
+
+    /**
+     * <p>Puts the specified messages to queue to be retrieved by devices later. The messages are inserted with
+     * multi-row statements and their IDs are not set.</p>
+     *
+     * @param messages a list of messages to send.
+     */
+    @Transactional
+    public void sendAll(List<PushMessage> messages) {
+        for (int i = 0; i < messages.size(); i += BATCH_SIZE) {
+            this.notificationMapper.insertPushMessages(messages.subList(i, Math.min(i + BATCH_SIZE, messages.size())));
+        }
+    }
+
     /**
      * <p>Sends the specified notification message. This implementation puts it to queue to be retrieved by device later.</p>
      *
@@ -51,11 +51,13 @@ public interface NotificationMapper {
             "INNER JOIN pushMessages ON pushMessages.id = pendingPushes.messageId " +
             "WHERE pushMessages.deviceId = #{deviceId} " +
             "AND pendingPushes.status = 0 " +
-            "ORDER BY pendingPushes.createTime ASC")
+            "ORDER BY pendingPushes.createTime ASC, pendingPushes.messageId ASC")
     List<PushMessage> getPendingMessagesById(@Param("deviceId") int deviceId);
 
     void markMessagesAsDelivered(@Param("messageIds") List<Integer> messageIds);
 
+    void insertPushMessages(@Param("messages") List<PushMessage> messages);
+
     @Insert("INSERT INTO pushMessages (messageType, deviceId, payload) " +
             "VALUES (#{messageType}, #{deviceId}, #{payload})")
     @SelectKey( statement = "SELECT currval('pushmessages_id_seq')", keyColumn = "id", keyProperty = "id", before = false, resultType = int.class )
@@ -22,11 +22,10 @@
 package com.hmdm.notification.rest;
 
 import com.hmdm.notification.PushSenderPolling;
-import com.hmdm.notification.persistence.NotificationDAO;
 import com.hmdm.notification.persistence.domain.PushMessage;
 import com.hmdm.notification.rest.json.PlainPushMessage;
 import com.hmdm.persistence.UnsecureDAO;
-import com.hmdm.persistence.domain.Device;
+import com.hmdm.persistence.domain.DeviceIdentity;
 import com.hmdm.rest.filter.PublicIPFilter;
 import com.hmdm.rest.json.Response;
 import com.hmdm.util.CryptoUtil;
@@ -53,8 +52,6 @@ import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 /**
@@ -68,7 +65,6 @@ public class LongPollingServlet extends HttpServlet {
 
     private static final Logger log = LoggerFactory.getLogger(LongPollingServlet.class);
     private UnsecureDAO unsecureDAO;
-    private NotificationDAO notificationDAO;
     private PushSenderPolling pushSenderPolling;
     private String hashSecret;
     private boolean secureEnrollment;
@@ -77,8 +73,6 @@ public class LongPollingServlet extends HttpServlet {
     private static final String HEADER_SIGNATURE = "X-Request-Signature";
     public static final String BASE_PATH = "/rest/notification/polling/";
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
-
     /**
      * <p>A constructor required by Swagger.</p>
      */
@@ -91,14 +85,12 @@ public class LongPollingServlet extends HttpServlet {
      */
     @Inject
     public LongPollingServlet(UnsecureDAO unsecureDAO,
-                              NotificationDAO notificationDAO,
                               PushSenderPolling pushSenderPolling,
                               PublicIPFilter publicIPFilter,
                               @Named("polling.timeout") long pollingTimeout,
                               @Named("secure.enrollment") boolean secureEnrollment,
                               @Named("hash.secret") String hashSecret) {
         this.unsecureDAO = unsecureDAO;
-        this.notificationDAO = notificationDAO;
         this.pushSenderPolling = pushSenderPolling;
         this.publicIPFilter = publicIPFilter;
         this.hashSecret = hashSecret;
@@ -135,7 +127,7 @@ public class LongPollingServlet extends HttpServlet {
             }
         }
 
-        Device device = unsecureDAO.getDeviceByNumber(deviceNumber);
+        DeviceIdentity device = unsecureDAO.getDeviceIdentityByNumber(deviceNumber);
         if (device == null) {
             log.warn("No device with number: " + deviceNumber);
             resp.sendError(404);
@@ -181,9 +173,9 @@ public class LongPollingServlet extends HttpServlet {
                     log.debug("Succesfully delivered");
                 } catch (Exception e) {
                     log.warn("Failed to deliver push messages to device '{}': {}", deviceNumber, e.getMessage());
-                    // Put pending messages back to the database
+                    // Put pending messages back to be delivered on next poll
                     for (PushMessage m : messages) {
-                        notificationDAO.send(m);
+                        pushSenderPolling.store(m);
                     }
                 }
                 pushSenderPolling.unregister(event.getAsyncContext());
@@ -208,7 +200,7 @@ public class LongPollingServlet extends HttpServlet {
         });
 
         pushSenderPolling.register(device.getId(), asyncContext);
-        List<PushMessage> offlineMessages = notificationDAO.getPendingMessagesForDelivery(device.getId());
+        List<PushMessage> offlineMessages = pushSenderPolling.takeStoredMessages(device.getId());
         if (offlineMessages.size() > 0) {
             // This function completes the inquiry
             pushSenderPolling.sendPending(device.getId(), offlineMessages);
@@ -27,7 +27,6 @@ import com.hmdm.notification.persistence.NotificationDAO;
 import com.hmdm.notification.persistence.domain.PushMessage;
 import com.hmdm.notification.rest.json.PlainPushMessage;
 import com.hmdm.persistence.UnsecureDAO;
-import com.hmdm.persistence.domain.Device;
 import com.hmdm.rest.json.Response;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -88,11 +87,9 @@ public class NotificationResource {
                                                 String deviceNumber) {
         log.debug("#getPushMessages: deviceNumber = {}", deviceNumber);
         try {
-            Device dbDevice = this.unsecureDAO.getDeviceByNumber(deviceNumber);
-            if (dbDevice == null) {
-                dbDevice = this.unsecureDAO.getDeviceByOldNumber(deviceNumber);
-            }
-            if (dbDevice != null) {
+            final boolean deviceFound = this.unsecureDAO.getDeviceIdentityByNumber(deviceNumber) != null
+                    || this.unsecureDAO.getDeviceByOldNumber(deviceNumber) != null;
+            if (deviceFound) {
                 List<PushMessage> messages = this.notificationDAO.getPendingMessagesForDelivery(deviceNumber);
                 log.info("Delivering push-messages to device '{}': {}", deviceNumber, messages);
 
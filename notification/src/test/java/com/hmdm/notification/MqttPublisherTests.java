@@ -0,0 +1,80 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.notification;
+
+import com.hmdm.notification.persistence.domain.PushMessage;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>A test suite for {@link MqttPublisher} class. The publisher is not started, so the queued messages stay in the
+ * queue.</p>
+ */
+public class MqttPublisherTests {
+
+    /**
+     * <p>Constructs new <code>MqttPublisherTests</code> instance. This implementation does nothing.</p>
+     */
+    public MqttPublisherTests() {
+    }
+
+    @Test(timeout = 5000)
+    public void testFullQueueDropsMessagesWithoutWaiting() {
+        final MqttPublisher publisher = new MqttPublisher(0, 1, 1, 2);
+
+        for (int i = 0; i < 1000; i++) {
+            publisher.send(envelope("device" + i, PushMessage.TYPE_RUN_APP));
+        }
+
+        Assert.assertEquals(2, publisher.getQueueSize());
+        Assert.assertEquals(998, publisher.getDroppedCount());
+    }
+
+    @Test
+    public void testConfigUpdateIsCoalesced() {
+        final MqttPublisher publisher = new MqttPublisher(0, 1, 1, 10);
+
+        publisher.send(envelope("device1", PushMessage.TYPE_CONFIG_UPDATED));
+        publisher.send(envelope("device1", PushMessage.TYPE_CONFIG_UPDATED));
+        publisher.send(envelope("device2", PushMessage.TYPE_CONFIG_UPDATED));
+
+        Assert.assertEquals(2, publisher.getQueueSize());
+        Assert.assertEquals(1, publisher.getCoalescedCount());
+    }
+
+    @Test
+    public void testDroppedConfigUpdateIsNotCoalesced() {
+        final MqttPublisher publisher = new MqttPublisher(0, 1, 1, 1);
+
+        publisher.send(envelope("device1", PushMessage.TYPE_RUN_APP));
+        publisher.send(envelope("device2", PushMessage.TYPE_CONFIG_UPDATED));
+        publisher.send(envelope("device2", PushMessage.TYPE_CONFIG_UPDATED));
+
+        Assert.assertEquals("The dropped message must not suppress the next one", 0, publisher.getCoalescedCount());
+        Assert.assertEquals(2, publisher.getDroppedCount());
+    }
+
+    private static MqttEnvelope envelope(String address, String messageType) {
+        return new MqttEnvelope(address, new MqttMessage(new byte[0]), messageType);
+    }
+}
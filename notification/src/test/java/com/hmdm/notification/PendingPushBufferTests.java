@@ -0,0 +1,240 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.notification;
+
+import com.hmdm.notification.persistence.NotificationDAO;
+import com.hmdm.notification.persistence.domain.PushMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A test suite for {@link PendingPushBuffer} class.</p>
+ */
+public class PendingPushBufferTests {
+
+    /**
+     * <p>Constructs new <code>PendingPushBufferTests</code> instance. This implementation does nothing.</p>
+     */
+    public PendingPushBufferTests() {
+    }
+
+    @Test
+    public void testFlush() {
+        final TestNotificationDAO dao = new TestNotificationDAO();
+        final PendingPushBuffer buffer = new PendingPushBuffer(dao);
+
+        buffer.store(message(1));
+        buffer.storeAll(messages(2, 3));
+        Assert.assertEquals("Messages must not be written yet", 0, dao.stored.get());
+        Assert.assertEquals(4, buffer.getBufferedCount());
+
+        final Set<Integer> deviceIds = buffer.flush();
+        Assert.assertEquals("Messages must be written", 4, dao.stored.get());
+        Assert.assertEquals(0, buffer.getBufferedCount());
+        Assert.assertEquals(2, deviceIds.size());
+        Assert.assertTrue(deviceIds.contains(1));
+        Assert.assertTrue(deviceIds.contains(2));
+
+        Assert.assertTrue("Nothing to flush", buffer.flush().isEmpty());
+        Assert.assertEquals(4, dao.stored.get());
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() {
+        final TestNotificationDAO dao = new TestNotificationDAO();
+        final PendingPushBuffer buffer = new PendingPushBuffer(dao);
+        buffer.storeAll(messages(1, 5));
+
+        dao.failing = true;
+        Assert.assertTrue(buffer.flush().isEmpty());
+        Assert.assertEquals("Messages must be kept", 5, buffer.getBufferedCount());
+        Assert.assertEquals(0, dao.stored.get());
+
+        dao.failing = false;
+        Assert.assertEquals(Collections.singleton(1), buffer.flush());
+        Assert.assertEquals(0, buffer.getBufferedCount());
+        Assert.assertEquals(5, dao.stored.get());
+    }
+
+    @Test
+    public void testOverflowIsWrittenImmediately() {
+        final TestNotificationDAO dao = new TestNotificationDAO();
+        final PendingPushBuffer buffer = new PendingPushBuffer(dao);
+
+        buffer.storeAll(messages(1, PendingPushBuffer.MAX_BUFFERED_MESSAGES - 1));
+        Assert.assertEquals(0, dao.stored.get());
+
+        buffer.storeAll(messages(2, 2));
+        Assert.assertEquals("Batch exceeding the limit must be written", 2, dao.stored.get());
+
+        buffer.store(message(3));
+        Assert.assertEquals("Message fitting into the limit must be buffered", 2, dao.stored.get());
+
+        buffer.store(message(4));
+        Assert.assertEquals("Message exceeding the limit must be written", 3, dao.stored.get());
+        Assert.assertEquals(PendingPushBuffer.MAX_BUFFERED_MESSAGES, buffer.getBufferedCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentStoreDoesNotExceedLimit() throws Exception {
+        final TestNotificationDAO dao = new TestNotificationDAO();
+        final PendingPushBuffer buffer = new PendingPushBuffer(dao);
+        final int threadCount = 8;
+        final int perThread = PendingPushBuffer.MAX_BUFFERED_MESSAGES / threadCount + 1000;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int deviceId = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        buffer.store(message(deviceId));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals("The limit must be reached exactly",
+                PendingPushBuffer.MAX_BUFFERED_MESSAGES, buffer.getBufferedCount());
+        Assert.assertEquals("No message must be lost",
+                threadCount * perThread, buffer.getBufferedCount() + dao.stored.get());
+
+        buffer.flush();
+        Assert.assertEquals(threadCount * perThread, dao.stored.get());
+    }
+
+    @Test
+    public void testTake() {
+        final TestNotificationDAO dao = new TestNotificationDAO();
+        final PendingPushBuffer buffer = new PendingPushBuffer(dao);
+        dao.pending.put(1, Collections.singletonList(storedMessage(100, 1)));
+
+        buffer.store(message(1));
+        final List<PushMessage> messages = buffer.take(1);
+        Assert.assertEquals("Stored and buffered messages must be taken", 2, messages.size());
+        Assert.assertEquals(0, buffer.getBufferedCount());
+        Assert.assertEquals(1, dao.queried.get());
+
+        Assert.assertTrue("Stored message must not be delivered twice", buffer.take(1).isEmpty());
+        Assert.assertEquals("Device without messages must not be queried again", 1, dao.queried.get());
+
+        buffer.flush();
+        Assert.assertEquals("Delivery must be acknowledged on flush", Collections.singletonList(100), dao.delivered);
+        Assert.assertEquals("Taken message must not be written", 0, dao.stored.get());
+    }
+
+    @Test
+    public void testDeviceIsQueriedAfterMessagesAreWritten() {
+        final TestNotificationDAO dao = new TestNotificationDAO();
+        final PendingPushBuffer buffer = new PendingPushBuffer(dao);
+
+        Assert.assertTrue(buffer.take(1).isEmpty());
+        Assert.assertEquals(1, dao.queried.get());
+
+        // The buffer overflows, so the message goes to the database directly
+        buffer.storeAll(messages(2, PendingPushBuffer.MAX_BUFFERED_MESSAGES));
+        buffer.store(message(1));
+        Assert.assertEquals(1, dao.stored.get());
+
+        buffer.take(1);
+        Assert.assertEquals("Device with written message must be queried", 2, dao.queried.get());
+    }
+
+    private static PushMessage message(int deviceId) {
+        return new PushMessage(PushMessage.TYPE_CONFIG_UPDATED, null, deviceId);
+    }
+
+    private static PushMessage storedMessage(int id, int deviceId) {
+        final PushMessage message = message(deviceId);
+        message.setId(id);
+        return message;
+    }
+
+    private static List<PushMessage> messages(int deviceId, int count) {
+        final List<PushMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(message(deviceId));
+        }
+        return messages;
+    }
+
+    /**
+     * <p>A DAO keeping the counts of stored messages and queries in memory.</p>
+     */
+    private static class TestNotificationDAO extends NotificationDAO {
+        private final AtomicInteger stored = new AtomicInteger();
+        private final AtomicInteger queried = new AtomicInteger();
+        private final Map<Integer, List<PushMessage>> pending = new ConcurrentHashMap<>();
+        private final List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failing;
+
+        private TestNotificationDAO() {
+            super(null);
+        }
+
+        @Override
+        public List<PushMessage> getPendingMessages(int deviceId) {
+            queried.incrementAndGet();
+            return pending.getOrDefault(deviceId, Collections.emptyList());
+        }
+
+        @Override
+        public void markMessagesAsDelivered(List<Integer> messageIds) {
+            delivered.addAll(messageIds);
+        }
+
+        @Override
+        public int send(PushMessage message) {
+            return stored.incrementAndGet();
+        }
+
+        @Override
+        public void sendAll(List<PushMessage> messages) {
+            if (failing) {
+                throw new IllegalStateException("Database is down");
+            }
+            stored.addAndGet(messages.size());
+        }
+    }
+}
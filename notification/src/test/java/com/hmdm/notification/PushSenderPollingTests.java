@@ -0,0 +1,202 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.notification;
+
+import com.hmdm.notification.persistence.NotificationDAO;
+import com.hmdm.notification.persistence.domain.PushMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A test suite for {@link PushSenderPolling} class.</p>
+ *
+ * @author agent
+ */
+public class PushSenderPollingTests {
+
+    private static final int CONTEXT_COUNT = 100000;
+    private static final int THREAD_COUNT = 16;
+
+    /**
+     * <p>Constructs new <code>PushSenderPollingTests</code> instance. This implementation does nothing.</p>
+     */
+    public PushSenderPollingTests() {
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentRegistration() throws Exception {
+        final PushSenderPolling sender = new PushSenderPolling(new PendingPushBuffer(new StoringNotificationDAO()));
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREAD_COUNT; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    final List<AsyncContext> contexts = new ArrayList<>();
+                    for (int i = thread; i < CONTEXT_COUNT; i += THREAD_COUNT) {
+                        final AsyncContext context = newAsyncContext(new AtomicInteger());
+                        contexts.add(context);
+                        sender.register(i, context);
+                    }
+                    for (AsyncContext context : contexts) {
+                        sender.unregister(context);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals("All devices must be unregistered", 0, sender.getRegisteredCount());
+        Assert.assertEquals("No messages must be pending", 0, sender.getPendingMessageCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testReconnectDoesNotDropNewConnection() {
+        final PushSenderPolling sender = new PushSenderPolling(new PendingPushBuffer(new StoringNotificationDAO()));
+        final AsyncContext oldContext = newAsyncContext(new AtomicInteger());
+        final AsyncContext newContext = newAsyncContext(new AtomicInteger());
+
+        sender.register(1, oldContext);
+        sender.register(1, newContext);
+        sender.unregister(oldContext);
+
+        Assert.assertEquals("The new connection must stay registered", 1, sender.getRegisteredCount());
+        sender.unregister(newContext);
+        Assert.assertEquals("All devices must be unregistered", 0, sender.getRegisteredCount());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentSendCompletesOnce() throws Exception {
+        final StoringNotificationDAO dao = new StoringNotificationDAO();
+        final PushSenderPolling sender = new PushSenderPolling(new PendingPushBuffer(dao));
+        final AtomicInteger completions = new AtomicInteger();
+        final AsyncContext context = newAsyncContext(completions);
+        sender.register(1, context);
+
+        final int messageCount = PushSenderPolling.MAX_QUEUED_MESSAGES * 2;
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            for (int i = 0; i < messageCount; i++) {
+                executor.submit(() -> sender.send(new PushMessage(PushMessage.TYPE_CONFIG_UPDATED, null, 1)));
+            }
+        } finally {
+            executor.shutdown();
+            Assert.assertTrue("Messages must be sent", executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        final List<PushMessage> delivered = sender.getPendingMessages(context);
+        sender.unregister(context);
+
+        Assert.assertEquals("The request must be completed once", 1, completions.get());
+        Assert.assertEquals("The queue must be bounded", PushSenderPolling.MAX_QUEUED_MESSAGES, delivered.size());
+        Assert.assertEquals("No message must be lost", messageCount, delivered.size() + sender.getBufferedMessageCount());
+        Assert.assertEquals("No messages must be pending", 0, sender.getPendingMessageCount());
+    }
+
+    @Test
+    public void testOfflineMessagesAreBuffered() {
+        final StoringNotificationDAO dao = new StoringNotificationDAO();
+        final PushSenderPolling sender = new PushSenderPolling(new PendingPushBuffer(dao));
+
+        sender.send(new PushMessage(PushMessage.TYPE_CONFIG_UPDATED, null, 1));
+        sender.send(new PushMessage(PushMessage.TYPE_CONFIG_UPDATED, null, 2));
+        Assert.assertEquals("Messages must not be written yet", 0, dao.stored.get());
+
+        Assert.assertEquals("Buffered message must be taken", 1, sender.takeStoredMessages(1).size());
+        Assert.assertEquals("Database must be queried once", 1, dao.queried.get());
+        Assert.assertEquals("Taken message must not be written", 1, sender.getBufferedMessageCount());
+
+        sender.flush();
+        Assert.assertEquals("Remaining message must be written", 1, dao.stored.get());
+        Assert.assertEquals("Buffer must be empty", 0, sender.getBufferedMessageCount());
+
+        Assert.assertTrue("No messages expected", sender.takeStoredMessages(1).isEmpty());
+        Assert.assertEquals("Device without messages must not be queried again", 1, dao.queried.get());
+    }
+
+    private static AsyncContext newAsyncContext(AtomicInteger completions) {
+        return (AsyncContext) Proxy.newProxyInstance(
+                AsyncContext.class.getClassLoader(),
+                new Class<?>[]{AsyncContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "complete":
+                            completions.incrementAndGet();
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    /**
+     * <p>A DAO counting the messages stored for the next poll and the queries for them.</p>
+     */
+    private static class StoringNotificationDAO extends NotificationDAO {
+        private final AtomicInteger stored = new AtomicInteger();
+        private final AtomicInteger queried = new AtomicInteger();
+
+        private StoringNotificationDAO() {
+            super(null);
+        }
+
+        @Override
+        public List<PushMessage> getPendingMessages(int deviceId) {
+            queried.incrementAndGet();
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int send(PushMessage message) {
+            return stored.incrementAndGet();
+        }
+
+        @Override
+        public void sendAll(List<PushMessage> messages) {
+            stored.addAndGet(messages.size());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.notification;
+
+import com.hmdm.notification.persistence.domain.PushMessage;
+import com.hmdm.persistence.domain.Device;
+import com.hmdm.util.BackgroundTaskRunnerService;
+import com.hmdm.util.TaskCategory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A test suite for {@link PushService} class.</p>
+ */
+public class PushServiceTests {
+
+    /**
+     * <p>Constructs new <code>PushServiceTests</code> instance. This implementation does nothing.</p>
+     */
+    public PushServiceTests() {
+    }
+
+    @Test
+    public void testAllDevicesNotified() {
+        final TestSender mqtt = new TestSender(-1);
+        final PushService service = new PushService(mqtt, new TestSender(-1), null, null, null, new InlineTaskRunner());
+
+        final BulkNotification notification = service.notifyDevices(devices(1200), PushMessage.TYPE_CONFIG_UPDATED,
+                "Test");
+
+        Assert.assertTrue(notification.isCompleted());
+        Assert.assertEquals(1200, notification.getSent());
+        Assert.assertEquals(0, notification.getFailed());
+        Assert.assertEquals(1200, mqtt.sentCount);
+    }
+
+    @Test
+    public void testFailedBatchIsNotCountedAsSent() {
+        // The second batch of 500 devices fails
+        final PushService service = new PushService(new TestSender(1), new TestSender(-1), null, null, null,
+                new InlineTaskRunner());
+
+        final BulkNotification notification = service.notifyDevices(devices(1200), PushMessage.TYPE_CONFIG_UPDATED,
+                "Test");
+
+        Assert.assertTrue(notification.isCompleted());
+        Assert.assertEquals(700, notification.getSent());
+        Assert.assertEquals(500, notification.getFailed());
+    }
+
+    private static List<Device> devices(int count) {
+        final List<Device> devices = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            final Device device = new Device();
+            device.setId(i);
+            device.setNumber("device" + i);
+            devices.add(device);
+        }
+        return devices;
+    }
+
+    /**
+     * <p>A sender counting the messages and failing the batch with the specified index.</p>
+     */
+    private static class TestSender implements PushSender {
+
+        private final int failingBatch;
+        private int batchCount;
+        private int sentCount;
+
+        private TestSender(int failingBatch) {
+            this.failingBatch = failingBatch;
+        }
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public int send(PushMessage message) {
+            return 0;
+        }
+
+        @Override
+        public void sendAll(List<PushMessage> messages) {
+            if (this.batchCount++ == this.failingBatch) {
+                throw new IllegalStateException("Test failure");
+            }
+            this.sentCount += messages.size();
+        }
+    }
+
+    /**
+     * <p>A task runner running the submitted tasks in the calling thread.</p>
+     */
+    private static class InlineTaskRunner extends BackgroundTaskRunnerService {
+
+        private InlineTaskRunner() {
+            super(Collections.emptyMap());
+        }
+
+        @Override
+        public void submitTask(TaskCategory category, Runnable task) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.notification;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>A test suite for {@link TokenBucket} class. The timings are checked with generous tolerances, so the tests do not
+ * fail on a loaded build machine.</p>
+ */
+public class TokenBucketTests {
+
+    /**
+     * <p>Constructs new <code>TokenBucketTests</code> instance. This implementation does nothing.</p>
+     */
+    public TokenBucketTests() {
+    }
+
+    @Test(timeout = 10000)
+    public void testUnlimitedRate() throws Exception {
+        final TokenBucket bucket = new TokenBucket(0, 1);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+            bucket.acquire();
+        }
+        Assert.assertTrue("Unlimited bucket must not wait", elapsedMillis(start) < 1000);
+    }
+
+    @Test(timeout = 10000)
+    public void testBurstIsNotDelayed() throws Exception {
+        final TokenBucket bucket = new TokenBucket(1, 50);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            bucket.acquire();
+        }
+        Assert.assertTrue("Burst must not wait", elapsedMillis(start) < 500);
+    }
+
+    @Test(timeout = 10000)
+    public void testRateIsLimitedAfterBurst() throws Exception {
+        final TokenBucket bucket = new TokenBucket(100, 10);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 40; i++) {
+            bucket.acquire();
+        }
+        // 10 tokens are available at once, 30 more take 300 ms at 100 tokens per second
+        final long elapsed = elapsedMillis(start);
+        Assert.assertTrue("Rate must be limited: " + elapsed + " ms", elapsed >= 250);
+        Assert.assertTrue("Rate must not be limited too much: " + elapsed + " ms", elapsed < 3000);
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleBucketIsRefilledUpToBurst() throws Exception {
+        final TokenBucket bucket = new TokenBucket(1000, 5);
+        Thread.sleep(100);
+
+        // 100 tokens would have been added during idle period, but only 5 are kept
+        final long start = System.nanoTime();
+        for (int i = 0; i < 105; i++) {
+            bucket.acquire();
+        }
+        final long elapsed = elapsedMillis(start);
+        Assert.assertTrue("Tokens above burst must not be kept: " + elapsed + " ms", elapsed >= 80);
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentAcquire() throws Exception {
+        final TokenBucket bucket = new TokenBucket(200, 1);
+        final int threadCount = 4;
+        final int perThread = 25;
+        final AtomicInteger acquired = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        bucket.acquire();
+                        acquired.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        final long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 100 tokens at 200 tokens per second take about 500 ms regardless of the number of threads
+        final long elapsed = elapsedMillis(startTime);
+        Assert.assertEquals(threadCount * perThread, acquired.get());
+        Assert.assertTrue("Rate must be shared by threads: " + elapsed + " ms", elapsed >= 400);
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitIsInterrupted() throws Exception {
+        final TokenBucket bucket = new TokenBucket(0.1, 1);
+        bucket.acquire();
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                bucket.acquire();
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        Thread.sleep(100);
+        thread.interrupt();
+        thread.join(5000);
+
+        Assert.assertFalse("Waiting thread must stop", thread.isAlive());
+        Assert.assertTrue("Wait must be interrupted", error.get() instanceof InterruptedException);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
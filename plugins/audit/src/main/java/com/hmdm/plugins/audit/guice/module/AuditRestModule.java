@@ -21,10 +21,12 @@
 
 package com.hmdm.plugins.audit.guice.module;
 
+import com.google.inject.multibindings.Multibinder;
 import com.google.inject.servlet.ServletModule;
 import com.hmdm.plugin.rest.PluginAccessFilter;
 import com.hmdm.plugins.audit.rest.AuditResource;
 import com.hmdm.plugins.audit.rest.filter.AuditFilter;
+import com.hmdm.plugins.audit.rest.filter.AuditRoute;
 import com.hmdm.rest.filter.AuthFilter;
 import com.hmdm.rest.filter.PrivateIPFilter;
 import com.hmdm.rest.filter.PublicIPFilter;
@@ -56,6 +58,9 @@ public class AuditRestModule extends ServletModule {
         this.filter("/rest/plugins/audit/private/*").through(PluginAccessFilter.class);
         this.filter("/rest/plugins/audit/private/*").through(PrivateIPFilter.class);
         this.bind(AuditResource.class);
+
+        // The audit routes contributed by other plugins; declared here so the set is bound even if there are none
+        Multibinder.newSetBinder(binder(), AuditRoute.class);
     }
 
 }
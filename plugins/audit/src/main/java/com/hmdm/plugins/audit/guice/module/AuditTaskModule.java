@@ -0,0 +1,75 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.audit.guice.module;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.hmdm.plugin.PluginTaskModule;
+import com.hmdm.plugins.audit.persistence.AuditLogBuffer;
+import com.hmdm.util.BackgroundTaskRunnerService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A module used for initializing the tasks to be executed in background.</p>
+ *
+ * @author agent
+ */
+public class AuditTaskModule implements PluginTaskModule {
+
+    /**
+     * <p>A buffer of the audit log records.</p>
+     */
+    private final AuditLogBuffer auditLogBuffer;
+
+    /**
+     * <p>A runner for the repeatable tasks.</p>
+     */
+    private final BackgroundTaskRunnerService taskRunner;
+
+    /**
+     * <p>A maximum interval between writes of the buffered audit log records (in milliseconds).</p>
+     */
+    private final int flushInterval;
+
+    /**
+     * <p>Constructs new <code>AuditTaskModule</code> instance. This implementation does nothing.</p>
+     */
+    @Inject
+    public AuditTaskModule(AuditLogBuffer auditLogBuffer,
+                           BackgroundTaskRunnerService taskRunner,
+                           @Named("audit.flush.interval") int flushInterval) {
+        this.auditLogBuffer = auditLogBuffer;
+        this.taskRunner = taskRunner;
+        this.flushInterval = Math.max(100, flushInterval);
+    }
+
+    /**
+     * <p>Initializes this module. Schedules the task for writing the buffered audit log records and writes the
+     * remaining records on shutdown.</p>
+     */
+    @Override
+    public void init() {
+        taskRunner.submitRepeatableTask(auditLogBuffer::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(auditLogBuffer::shutdown));
+    }
+}
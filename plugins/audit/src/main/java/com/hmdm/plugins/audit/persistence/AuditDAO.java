@@ -63,6 +63,17 @@ public class AuditDAO extends AbstractDAO<AuditLogRecord> {
         this.mapper.insertAuditLogRecord(logRecord);
     }
 
+    /**
+     * <p>Inserts the audit log records into database by a single statement.</p>
+     *
+     * @param logRecords a list of log records to be inserted.
+     */
+    public void insertAuditLogRecords(List<AuditLogRecord> logRecords) {
+        if (!logRecords.isEmpty()) {
+            this.mapper.insertAuditLogRecords(logRecords);
+        }
+    }
+
     /**
      * <p>Finds the audit log records matching the specified filter.</p>
      *
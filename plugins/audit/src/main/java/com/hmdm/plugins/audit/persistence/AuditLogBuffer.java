@@ -0,0 +1,96 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.audit.persistence;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.hmdm.plugins.audit.persistence.domain.AuditLogRecord;
+import com.hmdm.util.BackgroundTaskRunnerService;
+import com.hmdm.util.TaskCategory;
+import com.hmdm.util.WriteBehindBuffer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A write-behind buffer for the audit log records.</p>
+ *
+ * <p>The records are accumulated in memory and written to the database in batches when either the number of pending
+ * records reaches the flush size or the flush interval elapses. If the buffer is full, the caller waits for the buffer
+ * to be flushed for a while and then writes the record directly, so the records are never discarded silently: a
+ * record is only dropped if it can not be written to the database at all, and such a record is logged as error.</p>
+ */
+@Singleton
+public class AuditLogBuffer extends WriteBehindBuffer<AuditLogRecord> {
+
+    /**
+     * <p>A maximum time to wait for a free space in the buffer when it is full (in milliseconds).</p>
+     */
+    private static final long QUEUE_WAIT_TIMEOUT = 1000;
+
+    private final AuditDAO auditDAO;
+
+    /**
+     * <p>Constructs new <code>AuditLogBuffer</code> instance.</p>
+     *
+     * @param capacity a maximum number of records waiting for writing.
+     * @param flushSize a number of records triggering the flush.
+     */
+    @Inject
+    public AuditLogBuffer(AuditDAO auditDAO,
+                          BackgroundTaskRunnerService taskRunner,
+                          @Named("audit.buffer.size") int capacity,
+                          @Named("audit.flush.size") int flushSize) {
+        super("audit log", taskRunner, TaskCategory.AUDIT, capacity, flushSize);
+        this.auditDAO = auditDAO;
+    }
+
+    /**
+     * <p>Queues the audit log record for writing. If the buffer is full then waits for a free space and, if there is
+     * still no space, writes the record directly.</p>
+     *
+     * @param logRecord a record to be written.
+     */
+    public void queue(AuditLogRecord logRecord) {
+        queueOrWrite(Collections.singletonList(logRecord), QUEUE_WAIT_TIMEOUT);
+    }
+
+    @Override
+    protected int write(List<AuditLogRecord> records) {
+        if (records.size() == 1) {
+            this.auditDAO.insertAuditLogRecord(records.get(0));
+        } else {
+            this.auditDAO.insertAuditLogRecords(records);
+        }
+        return records.size();
+    }
+
+    /**
+     * <p>The records failed to be written in a batch are written one by one; the dropped records are identified in the
+     * log by their contents.</p>
+     */
+    @Override
+    protected String getGroupKey(AuditLogRecord record) {
+        return record.toLogString();
+    }
+}
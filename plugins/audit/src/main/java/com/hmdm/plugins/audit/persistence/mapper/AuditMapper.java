@@ -24,6 +24,7 @@ package com.hmdm.plugins.audit.persistence.mapper;
 import com.hmdm.plugins.audit.persistence.domain.AuditLogRecord;
 import com.hmdm.plugins.audit.rest.json.AuditLogFilter;
 import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
 
@@ -56,6 +57,8 @@ public interface AuditMapper {
             ")"})
     int insertAuditLogRecord(AuditLogRecord logRecord);
 
+    int insertAuditLogRecords(@Param("records") List<AuditLogRecord> logRecords);
+
     List<AuditLogRecord> findAllLogRecordsByCustomerId(AuditLogFilter filter);
 
     long countAll(AuditLogFilter filter);
@@ -25,9 +25,8 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.hmdm.plugin.service.PluginStatusCache;
 import com.hmdm.plugins.audit.AuditPluginConfigurationImpl;
-import com.hmdm.plugins.audit.persistence.AuditDAO;
+import com.hmdm.plugins.audit.persistence.AuditLogBuffer;
 import com.hmdm.plugins.audit.persistence.domain.AuditLogRecord;
-import com.hmdm.util.BackgroundTaskRunnerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,7 +39,6 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.util.Optional;
 
 /**
  * <p>Intercepts incoming requests and logs the audit records for users activities.</p>
@@ -61,14 +59,14 @@ public class AuditFilter implements Filter {
     private static final Logger logger = LoggerFactory.getLogger(AuditFilter.class);
 
     /**
-     * <p>A DAO to be used for inserting audit log records into database.</p>
+     * <p>A buffer for writing the audit log records into database in batches.</p>
      */
-    private final AuditDAO auditDAO;
+    private final AuditLogBuffer auditLogBuffer;
 
     /**
-     * <p>A runner for the audit log record insertion tasks.</p>
+     * <p>The registry of the resources to be audited.</p>
      */
-    private final BackgroundTaskRunnerService backgroundTaskRunnerService;
+    private final AuditRoutes auditRoutes;
 
     /**
      * <p>The current status of installed plugins.</p>
@@ -89,12 +87,13 @@ public class AuditFilter implements Filter {
      * <p>Constructs new <code>AuditFilter</code> instance. This implementation does nothing.</p>
      */
     @Inject
-    public AuditFilter(AuditDAO auditDAO, BackgroundTaskRunnerService backgroundTaskRunnerService,
+    public AuditFilter(AuditLogBuffer auditLogBuffer,
+                       AuditRoutes auditRoutes,
                        PluginStatusCache pluginStatusCache,
                        @Named("proxy.addresses") String proxyIps,
                        @Named("proxy.ip.header") String ipHeader) {
-        this.auditDAO = auditDAO;
-        this.backgroundTaskRunnerService = backgroundTaskRunnerService;
+        this.auditLogBuffer = auditLogBuffer;
+        this.auditRoutes = auditRoutes;
         this.pluginStatusCache = pluginStatusCache;
         this.proxyIps = proxyIps;
         if (!"".equals(ipHeader)) {
@@ -129,8 +128,8 @@ public class AuditFilter implements Filter {
             return;
         }
 
-        final Optional<ResourceAuditInfo> auditInfo = ResourceAuditInfo.findAuditInfo(httpRequest.getMethod(), requestURI.substring(context.length()));
-        boolean needAudit = auditInfo.isPresent();
+        final AuditRoute auditRoute = auditRoutes.findAuditRoute(httpRequest.getMethod(), requestURI.substring(context.length()));
+        boolean needAudit = auditRoute != null;
 
         ResourceAuditor resourceAuditor = null;
         try {
@@ -139,7 +138,7 @@ public class AuditFilter implements Filter {
                     logger.trace("Will audit request {}", requestURI.substring(context.length()));
                 }
 
-                resourceAuditor = auditInfo.get().getResourceAuditor(request, response, chain, proxyIps, ipHeader);
+                resourceAuditor = auditRoute.getResourceAuditor(request, response, chain, proxyIps, ipHeader);
                 resourceAuditor.doProcess();
             } else {
                 chain.doFilter(request, response);
@@ -151,7 +150,7 @@ public class AuditFilter implements Filter {
                 AuditLogRecord logRecord = resourceAuditor.getAuditLogRecord();
                 if (logRecord != null) {
                     auditLogger.info(logRecord.toLogString());
-                    this.backgroundTaskRunnerService.submitTask(new Task(logRecord));
+                    this.auditLogBuffer.queue(logRecord);
                 }
 
             }
@@ -165,31 +164,4 @@ public class AuditFilter implements Filter {
     public void destroy() {
 
     }
-
-    /**
-     * <p>A task to be used for inserting the audit log record into database in the background.</p>
-     */
-    private class Task implements Runnable {
-
-        /**
-         * <p>An audit log record to be inserted.</p>
-         */
-        private final AuditLogRecord logRecord;
-
-        private Task(AuditLogRecord logRecord) {
-            this.logRecord = logRecord;
-        }
-
-        /**
-         * <pInserts the audit log record into database.</p>
-         */
-        @Override
-        public void run() {
-            try {
-                auditDAO.insertAuditLogRecord(logRecord);
-            } catch (Exception e) {
-                logger.error("Unexpected error when inserting audit log record into database", e);
-            }
-        }
-    }
 }
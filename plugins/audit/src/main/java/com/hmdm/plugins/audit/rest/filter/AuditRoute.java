@@ -0,0 +1,63 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.audit.rest.filter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * <p>A REST resource which is a target for audit tracking.</p>
+ *
+ * @author agent
+ */
+public interface AuditRoute {
+
+    /**
+     * <p>Gets the method for the REST resource to track audit log for.</p>
+     */
+    String getMethod();
+
+    /**
+     * <p>Gets the URI for the REST resource to track audit log for. The URI may contain the wildcard segments as
+     * supported by {@link AuditRouteMatcher}.</p>
+     */
+    String getUri();
+
+    /**
+     * <p>Checks if exact match for the resource URI is required in order to have the incoming request get
+     * audited.</p>
+     */
+    boolean isUriExactMatch();
+
+    /**
+     * <p>Gets the auditor for the specified request/response chain.</p>
+     *
+     * @param request an incoming request to be processed.
+     * @param response a response to be sent to client.
+     * @param chain a filter chain.
+     * @return an auditor for the specified request/response chain.
+     */
+    ResourceAuditor getResourceAuditor(ServletRequest request, ServletResponse response, FilterChain chain,
+                                       String proxyIps, String ipHeader) throws IOException;
+}
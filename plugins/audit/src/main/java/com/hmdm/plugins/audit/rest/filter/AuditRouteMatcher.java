@@ -0,0 +1,217 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.audit.rest.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>A matcher of request method and URI against the set of routes compiled into a tree of URI segments per request
+ * method, so the cost of matching depends on the length of URI rather than on the number of routes.</p>
+ *
+ * <p>A route either matches the URI exactly or matches any URI starting with the route segments. A route segment
+ * written as <code>{name}</code> or <code>*</code> matches any single non-empty URI segment. If several routes match
+ * the URI, the route added first wins.</p>
+ *
+ * @param <T> a type of the values mapped to routes.
+ * @author agent
+ */
+public final class AuditRouteMatcher<T> {
+
+    /**
+     * <p>The roots of route trees mapped to upper-cased request methods.</p>
+     */
+    private final Map<String, Node> roots;
+
+    /**
+     * <p>The values mapped to routes in the order the routes have been added.</p>
+     */
+    private final List<T> values;
+
+    private AuditRouteMatcher(Map<String, Node> roots, List<T> values) {
+        this.roots = roots;
+        this.values = values;
+    }
+
+    /**
+     * <p>Creates new builder for the matcher.</p>
+     */
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * <p>Gets the number of routes in this matcher.</p>
+     */
+    public int size() {
+        return this.values.size();
+    }
+
+    /**
+     * <p>Finds the value mapped to the route matching the specified request.</p>
+     *
+     * @param method a request method.
+     * @param uri a request URI relative to application context.
+     * @return a value mapped to the matching route or <code>null</code> if there is no matching route.
+     */
+    public T match(String method, String uri) {
+        if (method == null || uri == null) {
+            return null;
+        }
+        Node root = this.roots.get(method);
+        if (root == null) {
+            root = this.roots.get(method.toUpperCase(Locale.ROOT));
+            if (root == null) {
+                return null;
+            }
+        }
+        final int index = search(root, uri, 0, Integer.MAX_VALUE);
+        return index == Integer.MAX_VALUE ? null : this.values.get(index);
+    }
+
+    /**
+     * <p>Searches the routes matching the URI from specified position which is either the end of URI or the slash
+     * preceding the next segment.</p>
+     *
+     * @return the lowest index of matching route or <code>Integer.MAX_VALUE</code> if there is no such route.
+     */
+    private static int search(Node node, String uri, int pos, int best) {
+        best = Math.min(best, node.prefixIndex);
+        final int length = uri.length();
+        if (pos >= length) {
+            return Math.min(best, node.exactIndex);
+        }
+        if (uri.charAt(pos) != '/') {
+            return best;
+        }
+
+        int end = uri.indexOf('/', pos + 1);
+        if (end < 0) {
+            end = length;
+        }
+        if (node.children != null) {
+            final Node child = node.children.get(uri.substring(pos + 1, end));
+            if (child != null) {
+                best = search(child, uri, end, best);
+            }
+        }
+        if (node.wildcard != null && end > pos + 1) {
+            best = search(node.wildcard, uri, end, best);
+        }
+        return best;
+    }
+
+    /**
+     * <p>A node of the route tree corresponding to a single URI segment.</p>
+     */
+    private static final class Node {
+        private Map<String, Node> children;
+        private Node wildcard;
+
+        /**
+         * <p>The index of the first route ending at this node and requiring exact match.</p>
+         */
+        private int exactIndex = Integer.MAX_VALUE;
+
+        /**
+         * <p>The index of the first route ending at this node and matching any URI with the same leading
+         * segments.</p>
+         */
+        private int prefixIndex = Integer.MAX_VALUE;
+
+        private Node child(String segment) {
+            if (isWildcard(segment)) {
+                if (this.wildcard == null) {
+                    this.wildcard = new Node();
+                }
+                return this.wildcard;
+            }
+            if (this.children == null) {
+                this.children = new HashMap<>();
+            }
+            return this.children.computeIfAbsent(segment, s -> new Node());
+        }
+
+        private static boolean isWildcard(String segment) {
+            return segment.equals("*") || (segment.length() > 1 && segment.startsWith("{") && segment.endsWith("}"));
+        }
+    }
+
+    /**
+     * <p>A builder for the matcher. The builder is not thread-safe and must not be used after the matcher is built;
+     * the built matcher is immutable.</p>
+     *
+     * @param <T> a type of the values mapped to routes.
+     */
+    public static final class Builder<T> {
+        private final Map<String, Node> roots = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * <p>Adds the route to the matcher.</p>
+         *
+         * @param method a request method.
+         * @param uri a route URI starting with slash; may contain wildcard segments.
+         * @param exactMatch <code>true</code> if the route matches the URI exactly; <code>false</code> if it matches
+         *                   any URI starting with the route segments.
+         * @param value a value to map to the route.
+         * @return this builder.
+         */
+        public Builder<T> add(String method, String uri, boolean exactMatch, T value) {
+            if (!uri.startsWith("/")) {
+                throw new IllegalArgumentException("Route URI must start with slash: " + uri);
+            }
+            Node node = this.roots.computeIfAbsent(method.toUpperCase(Locale.ROOT), m -> new Node());
+            int pos = 0;
+            while (pos < uri.length()) {
+                int end = uri.indexOf('/', pos + 1);
+                if (end < 0) {
+                    end = uri.length();
+                }
+                node = node.child(uri.substring(pos + 1, end));
+                pos = end;
+            }
+
+            final int index = this.values.size();
+            this.values.add(value);
+            if (exactMatch) {
+                node.exactIndex = Math.min(node.exactIndex, index);
+            } else {
+                node.prefixIndex = Math.min(node.prefixIndex, index);
+            }
+            return this;
+        }
+
+        /**
+         * <p>Builds the matcher from the added routes.</p>
+         */
+        public AuditRouteMatcher<T> build() {
+            return new AuditRouteMatcher<>(new HashMap<>(this.roots), new ArrayList<>(this.values));
+        }
+    }
+}
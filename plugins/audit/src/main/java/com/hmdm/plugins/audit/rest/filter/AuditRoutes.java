@@ -0,0 +1,96 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.audit.rest.filter;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>A registry of the REST resources which are targets for audit tracking: the built-in ones listed in
+ * {@link ResourceAuditInfo} and those contributed by plugins.</p>
+ *
+ * <p>A plugin contributes its routes from its Guice module:</p>
+ * <pre>
+ * Multibinder.newSetBinder(binder(), AuditRoute.class).addBinding().toInstance(new PluginAuditRoute(...));
+ * </pre>
+ *
+ * <p>The routes are compiled into {@link AuditRouteMatcher} once on start-up, so the lookup of audit route for the
+ * request does not scan the routes.</p>
+ *
+ * @author agent
+ */
+@Singleton
+public class AuditRoutes {
+
+    /**
+     * <p>A matcher compiled from the registered routes.</p>
+     */
+    private final AuditRouteMatcher<AuditRoute> matcher;
+
+    /**
+     * <p>Constructs new <code>AuditRoutes</code> instance with built-in routes only.</p>
+     */
+    public AuditRoutes() {
+        this(Collections.emptySet());
+    }
+
+    /**
+     * <p>Constructs new <code>AuditRoutes</code> instance with built-in routes and the routes contributed by plugins.
+     * The built-in routes take precedence over the plugin ones if several routes match the same request.</p>
+     *
+     * @param pluginRoutes the routes contributed by plugins.
+     */
+    @Inject
+    public AuditRoutes(Set<AuditRoute> pluginRoutes) {
+        final List<AuditRoute> routes = new ArrayList<>(Arrays.asList(ResourceAuditInfo.values()));
+        routes.addAll(pluginRoutes);
+        this.matcher = compile(routes);
+    }
+
+    /**
+     * <p>Finds the route matching the specified request.</p>
+     *
+     * @param requestMethod a method of the current request.
+     * @param requestUri an URI of the current request relative to application context.
+     * @return a matching route or <code>null</code> if the request is not audited.
+     */
+    public AuditRoute findAuditRoute(String requestMethod, String requestUri) {
+        return this.matcher.match(requestMethod, requestUri);
+    }
+
+    /**
+     * <p>Compiles the matcher from the specified routes.</p>
+     */
+    static AuditRouteMatcher<AuditRoute> compile(List<? extends AuditRoute> routes) {
+        final AuditRouteMatcher.Builder<AuditRoute> builder = AuditRouteMatcher.builder();
+        for (AuditRoute route : routes) {
+            builder.add(route.getMethod(), route.getUri(), route.isUriExactMatch(), route);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.audit.rest.filter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * <p>A REST resource contributed by a plugin which is a target for audit tracking.</p>
+ *
+ * @author agent
+ */
+public class PluginAuditRoute implements AuditRoute {
+
+    private final String method;
+    private final String uri;
+    private final boolean uriExactMatch;
+
+    /**
+     * <p>A key in message resource bundle referring to description of action mapped to audited request.</p>
+     */
+    private final String auditLogAction;
+
+    /**
+     * <p>A flag indicating if request data must be saved as a payload.</p>
+     */
+    private final boolean payload;
+
+    /**
+     * <p>A flag indicating if response is in Headwind MDM standard format and should be checked for errors.</p>
+     */
+    private final boolean checkResponse;
+
+    /**
+     * <p>Constructs new <code>PluginAuditRoute</code> instance. This implementation does nothing.</p>
+     */
+    public PluginAuditRoute(String method, String uri, boolean uriExactMatch, String auditLogAction,
+                            boolean payload, boolean checkResponse) {
+        this.method = method;
+        this.uri = uri;
+        this.uriExactMatch = uriExactMatch;
+        this.auditLogAction = auditLogAction;
+        this.payload = payload;
+        this.checkResponse = checkResponse;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public boolean isUriExactMatch() {
+        return uriExactMatch;
+    }
+
+    @Override
+    public ResourceAuditor getResourceAuditor(ServletRequest request, ServletResponse response, FilterChain chain,
+                                              String proxyIps, String ipHeader) throws IOException {
+        return new ResourceAuditor(auditLogAction, request, response, chain, payload, checkResponse, proxyIps, ipHeader);
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + uri;
+    }
+}
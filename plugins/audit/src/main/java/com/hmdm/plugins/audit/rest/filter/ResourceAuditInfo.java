@@ -24,17 +24,14 @@ package com.hmdm.plugins.audit.rest.filter;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
-import java.awt.image.ImagingOpException;
 import java.io.IOException;
-import java.util.Optional;
-import java.util.stream.Stream;
 
 /**
  * <p>An enumeration over the resources which are targets for audit tracking.</p>
  *
  * @author isv
  */
-public enum ResourceAuditInfo {
+public enum ResourceAuditInfo implements AuditRoute {
     LOGIN("POST", "/rest/public/auth/login", true, "plugin.audit.action.user.login", true, true),
     JWT_LOGIN("POST", "/rest/public/jwt/login", true, "plugin.audit.action.jwt.login", true, false),
     UPDATE_DEVICE("PUT", "/rest/private/devices", true, "plugin.audit.action.update.device", true, true),
@@ -107,6 +104,21 @@ public enum ResourceAuditInfo {
         this.checkResponse = checkResponse;
     }
 
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public boolean isUriExactMatch() {
+        return uriExactMatch;
+    }
+
     /**
      * <p>Gets the auditor for the specified request/response chain.</p>
      *
@@ -115,37 +127,9 @@ public enum ResourceAuditInfo {
      * @param chain a filter chain.
      * @return an auditor for the specified request/response chain.
      */
+    @Override
     public ResourceAuditor getResourceAuditor(ServletRequest request, ServletResponse response, FilterChain chain,
                                               String proxyIps, String ipHeader) throws IOException {
         return new ResourceAuditor(auditLogAction, request, response, chain, payload, checkResponse, proxyIps, ipHeader);
     }
-
-    /**
-     * <p>Checks if specified request URI matches this audit rule.</p>
-     *
-     * @param requestUri an URI for the current request being processed by application.
-     * @return <code>true</code> if there is a match; <code>false</code> otherwise.
-     */
-    private boolean matches(String requestMethod, String requestUri) {
-        if (!this.method.equalsIgnoreCase(requestMethod)) {
-            return false;
-        }
-        if (this.uriExactMatch) {
-            return this.uri.equals(requestUri);
-        } else {
-            return requestUri.startsWith(this.uri);
-        }
-    }
-
-    /**
-     * <p>Finds the details for audit process (if any) to be performed against specified request URI.</p>
-     *
-     * @param requestUri an URI for the current request being processed by application.
-     * @return the details for audit process to apply to processed request.
-     */
-    public static Optional<ResourceAuditInfo> findAuditInfo(String requestMethod, String requestUri) {
-        return Stream.of(ResourceAuditInfo.values())
-                .filter(info -> info.matches(requestMethod, requestUri))
-                .findAny();
-    }
 }
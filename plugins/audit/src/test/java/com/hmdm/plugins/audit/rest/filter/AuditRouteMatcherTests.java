@@ -0,0 +1,207 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.audit.rest.filter;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A test suite for {@link AuditRouteMatcher} and {@link AuditRoutes} classes. Run the build with
+ * <code>-Dbenchmark=true</code> to get the lookup timings logged; otherwise the benchmark is skipped.</p>
+ *
+ * @author agent
+ */
+public class AuditRouteMatcherTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditRouteMatcherTests.class);
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+
+    private static final int BENCHMARK_ROUTES = 500;
+    private static final int BENCHMARK_ITERATIONS = 200000;
+
+    /**
+     * <p>Constructs new <code>AuditRouteMatcherTests</code> instance. This implementation does nothing.</p>
+     */
+    public AuditRouteMatcherTests() {
+    }
+
+    @Test
+    public void testBuiltInRoutesMatchLinearScan() {
+        final AuditRoutes routes = new AuditRoutes();
+        final List<AuditRoute> builtIn = Arrays.asList(ResourceAuditInfo.values());
+        final String[] uris = {
+                "/rest/public/auth/login", "/rest/public/auth/login/extra", "/rest/public/jwt/login",
+                "/rest/private/devices", "/rest/private/devices/12", "/rest/private/devices/",
+                "/rest/private/configurations", "/rest/private/configurations/copy", "/rest/private/configurations/7",
+                "/rest/private/applications/android", "/rest/private/applications/versions/5",
+                "/rest/private/applications/3", "/rest/private/users", "/rest/private/users/current",
+                "/rest/private/users/4", "/rest/private/settings/userRoles/2", "/rest/plugin/main/private/disabled",
+                "/rest/plugins/devicereset/private/reset/15", "/rest/private/unknown", "", "/", "rest/private/devices"
+        };
+        for (String method : METHODS) {
+            for (String uri : uris) {
+                Assert.assertSame(method + " " + uri, scan(builtIn, method, uri), routes.findAuditRoute(method, uri));
+            }
+        }
+        Assert.assertSame("Method must be case-insensitive",
+                ResourceAuditInfo.UPDATE_DEVICE, routes.findAuditRoute("put", "/rest/private/devices"));
+        Assert.assertSame("First declared route must win",
+                ResourceAuditInfo.REMOVE_APP, routes.findAuditRoute("DELETE", "/rest/private/applications/versions/5"));
+    }
+
+    @Test
+    public void testPrefixMatchesWholeSegments() {
+        final AuditRouteMatcher<String> matcher = AuditRouteMatcher.<String>builder()
+                .add("DELETE", "/rest/private/devices", false, "remove")
+                .build();
+        Assert.assertEquals("remove", matcher.match("DELETE", "/rest/private/devices/1"));
+        Assert.assertNull(matcher.match("DELETE", "/rest/private/devicesGroup"));
+        Assert.assertNull(matcher.match("DELETE", "/rest/private"));
+    }
+
+    @Test
+    public void testWildcards() {
+        final AuditRouteMatcher<String> matcher = AuditRouteMatcher.<String>builder()
+                .add("PUT", "/rest/plugins/{plugin}/private/lock", true, "lock")
+                .add("PUT", "/rest/plugins/messaging/private/*/send", true, "send")
+                .add("POST", "/rest/plugins/*/private", false, "any")
+                .build();
+        Assert.assertEquals("lock", matcher.match("PUT", "/rest/plugins/devicereset/private/lock"));
+        Assert.assertNull(matcher.match("PUT", "/rest/plugins/devicereset/private/lock/1"));
+        Assert.assertEquals("send", matcher.match("PUT", "/rest/plugins/messaging/private/12/send"));
+        Assert.assertNull("Wildcard must not match empty segment",
+                matcher.match("PUT", "/rest/plugins/messaging/private//send"));
+        Assert.assertEquals("any", matcher.match("POST", "/rest/plugins/push/private/send"));
+        Assert.assertNull(matcher.match("POST", "/rest/plugins/push/public/send"));
+    }
+
+    @Test
+    public void testPluginRoutes() {
+        final AuditRoute route = new PluginAuditRoute("POST", "/rest/plugins/messaging/private/send", true,
+                "plugin.audit.action.send.message", true, true);
+        Assert.assertNull(new AuditRoutes().findAuditRoute("POST", "/rest/plugins/messaging/private/send"));
+
+        final AuditRoutes routes = new AuditRoutes(Collections.singleton(route));
+        Assert.assertSame(route, routes.findAuditRoute("POST", "/rest/plugins/messaging/private/send"));
+        Assert.assertSame("Built-in routes must be kept",
+                ResourceAuditInfo.LOGIN, routes.findAuditRoute("POST", "/rest/public/auth/login"));
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        final List<AuditRoute> routes = benchmarkRoutes();
+        final AuditRouteMatcher<AuditRoute> matcher = AuditRoutes.compile(routes);
+        Assert.assertEquals(BENCHMARK_ROUTES, matcher.size());
+
+        final String[] methods = new String[256];
+        final String[] uris = new String[methods.length];
+        fillRequests(routes, methods, uris);
+        for (int i = 0; i < methods.length; i++) {
+            Assert.assertSame(methods[i] + " " + uris[i], scan(routes, methods[i], uris[i]), matcher.match(methods[i], uris[i]));
+        }
+    }
+
+    /**
+     * <p>Measures the lookup of the audit route in the segment trie built by {@link AuditRouteMatcher} against the
+     * scan of the route list in declaration order done by the audit filter before. The built-in routes are padded
+     * with plugin routes up to 500, and a fifth of the requests use the method of no route, so the scan misses
+     * often.</p>
+     */
+    @Test
+    public void benchmarkMatch() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+
+        final List<AuditRoute> routes = benchmarkRoutes();
+        final AuditRouteMatcher<AuditRoute> matcher = AuditRoutes.compile(routes);
+        final String[] methods = new String[256];
+        final String[] uris = new String[methods.length];
+        fillRequests(routes, methods, uris);
+
+        int found = 0;
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            found += scan(routes, methods[i & 255], uris[i & 255]) != null ? 1 : 0;
+            found += matcher.match(methods[i & 255], uris[i & 255]) != null ? 1 : 0;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            found += scan(routes, methods[i & 255], uris[i & 255]) != null ? 1 : 0;
+        }
+        final long scanTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            found += matcher.match(methods[i & 255], uris[i & 255]) != null ? 1 : 0;
+        }
+        final long matchTime = System.nanoTime() - start;
+
+        Assert.assertTrue(found > 0);
+        logger.info("Audit route lookup over {} routes: linear scan {} ns/op, matcher {} ns/op",
+                routes.size(), scanTime / BENCHMARK_ITERATIONS, matchTime / BENCHMARK_ITERATIONS);
+    }
+
+    /**
+     * <p>Builds the built-in routes complemented by plugin routes up to several hundred routes.</p>
+     */
+    private static List<AuditRoute> benchmarkRoutes() {
+        final List<AuditRoute> routes = new ArrayList<>(Arrays.asList(ResourceAuditInfo.values()));
+        for (int i = 0; routes.size() < BENCHMARK_ROUTES; i++) {
+            routes.add(new PluginAuditRoute(METHODS[1 + i % 3], "/rest/plugins/plugin" + (i / 10) + "/private/action" + i,
+                    i % 2 == 0, "action" + i, true, true));
+        }
+        return routes;
+    }
+
+    /**
+     * <p>Fills the requests to the routes: the exact route URIs, the URIs under the routes and the methods not
+     * matching the routes.</p>
+     */
+    private static void fillRequests(List<AuditRoute> routes, String[] methods, String[] uris) {
+        for (int i = 0; i < methods.length; i++) {
+            final AuditRoute route = routes.get((i * 7919) % routes.size());
+            methods[i] = i % 5 == 0 ? "POST" : route.getMethod();
+            uris[i] = i % 3 == 0 ? route.getUri() : route.getUri() + "/" + i;
+        }
+    }
+
+    /**
+     * <p>Finds the route by scanning the routes in order as the audit filter used to do.</p>
+     */
+    private static AuditRoute scan(List<? extends AuditRoute> routes, String method, String uri) {
+        for (AuditRoute route : routes) {
+            if (route.getMethod().equalsIgnoreCase(method) &&
+                    (route.isUriExactMatch() ? route.getUri().equals(uri) : uri.startsWith(route.getUri()))) {
+                return route;
+            }
+        }
+        return null;
+    }
+}
@@ -22,10 +22,13 @@
 package com.hmdm.plugins.deviceinfo.guice.module;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.hmdm.event.EventService;
 import com.hmdm.plugin.PluginTaskModule;
 import com.hmdm.plugins.deviceinfo.persistence.CustomerCreatedEventListener;
+import com.hmdm.plugins.deviceinfo.persistence.DeviceInfoBuffer;
 import com.hmdm.plugins.deviceinfo.persistence.DeviceInfoDAO;
+import com.hmdm.plugins.deviceinfo.persistence.DeviceInfoPartitions;
 import com.hmdm.plugins.deviceinfo.persistence.DeviceInfoSettingsDAO;
 import com.hmdm.util.BackgroundTaskRunnerService;
 
@@ -48,11 +51,27 @@ public class DeviceInfoTaskModule implements PluginTaskModule {
     private final DeviceInfoDAO deviceInfoDAO;
 
     private final DeviceInfoSettingsDAO settingsDAO;
+
+    /**
+     * <p>A maintainer of the device info partitions.</p>
+     */
+    private final DeviceInfoPartitions deviceInfoPartitions;
+
+    /**
+     * <p>A buffer of the device info records uploaded by devices.</p>
+     */
+    private final DeviceInfoBuffer deviceInfoBuffer;
+
     /**
      * <p>A runner for the repeatable tasks.</p>
      */
     private final BackgroundTaskRunnerService taskRunner;
 
+    /**
+     * <p>A maximum interval between writes of the buffered device info records (in milliseconds).</p>
+     */
+    private final int flushInterval;
+
     /**
      * <p>Constructs new <code>DeviceInfoTaskModule</code> instance. This implementation does nothing.</p>
      */
@@ -60,20 +79,30 @@ public class DeviceInfoTaskModule implements PluginTaskModule {
     public DeviceInfoTaskModule(EventService eventService,
                                 DeviceInfoDAO deviceInfoDAO,
                                 DeviceInfoSettingsDAO settingsDAO,
-                                BackgroundTaskRunnerService taskRunner) {
+                                DeviceInfoPartitions deviceInfoPartitions,
+                                DeviceInfoBuffer deviceInfoBuffer,
+                                BackgroundTaskRunnerService taskRunner,
+                                @Named("deviceinfo.flush.interval") int flushInterval) {
         this.eventService = eventService;
         this.deviceInfoDAO = deviceInfoDAO;
         this.settingsDAO = settingsDAO;
+        this.deviceInfoPartitions = deviceInfoPartitions;
+        this.deviceInfoBuffer = deviceInfoBuffer;
         this.taskRunner = taskRunner;
+        this.flushInterval = Math.max(100, flushInterval);
     }
 
     /**
      * <p>Initializes this module. Schedules the task for purging the outdated device info records from DB on a daily
-     * basis.</p>
+     * basis, the task for creating the upcoming partitions of device info on hourly basis and the task for writing the
+     * buffered device info records. The buffered records are also written on shutdown.</p>
      */
     @Override
     public void init() {
         taskRunner.submitRepeatableTask(deviceInfoDAO::purgeDeviceInfoRecords, 1, 24, TimeUnit.HOURS);
+        taskRunner.submitRepeatableTask(deviceInfoPartitions::createPartitions, 0, 1, TimeUnit.HOURS);
+        taskRunner.submitRepeatableTask(deviceInfoBuffer::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(deviceInfoBuffer::shutdown));
 
         this.eventService.addEventListener(new CustomerCreatedEventListener(this.settingsDAO));
     }
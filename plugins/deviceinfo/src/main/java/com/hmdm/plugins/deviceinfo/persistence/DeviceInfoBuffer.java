@@ -0,0 +1,73 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.deviceinfo.persistence;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.hmdm.plugins.deviceinfo.persistence.domain.DeviceDynamicInfo;
+import com.hmdm.util.BackgroundTaskRunnerService;
+import com.hmdm.util.TaskCategory;
+import com.hmdm.util.WriteBehindBuffer;
+
+import java.util.List;
+
+/**
+ * <p>A write-behind buffer for the device info records uploaded by devices.</p>
+ *
+ * <p>The records uploaded by all devices are accumulated in memory and written to the database in batches when either
+ * the number of pending records reaches the flush size or the flush interval elapses. If the buffer is full, the
+ * records are not queued and the caller is expected to write them directly.</p>
+ */
+@Singleton
+public class DeviceInfoBuffer extends WriteBehindBuffer<DeviceDynamicInfo> {
+
+    private final DeviceInfoDAO deviceInfoDAO;
+
+    /**
+     * <p>Constructs new <code>DeviceInfoBuffer</code> instance.</p>
+     *
+     * @param capacity a maximum number of records waiting for writing.
+     * @param flushSize a number of records triggering the flush.
+     */
+    @Inject
+    public DeviceInfoBuffer(DeviceInfoDAO deviceInfoDAO,
+                            BackgroundTaskRunnerService taskRunner,
+                            @Named("deviceinfo.buffer.size") int capacity,
+                            @Named("deviceinfo.flush.size") int flushSize) {
+        super("device info", taskRunner, TaskCategory.DEVICE_INFO, capacity, flushSize);
+        this.deviceInfoDAO = deviceInfoDAO;
+    }
+
+    @Override
+    protected int write(List<DeviceDynamicInfo> records) {
+        // The IDs assigned by the failed attempt to write the records are not valid anymore
+        records.forEach(record -> record.setId(null));
+        this.deviceInfoDAO.saveDeviceDynamicData(records);
+        return records.size();
+    }
+
+    @Override
+    protected String getGroupKey(DeviceDynamicInfo record) {
+        return "device #" + record.getDeviceId();
+    }
+}
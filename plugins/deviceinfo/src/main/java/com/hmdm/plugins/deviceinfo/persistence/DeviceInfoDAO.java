@@ -34,7 +34,9 @@ import com.hmdm.plugins.deviceinfo.rest.json.DeviceDynamicInfoRecord;
 import com.hmdm.plugins.deviceinfo.rest.json.DeviceInfo;
 import com.hmdm.plugins.deviceinfo.rest.json.DeviceInfoApplication;
 import com.hmdm.plugins.deviceinfo.rest.json.DynamicInfoFilter;
+import com.hmdm.plugins.deviceinfo.rest.json.LatestInfoFilter;
 import com.hmdm.rest.json.LookupItem;
+import com.hmdm.security.SecurityContext;
 import org.mybatis.guice.transactional.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,8 +47,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -59,6 +62,11 @@ public class DeviceInfoDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(DeviceInfoDAO.class);
 
+    /**
+     * <p>A maximum number of records inserted by a single statement.</p>
+     */
+    private static final int BATCH_SIZE = 1000;
+
     /**
      * <p>An interface to persistence layer.</p>
      */
@@ -81,6 +89,8 @@ public class DeviceInfoDAO {
 
     private final UnsecureDAO unsecureDAO;
 
+    private final DeviceInfoPartitions deviceInfoPartitions;
+
     /**
      * <p>Constructs new <code>DeviceInfoDAO</code> instance. This implementation does nothing.</p>
      */
@@ -89,75 +99,101 @@ public class DeviceInfoDAO {
                          ApplicationDAO applicationDAO,
                          ConfigurationDAO configurationDAO,
                          DeviceDAO deviceDAO,
-                         UnsecureDAO unsecureDAO) {
+                         UnsecureDAO unsecureDAO,
+                         DeviceInfoPartitions deviceInfoPartitions) {
         this.deviceInfoMapper = deviceInfoMapper;
         this.applicationDAO = applicationDAO;
         this.configurationDAO = configurationDAO;
         this.deviceDAO = deviceDAO;
         this.unsecureDAO = unsecureDAO;
+        this.deviceInfoPartitions = deviceInfoPartitions;
     }
 
     /**
-     * <p>Saves the specified list of device info records.</p>
+     * <p>Saves the specified list of device info records. The records are inserted in batches: one multi-row statement
+     * per table for up to {@link #BATCH_SIZE} records instead of one statement per record and group. The latest info
+     * of the devices is updated as well.</p>
      *
      * @param data a list of records to be saved.
      */
     @Transactional
     public void saveDeviceDynamicData(List<DeviceDynamicInfo> data) {
-        AtomicInteger countMain = new AtomicInteger(0);
-        AtomicInteger countDevice = new AtomicInteger(0);
-        AtomicInteger countWifi = new AtomicInteger(0);
-        AtomicInteger countGps = new AtomicInteger(0);
-        AtomicInteger countMobile1 = new AtomicInteger(0);
-        AtomicInteger countMobile2 = new AtomicInteger(0);
-
-        data.forEach(record -> {
-            countMain.addAndGet(
-                    this.deviceInfoMapper.insertDeviceInfoMain(record)
-            );
-            if (record.getDevice() != null) {
-                countDevice.addAndGet(
-                    this.deviceInfoMapper.insertDeviceInfoGroupDevice(record.getId(), record.getDevice())
-                );
-            }
-            if (record.getWifi() != null) {
-                countWifi.addAndGet(
-                    this.deviceInfoMapper.insertDeviceInfoGroupWifi(record.getId(), record.getWifi())
-                );
-            }
-            if (record.getGps() != null) {
-                countGps.addAndGet(
-                    this.deviceInfoMapper.insertDeviceInfoGroupGps(record.getId(), record.getGps())
-                );
-            }
-            if (record.getMobile() != null) {
-                countMobile1.addAndGet(
-                        this.deviceInfoMapper.insertDeviceInfoGroupMobile(record.getId(), record.getMobile())
-                );
-            }
-            if (record.getMobile2() != null) {
-                countMobile2.addAndGet(
-                        this.deviceInfoMapper.insertDeviceInfoGroupMobile2(record.getId(), record.getMobile2())
-                );
-            }
-        });
+        int countMain = 0;
+        int countDevice = 0;
+        int countWifi = 0;
+        int countGps = 0;
+        int countMobile1 = 0;
+        int countMobile2 = 0;
+
+        for (int from = 0; from < data.size(); from += BATCH_SIZE) {
+            final List<DeviceDynamicInfo> batch = data.subList(from, Math.min(data.size(), from + BATCH_SIZE));
+
+            // Assigns the IDs of inserted records used as recordId in groups
+            countMain += this.deviceInfoMapper.insertDeviceInfoMainBatch(batch);
+            countDevice += insertGroup(batch, DeviceDynamicInfo::getDevice,
+                    this.deviceInfoMapper::insertDeviceInfoGroupDeviceBatch);
+            countWifi += insertGroup(batch, DeviceDynamicInfo::getWifi,
+                    this.deviceInfoMapper::insertDeviceInfoGroupWifiBatch);
+            countGps += insertGroup(batch, DeviceDynamicInfo::getGps,
+                    this.deviceInfoMapper::insertDeviceInfoGroupGpsBatch);
+            countMobile1 += insertGroup(batch, DeviceDynamicInfo::getMobile,
+                    this.deviceInfoMapper::insertDeviceInfoGroupMobileBatch);
+            countMobile2 += insertGroup(batch, DeviceDynamicInfo::getMobile2,
+                    this.deviceInfoMapper::insertDeviceInfoGroupMobile2Batch);
+        }
+
+        // A statement can not update the same row twice, so only the latest record of each device is used. The
+        // devices are updated in the same order by all transactions to avoid deadlocks.
+        final Map<Integer, DeviceDynamicInfo> latest = new TreeMap<>();
+        for (DeviceDynamicInfo record : data) {
+            latest.merge(record.getDeviceId(), record, (r1, r2) -> r2.getTs() >= r1.getTs() ? r2 : r1);
+        }
+        final List<DeviceDynamicInfo> latestRecords = new ArrayList<>(latest.values());
+        for (int from = 0; from < latestRecords.size(); from += BATCH_SIZE) {
+            this.deviceInfoMapper.upsertLatestDeviceInfo(
+                    latestRecords.subList(from, Math.min(latestRecords.size(), from + BATCH_SIZE)));
+        }
 
         logger.debug("Number of records inserted: main {}, device group: {}, wi-fi group: {}, gps group: {}, " +
                         "mobile data group 1: {}, mobile data group 2: {} ",
-                countMain.get(),
-                countDevice.get(),
-                countWifi.get(),
-                countGps.get(),
-                countMobile1.get(),
-                countMobile2.get()
+                countMain,
+                countDevice,
+                countWifi,
+                countGps,
+                countMobile1,
+                countMobile2
         );
     }
 
     /**
-     * <p>Deletes the device info records which are older than number of days configured in customer's profile.</p>
+     * <p>Inserts the specified group of parameters for those records which have it.</p>
+     *
+     * @param batch a list of saved records.
+     * @param group a getter for the group of parameters.
+     * @param insert a batch insert of the group.
+     * @return a number of inserted group records.
+     */
+    private static int insertGroup(List<DeviceDynamicInfo> batch,
+                                   Function<DeviceDynamicInfo, ?> group,
+                                   Function<List<DeviceDynamicInfo>, Integer> insert) {
+        final List<DeviceDynamicInfo> records = batch.stream()
+                .filter(record -> group.apply(record) != null)
+                .collect(Collectors.toList());
+        return records.isEmpty() ? 0 : insert.apply(records);
+    }
+
+    /**
+     * <p>Deletes the device info records which are older than number of days configured in customer's profile. If the
+     * device info tables are partitioned, then the outdated partitions are dropped instead.</p>
      */
     public void purgeDeviceInfoRecords() {
         try {
+            if (this.deviceInfoPartitions.isPartitioned()) {
+                logger.info("Dropping outdated partitions of device parameter records...");
+                this.deviceInfoPartitions.dropOutdatedPartitions();
+                return;
+            }
+
             logger.info("Deleting outdated device parameter records...");
 
             List<Customer> customers = unsecureDAO.getAllCustomersUnsecure();
@@ -244,4 +280,37 @@ public class DeviceInfoDAO {
     public long countAllDynamicData(DynamicInfoFilter filter) {
         return this.deviceInfoMapper.countAllDynamicData(filter);
     }
+
+    /**
+     * <p>Gets the latest dynamic info of the devices available to current user matching the specified filter.</p>
+     *
+     * @param filter a filter used to narrowing down the search results.
+     * @return a list of the latest dynamic info records, one per device.
+     */
+    public List<DeviceDynamicInfoRecord> searchLatestDynamicData(LatestInfoFilter filter) {
+        return SecurityContext.get().getCurrentUser()
+                .map(user -> {
+                    filter.setUserId(user.getId());
+                    filter.setCustomerId(user.getCustomerId());
+                    return this.deviceInfoMapper.searchLatestDynamicData(filter);
+                })
+                .orElse(new ArrayList<>());
+    }
+
+    /**
+     * <p>Counts the devices available to current user having the latest dynamic info matching the specified
+     * filter.</p>
+     *
+     * @param filter a filter used to narrowing down the search results.
+     * @return a number of matching devices.
+     */
+    public long countLatestDynamicData(LatestInfoFilter filter) {
+        return SecurityContext.get().getCurrentUser()
+                .map(user -> {
+                    filter.setUserId(user.getId());
+                    filter.setCustomerId(user.getCustomerId());
+                    return this.deviceInfoMapper.countLatestDynamicData(filter);
+                })
+                .orElse(0L);
+    }
 }
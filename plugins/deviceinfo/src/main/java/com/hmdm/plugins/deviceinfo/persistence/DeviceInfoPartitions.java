@@ -0,0 +1,226 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.deviceinfo.persistence;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hmdm.persistence.domain.TablePartition;
+import com.hmdm.plugins.deviceinfo.persistence.mapper.DeviceInfoMapper;
+import org.mybatis.guice.transactional.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A maintainer of the partitions of the device info tables.</p>
+ *
+ * <p>If the database supports declarative partitioning, the <code>plugin_deviceinfo_deviceParams</code> table is
+ * partitioned by the record time into daily partitions and the tables of parameter groups are partitioned by the
+ * record ID into the ranges holding about a day of records each. The records created before the tables were
+ * partitioned are kept in a single partition of each table. The partitions for the upcoming records are created in
+ * advance; the outdated partitions are dropped as a whole instead of deleting the records. The records not matching any
+ * partition are kept in the default partition of each table.</p>
+ *
+ * @author agent
+ */
+@Singleton
+public class DeviceInfoPartitions {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceInfoPartitions.class);
+
+    private static final String MAIN_TABLE = "plugin_deviceinfo_deviceparams";
+
+    /**
+     * <p>The tables of parameter groups referring to the records of main table.</p>
+     */
+    private static final List<String> GROUP_TABLES = Arrays.asList(
+            "plugin_deviceinfo_deviceparams_device",
+            "plugin_deviceinfo_deviceparams_wifi",
+            "plugin_deviceinfo_deviceparams_gps",
+            "plugin_deviceinfo_deviceparams_mobile",
+            "plugin_deviceinfo_deviceparams_mobile2"
+    );
+
+    private static final DateTimeFormatter PARTITION_NAME_FORMAT
+            = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    /**
+     * <p>A time range covered by a single partition of main table.</p>
+     */
+    private static final long PARTITION_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * <p>A number of partitions of main table created in advance.</p>
+     */
+    private static final int PARTITIONS_AHEAD = 7;
+
+    /**
+     * <p>A minimum range of record IDs covered by a single partition of group tables.</p>
+     */
+    private static final long MIN_ID_RANGE = 100000;
+
+    private final DeviceInfoMapper deviceInfoMapper;
+
+    private volatile Boolean partitioned;
+
+    /**
+     * <p>Constructs new <code>DeviceInfoPartitions</code> instance. This implementation does nothing.</p>
+     */
+    @Inject
+    public DeviceInfoPartitions(DeviceInfoMapper deviceInfoMapper) {
+        this.deviceInfoMapper = deviceInfoMapper;
+    }
+
+    /**
+     * <p>Checks if the device info tables are partitioned.</p>
+     */
+    public boolean isPartitioned() {
+        if (this.partitioned == null) {
+            this.partitioned = Boolean.TRUE.equals(this.deviceInfoMapper.isDeviceInfoPartitioned());
+        }
+        return this.partitioned;
+    }
+
+    /**
+     * <p>Creates the partitions for the upcoming records unless they exist already: the daily partitions of main
+     * table for the current and the upcoming days and the partitions of group tables for the next range of record
+     * IDs. Does nothing if the tables are not partitioned.</p>
+     */
+    public void createPartitions() {
+        try {
+            if (!isPartitioned()) {
+                return;
+            }
+            createMainPartitions();
+            createGroupPartitions();
+        } catch (Exception e) {
+            logger.error("Unexpected error when creating the device info partitions", e);
+        }
+    }
+
+    private void createMainPartitions() {
+        final List<TablePartition> partitions = this.deviceInfoMapper.getPartitions(MAIN_TABLE);
+        final long today = System.currentTimeMillis() / PARTITION_INTERVAL * PARTITION_INTERVAL;
+        for (int i = 0; i <= PARTITIONS_AHEAD; i++) {
+            final long fromTime = today + i * PARTITION_INTERVAL;
+            final long toTime = fromTime + PARTITION_INTERVAL;
+            if (partitions.stream().noneMatch(p -> p.overlaps(fromTime, toTime))) {
+                createPartition(MAIN_TABLE, "ts", mainPartitionName(fromTime), fromTime, toTime);
+            }
+        }
+    }
+
+    /**
+     * <p>Creates the partitions of group tables so the IDs up to the next range after the last used record ID are
+     * covered. The range is estimated as a number of records in main table for the previous day.</p>
+     */
+    private void createGroupPartitions() {
+        final long lastId = this.deviceInfoMapper.getLastDeviceInfoId();
+        final Long recordsPerDay = this.deviceInfoMapper.getEstimatedRowCount(
+                mainPartitionName(System.currentTimeMillis() / PARTITION_INTERVAL * PARTITION_INTERVAL - PARTITION_INTERVAL)
+        );
+        final long range = Math.max(MIN_ID_RANGE, recordsPerDay != null ? recordsPerDay : 0);
+
+        for (String table : GROUP_TABLES) {
+            long toId = this.deviceInfoMapper.getPartitions(table).stream()
+                    .filter(p -> !p.isDefault() && p.getTo() != null)
+                    .mapToLong(TablePartition::getTo)
+                    .max()
+                    .orElse(lastId + 1);
+            while (toId <= lastId + range) {
+                createPartition(table, "recordId", table + "_r" + toId, toId, toId + range);
+                toId += range;
+            }
+        }
+    }
+
+    /**
+     * <p>Creates the partition for the specified range of partition key. The records in that range are moved to new
+     * partition from the default one.</p>
+     *
+     * @param table a name of the partitioned table.
+     * @param column a name of partition key column.
+     * @param name a name of the partition table.
+     * @param from a lower bound of the range (inclusive).
+     * @param to an upper bound of the range (exclusive).
+     */
+    @Transactional
+    public void createPartition(String table, String column, String name, long from, long to) {
+        this.deviceInfoMapper.createPartitionTable(table, name);
+        final int moved = this.deviceInfoMapper.moveDefaultPartitionRecords(table, column, name, from, to);
+        this.deviceInfoMapper.attachPartition(table, name, from, to);
+        logger.info("Created device info partition {} ({} records moved from the default partition)", name, moved);
+    }
+
+    /**
+     * <p>Drops the partitions holding the outdated records only and deletes the outdated records from the default
+     * partition of main table. The partitions of group tables are dropped once the records of main table in their
+     * ranges are gone.</p>
+     */
+    public void dropOutdatedPartitions() {
+        final Long purgeTime = this.deviceInfoMapper.getDeviceInfoPurgeTime();
+        if (purgeTime == null) {
+            return;
+        }
+        for (TablePartition partition : this.deviceInfoMapper.getPartitions(MAIN_TABLE)) {
+            final Long toTime = partition.getTo();
+            if (!partition.isDefault() && toTime != null && toTime <= purgeTime) {
+                this.deviceInfoMapper.dropPartition(partition.getName());
+                logger.info("Dropped outdated device info partition {}", partition.getName());
+            }
+        }
+        final int count = this.deviceInfoMapper.purgeDefaultPartitionRecords(purgeTime);
+        if (count > 0) {
+            logger.info("Deleted {} outdated records from the default device info partition", count);
+        }
+
+        final long lastId = this.deviceInfoMapper.getLastDeviceInfoId();
+        final Map<String, Boolean> rangeUsed = new HashMap<>();
+        for (String table : GROUP_TABLES) {
+            for (TablePartition partition : this.deviceInfoMapper.getPartitions(table)) {
+                final Long toId = partition.getTo();
+                if (partition.isDefault() || toId == null || toId > lastId) {
+                    continue;
+                }
+                final long fromId = partition.getFrom() != null ? partition.getFrom() : Long.MIN_VALUE;
+                final boolean used = rangeUsed.computeIfAbsent(fromId + ":" + toId,
+                        range -> this.deviceInfoMapper.hasDeviceInfoRecords(fromId, toId));
+                if (!used) {
+                    this.deviceInfoMapper.dropPartition(partition.getName());
+                    logger.info("Dropped outdated device info partition {}", partition.getName());
+                }
+            }
+        }
+    }
+
+    private static String mainPartitionName(long fromTime) {
+        return MAIN_TABLE + "_p" + PARTITION_NAME_FORMAT.format(Instant.ofEpochMilli(fromTime));
+    }
+}
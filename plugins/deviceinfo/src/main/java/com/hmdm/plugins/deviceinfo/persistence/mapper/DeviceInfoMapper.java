@@ -21,22 +21,20 @@
 
 package com.hmdm.plugins.deviceinfo.persistence.mapper;
 
-import com.hmdm.plugins.deviceinfo.persistence.domain.DeviceData;
+import com.hmdm.persistence.domain.TablePartition;
 import com.hmdm.plugins.deviceinfo.persistence.domain.DeviceDynamicInfo;
 import com.hmdm.plugins.deviceinfo.persistence.domain.DeviceInfoPluginSettings;
-import com.hmdm.plugins.deviceinfo.persistence.domain.GpsData;
-import com.hmdm.plugins.deviceinfo.persistence.domain.MobileData;
-import com.hmdm.plugins.deviceinfo.persistence.domain.WifiData;
 import com.hmdm.plugins.deviceinfo.rest.json.DeviceDynamicInfoRecord;
 import com.hmdm.plugins.deviceinfo.rest.json.DeviceInfo;
 import com.hmdm.plugins.deviceinfo.rest.json.DynamicInfoExportFilter;
 import com.hmdm.plugins.deviceinfo.rest.json.DynamicInfoFilter;
+import com.hmdm.plugins.deviceinfo.rest.json.LatestInfoFilter;
 import com.hmdm.rest.json.LookupItem;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
-import org.apache.ibatis.annotations.SelectKey;
+import org.apache.ibatis.annotations.Update;
 import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
@@ -69,127 +67,26 @@ public interface DeviceInfoMapper {
     })
     void savePluginSettings(DeviceInfoPluginSettings settings);
 
-    @Insert("INSERT INTO plugin_deviceinfo_deviceParams (deviceId, customerId, ts) VALUES (#{deviceId}, #{customerId}, #{ts})")
-    @SelectKey(statement = "SELECT currval('plugin_deviceinfo_deviceParams_id_seq')",
-            keyColumn = "id", keyProperty = "id", before = false, resultType = int.class)
-    int insertDeviceInfoMain(DeviceDynamicInfo record);
-
-    @Insert("INSERT INTO plugin_deviceinfo_deviceParams_device (" +
-            "  recordId," +
-            "  batteryLevel," +
-            "  batteryCharging," +
-            "  ip," +
-            "  keyguard," +
-            "  ringVolume," +
-            "  wifi," +
-            "  mobileData," +
-            "  gps," +
-            "  bluetooth," +
-            "  usbStorage," +
-            "  memoryTotal," +
-            "  memoryAvailable" +
-            ") VALUES (" +
-            "  #{recordId}," +
-            "  #{item.batteryLevel}," +
-            "  #{item.batteryCharging}," +
-            "  #{item.ip}," +
-            "  #{item.keyguard}," +
-            "  #{item.ringVolume}," +
-            "  #{item.wifi}," +
-            "  #{item.mobileData}," +
-            "  #{item.gps}," +
-            "  #{item.bluetooth}," +
-            "  #{item.usbStorage}," +
-            "  #{item.memoryTotal}," +
-            "  #{item.memoryAvailable}" +
-            ")")
-    int insertDeviceInfoGroupDevice(@Param("recordId") Integer recordId, @Param("item") DeviceData device);
-
-    @Insert("INSERT INTO plugin_deviceinfo_deviceParams_wifi (" +
-            "  recordId," +
-            "  rssi," +
-            "  ssid," +
-            "  security," +
-            "  state," +
-            "  ip," +
-            "  tx," +
-            "  rx" +
-            ") VALUES (" +
-            "  #{recordId}," +
-            "  #{item.rssi}," +
-            "  #{item.ssid}," +
-            "  #{item.security}," +
-            "  #{item.state}," +
-            "  #{item.ip}," +
-            "  #{item.tx}," +
-            "  #{item.rx}" +
-            ")")
-    int insertDeviceInfoGroupWifi(@Param("recordId") Integer recordId, @Param("item") WifiData wifi);
-
-    @Insert("INSERT INTO plugin_deviceinfo_deviceParams_gps (" +
-            "  recordId," +
-            "  state," +
-            "  lat," +
-            "  lon," +
-            "  alt," +
-            "  speed," +
-            "  course" +
-            ") VALUES (" +
-            "  #{recordId}," +
-            "  #{item.state}," +
-            "  #{item.lat}," +
-            "  #{item.lon}," +
-            "  #{item.alt}," +
-            "  #{item.speed}," +
-            "  #{item.course}" +
-            ")")
-    int insertDeviceInfoGroupGps(@Param("recordId") Integer recordId, @Param("item") GpsData gps);
-
-    @Insert("INSERT INTO plugin_deviceinfo_deviceParams_mobile (" +
-            "  recordId," +
-            "  rssi," +
-            "  carrier," +
-            "  data," +
-            "  ip," +
-            "  state," +
-            "  simState," +
-            "  tx," +
-            "  rx" +
-            ") VALUES (" +
-            "  #{recordId}," +
-            "  #{item.rssi}," +
-            "  #{item.carrier}," +
-            "  #{item.data}," +
-            "  #{item.ip}," +
-            "  #{item.state}," +
-            "  #{item.simState}," +
-            "  #{item.tx}," +
-            "  #{item.rx}" +
-            ")")
-    int insertDeviceInfoGroupMobile(@Param("recordId") Integer recordId, @Param("item") MobileData mobile);
-
-    @Insert("INSERT INTO plugin_deviceinfo_deviceParams_mobile2 (" +
-            "  recordId," +
-            "  rssi," +
-            "  carrier," +
-            "  data," +
-            "  ip," +
-            "  state," +
-            "  simState," +
-            "  tx," +
-            "  rx" +
-            ") VALUES (" +
-            "  #{recordId}," +
-            "  #{item.rssi}," +
-            "  #{item.carrier}," +
-            "  #{item.data}," +
-            "  #{item.ip}," +
-            "  #{item.state}," +
-            "  #{item.simState}," +
-            "  #{item.tx}," +
-            "  #{item.rx}" +
-            ")")
-    int insertDeviceInfoGroupMobile2(@Param("recordId") Integer recordId, @Param("item") MobileData mobile);
+    /**
+     * <p>Inserts the specified records into main table and sets their IDs.</p>
+     *
+     * @param records a list of records to insert.
+     * @return a number of inserted records.
+     */
+    int insertDeviceInfoMainBatch(List<DeviceDynamicInfo> records);
+
+    /**
+     * <p>Inserts the <code>device</code> groups of specified records having their IDs set.</p>
+     */
+    int insertDeviceInfoGroupDeviceBatch(List<DeviceDynamicInfo> records);
+
+    int insertDeviceInfoGroupWifiBatch(List<DeviceDynamicInfo> records);
+
+    int insertDeviceInfoGroupGpsBatch(List<DeviceDynamicInfo> records);
+
+    int insertDeviceInfoGroupMobileBatch(List<DeviceDynamicInfo> records);
+
+    int insertDeviceInfoGroupMobile2Batch(List<DeviceDynamicInfo> records);
 
     /**
      * <p>Deletes the device info records which are older than number of days configured in customer's profile.</p>
@@ -202,6 +99,65 @@ public interface DeviceInfoMapper {
             "            WHERE pds.customerId =  #{customerId})")
     int purgeDeviceInfoRecords(@Param("customerId") int customerId);
 
+    // ------------ device info partitions ------------------------------------------------------------------------------
+    @Select("SELECT COALESCE(relkind = 'p', FALSE) FROM pg_class WHERE oid = to_regclass('plugin_deviceinfo_deviceParams')")
+    Boolean isDeviceInfoPartitioned();
+
+    @Select("SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound " +
+            "FROM pg_inherits i " +
+            "INNER JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass(#{table})")
+    List<TablePartition> getPartitions(@Param("table") String table);
+
+    /**
+     * <p>Gets the time before which the device info records are outdated. The shortest period configured in
+     * customers' profiles is used as the records are stored in a single table.</p>
+     *
+     * @return a time in milliseconds since epoch or <code>null</code> if there are no settings.
+     */
+    @Select("SELECT MIN(EXTRACT(EPOCH FROM DATE_TRUNC('day', NOW() - (dataPreservePeriod || ' day')::INTERVAL)) * 1000)::BIGINT " +
+            "FROM plugin_deviceinfo_settings")
+    Long getDeviceInfoPurgeTime();
+
+    @Select("SELECT last_value FROM plugin_deviceinfo_deviceParams_id_seq")
+    long getLastDeviceInfoId();
+
+    /**
+     * <p>Gets the estimated number of rows in the specified table based on the database statistics.</p>
+     */
+    @Select("SELECT GREATEST(reltuples, 0)::BIGINT FROM pg_class WHERE oid = to_regclass(#{table})")
+    Long getEstimatedRowCount(@Param("table") String table);
+
+    @Select("SELECT EXISTS (SELECT 1 FROM plugin_deviceinfo_deviceParams WHERE id >= #{fromId} AND id < #{toId})")
+    boolean hasDeviceInfoRecords(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Update("CREATE TABLE ${name} (LIKE ${table} INCLUDING DEFAULTS)")
+    void createPartitionTable(@Param("table") String table, @Param("name") String name);
+
+    @Insert("WITH moved AS (" +
+            "  DELETE FROM ${table}_default " +
+            "  WHERE ${column} >= #{from} AND ${column} < #{to} " +
+            "  RETURNING *" +
+            ") " +
+            "INSERT INTO ${name} SELECT * FROM moved")
+    int moveDefaultPartitionRecords(@Param("table") String table,
+                                    @Param("column") String column,
+                                    @Param("name") String name,
+                                    @Param("from") long from,
+                                    @Param("to") long to);
+
+    @Update("ALTER TABLE ${table} ATTACH PARTITION ${name} FOR VALUES FROM (${from}) TO (${to})")
+    void attachPartition(@Param("table") String table,
+                         @Param("name") String name,
+                         @Param("from") long from,
+                         @Param("to") long to);
+
+    @Update("DROP TABLE ${name}")
+    void dropPartition(@Param("name") String name);
+
+    @Delete("DELETE FROM plugin_deviceinfo_deviceParams_default WHERE ts < #{purgeTime}")
+    int purgeDefaultPartitionRecords(@Param("purgeTime") long purgeTime);
+
     @Select("SELECT " +
             "    devices.id AS id," +
             "    devices.number AS deviceNumber," +
@@ -244,69 +200,37 @@ public interface DeviceInfoMapper {
             "ORDER BY groups.name ")
     List<LookupItem> getDeviceGroups(@Param("id") int deviceId);
 
-    @Select("SELECT " +
-            "    p.ts AS latestUpdateTime," +
-            "" +
-            "    main.batteryLevel AS deviceBatteryLevel," +
-            "    main.batteryCharging AS deviceBatteryCharging," +
-            "    main.ip AS deviceIpAddress," +
-            "    main.keyguard AS deviceKeyguard," +
-            "    main.ringVolume AS deviceRingVolume," +
-            "    main.wifi AS deviceWifiEnabled," +
-            "    main.mobileData AS deviceMobileDataEnabled," +
-            "    main.gps AS deviceGpsEnabled," +
-            "    main.bluetooth AS deviceBluetoothEnabled," +
-            "    main.usbStorage AS deviceUsbEnabled," +
-            "    main.memoryTotal AS deviceMemoryTotal," +
-            "    main.memoryAvailable AS deviceMemoryAvailable," +
-            "" +
-            "    wifi.rssi AS wifiRssi," +
-            "    wifi.ssid AS wifiSsid," +
-            "    wifi.security AS wifiSecurity," +
-            "    wifi.state AS wifiState," +
-            "    wifi.ip AS wifiIpAddress," +
-            "    wifi.tx AS wifiTx," +
-            "    wifi.rx AS wifiRx," +
-            "" +
-            "    gps.state AS gpsState," +
-            "    gps.lat AS gpsLat," +
-            "    gps.lon AS gpsLon," +
-            "    gps.alt AS gpsAlt," +
-            "    gps.speed AS gpsSpeed," +
-            "    gps.course AS gpsCourse," +
-            "" +
-            "    mobile.rssi AS mobile1Rssi," +
-            "    mobile.carrier AS mobile1Carrier," +
-            "    mobile.data AS mobile1DataEnabled," +
-            "    mobile.ip AS mobile1IpAddress," +
-            "    mobile.state AS mobile1State," +
-            "    mobile.simState AS mobile1SimState," +
-            "    mobile.tx AS mobile1Tx," +
-            "    mobile.rx AS mobile1Rx," +
-            "" +
-            "    mobile2.rssi AS mobile2Rssi," +
-            "    mobile2.carrier AS mobile2Carrier," +
-            "    mobile2.data AS mobile2DataEnabled," +
-            "    mobile2.ip AS mobile2IpAddress," +
-            "    mobile2.state AS mobile2State," +
-            "    mobile2.simState AS mobile2SimState," +
-            "    mobile2.tx AS mobile2Tx," +
-            "    mobile2.rx AS mobile2Rx" +
-            " " +
-            "FROM plugin_deviceinfo_deviceParams p " +
-            "LEFT JOIN plugin_deviceinfo_deviceParams_device main ON main.recordId = p.id " +
-            "LEFT JOIN plugin_deviceinfo_deviceParams_wifi wifi ON wifi.recordId = p.id " +
-            "LEFT JOIN plugin_deviceinfo_deviceParams_gps gps ON gps.recordId = p.id " +
-            "LEFT JOIN plugin_deviceinfo_deviceParams_mobile mobile ON mobile.recordId = p.id " +
-            "LEFT JOIN plugin_deviceinfo_deviceParams_mobile2 mobile2 ON mobile2.recordId = p.id " +
-            "WHERE p.deviceId = #{id} " +
-            "AND p.ts = (SELECT MAX(p2.ts) FROM plugin_deviceinfo_deviceParams p2 WHERE p2.deviceId = #{id}) " +
-            "LIMIT 1")
+    @Select("SELECT latest.*, latest.ts AS latestUpdateTime " +
+            "FROM plugin_deviceinfo_deviceParams_latest latest " +
+            "WHERE latest.deviceId = #{id}")
     DeviceDynamicInfoRecord getLatestDeviceDynamicInfo(@Param("id") int deviceId);
 
+    /**
+     * <p>Updates the latest device info of devices with specified records unless a newer info is already stored.</p>
+     *
+     * @param records a list of saved records having their IDs set; at most one record per device.
+     */
+    void upsertLatestDeviceInfo(List<DeviceDynamicInfo> records);
+
+    List<DeviceDynamicInfoRecord> searchLatestDynamicData(LatestInfoFilter filter);
+
+    long countLatestDynamicData(LatestInfoFilter filter);
+
     List<DeviceDynamicInfoRecord> searchDynamicData(DynamicInfoFilter filter);
 
     Cursor<DeviceDynamicInfoRecord> searchDynamicDataForExport(DynamicInfoExportFilter filter);
 
+    /**
+     * <p>Gets the device info records of devices available to user within the range of device IDs specified by
+     * filter ordered by device ID.</p>
+     */
+    Cursor<DeviceDynamicInfoRecord> searchFleetDynamicDataForExport(DynamicInfoExportFilter filter);
+
+    @Select("SELECT MIN(id) FROM devices WHERE customerId = #{customerId}")
+    Integer getMinDeviceId(@Param("customerId") int customerId);
+
+    @Select("SELECT MAX(id) FROM devices WHERE customerId = #{customerId}")
+    Integer getMaxDeviceId(@Param("customerId") int customerId);
+
     long countAllDynamicData(DynamicInfoFilter filter);
 }
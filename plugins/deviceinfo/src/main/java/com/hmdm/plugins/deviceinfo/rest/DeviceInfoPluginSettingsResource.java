@@ -25,6 +25,7 @@ import com.hmdm.notification.PushService;
 import com.hmdm.persistence.DeviceDAO;
 import com.hmdm.persistence.UnsecureDAO;
 import com.hmdm.persistence.domain.Device;
+import com.hmdm.persistence.domain.DeviceIdentity;
 import com.hmdm.persistence.domain.Settings;
 import com.hmdm.plugin.service.PluginStatusCache;
 import com.hmdm.plugins.deviceinfo.persistence.DeviceInfoSettingsDAO;
@@ -165,7 +166,7 @@ public class DeviceInfoPluginSettingsResource {
     public Response lookupDevices(@PathParam("deviceNumber") String deviceNumber) {
         try {
             // Find device and set the device ID for records
-            Device dbDevice = this.unsecureDAO.getDeviceByNumber(deviceNumber);
+            DeviceIdentity dbDevice = this.unsecureDAO.getDeviceIdentityByNumber(deviceNumber);
             if (dbDevice == null) {
                 logger.error("Device {} was not found", deviceNumber);
                 return Response.DEVICE_NOT_FOUND_ERROR();
@@ -26,13 +26,16 @@ import com.hmdm.event.EventService;
 import com.hmdm.persistence.DeviceDAO;
 import com.hmdm.persistence.UnsecureDAO;
 import com.hmdm.persistence.domain.Device;
+import com.hmdm.persistence.domain.DeviceIdentity;
 import com.hmdm.plugin.service.PluginStatusCache;
+import com.hmdm.plugins.deviceinfo.persistence.DeviceInfoBuffer;
 import com.hmdm.plugins.deviceinfo.persistence.DeviceInfoDAO;
 import com.hmdm.plugins.deviceinfo.persistence.domain.DeviceDynamicInfo;
 import com.hmdm.plugins.deviceinfo.rest.json.DeviceDynamicInfoRecord;
 import com.hmdm.plugins.deviceinfo.rest.json.DeviceInfo;
 import com.hmdm.plugins.deviceinfo.rest.json.DynamicInfoExportFilter;
 import com.hmdm.plugins.deviceinfo.rest.json.DynamicInfoFilter;
+import com.hmdm.plugins.deviceinfo.rest.json.LatestInfoFilter;
 import com.hmdm.plugins.deviceinfo.service.DeviceInfoExportService;
 import com.hmdm.rest.json.DeviceLocation;
 import com.hmdm.rest.json.DeviceLookupItem;
@@ -82,6 +85,11 @@ public class DeviceInfoResource {
      */
     private DeviceInfoDAO deviceInfoDAO;
 
+    /**
+     * <p>A buffer of device info records waiting for writing.</p>
+     */
+    private DeviceInfoBuffer deviceInfoBuffer;
+
     /**
      * <p>An interface to persistence without security checks.</p>
      */
@@ -115,12 +123,14 @@ public class DeviceInfoResource {
      */
     @Inject
     public DeviceInfoResource(DeviceInfoDAO deviceInfoDAO,
+                              DeviceInfoBuffer deviceInfoBuffer,
                               UnsecureDAO unsecureDAO,
                               DeviceDAO deviceDAO,
                               DeviceInfoExportService deviceInfoExportService,
                               PluginStatusCache pluginStatusCache,
                               EventService eventService) {
         this.deviceInfoDAO = deviceInfoDAO;
+        this.deviceInfoBuffer = deviceInfoBuffer;
         this.unsecureDAO = unsecureDAO;
         this.deviceDAO = deviceDAO;
         this.deviceInfoExportService = deviceInfoExportService;
@@ -141,7 +151,7 @@ public class DeviceInfoResource {
     public Response saveDeviceInfo(@PathParam("deviceNumber") String deviceNumber, List<DeviceDynamicInfo> data) {
         try {
             // Find device and set the device ID for records
-            Device dbDevice = this.unsecureDAO.getDeviceByNumber(deviceNumber);
+            DeviceIdentity dbDevice = this.unsecureDAO.getDeviceIdentityByNumber(deviceNumber);
             if (dbDevice == null) {
                 logger.error("Device {} was not found", deviceNumber);
                 return Response.DEVICE_NOT_FOUND_ERROR();
@@ -159,7 +169,9 @@ public class DeviceInfoResource {
                     record.setCustomerId(dbDevice.getCustomerId());
                 });
 
-                this.deviceInfoDAO.saveDeviceDynamicData(data);
+                if (!this.deviceInfoBuffer.queue(data)) {
+                    this.deviceInfoDAO.saveDeviceDynamicData(data);
+                }
 
                 // Send locations to the location plugin
                 List<DeviceLocation> locations = new LinkedList<>();
@@ -275,7 +287,41 @@ public class DeviceInfoResource {
     }
 
     /**
-     * <p>Exports the devices related to selected group or configuration to Excel file and sends it back to client.</p>
+     * <p>Gets the latest dynamic info of the devices matching the specified filter.</p>
+     *
+     * @param filter a filter to be used for filtering the devices.
+     * @return a response with list of the latest dynamic info records matching the specified filter.
+     */
+    @ApiOperation(
+            value = "Search latest dynamic info",
+            notes = "Gets the list of the latest dynamic info records of devices matching the specified filter",
+            response = PaginatedData.class,
+            authorizations = {@Authorization("Bearer Token")}
+    )
+    @POST
+    @Path("/private/search/latest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response searchLatestDynamicInfo(LatestInfoFilter filter) {
+        try {
+            if (!SecurityContext.get().hasPermission("plugin_deviceinfo_access")) {
+                logger.error("Forbidding access to the latest device info for user: {}",
+                        SecurityContext.get().getCurrentUserName());
+                return Response.PERMISSION_DENIED();
+            }
+
+            final List<DeviceDynamicInfoRecord> items = this.deviceInfoDAO.searchLatestDynamicData(filter);
+            long count = this.deviceInfoDAO.countLatestDynamicData(filter);
+
+            return Response.OK(new PaginatedData<>(items, count));
+        } catch (Exception e) {
+            logger.error("Unexpected error when searching for the latest device info", e);
+            return Response.INTERNAL_ERROR();
+        }
+    }
+
+    /**
+     * <p>Exports the dynamic info records of the device (or of all devices if none is specified) to CSV file and sends
+     * it back to client.</p>
      *
      * @param request the parameters of device export process.
      * @return a response to be sent to client.
@@ -296,17 +342,20 @@ public class DeviceInfoResource {
                 return javax.ws.rs.core.Response.status(javax.ws.rs.core.Response.Status.FORBIDDEN).build();
             }
 
-            Device dbDevice = this.deviceDAO.getDeviceByNumber(request.getDeviceNumber());
-            if (dbDevice == null) {
-                logger.error("Device {} was not found", request.getDeviceNumber());
-                return javax.ws.rs.core.Response.serverError().build();
-            }
+            String fileName = "deviceinfo";
+            if (request.getDeviceNumber() != null && !request.getDeviceNumber().isEmpty()) {
+                Device dbDevice = this.deviceDAO.getDeviceByNumber(request.getDeviceNumber());
+                if (dbDevice == null) {
+                    logger.error("Device {} was not found", request.getDeviceNumber());
+                    return javax.ws.rs.core.Response.serverError().build();
+                }
 
-            request.setDeviceId(dbDevice.getId());
+                request.setDeviceId(dbDevice.getId());
+                fileName = request.getDeviceNumber();
+            }
 
-            String fileName = request.getDeviceNumber();
             ContentDisposition contentDisposition = ContentDisposition.type("attachment")
-                    .fileName(fileName + ".csv")
+                    .fileName(fileName + (request.isGzip() ? ".csv.gz" : ".csv"))
                     .creationDate(new Date())
                     .build();
             return javax.ws.rs.core.Response.ok( (StreamingOutput) output -> {
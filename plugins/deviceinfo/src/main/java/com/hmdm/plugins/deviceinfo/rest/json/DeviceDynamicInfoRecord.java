@@ -35,6 +35,9 @@ import io.swagger.annotations.ApiModelProperty;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class DeviceDynamicInfoRecord {
 
+    @ApiModelProperty("A device identifier; set only when the records of several devices are listed")
+    private String deviceNumber;
+
     @ApiModelProperty("A timestamp of most recent update of device info (in milliseconds since epoch time)")
     private Long latestUpdateTime;
 
@@ -175,6 +178,14 @@ public class DeviceDynamicInfoRecord {
     public DeviceDynamicInfoRecord() {
     }
 
+    public String getDeviceNumber() {
+        return deviceNumber;
+    }
+
+    public void setDeviceNumber(String deviceNumber) {
+        this.deviceNumber = deviceNumber;
+    }
+
     @JsonSetter
     public void setLatestUpdateTime(Long latestUpdateTime) {
         this.latestUpdateTime = latestUpdateTime != null && latestUpdateTime == 0L ? null : latestUpdateTime;
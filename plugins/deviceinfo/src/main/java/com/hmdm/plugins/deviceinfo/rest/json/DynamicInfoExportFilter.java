@@ -35,17 +35,32 @@ import java.util.Date;
  * @author isv
  */
 @ApiModel(description = "A filter for searching the dynamic info records for device for export")
-@JsonIgnoreProperties(value = {"deviceId"}, ignoreUnknown = true)
+@JsonIgnoreProperties(value = {"deviceId", "userId", "customerId", "fromDeviceId", "toDeviceId"}, ignoreUnknown = true)
 public class DynamicInfoExportFilter implements Serializable {
 
     private static final long serialVersionUID = -2707690119899104358L;
     @ApiModelProperty(hidden = true)
     private int deviceId;
 
+    @ApiModelProperty(hidden = true)
+    private int userId;
+
+    @ApiModelProperty(hidden = true)
+    private int customerId;
+
+    /**
+     * <p>A range of IDs of devices to export the records for if no device identifier is specified.</p>
+     */
+    @ApiModelProperty(hidden = true)
+    private int fromDeviceId;
+
+    @ApiModelProperty(hidden = true)
+    private int toDeviceId;
+
     /**
      * <p>A device identifier.</p>
      */
-    @ApiModelProperty("A device identifier")
+    @ApiModelProperty("A device identifier; if not specified then the records of all devices are exported")
     private String deviceNumber;
 
     /**
@@ -74,6 +89,9 @@ public class DynamicInfoExportFilter implements Serializable {
      */
     private String locale;
 
+    @ApiModelProperty("A flag indicating if the generated content is to be compressed with gzip")
+    private boolean gzip;
+
     /**
      * <p>Constructs new <code>DynamicInfoExportFilter</code> instance. This implementation does nothing.</p>
      */
@@ -88,6 +106,38 @@ public class DynamicInfoExportFilter implements Serializable {
         this.deviceId = deviceId;
     }
 
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(int customerId) {
+        this.customerId = customerId;
+    }
+
+    public int getFromDeviceId() {
+        return fromDeviceId;
+    }
+
+    public void setFromDeviceId(int fromDeviceId) {
+        this.fromDeviceId = fromDeviceId;
+    }
+
+    public int getToDeviceId() {
+        return toDeviceId;
+    }
+
+    public void setToDeviceId(int toDeviceId) {
+        this.toDeviceId = toDeviceId;
+    }
+
     public String getDeviceNumber() {
         return deviceNumber;
     }
@@ -144,6 +194,14 @@ public class DynamicInfoExportFilter implements Serializable {
         this.locale = locale;
     }
 
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
     public long getDateFromMillis() {
         if (dateFrom != null) {
             return dateFrom.getTime();
@@ -170,6 +228,7 @@ public class DynamicInfoExportFilter implements Serializable {
                 ", fixedInterval=" + fixedInterval +
                 ", useFixedInterval=" + useFixedInterval +
                 ", locale=" + locale +
+                ", gzip=" + gzip +
                 ", fields=" + Arrays.toString(fields) +
                 '}';
     }
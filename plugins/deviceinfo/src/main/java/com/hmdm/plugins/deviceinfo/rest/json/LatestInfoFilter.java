@@ -0,0 +1,136 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.deviceinfo.rest.json;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.io.Serializable;
+
+/**
+ * <p>A filter for searching the latest dynamic info of devices.</p>
+ */
+@ApiModel(description = "A request for searching the latest dynamic info of devices")
+@JsonIgnoreProperties(value = {"userId", "customerId"}, ignoreUnknown = true)
+public class LatestInfoFilter implements Serializable {
+
+    private static final long serialVersionUID = -2391577045614038120L;
+
+    @ApiModelProperty(hidden = true)
+    private int userId;
+
+    @ApiModelProperty(hidden = true)
+    private int customerId;
+
+    /**
+     * <p>An ID of a group the devices must belong to.</p>
+     */
+    @ApiModelProperty("An ID of a group the devices must belong to")
+    private Integer groupId;
+
+    /**
+     * <p>A timestamp the devices must have not reported their info since.</p>
+     */
+    @ApiModelProperty("A timestamp (in milliseconds since epoch time) the devices must have not reported their info since")
+    private Long updatedBefore;
+
+    /**
+     * <p>A maximum battery level of the devices.</p>
+     */
+    @ApiModelProperty("A maximum battery level of the devices in percents")
+    private Integer maxBatteryLevel;
+
+    /**
+     * <p>A number of records per single page of data to be retrieved.</p>
+     */
+    @ApiModelProperty("A number of records per single page of data to be retrieved")
+    private int pageSize = 50;
+
+    /**
+     * <p>A number of page of data to be retrieved.</p>
+     */
+    @ApiModelProperty("A number of page of data to be retrieved (1-based)")
+    private int pageNum = 1;
+
+    /**
+     * <p>Constructs new <code>LatestInfoFilter</code> instance. This implementation does nothing.</p>
+     */
+    public LatestInfoFilter() {
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(int customerId) {
+        this.customerId = customerId;
+    }
+
+    public Integer getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(Integer groupId) {
+        this.groupId = groupId;
+    }
+
+    public Long getUpdatedBefore() {
+        return updatedBefore;
+    }
+
+    public void setUpdatedBefore(Long updatedBefore) {
+        this.updatedBefore = updatedBefore;
+    }
+
+    public Integer getMaxBatteryLevel() {
+        return maxBatteryLevel;
+    }
+
+    public void setMaxBatteryLevel(Integer maxBatteryLevel) {
+        this.maxBatteryLevel = maxBatteryLevel;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getPageNum() {
+        return pageNum;
+    }
+
+    public void setPageNum(int pageNum) {
+        this.pageNum = pageNum;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.deviceinfo.service;
+
+import com.hmdm.plugins.deviceinfo.rest.json.DeviceDynamicInfoRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.function.Function;
+
+/**
+ * <p>A writer of device info records in CSV format.</p>
+ *
+ * <p>The columns are resolved once for the requested fields, so writing a record is a pass over an array of column
+ * writers. The numbers and timestamps are written as digits directly into the underlying writer, without creating
+ * intermediate strings. The output matches the one of <code>CSVWriter</code>: the header values are always quoted
+ * and the record values are quoted only if they contain the special characters.</p>
+ *
+ * <p>Not thread-safe: each thread must use its own instance.</p>
+ */
+public class DeviceInfoCsvWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceInfoCsvWriter.class);
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final char LINE_END = '\n';
+
+    private static final int SECONDS_PER_DAY = 24 * 3600;
+
+    /**
+     * <p>A writer for a single column of record.</p>
+     */
+    @FunctionalInterface
+    private interface Column {
+        void write(DeviceDynamicInfoRecord record, DeviceInfoCsvWriter out) throws IOException;
+    }
+
+    private final Writer out;
+    private final Column[] columns;
+    private final String[] headers;
+
+    /**
+     * <p>A buffer for digits of numbers.</p>
+     */
+    private final char[] digits = new char[20];
+
+    /**
+     * <p>A buffer for timestamp in <code>dd.MM.yyyy HH:mm:ss</code> format. The date part is updated only when the
+     * day changes.</p>
+     */
+    private final char[] dateTime = "00.00.0000 00:00:00".toCharArray();
+    private long dateTimeDay = Long.MIN_VALUE;
+
+    private final ZoneRules zoneRules;
+
+    /**
+     * <p>An offset of the time zone (in seconds) if it does not change; otherwise <code>null</code>.</p>
+     */
+    private final Integer fixedOffset;
+
+    /**
+     * <p>Constructs new <code>DeviceInfoCsvWriter</code> instance.</p>
+     *
+     * @param out a writer to write the content to; should be buffered.
+     * @param fields the names of record fields to be written.
+     * @param withDeviceNumber <code>true</code> if the device number is to be written as the first column.
+     * @param translations the translations of column titles and enumerated values.
+     */
+    public DeviceInfoCsvWriter(Writer out, String[] fields, boolean withDeviceNumber, ResourceBundle translations) {
+        this.out = out;
+        this.zoneRules = ZoneId.systemDefault().getRules();
+        this.fixedOffset = this.zoneRules.isFixedOffset()
+                ? this.zoneRules.getOffset(Instant.EPOCH).getTotalSeconds() : null;
+
+        final int offset = withDeviceNumber ? 2 : 1;
+        this.columns = new Column[fields.length + offset];
+        this.headers = new String[fields.length + offset];
+        if (withDeviceNumber) {
+            this.columns[0] = (record, w) -> w.writeText(record.getDeviceNumber());
+            this.headers[0] = translate(translations, "plugin.deviceinfo.title.device", "Device");
+        }
+        this.columns[offset - 1] = (record, w) -> w.writeDateTime(record.getLatestUpdateTime());
+        this.headers[offset - 1] = translate(translations, "plugin.deviceinfo.title.time", "Timestamp");
+
+        for (int i = 0; i < fields.length; i++) {
+            final Function<ResourceBundle, Column> factory = COLUMNS.get(fields[i]);
+            if (factory != null) {
+                this.columns[i + offset] = factory.apply(translations);
+            } else {
+                logger.warn("No value extractor for field: {}", fields[i]);
+                this.columns[i + offset] = (record, w) -> {};
+            }
+            this.headers[i + offset] = translate(translations, "plugin.deviceinfo.title.group." + fields[i], fields[i]);
+        }
+    }
+
+    /**
+     * <p>Writes the header line with the column titles.</p>
+     */
+    public void writeHeader() throws IOException {
+        for (int i = 0; i < this.headers.length; i++) {
+            if (i > 0) {
+                this.out.write(SEPARATOR);
+            }
+            writeQuoted(this.headers[i]);
+        }
+        this.out.write(LINE_END);
+    }
+
+    /**
+     * <p>Writes the specified record as a single line.</p>
+     */
+    public void writeRecord(DeviceDynamicInfoRecord record) throws IOException {
+        for (int i = 0; i < this.columns.length; i++) {
+            if (i > 0) {
+                this.out.write(SEPARATOR);
+            }
+            this.columns[i].write(record, this);
+        }
+        this.out.write(LINE_END);
+    }
+
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    private void writeText(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r') {
+                writeQuoted(value);
+                return;
+            }
+        }
+        this.out.write(value);
+    }
+
+    private void writeQuoted(String value) throws IOException {
+        this.out.write(QUOTE);
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == QUOTE) {
+                    this.out.write(QUOTE);
+                }
+                this.out.write(c);
+            }
+        }
+        this.out.write(QUOTE);
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            this.out.write(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            this.out.write('-');
+            value = -value;
+        }
+        int pos = this.digits.length;
+        do {
+            this.digits[--pos] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        this.out.write(this.digits, pos, this.digits.length - pos);
+    }
+
+    private void writeDateTime(Long timestamp) throws IOException {
+        if (timestamp == null) {
+            return;
+        }
+        final long millis = timestamp;
+        final int offset = this.fixedOffset != null
+                ? this.fixedOffset : this.zoneRules.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds();
+        final long localSeconds = Math.floorDiv(millis, 1000) + offset;
+        final long day = Math.floorDiv(localSeconds, SECONDS_PER_DAY);
+        final int seconds = (int) Math.floorMod(localSeconds, SECONDS_PER_DAY);
+
+        if (day != this.dateTimeDay) {
+            final LocalDate date = LocalDate.ofEpochDay(day);
+            putDigits(0, date.getDayOfMonth(), 2);
+            putDigits(3, date.getMonthValue(), 2);
+            putDigits(6, date.getYear(), 4);
+            this.dateTimeDay = day;
+        }
+        putDigits(11, seconds / 3600, 2);
+        putDigits(14, seconds / 60 % 60, 2);
+        putDigits(17, seconds % 60, 2);
+        this.out.write(this.dateTime);
+    }
+
+    private void putDigits(int pos, int value, int count) {
+        for (int i = pos + count - 1; i >= pos; i--) {
+            this.dateTime[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static String translate(ResourceBundle translations, String key, String defaultValue) {
+        try {
+            return translations.getString(key);
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    private static Function<ResourceBundle, Column> integerColumn(Function<DeviceDynamicInfoRecord, Integer> getter) {
+        return translations -> (record, w) -> {
+            final Integer value = getter.apply(record);
+            if (value != null) {
+                w.writeLong(value);
+            }
+        };
+    }
+
+    private static Function<ResourceBundle, Column> longColumn(Function<DeviceDynamicInfoRecord, Long> getter) {
+        return translations -> (record, w) -> {
+            final Long value = getter.apply(record);
+            if (value != null) {
+                w.writeLong(value);
+            }
+        };
+    }
+
+    private static Function<ResourceBundle, Column> doubleColumn(Function<DeviceDynamicInfoRecord, Double> getter) {
+        return translations -> (record, w) -> {
+            final Double value = getter.apply(record);
+            if (value != null) {
+                w.out.write(Double.toString(value));
+            }
+        };
+    }
+
+    private static Function<ResourceBundle, Column> stringColumn(Function<DeviceDynamicInfoRecord, String> getter) {
+        return translations -> (record, w) -> w.writeText(getter.apply(record));
+    }
+
+    private static Function<ResourceBundle, Column> booleanColumn(Function<DeviceDynamicInfoRecord, Boolean> getter) {
+        return translations -> {
+            final String trueValue = translate(translations, "plugin.deviceinfo.boolean.true", "true");
+            final String falseValue = translate(translations, "plugin.deviceinfo.boolean.false", "false");
+            return (record, w) -> {
+                final Boolean value = getter.apply(record);
+                if (value != null) {
+                    w.writeText(value ? trueValue : falseValue);
+                }
+            };
+        };
+    }
+
+    private static Function<ResourceBundle, Column> enumeratedColumn(String fieldName,
+                                                                     Function<DeviceDynamicInfoRecord, String> getter) {
+        return translations -> {
+            // The states are few, so they are translated once per export
+            final Map<String, String> translated = new HashMap<>();
+            return (record, w) -> {
+                final String value = getter.apply(record);
+                if (value != null) {
+                    w.writeText(translated.computeIfAbsent(value, v ->
+                            translate(translations, "plugin.deviceinfo.state." + fieldName + "." + v, v)));
+                }
+            };
+        };
+    }
+
+    /**
+     * <p>A mapping from record field name to the factory of column writer for the field.</p>
+     */
+    private static final Map<String, Function<ResourceBundle, Column>> COLUMNS = new HashMap<>();
+
+    static {
+        COLUMNS.put("deviceBatteryLevel", integerColumn(DeviceDynamicInfoRecord::getDeviceBatteryLevel));
+        COLUMNS.put("deviceBatteryCharging", stringColumn(DeviceDynamicInfoRecord::getDeviceBatteryCharging));
+        COLUMNS.put("deviceIpAddress", stringColumn(DeviceDynamicInfoRecord::getDeviceIpAddress));
+        COLUMNS.put("deviceKeyguard", booleanColumn(DeviceDynamicInfoRecord::getDeviceKeyguard));
+        COLUMNS.put("deviceRingVolume", integerColumn(DeviceDynamicInfoRecord::getDeviceRingVolume));
+        COLUMNS.put("deviceWifiEnabled", booleanColumn(DeviceDynamicInfoRecord::getDeviceWifiEnabled));
+        COLUMNS.put("deviceMobileDataEnabled", booleanColumn(DeviceDynamicInfoRecord::getDeviceMobileDataEnabled));
+        COLUMNS.put("deviceGpsEnabled", booleanColumn(DeviceDynamicInfoRecord::getDeviceGpsEnabled));
+        COLUMNS.put("deviceBluetoothEnabled", booleanColumn(DeviceDynamicInfoRecord::getDeviceBluetoothEnabled));
+        COLUMNS.put("deviceUsbEnabled", booleanColumn(DeviceDynamicInfoRecord::getDeviceUsbEnabled));
+        COLUMNS.put("deviceMemoryTotal", integerColumn(DeviceDynamicInfoRecord::getDeviceMemoryTotal));
+        COLUMNS.put("deviceMemoryAvailable", integerColumn(DeviceDynamicInfoRecord::getDeviceMemoryAvailable));
+
+        COLUMNS.put("wifiRssi", integerColumn(DeviceDynamicInfoRecord::getWifiRssi));
+        COLUMNS.put("wifiSsid", stringColumn(DeviceDynamicInfoRecord::getWifiSsid));
+        COLUMNS.put("wifiSecurity", stringColumn(DeviceDynamicInfoRecord::getWifiSecurity));
+        COLUMNS.put("wifiState", enumeratedColumn("wifiState", DeviceDynamicInfoRecord::getWifiState));
+        COLUMNS.put("wifiIpAddress", stringColumn(DeviceDynamicInfoRecord::getWifiIpAddress));
+        COLUMNS.put("wifiTx", longColumn(DeviceDynamicInfoRecord::getWifiTx));
+        COLUMNS.put("wifiRx", longColumn(DeviceDynamicInfoRecord::getWifiRx));
+
+        COLUMNS.put("gpsState", enumeratedColumn("gpsState", DeviceDynamicInfoRecord::getGpsState));
+        COLUMNS.put("gpsLat", doubleColumn(DeviceDynamicInfoRecord::getGpsLat));
+        COLUMNS.put("gpsLon", doubleColumn(DeviceDynamicInfoRecord::getGpsLon));
+        COLUMNS.put("gpsAlt", doubleColumn(DeviceDynamicInfoRecord::getGpsAlt));
+        COLUMNS.put("gpsSpeed", doubleColumn(DeviceDynamicInfoRecord::getGpsSpeed));
+        COLUMNS.put("gpsCourse", doubleColumn(DeviceDynamicInfoRecord::getGpsCourse));
+
+        COLUMNS.put("mobile1Rssi", integerColumn(DeviceDynamicInfoRecord::getMobile1Rssi));
+        COLUMNS.put("mobile1Carrier", stringColumn(DeviceDynamicInfoRecord::getMobile1Carrier));
+        COLUMNS.put("mobile1DataEnabled", booleanColumn(DeviceDynamicInfoRecord::getMobile1DataEnabled));
+        COLUMNS.put("mobile1IpAddress", stringColumn(DeviceDynamicInfoRecord::getMobile1IpAddress));
+        COLUMNS.put("mobile1State", enumeratedColumn("mobile1State", DeviceDynamicInfoRecord::getMobile1State));
+        COLUMNS.put("mobile1SimState", enumeratedColumn("mobile1SimState", DeviceDynamicInfoRecord::getMobile1SimState));
+        COLUMNS.put("mobile1Tx", longColumn(DeviceDynamicInfoRecord::getMobile1Tx));
+        COLUMNS.put("mobile1Rx", longColumn(DeviceDynamicInfoRecord::getMobile1Rx));
+
+        COLUMNS.put("mobile2Rssi", integerColumn(DeviceDynamicInfoRecord::getMobile2Rssi));
+        COLUMNS.put("mobile2Carrier", stringColumn(DeviceDynamicInfoRecord::getMobile2Carrier));
+        COLUMNS.put("mobile2DataEnabled", booleanColumn(DeviceDynamicInfoRecord::getMobile2DataEnabled));
+        COLUMNS.put("mobile2IpAddress", stringColumn(DeviceDynamicInfoRecord::getMobile2IpAddress));
+        COLUMNS.put("mobile2State", enumeratedColumn("mobile2State", DeviceDynamicInfoRecord::getMobile2State));
+        COLUMNS.put("mobile2SimState", enumeratedColumn("mobile2SimState", DeviceDynamicInfoRecord::getMobile2SimState));
+        COLUMNS.put("mobile2Tx", longColumn(DeviceDynamicInfoRecord::getMobile2Tx));
+        COLUMNS.put("mobile2Rx", longColumn(DeviceDynamicInfoRecord::getMobile2Rx));
+    }
+}
@@ -23,33 +23,44 @@ package com.hmdm.plugins.deviceinfo.service;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import com.hmdm.plugins.deviceinfo.persistence.mapper.DeviceInfoMapper;
 import com.hmdm.plugins.deviceinfo.rest.json.DeviceDynamicInfoRecord;
 import com.hmdm.plugins.deviceinfo.rest.json.DynamicInfoExportFilter;
 import com.hmdm.security.SecurityContext;
+import com.hmdm.util.BackgroundTaskRunnerService;
 import com.hmdm.util.ResourceBundleUTF8Control;
-import com.opencsv.CSVWriter;
+import com.hmdm.util.TaskCategory;
 import org.apache.ibatis.cursor.Cursor;
 import org.mybatis.guice.transactional.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * <p>A service used for supporting device info export process.</p>
  *
+ * <p>The records are read with a single cursor and written by {@link DeviceInfoCsvWriter}. The records of all devices
+ * may be exported in parallel: the range of device IDs is split into parts, each part is exported into a temporary
+ * file by the executor of {@link TaskCategory#EXPORT} tasks and the files are then copied to the output in order.</p>
+ *
  * @author isv
  */
 @Singleton
@@ -57,196 +68,202 @@ public class DeviceInfoExportService {
 
     private static final Logger logger = LoggerFactory.getLogger(DeviceInfoExportService.class);
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     /**
      * <p>An interface to device info management services.</p>
      */
     private final DeviceInfoMapper mapper;
 
+    private final BackgroundTaskRunnerService taskRunner;
+
     /**
-     * <p>Constructs new <code>DeviceInfoExportService</code> instance. This implementation does nothing.</p>
+     * <p>A number of parts exported in parallel when exporting the records of all devices.</p>
+     */
+    private final int exportThreads;
+
+    /**
+     * <p>Constructs new <code>DeviceInfoExportService</code> instance.</p>
+     *
+     * @param exportThreads a number of parts exported in parallel; 1 disables the parallel export. The number of parts
+     *                      exported at once by all requests is limited by the executor of {@link TaskCategory#EXPORT}
+     *                      tasks.
      */
     @Inject
-    public DeviceInfoExportService(DeviceInfoMapper mapper) {
+    public DeviceInfoExportService(DeviceInfoMapper mapper,
+                                   BackgroundTaskRunnerService taskRunner,
+                                   @Named("deviceinfo.export.threads") int exportThreads) {
         this.mapper = mapper;
+        this.taskRunner = taskRunner;
+        this.exportThreads = Math.max(1, exportThreads);
     }
 
     /**
      * <p>Exports the device dynamic info records matching the specified parameters into CSV file which is written to
-     * specified stream.</p>
+     * specified stream. If no device is specified then the records of all devices available to current user are
+     * exported ordered by device.</p>
      *
      * @param request the parameters for export process.
      * @param output  a stream to write the generated content to.
      * @throws DeviceInfoExportServiceException if an I/O error occurs.
      */
-    @Transactional
     public void exportDeviceDynamicInfo(DynamicInfoExportFilter request, OutputStream output) {
         SecurityContext.get().getCurrentUser().ifPresent(user -> {
             logger.debug("Starting device dynamic info export for request: {} ...", request);
-            try (Cursor<DeviceDynamicInfoRecord> records = this.mapper.searchDynamicDataForExport(request);
-                 CSVWriter writer = new CSVWriter(new OutputStreamWriter(output));) {
-                if (records != null) {
-                    String locale = request.getLocale() == null ? Locale.ENGLISH.getLanguage() : request.getLocale();
-                    if (locale.contains("_")) {
-                        locale = locale.substring(0, locale.indexOf("_"));
-                    }
-                    ResourceBundle translations = ResourceBundle.getBundle(
-                            "plugin_deviceinfo_translations", new Locale(locale), new ResourceBundleUTF8Control()
-                    );
-
-                    final String[] fieldNames = request.getFields();
-                    final int fieldsCount = fieldNames.length;
-
-                    // adding header to csv
-                    final String[] headers = new String[fieldsCount + 1];
-                    headers[0] = translations.getString("plugin.deviceinfo.title.time");
-                    for (int i = 0; i < fieldsCount; i++) {
-                        String fieldName = fieldNames[i];
-                        try {
-                            headers[i + 1] = translations.getString("plugin.deviceinfo.title.group." + fieldName);
-                        } catch (Exception e) {
-                            headers[i + 1] = fieldName;
-                        }
-                    }
-                    writer.writeNext(headers);
-
-                    // add data to csv
-                    DateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
-                    records.forEach(record -> {
-                        final String[] recordLine = new String[fieldsCount + 1];
-                        recordLine[0] = dateFormat.format(new Date(record.getLatestUpdateTime()));
-                        for (int i = 0; i < fieldsCount; i++) {
-                            String fieldName = fieldNames[i];
-                            final BiFunction<DeviceDynamicInfoRecord, ResourceBundle, String> valueExtractor = valueExtractors.get(fieldName);
-                            if (valueExtractor != null) {
-                                recordLine[i + 1] = valueExtractor.apply(record, translations);
-                            } else {
-                                logger.warn("No value extractor for field: {}", fieldName);
-                            }
-                        }
-
-                        writer.writeNext(recordLine, false);
-                    });
+            final long start = System.currentTimeMillis();
+            final boolean allDevices = request.getDeviceNumber() == null || request.getDeviceNumber().isEmpty();
+            final String[] fields = request.getFields() != null ? request.getFields() : new String[0];
+            try {
+                final GZIPOutputStream gzip = request.isGzip() ? new GZIPOutputStream(output, BUFFER_SIZE) : null;
+                final OutputStream target = gzip != null ? gzip : output;
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+                final ResourceBundle translations = getTranslations(request);
+                final DeviceInfoCsvWriter csv = new DeviceInfoCsvWriter(writer, fields, allDevices, translations);
+                csv.writeHeader();
+
+                if (allDevices) {
+                    request.setUserId(user.getId());
+                    request.setCustomerId(user.getCustomerId());
+                    exportAllDevices(request, fields, translations, csv, writer, target);
+                } else {
+                    exportRecords(request, csv);
+                }
+
+                writer.flush();
+                if (gzip != null) {
+                    gzip.finish();
                 }
             } catch (IOException e) {
                 throw new DeviceInfoExportServiceException("Failed to export device info records due to I/O error", e);
             } finally {
-                logger.debug("Finished device info export for request: {}", request);
+                logger.debug("Finished device info export for request: {} in {} ms",
+                        request, System.currentTimeMillis() - start);
             }
         });
     }
 
-    private static final Function<Function<DeviceDynamicInfoRecord, Integer>, BiFunction<DeviceDynamicInfoRecord, ResourceBundle, String>> integerValueExtractorFactory
-            = valueSupplier -> (record, resourceBundle) -> {
-        final Integer value = valueSupplier.apply(record);
-        if (value != null) {
-            return value.toString();
-        } else {
-            return null;
-        }
-    };
-
-    private static final Function<Function<DeviceDynamicInfoRecord, String>, BiFunction<DeviceDynamicInfoRecord, ResourceBundle, String>> stringValueExtractorFactory
-            = valueSupplier -> (record, resourceBundle) -> valueSupplier.apply(record);
-
-    private static final BiFunction<String, Function<DeviceDynamicInfoRecord, String>, BiFunction<DeviceDynamicInfoRecord, ResourceBundle, String>> enumeratedValueExtractorFactory
-            = (fieldName, valueSupplier) -> (record, resourceBundle) -> {
-        final String value = valueSupplier.apply(record);
-        if (value != null) {
-            try {
-                return resourceBundle.getString("plugin.deviceinfo.state." + fieldName + "." + value);
-            } catch (Exception e) {
-                return value;
+    /**
+     * <p>Writes the records matching the specified filter with a single cursor.</p>
+     *
+     * @param filter the parameters for export process.
+     * @param csv a writer to write the records to.
+     * @return a number of written records.
+     */
+    @Transactional
+    public int exportRecords(DynamicInfoExportFilter filter, DeviceInfoCsvWriter csv) throws IOException {
+        final boolean allDevices = filter.getDeviceNumber() == null || filter.getDeviceNumber().isEmpty();
+        int count = 0;
+        try (Cursor<DeviceDynamicInfoRecord> records = allDevices
+                ? this.mapper.searchFleetDynamicDataForExport(filter)
+                : this.mapper.searchDynamicDataForExport(filter)) {
+            for (DeviceDynamicInfoRecord record : records) {
+                csv.writeRecord(record);
+                count++;
             }
-        } else {
-            return null;
         }
-    };
-
-    private static final Function<Function<DeviceDynamicInfoRecord, Long>, BiFunction<DeviceDynamicInfoRecord, ResourceBundle, String>> longValueExtractorFactory
-            = valueSupplier -> (record, resourceBundle) -> {
-        final Long value = valueSupplier.apply(record);
-        if (value != null) {
-            return value.toString();
-        } else {
-            return null;
+        return count;
+    }
+
+    private void exportAllDevices(DynamicInfoExportFilter request, String[] fields, ResourceBundle translations,
+                                  DeviceInfoCsvWriter csv, Writer writer, OutputStream target) throws IOException {
+        final Integer minId = this.mapper.getMinDeviceId(request.getCustomerId());
+        final Integer maxId = this.mapper.getMaxDeviceId(request.getCustomerId());
+        if (minId == null || maxId == null) {
+            return;
         }
-    };
-
-    private static final Function<Function<DeviceDynamicInfoRecord, Double>, BiFunction<DeviceDynamicInfoRecord, ResourceBundle, String>> doubleValueExtractorFactory
-            = valueSupplier -> (record, resourceBundle) -> {
-        final Double value = valueSupplier.apply(record);
-        if (value != null) {
-            return value.toString();
-        } else {
-            return null;
+
+        final long parts = Math.min(this.exportThreads, (long) maxId - minId + 1);
+        if (parts <= 1) {
+            exportRecords(forDeviceRange(request, minId, maxId), csv);
+            return;
         }
-    };
 
-    private static final Function<Function<DeviceDynamicInfoRecord, Boolean>, BiFunction<DeviceDynamicInfoRecord, ResourceBundle, String>> booleanValueExtractorFactory
-            = valueSupplier -> (record, resourceBundle) -> {
-        final Boolean value = valueSupplier.apply(record);
-        if (value != null) {
-            try {
-                return resourceBundle.getString("plugin.deviceinfo.boolean." + value);
-            } catch (Exception e) {
-                return value.toString();
+        final long step = ((long) maxId - minId + parts) / parts;
+        final List<File> files = new ArrayList<>();
+        final List<CompletableFuture<Void>> exports = new ArrayList<>();
+        final AtomicBoolean aborted = new AtomicBoolean();
+        try {
+            for (long from = minId; from <= maxId; from += step) {
+                final DynamicInfoExportFilter part = forDeviceRange(request, (int) from, (int) Math.min(maxId, from + step - 1));
+                final File file = File.createTempFile("deviceinfo-export-", ".csv");
+                files.add(file);
+                exports.add(CompletableFuture.runAsync(() -> {
+                    if (!aborted.get()) {
+                        exportPart(part, file, fields, translations);
+                    }
+                }, task -> this.taskRunner.submitTask(TaskCategory.EXPORT, task)));
+            }
+
+            // The parts are ordered by device ID, so they are copied in order of submission
+            writer.flush();
+            while (!files.isEmpty()) {
+                exports.get(0).get();
+                exports.remove(0);
+                final File file = files.remove(0);
+                try {
+                    Files.copy(file.toPath(), target);
+                } finally {
+                    deleteFile(file);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeviceInfoExportServiceException("Device info export has been interrupted", e);
+        } catch (ExecutionException e) {
+            throw new DeviceInfoExportServiceException("Failed to export device info records", e.getCause());
+        } finally {
+            // The remaining parts are not exported if not started yet; a part being exported can not be stopped, so
+            // its file is deleted once the part is completed
+            aborted.set(true);
+            for (int i = 0; i < files.size(); i++) {
+                final File file = files.get(i);
+                if (i < exports.size()) {
+                    exports.get(i).whenComplete((result, e) -> deleteFile(file));
+                } else {
+                    deleteFile(file);
+                }
             }
-        } else {
-            return null;
         }
-    };
+    }
 
-    /**
-     * <p>A mapping from record field name to value extractor for the field.</p>
-     */
-    private static final Map<String, BiFunction<DeviceDynamicInfoRecord, ResourceBundle, String>> valueExtractors = new HashMap<>();
-
-    static {
-        valueExtractors.put("deviceBatteryLevel", integerValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceBatteryLevel));
-        valueExtractors.put("deviceBatteryCharging", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceBatteryCharging));
-        valueExtractors.put("deviceIpAddress", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceIpAddress));
-        valueExtractors.put("deviceKeyguard", booleanValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceKeyguard));
-        valueExtractors.put("deviceRingVolume", integerValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceRingVolume));
-        valueExtractors.put("deviceWifiEnabled", booleanValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceWifiEnabled));
-        valueExtractors.put("deviceMobileDataEnabled", booleanValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceMobileDataEnabled));
-        valueExtractors.put("deviceGpsEnabled", booleanValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceGpsEnabled));
-        valueExtractors.put("deviceBluetoothEnabled", booleanValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceBluetoothEnabled));
-        valueExtractors.put("deviceUsbEnabled", booleanValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceUsbEnabled));
-        valueExtractors.put("deviceMemoryTotal", integerValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceMemoryTotal));
-        valueExtractors.put("deviceMemoryAvailable", integerValueExtractorFactory.apply(DeviceDynamicInfoRecord::getDeviceMemoryAvailable));
-
-        valueExtractors.put("wifiRssi", integerValueExtractorFactory.apply(DeviceDynamicInfoRecord::getWifiRssi));
-        valueExtractors.put("wifiSsid", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getWifiSsid));
-        valueExtractors.put("wifiSecurity", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getWifiSecurity));
-        valueExtractors.put("wifiState", enumeratedValueExtractorFactory.apply("wifiState", DeviceDynamicInfoRecord::getWifiState));
-        valueExtractors.put("wifiIpAddress", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getWifiIpAddress));
-        valueExtractors.put("wifiTx", longValueExtractorFactory.apply(DeviceDynamicInfoRecord::getWifiTx));
-        valueExtractors.put("wifiRx", longValueExtractorFactory.apply(DeviceDynamicInfoRecord::getWifiRx));
-
-        valueExtractors.put("gpsState", enumeratedValueExtractorFactory.apply("gpsState", DeviceDynamicInfoRecord::getGpsState));
-        valueExtractors.put("gpsLat", doubleValueExtractorFactory.apply(DeviceDynamicInfoRecord::getGpsLat));
-        valueExtractors.put("gpsLon", doubleValueExtractorFactory.apply(DeviceDynamicInfoRecord::getGpsLon));
-        valueExtractors.put("gpsAlt", doubleValueExtractorFactory.apply(DeviceDynamicInfoRecord::getGpsAlt));
-        valueExtractors.put("gpsSpeed", doubleValueExtractorFactory.apply(DeviceDynamicInfoRecord::getGpsSpeed));
-        valueExtractors.put("gpsCourse", doubleValueExtractorFactory.apply(DeviceDynamicInfoRecord::getGpsCourse));
-        
-        valueExtractors.put("mobile1Rssi", integerValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile1Rssi));
-        valueExtractors.put("mobile1Carrier", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile1Carrier));
-        valueExtractors.put("mobile1DataEnabled", booleanValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile1DataEnabled));
-        valueExtractors.put("mobile1IpAddress", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile1IpAddress));
-        valueExtractors.put("mobile1State", enumeratedValueExtractorFactory.apply("mobile1State", DeviceDynamicInfoRecord::getMobile1State));
-        valueExtractors.put("mobile1SimState", enumeratedValueExtractorFactory.apply("mobile1SimState", DeviceDynamicInfoRecord::getMobile1SimState));
-        valueExtractors.put("mobile1Tx", longValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile1Tx));
-        valueExtractors.put("mobile1Rx", longValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile1Rx));
-
-        valueExtractors.put("mobile2Rssi", integerValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile2Rssi));
-        valueExtractors.put("mobile2Carrier", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile2Carrier));
-        valueExtractors.put("mobile2DataEnabled", booleanValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile2DataEnabled));
-        valueExtractors.put("mobile2IpAddress", stringValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile2IpAddress));
-        valueExtractors.put("mobile2State", enumeratedValueExtractorFactory.apply("mobile2State", DeviceDynamicInfoRecord::getMobile2State));
-        valueExtractors.put("mobile2SimState", enumeratedValueExtractorFactory.apply("mobile2SimState", DeviceDynamicInfoRecord::getMobile2SimState));
-        valueExtractors.put("mobile2Tx", longValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile2Tx));
-        valueExtractors.put("mobile2Rx", longValueExtractorFactory.apply(DeviceDynamicInfoRecord::getMobile2Rx));
+    private void exportPart(DynamicInfoExportFilter part, File file, String[] fields, ResourceBundle translations) {
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            final int count = exportRecords(part, new DeviceInfoCsvWriter(writer, fields, true, translations));
+            logger.debug("Exported {} device info records of devices #{}-#{}",
+                    count, part.getFromDeviceId(), part.getToDeviceId());
+        } catch (IOException e) {
+            throw new DeviceInfoExportServiceException("Failed to export device info records due to I/O error", e);
+        }
+    }
 
+    private static DynamicInfoExportFilter forDeviceRange(DynamicInfoExportFilter request, int fromDeviceId, int toDeviceId) {
+        final DynamicInfoExportFilter filter = new DynamicInfoExportFilter();
+        filter.setUserId(request.getUserId());
+        filter.setCustomerId(request.getCustomerId());
+        filter.setDateFrom(request.getDateFrom());
+        filter.setDateTo(request.getDateTo());
+        filter.setFixedInterval(request.getFixedInterval());
+        filter.setUseFixedInterval(request.isUseFixedInterval());
+        filter.setFromDeviceId(fromDeviceId);
+        filter.setToDeviceId(toDeviceId);
+        return filter;
+    }
+
+    private static void deleteFile(File file) {
+        if (!file.delete()) {
+            logger.warn("Failed to delete temporary file {}", file.getAbsolutePath());
+        }
+    }
+
+    private static ResourceBundle getTranslations(DynamicInfoExportFilter request) {
+        String locale = request.getLocale() == null ? Locale.ENGLISH.getLanguage() : request.getLocale();
+        if (locale.contains("_")) {
+            locale = locale.substring(0, locale.indexOf("_"));
+        }
+        return ResourceBundle.getBundle(
+                "plugin_deviceinfo_translations", new Locale(locale), new ResourceBundleUTF8Control()
+        );
     }
 }
@@ -0,0 +1,235 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.deviceinfo.service;
+
+import com.hmdm.plugins.deviceinfo.rest.json.DeviceDynamicInfoRecord;
+import com.hmdm.util.ResourceBundleUTF8Control;
+import com.opencsv.CSVWriter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A test suite for {@link DeviceInfoCsvWriter} class. The output is compared to the one of <code>CSVWriter</code>
+ * and <code>SimpleDateFormat</code> used for the export before.</p>
+ */
+public class DeviceInfoCsvWriterTests {
+
+    private static final String[] FIELDS = {
+            "deviceBatteryLevel", "deviceBatteryCharging", "deviceKeyguard", "wifiSsid", "wifiState", "wifiTx",
+            "gpsLat", "mobile1Carrier"
+    };
+
+    private ResourceBundle translations;
+    private TimeZone defaultTimeZone;
+
+    /**
+     * <p>Constructs new <code>DeviceInfoCsvWriterTests</code> instance. This implementation does nothing.</p>
+     */
+    public DeviceInfoCsvWriterTests() {
+    }
+
+    @Before
+    public void setUp() {
+        this.translations = ResourceBundle.getBundle(
+                "plugin_deviceinfo_translations", Locale.ENGLISH, new ResourceBundleUTF8Control()
+        );
+        this.defaultTimeZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(this.defaultTimeZone);
+    }
+
+    @Test
+    public void testSpecialCharactersAreQuoted() throws IOException {
+        final List<DeviceDynamicInfoRecord> records = new ArrayList<>();
+        for (String text : Arrays.asList("plain", "with,comma", "with \"quotes\"", "\"", "line\nbreak",
+                "carriage\rreturn", "", " spaces ", "semicolon;tab\t", "юникод ✓")) {
+            final DeviceDynamicInfoRecord record = record(1700000000000L);
+            record.setWifiSsid(text);
+            record.setMobile1Carrier(text + ",");
+            records.add(record);
+        }
+
+        assertSameAsOpenCsv(records);
+    }
+
+    @Test
+    public void testNullValuesAreWrittenEmpty() throws IOException {
+        assertSameAsOpenCsv(Collections.singletonList(record(1700000000000L)));
+    }
+
+    @Test
+    public void testValuesAreFormatted() throws IOException {
+        final List<DeviceDynamicInfoRecord> records = new ArrayList<>();
+        final Object[][] values = {
+                {0, 0L, 0.0, true, "connected"},
+                {-1, -1L, -0.5, false, "unknownState"},
+                {Integer.MAX_VALUE, Long.MAX_VALUE, 1.0E-5, true, "inactive"},
+                {Integer.MIN_VALUE, Long.MIN_VALUE, 55.755826, false, "scanning"},
+                {100, 1234567890123L, 12345678.9, null, null},
+        };
+        for (Object[] value : values) {
+            final DeviceDynamicInfoRecord record = record(1700000000000L);
+            record.setDeviceBatteryLevel((Integer) value[0]);
+            record.setDeviceBatteryCharging("ac");
+            record.setWifiTx((Long) value[1]);
+            record.setGpsLat((Double) value[2]);
+            record.setDeviceKeyguard((Boolean) value[3]);
+            record.setWifiState((String) value[4]);
+            records.add(record);
+        }
+
+        assertSameAsOpenCsv(records);
+    }
+
+    @Test
+    public void testTimeIsFormattedAcrossDaylightSavingTransitions() throws IOException {
+        for (String zone : Arrays.asList("Europe/Berlin", "America/New_York", "Australia/Lord_Howe", "UTC",
+                "Asia/Kolkata")) {
+            TimeZone.setDefault(TimeZone.getTimeZone(zone));
+
+            final List<DeviceDynamicInfoRecord> records = new ArrayList<>();
+            // Every 10 minutes around the transitions of 2024 in Europe, America and Australia
+            for (long start : new long[] {1711756800000L, 1710028800000L, 1712368800000L, 1727992800000L,
+                    1729900800000L, 1730592000000L}) {
+                for (long time = start; time < start + TimeUnit.HOURS.toMillis(6); time += TimeUnit.MINUTES.toMillis(10)) {
+                    records.add(record(time));
+                }
+            }
+            // Across the day boundary, within a second and before the epoch
+            records.add(record(1704067199999L));
+            records.add(record(1704067200000L));
+            records.add(record(1704067200999L));
+            records.add(record(-1L));
+            records.add(record(-86400001L));
+
+            assertSameAsOpenCsv(records);
+        }
+    }
+
+    @Test
+    public void testDeviceNumberIsWrittenFirst() throws IOException {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        final DeviceDynamicInfoRecord record1 = record(1000L);
+        record1.setDeviceNumber("device,1");
+        final DeviceDynamicInfoRecord record2 = record(61000L);
+        record2.setDeviceNumber("device2");
+        record2.setDeviceBatteryLevel(50);
+
+        final StringWriter out = new StringWriter();
+        final DeviceInfoCsvWriter csv = new DeviceInfoCsvWriter(out, new String[] {"deviceBatteryLevel", "unknown"},
+                true, this.translations);
+        csv.writeHeader();
+        csv.writeRecord(record1);
+        csv.writeRecord(record2);
+
+        Assert.assertEquals("\"Device\",\"Timestamp\",\"Battery Charge\",\"unknown\"\n" +
+                "\"device,1\",01.01.1970 00:00:01,,\n" +
+                "device2,01.01.1970 00:01:01,50,\n", out.toString());
+    }
+
+    private void assertSameAsOpenCsv(List<DeviceDynamicInfoRecord> records) throws IOException {
+        final StringWriter out = new StringWriter();
+        final DeviceInfoCsvWriter csv = new DeviceInfoCsvWriter(out, FIELDS, false, this.translations);
+        csv.writeHeader();
+        for (DeviceDynamicInfoRecord record : records) {
+            csv.writeRecord(record);
+        }
+        csv.flush();
+
+        Assert.assertEquals(writeWithOpenCsv(records), out.toString());
+    }
+
+    /**
+     * <p>Writes the records the same way as the export did with <code>CSVWriter</code>.</p>
+     */
+    private String writeWithOpenCsv(List<DeviceDynamicInfoRecord> records) throws IOException {
+        final StringWriter out = new StringWriter();
+        try (CSVWriter writer = new CSVWriter(out)) {
+            final String[] headers = new String[FIELDS.length + 1];
+            headers[0] = this.translations.getString("plugin.deviceinfo.title.time");
+            for (int i = 0; i < FIELDS.length; i++) {
+                headers[i + 1] = this.translations.getString("plugin.deviceinfo.title.group." + FIELDS[i]);
+            }
+            writer.writeNext(headers);
+
+            final DateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
+            for (DeviceDynamicInfoRecord record : records) {
+                writer.writeNext(new String[] {
+                        dateFormat.format(new Date(record.getLatestUpdateTime())),
+                        toString(record.getDeviceBatteryLevel()),
+                        record.getDeviceBatteryCharging(),
+                        translateBoolean(record.getDeviceKeyguard()),
+                        record.getWifiSsid(),
+                        translateState("wifiState", record.getWifiState()),
+                        toString(record.getWifiTx()),
+                        toString(record.getGpsLat()),
+                        record.getMobile1Carrier()
+                }, false);
+            }
+        }
+        return out.toString();
+    }
+
+    private String translateBoolean(Boolean value) {
+        return value == null ? null : this.translations.getString("plugin.deviceinfo.boolean." + value);
+    }
+
+    private String translateState(String field, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return this.translations.getString("plugin.deviceinfo.state." + field + "." + value);
+        } catch (Exception e) {
+            return value;
+        }
+    }
+
+    private static String toString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static DeviceDynamicInfoRecord record(long time) {
+        final DeviceDynamicInfoRecord record = new DeviceDynamicInfoRecord();
+        record.setLatestUpdateTime(time);
+        return record;
+    }
+}
@@ -21,12 +21,14 @@
 
 package com.hmdm.plugins.devicelog.persistence;
 
+import com.hmdm.persistence.domain.DeviceIdentity;
 import com.hmdm.plugins.devicelog.model.DeviceLogRecord;
 import com.hmdm.plugins.devicelog.rest.json.AppliedDeviceLogRule;
 import com.hmdm.plugins.devicelog.rest.json.DeviceLogFilter;
 import com.hmdm.plugins.devicelog.rest.json.UploadedDeviceLogRecord;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * <p>An interface for DAO to be used for managing the device log records in persistence layer.</p>
@@ -43,6 +45,15 @@ public interface DeviceLogDAO {
      */
     List<DeviceLogRecord> findAll(DeviceLogFilter filter);
 
+    /**
+     * <p>Passes the log records matching the specified filter to specified consumer one by one. The records are read
+     * in a single pass, so the memory usage does not depend on the number of records.</p>
+     *
+     * @param filter a filter used to narrowing down the search results.
+     * @param consumer a consumer of log records.
+     */
+    void exportAll(DeviceLogFilter filter, Consumer<DeviceLogRecord> consumer);
+
     /**
      * <p>Counts the log records matching the specified filter.</p>
      *
@@ -52,14 +63,16 @@ public interface DeviceLogDAO {
     long countAll(DeviceLogFilter filter);
 
     /**
-     * <p>Inserts the specified log records uploaded by the specified device into underlying persistent data store.</p>
+     * <p>Queues the specified log records uploaded by the specified device for insertion into underlying persistent
+     * data store.</p>
      *
-     * @param deviceNumber an identifier of a device.
-     * @param ipAddress    an IP-address of a device.
+     * @param device a device which uploaded the records.
+     * @param ipAddress an IP-address of a device.
      * @param logs a list of log records to be inserted.
-     * @return a number of log records inserted into underlying persistent store.
+     * @return <code>true</code> if records are queued; <code>false</code> if the queue is full and the records must be
+     *         uploaded later.
      */
-    int insertDeviceLogRecords(String deviceNumber, String ipAddress, List<UploadedDeviceLogRecord> logs);
+    boolean queueDeviceLogRecords(DeviceIdentity device, String ipAddress, List<UploadedDeviceLogRecord> logs);
 
     /**
      * <p>Gets the list of log rules applicable to specified device.</p>
@@ -23,6 +23,7 @@ package com.hmdm.plugins.devicelog.rest.json;
 
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import java.io.Serializable;
@@ -93,6 +94,20 @@ public class DeviceLogFilter implements Serializable {
     @ApiModelProperty("A name of sorting column")
     private String sortValue = "createTime";
 
+    /**
+     * <p>A creation time of the last record of the previous page. If set along with {@link #afterId} and the records
+     * are sorted by creation time, then the page is selected by the position of that record rather than by page
+     * number.</p>
+     */
+    @ApiModelProperty("A creation time of the last record of the previous page for keyset pagination")
+    private Long afterCreateTime;
+
+    /**
+     * <p>An ID of the last record of the previous page.</p>
+     */
+    @ApiModelProperty("An ID of the last record of the previous page for keyset pagination")
+    private Integer afterId;
+
     /**
      * <p>An ID of a customer.</p>
      */
@@ -222,6 +237,31 @@ public class DeviceLogFilter implements Serializable {
         }
     }
 
+    public Long getAfterCreateTime() {
+        return afterCreateTime;
+    }
+
+    public void setAfterCreateTime(Long afterCreateTime) {
+        this.afterCreateTime = afterCreateTime;
+    }
+
+    public Integer getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Integer afterId) {
+        this.afterId = afterId;
+    }
+
+    /**
+     * <p>Checks if the page must be selected by the position of the last record of the previous page. This is only
+     * supported for the records sorted by creation time.</p>
+     */
+    @JsonIgnore
+    public boolean isKeysetPagination() {
+        return afterCreateTime != null && afterId != null && "createTime".equals(sortValue);
+    }
+
     public boolean isExport() {
         return export;
     }
@@ -242,6 +282,8 @@ public class DeviceLogFilter implements Serializable {
                 ", applicationFilter=" + applicationFilter +
                 ", severity='" + severity + '\'' +
                 ", sortValue='" + sortValue + '\'' +
+                ", afterCreateTime=" + afterCreateTime +
+                ", afterId=" + afterId +
                 ", customerId=" + customerId +
                 ", userId=" + userId +
                 ", export=" + export +
@@ -24,14 +24,13 @@ package com.hmdm.plugins.devicelog.rest.resource;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import com.hmdm.persistence.UnsecureDAO;
-import com.hmdm.persistence.domain.Device;
+import com.hmdm.persistence.domain.DeviceIdentity;
 import com.hmdm.plugin.service.PluginStatusCache;
 import com.hmdm.plugins.devicelog.model.DeviceLogRecord;
 import com.hmdm.plugins.devicelog.persistence.DeviceLogDAO;
 import com.hmdm.plugins.devicelog.rest.json.AppliedDeviceLogRule;
 import com.hmdm.plugins.devicelog.rest.json.DeviceLogFilter;
 import com.hmdm.plugins.devicelog.rest.json.UploadedDeviceLogRecord;
-import com.hmdm.plugins.devicelog.task.InsertDeviceLogRecordsTask;
 import com.hmdm.rest.json.PaginatedData;
 import com.hmdm.rest.json.Response;
 import com.hmdm.security.SecurityContext;
@@ -54,14 +53,17 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.hmdm.plugins.devicelog.DeviceLogPluginConfigurationImpl.PLUGIN_ID;
 
@@ -78,8 +80,21 @@ public class DeviceLogResource {
     // A logging service
     private static final Logger logger  = LoggerFactory.getLogger(DeviceLogResource.class);
 
-    // An executor for the log recrods upload tasks
-    private final ExecutorService executor = Executors.newFixedThreadPool(5);
+    /**
+     * <p>A format of the record time in exported logs.</p>
+     */
+    private static final DateTimeFormatter EXPORT_DATE_FORMAT
+            = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    /**
+     * <p>A status returned to device if the uploaded log records can not be accepted at the moment.</p>
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * <p>A time after which the device may retry to upload the rejected log records (in seconds).</p>
+     */
+    private static final int RETRY_AFTER_SECONDS = 60;
 
     /**
      * <p>An interface to device log records persistence layer.</p>
@@ -160,51 +175,34 @@ public class DeviceLogResource {
             return javax.ws.rs.core.Response.serverError().status(403).build();
         }
 
-        filter.setPageNum(1);
         filter.setExport(true);
 
         ContentDisposition contentDisposition = ContentDisposition.type("attachment").fileName("logs.csv").creationDate(new Date()).build();
 
-        DateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss.SSS");
-
-        AtomicBoolean stop = new AtomicBoolean(false);
-
-
         return javax.ws.rs.core.Response.ok( (StreamingOutput) output -> {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
             try {
-                List<DeviceLogRecord> records = this.deviceLogDAO.findAll(filter);
-                while (!stop.get() && !records.isEmpty()) {
-                    records.forEach(log -> {
-                        StringBuilder b = new StringBuilder();
-                        b.append(log.getDeviceNumber());
-                        b.append(",");
-                        b.append(dateFormat.format(new Date(log.getCreateTime())));
-                        b.append(",");
-                        b.append(log.getApplicationPkg());
-                        b.append(",");
-                        b.append(log.getSeverity());
-                        b.append(",");
-                        b.append(log.getMessage());
-                        b.append('\n');
-
-                        try {
-                            output.write(b.toString().getBytes());
-                        } catch (IOException e) {
-                            logger.error("Failed to write log record {} to output stream. Stopping to export the " +
-                                    "further log records.", log, e);
-                            stop.set(true);
-                        }
-                    });
-
-                    output.flush();
-
-                    if (!stop.get()) {
-                        filter.setPageNum(filter.getPageNum() + 1);
-                        records = this.deviceLogDAO.findAll(filter);
+                this.deviceLogDAO.exportAll(filter, log -> {
+                    try {
+                        writer.write(String.valueOf(log.getDeviceNumber()));
+                        writer.write(',');
+                        writer.write(EXPORT_DATE_FORMAT.format(Instant.ofEpochMilli(log.getCreateTime())));
+                        writer.write(',');
+                        writer.write(String.valueOf(log.getApplicationPkg()));
+                        writer.write(',');
+                        writer.write(String.valueOf(log.getSeverity()));
+                        writer.write(',');
+                        writer.write(String.valueOf(log.getMessage()));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
-                }
+                });
 
-                output.flush();
+                writer.flush();
+            } catch (UncheckedIOException e) {
+                logger.error("Failed to write log records to output stream. Stopping to export the further log " +
+                        "records.", e.getCause());
             } catch ( Exception e ) {
                 logger.error("Failed to export the device log records due to unexpected error. Filter: {}", filter, e);
             }
@@ -217,41 +215,46 @@ public class DeviceLogResource {
 
     @ApiOperation(
             value = "Upload logs",
-            notes = "Uploads the list of log records from device to server",
+            notes = "Uploads the list of log records from device to server. If the server is overloaded, then " +
+                    "429 Too Many Requests is returned and the records must be uploaded later.",
             response = Response.class
     )
     @POST
     @Path("/list/{deviceNumber}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response uploadLogs(@PathParam("deviceNumber") String deviceNumber,
-                               List<UploadedDeviceLogRecord> logs,
-                               @Context HttpServletRequest httpRequest) {
+    public javax.ws.rs.core.Response uploadLogs(@PathParam("deviceNumber") String deviceNumber,
+                                                List<UploadedDeviceLogRecord> logs,
+                                                @Context HttpServletRequest httpRequest) {
         logger.debug("#uploadLogs: {} => {}", deviceNumber, logs);
         try {
-            final Device dbDevice = this.unsecureDAO.getDeviceByNumber(deviceNumber);
+            final DeviceIdentity dbDevice = this.unsecureDAO.getDeviceIdentityByNumber(deviceNumber);
             if (dbDevice == null) {
                 logger.error("Device {} was not found", deviceNumber);
-                return Response.DEVICE_NOT_FOUND_ERROR();
+                return javax.ws.rs.core.Response.ok(Response.DEVICE_NOT_FOUND_ERROR()).build();
             }
 
             SecurityContext.init(dbDevice.getCustomerId());
             try {
                 if (this.pluginStatusCache.isPluginDisabled(PLUGIN_ID)) {
                     logger.error("Rejecting request from device {} due to disabled plugin", deviceNumber);
-                    return Response.PLUGIN_DISABLED();
+                    return javax.ws.rs.core.Response.ok(Response.PLUGIN_DISABLED()).build();
                 }
 
-                this.executor.submit(
-                        new InsertDeviceLogRecordsTask(deviceNumber, httpRequest.getRemoteAddr(), logs, this.deviceLogDAO)
-                );
-                return Response.OK();
+                if (!this.deviceLogDAO.queueDeviceLogRecords(dbDevice, httpRequest.getRemoteAddr(), logs)) {
+                    logger.warn("Rejecting {} log records from device {} due to full upload queue",
+                            logs.size(), deviceNumber);
+                    return javax.ws.rs.core.Response.status(TOO_MANY_REQUESTS)
+                            .header("Retry-After", RETRY_AFTER_SECONDS)
+                            .build();
+                }
+                return javax.ws.rs.core.Response.ok(Response.OK()).build();
             } finally {
                 SecurityContext.release();
             }
         } catch (Exception e) {
             logger.error("Unexpected error when handling uploaded log records", e);
-            return Response.INTERNAL_ERROR();
+            return javax.ws.rs.core.Response.ok(Response.INTERNAL_ERROR()).build();
         }
     }
 
@@ -267,7 +270,7 @@ public class DeviceLogResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response getDeviceLogRules(@PathParam("deviceNumber") String deviceNumber) {
         try {
-            final Device dbDevice = this.unsecureDAO.getDeviceByNumber(deviceNumber);
+            final DeviceIdentity dbDevice = this.unsecureDAO.getDeviceIdentityByNumber(deviceNumber);
             if (dbDevice == null) {
                 logger.error("Device {} was not found", deviceNumber);
                 return Response.DEVICE_NOT_FOUND_ERROR();
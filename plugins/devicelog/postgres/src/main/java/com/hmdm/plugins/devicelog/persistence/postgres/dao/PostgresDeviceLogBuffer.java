@@ -0,0 +1,266 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.devicelog.persistence.postgres.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.hmdm.persistence.UnsecureDAO;
+import com.hmdm.persistence.domain.DeviceIdentity;
+import com.hmdm.plugins.devicelog.model.LogLevel;
+import com.hmdm.plugins.devicelog.persistence.postgres.dao.domain.PostgresDeviceLogRecord;
+import com.hmdm.plugins.devicelog.rest.json.UploadedDeviceLogRecord;
+import com.hmdm.util.BackgroundTaskRunnerService;
+import com.hmdm.util.TaskCategory;
+import com.hmdm.util.WriteBehindBuffer;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.mybatis.guice.transactional.Transactional;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A write-behind buffer for the log records uploaded by devices.</p>
+ *
+ * <p>The records uploaded by all devices are accumulated in memory and written to the database in bulk with
+ * <code>COPY</code> when either the number of pending records reaches the flush size or the flush interval elapses. The
+ * package IDs are resolved to applications on flush using a short-living cache. If the buffer is full, the new
+ * records are rejected, so the devices retry the upload later.</p>
+ *
+ * <p>The buffer is not persistent. The upload is acknowledged to the device once the records are queued, so the records
+ * not written yet (up to the buffer size, normally those received within the last flush interval) are lost if the
+ * server crashes; a graceful shutdown flushes the buffer. This is the same trade-off as the former background insert
+ * tasks had.</p>
+ */
+@Singleton
+public class PostgresDeviceLogBuffer extends WriteBehindBuffer<PostgresDeviceLogBuffer.QueuedRecord> {
+
+    private static final String COPY_SQL = "COPY plugin_devicelog_log " +
+            "(createTime, customerId, deviceId, applicationId, ipAddress, severity, severityOrder, message) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    /**
+     * <p>A period after which the resolved package IDs are resolved again.</p>
+     */
+    private static final long PACKAGE_CACHE_TTL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * <p>A marker of the package not found among the customer's applications.</p>
+     */
+    private static final int UNKNOWN_PACKAGE = 0;
+
+    private final UnsecureDAO unsecureDAO;
+    private final SqlSessionManager sqlSessionManager;
+
+    /**
+     * <p>The IDs of applications mapped to package IDs and customer IDs. Accessed by the flushing thread only.</p>
+     */
+    private final Map<Integer, Map<String, Integer>> packageIds = new HashMap<>();
+    private long packageIdsResetTime = System.currentTimeMillis();
+
+    /**
+     * <p>Constructs new <code>PostgresDeviceLogBuffer</code> instance.</p>
+     *
+     * @param capacity a maximum number of records waiting for writing.
+     * @param flushSize a number of records triggering the flush.
+     */
+    @Inject
+    public PostgresDeviceLogBuffer(UnsecureDAO unsecureDAO,
+                                   SqlSessionManager sqlSessionManager,
+                                   BackgroundTaskRunnerService taskRunner,
+                                   @Named("devicelog.buffer.size") int capacity,
+                                   @Named("devicelog.flush.size") int flushSize) {
+        super("device log", taskRunner, TaskCategory.DEVICE_LOG, capacity, flushSize);
+        this.unsecureDAO = unsecureDAO;
+        this.sqlSessionManager = sqlSessionManager;
+    }
+
+    /**
+     * <p>Queues the log records uploaded by device for writing.</p>
+     *
+     * @param device a device which uploaded the records.
+     * @param ipAddress an IP-address of the device.
+     * @param logs a list of uploaded records.
+     * @return <code>true</code> if records are queued; <code>false</code> if the buffer is full.
+     */
+    public boolean queue(DeviceIdentity device, String ipAddress, List<UploadedDeviceLogRecord> logs) {
+        if (logs == null || logs.isEmpty()) {
+            return true;
+        }
+        final long now = System.currentTimeMillis();
+        final List<QueuedRecord> records = new ArrayList<>(logs.size());
+        for (UploadedDeviceLogRecord log : logs) {
+            records.add(new QueuedRecord(device.getCustomerId(), device.getId(), ipAddress, log, now));
+        }
+        return queue(records);
+    }
+
+    /**
+     * <p>Writes the records to the database. The records of applications unknown to the customer are skipped.</p>
+     */
+    @Override
+    protected int write(List<QueuedRecord> chunk) throws SQLException, IOException {
+        final List<PostgresDeviceLogRecord> records = resolveRecords(chunk);
+        if (!records.isEmpty()) {
+            try {
+                copyRecords(records);
+            } catch (SQLException | IOException | RuntimeException e) {
+                // The applications might be removed in the meantime
+                this.packageIds.clear();
+                throw e;
+            }
+        }
+        return records.size();
+    }
+
+    @Override
+    protected String getGroupKey(QueuedRecord record) {
+        return "device #" + record.deviceId;
+    }
+
+    /**
+     * <p>Writes the records to the database with a single <code>COPY</code> statement.</p>
+     *
+     * @param records a list of records to write.
+     */
+    @Transactional
+    public void copyRecords(List<PostgresDeviceLogRecord> records) throws SQLException, IOException {
+        final PGConnection connection = this.sqlSessionManager.getConnection().unwrap(PGConnection.class);
+        connection.getCopyAPI().copyIn(COPY_SQL, new StringReader(toCsv(records)));
+    }
+
+    /**
+     * <p>Formats the records as the input of <code>COPY</code> statement.</p>
+     */
+    static String toCsv(List<PostgresDeviceLogRecord> records) {
+        final StringBuilder csv = new StringBuilder(records.size() * 128);
+        for (PostgresDeviceLogRecord record : records) {
+            if (record.getCreateTime() != null) {
+                csv.append(record.getCreateTime());
+            }
+            csv.append(',').append(record.getCustomerId()).append(',')
+                    .append(record.getDeviceId()).append(',')
+                    .append(record.getApplicationId()).append(',');
+            appendCsvText(csv, record.getIpAddress());
+            csv.append(',');
+            appendCsvText(csv, record.getSeverity().name());
+            csv.append(',').append(record.getSeverity().getId()).append(',');
+            appendCsvText(csv, record.getMessage());
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static void appendCsvText(StringBuilder csv, String value) {
+        if (value == null) {
+            // An unquoted empty value is NULL
+            return;
+        }
+        csv.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"') {
+                csv.append('"');
+            }
+            csv.append(c);
+        }
+        csv.append('"');
+    }
+
+    /**
+     * <p>Converts the queued records to database records. The records of applications unknown to the customer are
+     * skipped.</p>
+     */
+    private List<PostgresDeviceLogRecord> resolveRecords(List<QueuedRecord> chunk) {
+        final long now = System.currentTimeMillis();
+        if (now - this.packageIdsResetTime > PACKAGE_CACHE_TTL) {
+            this.packageIds.clear();
+            this.packageIdsResetTime = now;
+        }
+
+        final Map<Integer, Set<String>> unresolved = new HashMap<>();
+        for (QueuedRecord queued : chunk) {
+            final Map<String, Integer> customerPackages = this.packageIds.get(queued.customerId);
+            final String pkg = queued.log.getPackageId();
+            if (pkg != null && (customerPackages == null || !customerPackages.containsKey(pkg))) {
+                unresolved.computeIfAbsent(queued.customerId, id -> new HashSet<>()).add(pkg);
+            }
+        }
+        unresolved.forEach((customerId, packages) -> {
+            final Map<String, Integer> resolved = this.unsecureDAO.buildPackageIdMapping(customerId, packages);
+            final Map<String, Integer> customerPackages
+                    = this.packageIds.computeIfAbsent(customerId, id -> new HashMap<>());
+            for (String pkg : packages) {
+                customerPackages.put(pkg, resolved.getOrDefault(pkg, UNKNOWN_PACKAGE));
+            }
+        });
+
+        final List<PostgresDeviceLogRecord> records = new ArrayList<>(chunk.size());
+        for (QueuedRecord queued : chunk) {
+            final Map<String, Integer> customerPackages = this.packageIds.get(queued.customerId);
+            final Integer applicationId = customerPackages == null || queued.log.getPackageId() == null
+                    ? null : customerPackages.get(queued.log.getPackageId());
+            if (applicationId == null || applicationId == UNKNOWN_PACKAGE) {
+                continue;
+            }
+
+            final PostgresDeviceLogRecord record = new PostgresDeviceLogRecord();
+            record.setCustomerId(queued.customerId);
+            record.setApplicationId(applicationId);
+            record.setCreateTime(queued.log.getTimestamp() != null ? queued.log.getTimestamp() : queued.queuedAt);
+            record.setDeviceId(queued.deviceId);
+            record.setMessage(queued.log.getMessage());
+            record.setSeverity(LogLevel.byId(queued.log.getLogLevel()).orElse(LogLevel.NONE));
+            record.setIpAddress(queued.ipAddress);
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * <p>A log record waiting for writing.</p>
+     */
+    static class QueuedRecord {
+        private final int customerId;
+        private final int deviceId;
+        private final String ipAddress;
+        private final UploadedDeviceLogRecord log;
+        private final long queuedAt;
+
+        private QueuedRecord(int customerId, int deviceId, String ipAddress, UploadedDeviceLogRecord log, long queuedAt) {
+            this.customerId = customerId;
+            this.deviceId = deviceId;
+            this.ipAddress = ipAddress;
+            this.log = log;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
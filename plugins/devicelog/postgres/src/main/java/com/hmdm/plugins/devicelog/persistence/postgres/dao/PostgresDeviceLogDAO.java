@@ -27,7 +27,7 @@ import com.hmdm.persistence.AbstractDAO;
 import com.hmdm.persistence.CustomerDAO;
 import com.hmdm.persistence.UnsecureDAO;
 import com.hmdm.persistence.domain.Customer;
-import com.hmdm.persistence.domain.Device;
+import com.hmdm.persistence.domain.DeviceIdentity;
 import com.hmdm.plugins.devicelog.model.DeviceLogPluginSettings;
 import com.hmdm.plugins.devicelog.model.DeviceLogRecord;
 import com.hmdm.plugins.devicelog.model.DeviceLogRule;
@@ -40,15 +40,17 @@ import com.hmdm.plugins.devicelog.rest.json.AppliedDeviceLogRule;
 import com.hmdm.plugins.devicelog.rest.json.DeviceLogFilter;
 import com.hmdm.plugins.devicelog.rest.json.UploadedDeviceLogRecord;
 import com.hmdm.security.SecurityContext;
+import org.apache.ibatis.cursor.Cursor;
 import org.mybatis.guice.transactional.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -70,14 +72,22 @@ public class PostgresDeviceLogDAO extends AbstractDAO<PostgresDeviceLogRecord> i
 
     private DeviceLogPluginSettingsDAO deviceLogPluginSettingsDAO;
 
+    private final PostgresDeviceLogBuffer deviceLogBuffer;
+
+    private final PostgresDeviceLogPartitions deviceLogPartitions;
+
     /**
      * <p>Constructs new <code>PostgresDeviceLogDAO</code> instance. This implementation does nothing.</p>
      */
     @Inject
     public PostgresDeviceLogDAO(PostgresDeviceLogMapper deviceLogMapper,
                                 DeviceLogPluginSettingsDAO deviceLogPluginSettingsDAO,
-                                UnsecureDAO unsecureDAO) {
+                                UnsecureDAO unsecureDAO,
+                                PostgresDeviceLogBuffer deviceLogBuffer,
+                                PostgresDeviceLogPartitions deviceLogPartitions) {
         this.deviceLogMapper = deviceLogMapper;
+        this.deviceLogBuffer = deviceLogBuffer;
+        this.deviceLogPartitions = deviceLogPartitions;
         this.unsecureDAO = unsecureDAO;
         this.deviceLogPluginSettingsDAO = deviceLogPluginSettingsDAO;
     }
@@ -102,6 +112,29 @@ public class PostgresDeviceLogDAO extends AbstractDAO<PostgresDeviceLogRecord> i
         return new ArrayList<>(result);
     }
 
+    /**
+     * <p>Passes the log records matching the specified filter to specified consumer one by one. The records are read
+     * from a single database cursor within a transaction, so they are fetched from database in chunks.</p>
+     *
+     * @param filter a filter used to narrowing down the search results.
+     * @param consumer a consumer of log records.
+     */
+    @Override
+    @Transactional
+    public void exportAll(DeviceLogFilter filter, Consumer<DeviceLogRecord> consumer) {
+        prepareFilter(filter);
+
+        SecurityContext.get().getCurrentUser().ifPresent(currentUser -> {
+            filter.setCustomerId(currentUser.getCustomerId());
+            filter.setUserId(currentUser.getId());
+            try (Cursor<PostgresDeviceLogRecord> records = this.deviceLogMapper.exportLogRecordsByCustomerId(filter)) {
+                records.forEach(consumer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     /**
      * <p>Counts the log records matching the specified filter.</p>
      *
@@ -120,49 +153,17 @@ public class PostgresDeviceLogDAO extends AbstractDAO<PostgresDeviceLogRecord> i
     }
 
     /**
-     * <p>Inserts the specified log records uploaded by the specified device into underlying persistent data store.</p>
+     * <p>Queues the specified log records uploaded by the specified device for insertion into underlying persistent
+     * data store. The records are written in bulk by {@link PostgresDeviceLogBuffer}.</p>
      *
-     * @param deviceNumber an identifier of a device.
-     * @param ipAddress    an IP-address of a device.
-     * @param logs         a list of log records to be inserted.
-     * @return a number of log records inserted into underlying persistent store.
+     * @param device    a device which uploaded the records.
+     * @param ipAddress an IP-address of a device.
+     * @param logs      a list of log records to be inserted.
+     * @return <code>true</code> if records are queued; <code>false</code> if the queue is full.
      */
     @Override
-    public int insertDeviceLogRecords(String deviceNumber, String ipAddress, List<UploadedDeviceLogRecord> logs) {
-        final Device dbDevice = this.unsecureDAO.getDeviceByNumber(deviceNumber);
-        if (dbDevice != null) {
-            // Build the cache of applications
-            final Set<String> appPackages
-                    = logs.stream().map(UploadedDeviceLogRecord::getPackageId).collect(Collectors.toSet());
-            final Map<String, Integer> appCache
-                    = this.unsecureDAO.buildPackageIdMapping(dbDevice.getCustomerId(), appPackages);
-            
-            final List<PostgresDeviceLogRecord> postgresLogs = logs.stream().map(log -> {
-                try {
-                    PostgresDeviceLogRecord postgresRecord = new PostgresDeviceLogRecord();
-                    postgresRecord.setCustomerId(dbDevice.getCustomerId());
-                    postgresRecord.setApplicationId(appCache.get(log.getPackageId()));
-                    postgresRecord.setCreateTime(log.getTimestamp());
-                    postgresRecord.setDeviceId(dbDevice.getId());
-                    postgresRecord.setMessage(log.getMessage());
-                    postgresRecord.setSeverity(LogLevel.byId(log.getLogLevel()).orElse(LogLevel.NONE));
-                    postgresRecord.setIpAddress(ipAddress);
-
-                    return postgresRecord;
-                } catch (Exception e) {
-                    logger.error("Unexpected error when converting log record {}. This record will be skipped. ", log, e);
-                    return null;
-                }
-            }).filter(Objects::nonNull).collect(Collectors.toList());
-
-            if (!postgresLogs.isEmpty()) {
-                int insertCount = this.deviceLogMapper.insertDeviceLogRecords(postgresLogs);
-
-                return insertCount;
-            }
-        }
-
-        return 0;
+    public boolean queueDeviceLogRecords(DeviceIdentity device, String ipAddress, List<UploadedDeviceLogRecord> logs) {
+        return this.deviceLogBuffer.queue(device, ipAddress, logs);
     }
 
     /**
@@ -173,7 +174,7 @@ public class PostgresDeviceLogDAO extends AbstractDAO<PostgresDeviceLogRecord> i
      */
     @Override
     public List<AppliedDeviceLogRule> getDeviceLogRules(String deviceNumber) {
-        final Device dbDevice = this.unsecureDAO.getDeviceByNumber(deviceNumber);
+        final DeviceIdentity dbDevice = this.unsecureDAO.getDeviceIdentityByNumber(deviceNumber);
         if (dbDevice != null) {
             final DeviceLogPluginSettings deviceLogSettings
                     = this.deviceLogPluginSettingsDAO.getPluginSettings(dbDevice.getCustomerId());
@@ -202,10 +203,10 @@ public class PostgresDeviceLogDAO extends AbstractDAO<PostgresDeviceLogRecord> i
                         resultingRules = combineDeviceLogRules(resultingRules, configurationRules);
                     }
 
-                    if (dbDevice.getGroups() != null && !dbDevice.getGroups().isEmpty()) {
+                    if (dbDevice.getGroupIds() != null && !dbDevice.getGroupIds().isEmpty()) {
                         final List<DeviceLogRule> groupRules = rules.stream()
                                 .filter(r -> r.getGroupId() != null)
-                                .filter(r -> dbDevice.getGroups().stream().anyMatch(g -> g.getId() == r.getGroupId()))
+                                .filter(r -> dbDevice.getGroupIds().contains(r.getGroupId()))
                                 .collect(Collectors.toList());
 
                         resultingRules = combineDeviceLogRules(resultingRules, groupRules);
@@ -232,10 +233,17 @@ public class PostgresDeviceLogDAO extends AbstractDAO<PostgresDeviceLogRecord> i
     }
 
     /**
-     * <p>Deletes the log records which are older than number of days configured in customer's profile.</p>
+     * <p>Deletes the log records which are older than number of days configured in customer's profile. If the log
+     * table is partitioned, then the outdated partitions are dropped instead.</p>
      */
     public void purgeLogRecords() {
         try {
+            if (this.deviceLogPartitions.isPartitioned()) {
+                logger.info("Dropping outdated partitions of the device logs...");
+                this.deviceLogPartitions.dropOutdatedPartitions();
+                return;
+            }
+
             logger.info("Deleting outdated records from the device logs...");
 
             List<Customer> customers = unsecureDAO.getAllCustomersUnsecure();
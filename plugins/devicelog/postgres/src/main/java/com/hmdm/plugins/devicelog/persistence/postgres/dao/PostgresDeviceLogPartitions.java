@@ -0,0 +1,151 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.devicelog.persistence.postgres.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.hmdm.persistence.domain.TablePartition;
+import com.hmdm.plugins.devicelog.persistence.postgres.dao.mapper.PostgresDeviceLogMapper;
+import org.mybatis.guice.transactional.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A maintainer of the partitions of the device log table.</p>
+ *
+ * <p>If the database supports declarative partitioning, the device log table is partitioned by the record creation
+ * time into daily partitions (the records created before the table was partitioned are kept in a single partition).
+ * The partitions for the upcoming days are created in advance; the outdated partitions are dropped as a whole instead
+ * of deleting the records. The records not matching any daily partition are kept in the default partition.</p>
+ *
+ * @author agent
+ */
+@Singleton
+public class PostgresDeviceLogPartitions {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresDeviceLogPartitions.class);
+
+    private static final String PARTITION_NAME_PREFIX = "plugin_devicelog_log_p";
+
+    private static final DateTimeFormatter PARTITION_NAME_FORMAT
+            = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    /**
+     * <p>A time range covered by a single partition.</p>
+     */
+    private static final long PARTITION_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * <p>A number of partitions created in advance.</p>
+     */
+    private static final int PARTITIONS_AHEAD = 7;
+
+    private final PostgresDeviceLogMapper deviceLogMapper;
+
+    private volatile Boolean partitioned;
+
+    /**
+     * <p>Constructs new <code>PostgresDeviceLogPartitions</code> instance. This implementation does nothing.</p>
+     */
+    @Inject
+    public PostgresDeviceLogPartitions(PostgresDeviceLogMapper deviceLogMapper) {
+        this.deviceLogMapper = deviceLogMapper;
+    }
+
+    /**
+     * <p>Checks if the device log table is partitioned.</p>
+     */
+    public boolean isPartitioned() {
+        if (this.partitioned == null) {
+            this.partitioned = Boolean.TRUE.equals(this.deviceLogMapper.isLogTablePartitioned());
+        }
+        return this.partitioned;
+    }
+
+    /**
+     * <p>Creates the partitions for the current day and the upcoming days unless they exist already. Does nothing if
+     * the device log table is not partitioned.</p>
+     */
+    public void createPartitions() {
+        try {
+            if (!isPartitioned()) {
+                return;
+            }
+            final List<TablePartition> partitions = this.deviceLogMapper.getLogPartitions();
+            final long today = System.currentTimeMillis() / PARTITION_INTERVAL * PARTITION_INTERVAL;
+            for (int i = 0; i <= PARTITIONS_AHEAD; i++) {
+                final long fromTime = today + i * PARTITION_INTERVAL;
+                final long toTime = fromTime + PARTITION_INTERVAL;
+                if (partitions.stream().noneMatch(p -> p.overlaps(fromTime, toTime))) {
+                    createPartition(PARTITION_NAME_PREFIX + PARTITION_NAME_FORMAT.format(Instant.ofEpochMilli(fromTime)),
+                            fromTime, toTime);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Unexpected error when creating the device log partitions", e);
+        }
+    }
+
+    /**
+     * <p>Creates the partition for the specified time range. The records in that range are moved to new partition
+     * from the default one.</p>
+     *
+     * @param name a name of the partition table.
+     * @param fromTime a lower bound of the range (inclusive).
+     * @param toTime an upper bound of the range (exclusive).
+     */
+    @Transactional
+    public void createPartition(String name, long fromTime, long toTime) {
+        this.deviceLogMapper.createLogPartitionTable(name);
+        final int moved = this.deviceLogMapper.moveDefaultPartitionLogRecords(name, fromTime, toTime);
+        this.deviceLogMapper.attachLogPartition(name, fromTime, toTime);
+        logger.info("Created device log partition {} ({} records moved from the default partition)", name, moved);
+    }
+
+    /**
+     * <p>Drops the partitions holding the outdated records only and deletes the outdated records from the default
+     * partition.</p>
+     */
+    public void dropOutdatedPartitions() {
+        final Long purgeTime = this.deviceLogMapper.getLogRecordsPurgeTime();
+        if (purgeTime == null) {
+            return;
+        }
+        for (TablePartition partition : this.deviceLogMapper.getLogPartitions()) {
+            final Long toTime = partition.getTo();
+            if (!partition.isDefault() && toTime != null && toTime <= purgeTime) {
+                this.deviceLogMapper.dropLogPartition(partition.getName());
+                logger.info("Dropped outdated device log partition {}", partition.getName());
+            }
+        }
+        final int count = this.deviceLogMapper.purgeDefaultPartitionLogRecords(purgeTime);
+        if (count > 0) {
+            logger.info("Deleted {} outdated records from the default device log partition", count);
+        }
+    }
+}
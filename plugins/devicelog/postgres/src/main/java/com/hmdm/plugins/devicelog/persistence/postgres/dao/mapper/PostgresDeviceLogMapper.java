@@ -21,6 +21,7 @@
 
 package com.hmdm.plugins.devicelog.persistence.postgres.dao.mapper;
 
+import com.hmdm.persistence.domain.TablePartition;
 import com.hmdm.plugins.devicelog.persistence.postgres.dao.domain.PostgresDeviceLogPluginSettings;
 import com.hmdm.plugins.devicelog.persistence.postgres.dao.domain.PostgresDeviceLogRecord;
 import com.hmdm.plugins.devicelog.persistence.postgres.dao.domain.PostgresDeviceLogRule;
@@ -31,6 +32,7 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.SelectKey;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
 
@@ -43,6 +45,8 @@ public interface PostgresDeviceLogMapper {
 
     List<PostgresDeviceLogRecord> findAllLogRecordsByCustomerId(DeviceLogFilter filter);
 
+    Cursor<PostgresDeviceLogRecord> exportLogRecordsByCustomerId(DeviceLogFilter filter);
+
     long countAll(DeviceLogFilter filter);
 
     int insertDeviceLogRecords(@Param("logs") List<PostgresDeviceLogRecord> postgresLogs);
@@ -124,4 +128,46 @@ public interface PostgresDeviceLogMapper {
             "                    FROM plugin_devicelog_settings pds " +
             "                    WHERE pds.customerId = #{customerId})")
     int purgeLogRecords(@Param("customerId") int customerId);
+
+    // ------------ device log partitions -------------------------------------------------------------------------------
+    @Select("SELECT COALESCE(relkind = 'p', FALSE) FROM pg_class WHERE oid = to_regclass('plugin_devicelog_log')")
+    Boolean isLogTablePartitioned();
+
+    @Select("SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound " +
+            "FROM pg_inherits i " +
+            "INNER JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = 'plugin_devicelog_log'::regclass")
+    List<TablePartition> getLogPartitions();
+
+    /**
+     * <p>Gets the time before which the log records are outdated. The shortest period configured in customers'
+     * profiles is used as the log records are stored in a single table.</p>
+     *
+     * @return a time in milliseconds since epoch or <code>null</code> if there are no settings.
+     */
+    @Select("SELECT MIN(EXTRACT(EPOCH FROM DATE_TRUNC('day', NOW() - (logsPreservePeriod || ' day')::INTERVAL)) * 1000)::BIGINT " +
+            "FROM plugin_devicelog_settings")
+    Long getLogRecordsPurgeTime();
+
+    @Update("CREATE TABLE ${name} (LIKE plugin_devicelog_log INCLUDING DEFAULTS)")
+    void createLogPartitionTable(@Param("name") String name);
+
+    @Insert("WITH moved AS (" +
+            "  DELETE FROM plugin_devicelog_log_default " +
+            "  WHERE createTime >= #{fromTime} AND createTime < #{toTime} " +
+            "  RETURNING *" +
+            ") " +
+            "INSERT INTO ${name} SELECT * FROM moved")
+    int moveDefaultPartitionLogRecords(@Param("name") String name,
+                                       @Param("fromTime") long fromTime,
+                                       @Param("toTime") long toTime);
+
+    @Update("ALTER TABLE plugin_devicelog_log ATTACH PARTITION ${name} FOR VALUES FROM (${fromTime}) TO (${toTime})")
+    void attachLogPartition(@Param("name") String name, @Param("fromTime") long fromTime, @Param("toTime") long toTime);
+
+    @Update("DROP TABLE ${name}")
+    void dropLogPartition(@Param("name") String name);
+
+    @Delete("DELETE FROM plugin_devicelog_log_default WHERE createTime < #{purgeTime}")
+    int purgeDefaultPartitionLogRecords(@Param("purgeTime") long purgeTime);
 }
@@ -22,8 +22,11 @@
 package com.hmdm.plugins.devicelog.persistence.postgres.guice.module;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import com.hmdm.plugin.PluginTaskModule;
+import com.hmdm.plugins.devicelog.persistence.postgres.dao.PostgresDeviceLogBuffer;
 import com.hmdm.plugins.devicelog.persistence.postgres.dao.PostgresDeviceLogDAO;
+import com.hmdm.plugins.devicelog.persistence.postgres.dao.PostgresDeviceLogPartitions;
 import com.hmdm.util.BackgroundTaskRunnerService;
 
 import java.util.concurrent.TimeUnit;
@@ -45,21 +48,47 @@ public class DeviceLogPostgresTaskModule implements PluginTaskModule {
      */
     private final BackgroundTaskRunnerService taskRunner;
 
+    /**
+     * <p>A buffer for the uploaded device log records.</p>
+     */
+    private final PostgresDeviceLogBuffer deviceLogBuffer;
+
+    /**
+     * <p>A maintainer of the device log partitions.</p>
+     */
+    private final PostgresDeviceLogPartitions deviceLogPartitions;
+
+    /**
+     * <p>A maximum interval between writes of the buffered log records (in milliseconds).</p>
+     */
+    private final int flushInterval;
+
     /**
      * <p>Constructs new <code>DeviceLogPostgresTaskModule</code> instance. This implementation does nothing.</p>
      */
     @Inject
-    public DeviceLogPostgresTaskModule(PostgresDeviceLogDAO deviceLogDAO, BackgroundTaskRunnerService taskRunner) {
+    public DeviceLogPostgresTaskModule(PostgresDeviceLogDAO deviceLogDAO,
+                                       BackgroundTaskRunnerService taskRunner,
+                                       PostgresDeviceLogBuffer deviceLogBuffer,
+                                       PostgresDeviceLogPartitions deviceLogPartitions,
+                                       @Named("devicelog.flush.interval") int flushInterval) {
         this.deviceLogDAO = deviceLogDAO;
         this.taskRunner = taskRunner;
+        this.deviceLogBuffer = deviceLogBuffer;
+        this.deviceLogPartitions = deviceLogPartitions;
+        this.flushInterval = Math.max(100, flushInterval);
     }
 
     /**
      * <p>Initializes this module. Schedules the task for purging the outdated device log records from DB on a daily
-     * basis.</p>
+     * basis, the task for creating the upcoming partitions of device log on hourly basis and the task for writing the
+     * buffered log records to DB. The buffered records are also written on shutdown.</p>
      */
     @Override
     public void init() {
         taskRunner.submitRepeatableTask(deviceLogDAO::purgeLogRecords, 1, 24, TimeUnit.HOURS);
+        taskRunner.submitRepeatableTask(deviceLogPartitions::createPartitions, 0, 1, TimeUnit.HOURS);
+        taskRunner.submitRepeatableTask(deviceLogBuffer::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(deviceLogBuffer::shutdown));
     }
 }
@@ -0,0 +1,100 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.devicelog.persistence.postgres.dao;
+
+import com.hmdm.plugins.devicelog.model.LogLevel;
+import com.hmdm.plugins.devicelog.persistence.postgres.dao.domain.PostgresDeviceLogRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * <p>A test suite for the formatting of the log records written by {@link PostgresDeviceLogBuffer}.</p>
+ */
+public class PostgresDeviceLogBufferTests {
+
+    /**
+     * <p>Constructs new <code>PostgresDeviceLogBufferTests</code> instance. This implementation does nothing.</p>
+     */
+    public PostgresDeviceLogBufferTests() {
+    }
+
+    @Test
+    public void testRecordIsFormattedInColumnOrder() {
+        final PostgresDeviceLogRecord record = record(1000L, "10.0.0.1", LogLevel.WARNING, "Started");
+
+        Assert.assertEquals("1000,1,2,3,\"10.0.0.1\",\"WARNING\",2,\"Started\"\n",
+                PostgresDeviceLogBuffer.toCsv(Collections.singletonList(record)));
+    }
+
+    @Test
+    public void testQuotesAndSeparatorsAreEscaped() {
+        final PostgresDeviceLogRecord record
+                = record(1000L, "10.0.0.1", LogLevel.INFO, "Said \"hello\", then\nleft");
+
+        Assert.assertEquals("1000,1,2,3,\"10.0.0.1\",\"INFO\",3,\"Said \"\"hello\"\", then\nleft\"\n",
+                PostgresDeviceLogBuffer.toCsv(Collections.singletonList(record)));
+    }
+
+    @Test
+    public void testMissingValuesAreWrittenAsNull() {
+        final PostgresDeviceLogRecord record = record(null, null, LogLevel.ERROR, null);
+
+        Assert.assertEquals(",1,2,3,,\"ERROR\",1,\n",
+                PostgresDeviceLogBuffer.toCsv(Collections.singletonList(record)));
+    }
+
+    @Test
+    public void testEmptyStringDiffersFromNull() {
+        final PostgresDeviceLogRecord record = record(1000L, "", LogLevel.DEBUG, "");
+
+        Assert.assertEquals("1000,1,2,3,\"\",\"DEBUG\",4,\"\"\n",
+                PostgresDeviceLogBuffer.toCsv(Collections.singletonList(record)));
+    }
+
+    @Test
+    public void testEachRecordIsWrittenOnSeparateLine() {
+        final String csv = PostgresDeviceLogBuffer.toCsv(Arrays.asList(
+                record(1000L, "10.0.0.1", LogLevel.INFO, "First"),
+                record(2000L, "10.0.0.1", LogLevel.INFO, "Second")
+        ));
+
+        Assert.assertEquals("1000,1,2,3,\"10.0.0.1\",\"INFO\",3,\"First\"\n" +
+                "2000,1,2,3,\"10.0.0.1\",\"INFO\",3,\"Second\"\n", csv);
+        Assert.assertEquals("", PostgresDeviceLogBuffer.toCsv(Collections.emptyList()));
+    }
+
+    private static PostgresDeviceLogRecord record(Long createTime, String ipAddress, LogLevel severity,
+                                                  String message) {
+        final PostgresDeviceLogRecord record = new PostgresDeviceLogRecord();
+        record.setCreateTime(createTime);
+        record.setCustomerId(1);
+        record.setDeviceId(2);
+        record.setApplicationId(3);
+        record.setIpAddress(ipAddress);
+        record.setSeverity(severity);
+        record.setMessage(message);
+        return record;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * Copyright (C) 2019 Headwind Solutions LLC (http://h-sms.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.hmdm.plugins.devicelog.persistence.postgres.dao.mapper;
+
+import com.hmdm.plugins.devicelog.rest.json.DeviceLogFilter;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * <p>A test suite for the queries selecting the device log records in {@link PostgresDeviceLogMapper}.</p>
+ */
+public class PostgresDeviceLogMapperTests {
+
+    private static final Configuration configuration = createConfiguration();
+
+    /**
+     * <p>Constructs new <code>PostgresDeviceLogMapperTests</code> instance. This implementation does nothing.</p>
+     */
+    public PostgresDeviceLogMapperTests() {
+    }
+
+    @Test
+    public void testKeysetPaginationFlag() {
+        final DeviceLogFilter filter = new DeviceLogFilter();
+        Assert.assertFalse(filter.isKeysetPagination());
+
+        filter.setAfterCreateTime(1000L);
+        Assert.assertFalse(filter.isKeysetPagination());
+
+        filter.setAfterId(10);
+        Assert.assertTrue(filter.isKeysetPagination());
+
+        filter.setSortValue("deviceNumber");
+        Assert.assertFalse(filter.isKeysetPagination());
+    }
+
+    @Test
+    public void testFirstPageUsesOffset() {
+        final String sql = sql("findAllLogRecordsByCustomerId", new DeviceLogFilter());
+
+        Assert.assertTrue(sql.contains("ORDER BY data.createTime DESC, data.id DESC"));
+        Assert.assertTrue(sql.contains("OFFSET"));
+        Assert.assertFalse(sql.contains("(data.createTime, data.id)"));
+    }
+
+    @Test
+    public void testNextPageIsSelectedAfterLastRecord() {
+        final DeviceLogFilter filter = new DeviceLogFilter();
+        filter.setAfterCreateTime(1000L);
+        filter.setAfterId(10);
+        final BoundSql boundSql = boundSql("findAllLogRecordsByCustomerId", filter);
+        final String sql = normalize(boundSql.getSql());
+
+        Assert.assertTrue(sql.contains("AND ( (data.createTime, data.id) < (?, ?) )"));
+        Assert.assertTrue(sql.contains("ORDER BY data.createTime DESC, data.id DESC"));
+        Assert.assertFalse(sql.contains("OFFSET"));
+        Assert.assertTrue(sql.endsWith("LIMIT ?"));
+
+        final List<String> parameters = boundSql.getParameterMappings().stream()
+                .map(ParameterMapping::getProperty)
+                .collect(Collectors.toList());
+        final int index = parameters.indexOf("afterCreateTime");
+        Assert.assertTrue(index >= 0);
+        Assert.assertEquals("afterId", parameters.get(index + 1));
+    }
+
+    @Test
+    public void testAscendingPagesAreSelectedAfterLastRecord() {
+        final DeviceLogFilter filter = new DeviceLogFilter();
+        filter.setAfterCreateTime(1000L);
+        filter.setAfterId(10);
+        filter.setExport(true);
+        final String sql = sql("findAllLogRecordsByCustomerId", filter);
+
+        Assert.assertTrue(sql.contains("AND ( (data.createTime, data.id) > (?, ?) )"));
+        Assert.assertTrue(sql.contains("ORDER BY data.createTime ASC, data.id ASC"));
+        Assert.assertFalse(sql.contains("OFFSET"));
+    }
+
+    @Test
+    public void testIncompletePositionFallsBackToOffset() {
+        final DeviceLogFilter filter = new DeviceLogFilter();
+        filter.setAfterCreateTime(1000L);
+        final String sql = sql("findAllLogRecordsByCustomerId", filter);
+
+        Assert.assertTrue(sql.contains("OFFSET"));
+        Assert.assertFalse(sql.contains("(data.createTime, data.id)"));
+    }
+
+    @Test
+    public void testSortingByDeviceNumberUsesOffset() {
+        final DeviceLogFilter filter = new DeviceLogFilter();
+        filter.setAfterCreateTime(1000L);
+        filter.setAfterId(10);
+        filter.setSortValue("deviceNumber");
+        final String sql = sql("findAllLogRecordsByCustomerId", filter);
+
+        Assert.assertTrue(sql.contains("ORDER BY devices.number ASC, data.createTime DESC, data.id DESC"));
+        Assert.assertTrue(sql.contains("OFFSET"));
+        Assert.assertFalse(sql.contains("(data.createTime, data.id)"));
+    }
+
+    @Test
+    public void testExportIsNotPaged() {
+        final DeviceLogFilter filter = new DeviceLogFilter();
+        filter.setExport(true);
+        final String sql = sql("exportLogRecordsByCustomerId", filter);
+
+        Assert.assertTrue(sql.endsWith("ORDER BY data.createTime ASC, data.id ASC"));
+        Assert.assertFalse(sql.contains("OFFSET"));
+        Assert.assertFalse(sql.contains("LIMIT"));
+        Assert.assertEquals(Integer.valueOf(1000), statement("exportLogRecordsByCustomerId").getFetchSize());
+    }
+
+    private static String sql(String statementId, DeviceLogFilter filter) {
+        return normalize(boundSql(statementId, filter).getSql());
+    }
+
+    private static BoundSql boundSql(String statementId, DeviceLogFilter filter) {
+        return statement(statementId).getBoundSql(filter);
+    }
+
+    private static MappedStatement statement(String statementId) {
+        return configuration.getMappedStatement(PostgresDeviceLogMapper.class.getName() + "." + statementId);
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+
+    private static Configuration createConfiguration() {
+        final Configuration configuration = new Configuration();
+        configuration.getTypeAliasRegistry()
+                .registerAliases("com.hmdm.plugins.devicelog.persistence.postgres.dao.domain");
+        configuration.addMapper(PostgresDeviceLogMapper.class);
+        return configuration;
+    }
+}
@@ -22,10 +22,13 @@
 package com.hmdm.guice.module;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.MapBinder;
 import com.google.inject.name.Names;
 import com.hmdm.auth.HmdmAuthInterface;
 import com.hmdm.auth.LocalAuth;
 import com.hmdm.persistence.domain.Application;
+import com.hmdm.util.BoundedExecutor;
+import com.hmdm.util.TaskCategory;
 
 import javax.servlet.ServletContext;
 
@@ -98,6 +101,22 @@ public class ConfigureModule extends AbstractModule {
     private final String jwtSecretKey = "jwt.secretkey";
     private final String jwtValidity = "jwt.validity";
     private final String jwtValidityForRememberMe = "jwt.validityrememberme";
+    private final String syncSnapshotTtl = "sync.snapshot.ttl";
+    private final String deviceCacheTtl = "device.cache.ttl";
+    private final String deviceCacheSize = "device.cache.size";
+    private final String userCacheTtl = "user.cache.ttl";
+    private final String userCacheSize = "user.cache.size";
+    private final String deviceInfoFlushInterval = "device.info.flush.interval";
+    private final String deviceLogBufferSize = "devicelog.buffer.size";
+    private final String deviceLogFlushSize = "devicelog.flush.size";
+    private final String deviceLogFlushInterval = "devicelog.flush.interval";
+    private final String pluginDeviceInfoBufferSize = "deviceinfo.buffer.size";
+    private final String pluginDeviceInfoFlushSize = "deviceinfo.flush.size";
+    private final String pluginDeviceInfoFlushInterval = "deviceinfo.flush.interval";
+    private final String pluginDeviceInfoExportThreads = "deviceinfo.export.threads";
+    private final String pluginAuditBufferSize = "audit.buffer.size";
+    private final String pluginAuditFlushSize = "audit.flush.size";
+    private final String pluginAuditFlushInterval = "audit.flush.interval";
     private final ServletContext context;
 
     public ConfigureModule(ServletContext context) {
@@ -272,5 +291,64 @@ public class ConfigureModule extends AbstractModule {
         this.bindConstant().annotatedWith(Names.named(jwtValidity)).to(opt != null ? opt : "");
         opt = this.context.getInitParameter(jwtValidityForRememberMe);
         this.bindConstant().annotatedWith(Names.named(jwtValidityForRememberMe)).to(opt != null ? opt : "");
+        opt = this.context.getInitParameter(syncSnapshotTtl);
+        this.bindConstant().annotatedWith(Names.named(syncSnapshotTtl)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 60);
+
+        opt = this.context.getInitParameter(deviceCacheTtl);
+        this.bindConstant().annotatedWith(Names.named(deviceCacheTtl)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 300);
+
+        opt = this.context.getInitParameter(deviceCacheSize);
+        this.bindConstant().annotatedWith(Names.named(deviceCacheSize)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 100000);
+
+        opt = this.context.getInitParameter(userCacheTtl);
+        this.bindConstant().annotatedWith(Names.named(userCacheTtl)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 10);
+
+        opt = this.context.getInitParameter(userCacheSize);
+        this.bindConstant().annotatedWith(Names.named(userCacheSize)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 10000);
+
+        opt = this.context.getInitParameter(deviceInfoFlushInterval);
+        this.bindConstant().annotatedWith(Names.named(deviceInfoFlushInterval)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 1000);
+
+        opt = this.context.getInitParameter(deviceLogBufferSize);
+        this.bindConstant().annotatedWith(Names.named(deviceLogBufferSize)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 100000);
+
+        opt = this.context.getInitParameter(deviceLogFlushSize);
+        this.bindConstant().annotatedWith(Names.named(deviceLogFlushSize)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 5000);
+
+        opt = this.context.getInitParameter(deviceLogFlushInterval);
+        this.bindConstant().annotatedWith(Names.named(deviceLogFlushInterval)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 1000);
+
+        opt = this.context.getInitParameter(pluginDeviceInfoBufferSize);
+        this.bindConstant().annotatedWith(Names.named(pluginDeviceInfoBufferSize)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 50000);
+
+        opt = this.context.getInitParameter(pluginDeviceInfoFlushSize);
+        this.bindConstant().annotatedWith(Names.named(pluginDeviceInfoFlushSize)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 5000);
+
+        opt = this.context.getInitParameter(pluginDeviceInfoFlushInterval);
+        this.bindConstant().annotatedWith(Names.named(pluginDeviceInfoFlushInterval)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 1000);
+
+        opt = this.context.getInitParameter(pluginDeviceInfoExportThreads);
+        this.bindConstant().annotatedWith(Names.named(pluginDeviceInfoExportThreads)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 1);
+
+        opt = this.context.getInitParameter(pluginAuditBufferSize);
+        this.bindConstant().annotatedWith(Names.named(pluginAuditBufferSize)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 10000);
+
+        opt = this.context.getInitParameter(pluginAuditFlushSize);
+        this.bindConstant().annotatedWith(Names.named(pluginAuditFlushSize)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 500);
+
+        opt = this.context.getInitParameter(pluginAuditFlushInterval);
+        this.bindConstant().annotatedWith(Names.named(pluginAuditFlushInterval)).to(opt != null && !opt.equals("") ? Integer.parseInt(opt): 1000);
+
+        final MapBinder<TaskCategory, BoundedExecutor> executors
+                = MapBinder.newMapBinder(binder(), TaskCategory.class, BoundedExecutor.class);
+        for (TaskCategory category : TaskCategory.values()) {
+            opt = this.context.getInitParameter(category.getThreadsParameter());
+            final int threads = opt != null && !opt.equals("") ? Integer.parseInt(opt): category.getDefaultThreads();
+
+            opt = this.context.getInitParameter(category.getQueueParameter());
+            final int queue = opt != null && !opt.equals("") ? Integer.parseInt(opt): category.getDefaultQueueCapacity();
+
+            executors.addBinding(category).toInstance(category.createExecutor(threads, queue));
+        }
     }
 }
\ No newline at end of file
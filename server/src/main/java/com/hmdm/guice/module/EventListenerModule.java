@@ -25,14 +25,13 @@ import com.google.inject.Inject;
 import com.hmdm.event.EventService;
 import com.hmdm.persistence.ConfigurationUpdatedEventListener;
 import com.hmdm.persistence.DeviceInfoUpdatedEventListener;
+import com.hmdm.persistence.SyncSnapshotEventListener;
 import com.hmdm.persistence.mapper.DeviceMapper;
 import com.hmdm.service.DeviceStatusService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.hmdm.service.SyncSnapshotCache;
+import com.hmdm.util.BackgroundTaskRunnerService;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * <p>$</p>
@@ -42,38 +41,33 @@ public class EventListenerModule {
     private final EventService eventService;
     private final DeviceMapper deviceMapper;
     private final DeviceStatusService deviceStatusService;
+    private final SyncSnapshotCache syncSnapshotCache;
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(1);
-
-    private static final Logger logger = LoggerFactory.getLogger(EventListenerModule.class);
+    private final BackgroundTaskRunnerService taskRunner;
 
 
     /**
      * <p>Constructs new <code>EventListenerModule</code> instance. This implementation does nothing.</p>
      */
     @Inject
-    public EventListenerModule(EventService eventService, DeviceMapper deviceMapper, DeviceStatusService deviceStatusService) {
+    public EventListenerModule(EventService eventService, DeviceMapper deviceMapper, DeviceStatusService deviceStatusService,
+                               SyncSnapshotCache syncSnapshotCache, BackgroundTaskRunnerService taskRunner) {
         this.eventService = eventService;
         this.deviceMapper = deviceMapper;
         this.deviceStatusService = deviceStatusService;
+        this.syncSnapshotCache = syncSnapshotCache;
+        this.taskRunner = taskRunner;
     }
 
     public void init() {
         this.eventService.addEventListener(new DeviceInfoUpdatedEventListener(deviceStatusService));
         this.eventService.addEventListener(new ConfigurationUpdatedEventListener(deviceMapper, deviceStatusService));
+        this.eventService.addEventListener(new SyncSnapshotEventListener(syncSnapshotCache));
 
-        executorService.submit(() -> {
+        taskRunner.submitTask(() -> {
             List<Integer> deviceIds = this.deviceMapper.getAllDeviceIds();
-            deviceIds.forEach(deviceId -> {
-                try {
-                    this.deviceStatusService.recalcDeviceStatuses(deviceId);
-                } catch (Exception e) {
-                    logger.warn("Failed to recalculate statuses for device: {}", deviceId, e);
-                }
-            });
+            this.deviceStatusService.recalcDeviceStatuses(deviceIds);
         });
-
-        Runtime.getRuntime().addShutdownHook(new Thread(executorService::shutdown));
     }
 
 }
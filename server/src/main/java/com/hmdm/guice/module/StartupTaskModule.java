@@ -6,6 +6,7 @@ import com.hmdm.event.EventService;
 import com.hmdm.persistence.CommonDAO;
 import com.hmdm.persistence.UnsecureDAO;
 import com.hmdm.persistence.domain.User;
+import com.hmdm.service.DeviceInfoUpdateBuffer;
 import com.hmdm.service.RsaKeyService;
 import com.hmdm.task.CustomerStatusTask;
 import com.hmdm.task.FileCheckTask;
@@ -38,6 +39,8 @@ public class StartupTaskModule {
     private boolean customerAutoStatus;
     private boolean transmitPassword;
     private RsaKeyService rsaKeyService;
+    private DeviceInfoUpdateBuffer deviceInfoUpdateBuffer;
+    private int deviceInfoFlushInterval;
 
     private static final Logger logger = LoggerFactory.getLogger(EventService.class);
 
@@ -50,10 +53,12 @@ public class StartupTaskModule {
                              FileCheckTask fileCheckTask,
                              FileMigrateTask fileMigrateTask,
                              RsaKeyService rsaKeyService,
+                             DeviceInfoUpdateBuffer deviceInfoUpdateBuffer,
                              @Named("device.fast.search.chars") int deviceFastSearchChars,
                              @Named("sql.init.script.path") String sqlInitScriptPath,
                              @Named("customer.auto.status") boolean customerAutoStatus,
-                             @Named("transmit.password") boolean transmitPassword) {
+                             @Named("transmit.password") boolean transmitPassword,
+                             @Named("device.info.flush.interval") int deviceInfoFlushInterval) {
         this.commonDAO = commonDAO;
         this.unsecureDAO = unsecureDAO;
         this.taskRunner = taskRunner;
@@ -65,6 +70,8 @@ public class StartupTaskModule {
         this.customerAutoStatus = customerAutoStatus;
         this.transmitPassword = transmitPassword;
         this.rsaKeyService = rsaKeyService;
+        this.deviceInfoUpdateBuffer = deviceInfoUpdateBuffer;
+        this.deviceInfoFlushInterval = Math.max(1, deviceInfoFlushInterval);
     }
 
     public void init() {
@@ -83,6 +90,9 @@ public class StartupTaskModule {
         if (transmitPassword) {
             taskRunner.submitTask(new GenerateRsaKeysTask());
         }
+        taskRunner.submitRepeatableTask(new FlushDeviceInfoTask(),
+                deviceInfoFlushInterval, deviceInfoFlushInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(new FlushDeviceInfoTask()));
     }
 
     public class UpdatePasswordTask implements Runnable {
@@ -132,6 +142,18 @@ public class StartupTaskModule {
         }
     }
 
+    // Write the info reported by devices since the previous run
+    public class FlushDeviceInfoTask implements Runnable {
+        @Override
+        public void run() {
+            try {
+                deviceInfoUpdateBuffer.flush();
+            } catch (Exception e) {
+                logger.error("Failed to write the info reported by devices", e);
+            }
+        }
+    }
+
     public class GenerateRsaKeysTask implements Runnable {
         @Override
         public void run() {
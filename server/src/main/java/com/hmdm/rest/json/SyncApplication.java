@@ -42,120 +42,160 @@ import javax.validation.constraints.NotNull;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class SyncApplication implements SyncApplicationInt {
 
-    @JsonIgnore
-    private final Application wrapped;
+    private final String icon;
+    private final String name;
+    private final String pkg;
+    private final String version;
+    private final Integer code;
+    private final String url;
+    private final Integer id;
+    private final Boolean showIcon;
+    private final Boolean useKiosk;
+    private final Boolean remove;
+    private final Boolean system;
+    private final Boolean runAfterInstall;
+    private final Boolean runAtBoot;
+    private final Boolean skipVersion;
+    private final String iconText;
+    private final ApplicationType type;
+    private final Integer screenOrder;
+    private final Integer keyCode;
+    private final Boolean bottom;
+    private final Boolean longTap;
+    private final String intent;
 
     /**
-     * <p>Constructs new <code>SyncApplication</code> instance. This implementation does nothing.</p>
+     * <p>Constructs new <code>SyncApplication</code> instance. The values are copied from the specified application, so
+     * the instance is immutable and may be shared by the responses to different devices.</p>
      */
-    public SyncApplication(@NotNull Application wrapped) {
-        this.wrapped = wrapped;
+    public SyncApplication(@NotNull Application application) {
+        this.icon = application.getIcon();
+        this.name = application.getName();
+        this.pkg = application.getPkg();
+        this.version = application.getVersion();
+        this.code = application.getVersionCode() != 0 ? application.getVersionCode() : null;
+        this.url = application.getUrl();
+        this.id = application.getId();
+        this.showIcon = application.getShowIcon() ? true : null;
+        this.useKiosk = application.getUseKiosk() ? true : null;
+        this.remove = application.isRemove() ? true : null;
+        this.system = application.isSystem() ? true : null;
+        this.runAfterInstall = application.isRunAfterInstall() ? true : null;
+        this.runAtBoot = application.isRunAtBoot() ? true : null;
+        this.skipVersion = application.isSkipVersion() ? true : null;
+        this.iconText = application.getIconText();
+        this.type = application.getType();
+        this.screenOrder = application.getScreenOrder();
+        this.keyCode = application.getKeyCode();
+        this.bottom = application.isBottom() ? true : null;
+        this.longTap = application.isLongTap() ? true : null;
+        this.intent = application.getIntent();
     }
 
     @Override
     public String getIcon() {
-        return wrapped.getIcon();
+        return this.icon;
     }
 
     @Override
     public String getName() {
-        return wrapped.getName();
+        return this.name;
     }
 
     @Override
     public String getPkg() {
-        return wrapped.getPkg();
+        return this.pkg;
     }
 
     @Override
     public String getVersion() {
-        return wrapped.getVersion();
+        return this.version;
     }
 
     @Override
     public Integer getCode() {
-        return wrapped.getVersionCode() != 0 ? wrapped.getVersionCode() : null;
+        return this.code;
     }
 
     @Override
     public String getUrl() {
-        return wrapped.getUrl();
+        return this.url;
     }
 
     @Override
     public Integer getId() {
-        return wrapped.getId();
+        return this.id;
     }
 
     @Override
     public Boolean getShowIcon() {
-        return wrapped.getShowIcon() ? true : null;
+        return this.showIcon;
     }
 
     @Override
     public Boolean getUseKiosk() {
-        return wrapped.getUseKiosk() ? true : null;
+        return this.useKiosk;
     }
 
     @Override
     @Deprecated
     public Boolean isRemove() {
-        return wrapped.isRemove() ? true : null;
+        return this.remove;
     }
 
     @Override
     public Boolean isSystem() {
-        return wrapped.isSystem() ? true : null;
+        return this.system;
     }
 
     @Override
     public Boolean isRunAfterInstall() {
-        return wrapped.isRunAfterInstall() ? true : null;
+        return this.runAfterInstall;
     }
 
     @Override
     public Boolean isRunAtBoot() {
-        return wrapped.isRunAtBoot() ? true : null;
+        return this.runAtBoot;
     }
 
     @Override
     public Boolean isSkipVersion() {
-        return wrapped.isSkipVersion() ? true : null;
+        return this.skipVersion;
     }
 
     @Override
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     public String getIconText() {
-        return wrapped.getIconText();
+        return this.iconText;
     }
 
     @Override
     public ApplicationType getType() {
-        return wrapped.getType();
+        return this.type;
     }
 
     @Override
     public Integer getScreenOrder() {
-        return wrapped.getScreenOrder();
+        return this.screenOrder;
     }
 
     @Override
     public Integer getKeyCode() {
-        return wrapped.getKeyCode();
+        return this.keyCode;
     }
 
     @Override
     public Boolean getBottom() {
-        return wrapped.isBottom() ? true : null;
+        return this.bottom;
     }
 
     @Override
     public Boolean getLongTap() {
-        return wrapped.isLongTap() ? true : null;
+        return this.longTap;
     }
 
     @Override
     public String getIntent() {
-        return wrapped.getIntent();
+        return this.intent;
     }
 }
@@ -36,14 +36,24 @@ import java.io.Serializable;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class SyncConfigurationFile implements Serializable, SyncConfigurationFileInt {
 
-    @JsonIgnore
-    private final ConfigurationFile wrapped;
+    private final String checksum;
+    private final Boolean remove;
+    private final Long lastUpdate;
+    private final String path;
+    private final String url;
+    private final Boolean varContent;
 
     /**
-     * <p>Constructs new <code>SyncConfigurationFile</code> instance. This implementation does nothing.</p>
+     * <p>Constructs new <code>SyncConfigurationFile</code> instance. The values are copied from the specified file, so
+     * the instance is immutable and may be shared by the responses to different devices.</p>
      */
     public SyncConfigurationFile(ConfigurationFile file) {
-        this.wrapped = file;
+        this.checksum = file.getChecksum();
+        this.remove = file.isRemove() ? true : null;
+        this.lastUpdate = file.getLastUpdate();
+        this.path = file.getDevicePath();
+        this.url = file.getUrl();
+        this.varContent = file.isReplaceVariables() ? true : null;
     }
 
     /**
@@ -63,7 +73,7 @@ public class SyncConfigurationFile implements Serializable, SyncConfigurationFil
     @Override
     @ApiModelProperty("A checksum for the file content")
     public String getChecksum() {
-        return wrapped.getChecksum();
+        return this.checksum;
     }
 
     /**
@@ -72,7 +82,7 @@ public class SyncConfigurationFile implements Serializable, SyncConfigurationFil
     @Override
     @ApiModelProperty("A flag indicating if file is to be removed from the device or not")
     public Boolean getRemove() {
-        return wrapped.isRemove() ? true : null;
+        return this.remove;
     }
 
     /**
@@ -81,7 +91,7 @@ public class SyncConfigurationFile implements Serializable, SyncConfigurationFil
     @Override
     @ApiModelProperty("A timestamp of file uploading to server (in milliseconds since epoch time)")
     public Long getLastUpdate() {
-        return wrapped.getLastUpdate();
+        return this.lastUpdate;
     }
 
     /**
@@ -89,7 +99,7 @@ public class SyncConfigurationFile implements Serializable, SyncConfigurationFil
      */
     @ApiModelProperty("A path to a file on device")
     public String getPath() {
-        return wrapped.getDevicePath();
+        return this.path;
     }
 
     /**
@@ -97,7 +107,7 @@ public class SyncConfigurationFile implements Serializable, SyncConfigurationFil
      */
     @ApiModelProperty("An URL referencing the content of the file")
     public String getUrl() {
-        return wrapped.getUrl();
+        return this.url;
     }
 
     /**
@@ -106,6 +116,6 @@ public class SyncConfigurationFile implements Serializable, SyncConfigurationFil
     @Override
     @ApiModelProperty("A flag indicating whether the file content must be updated by device-specific values")
     public Boolean getVarContent() {
-        return wrapped.isReplaceVariables() ? true : null;
+        return this.varContent;
     }
 }
@@ -357,6 +357,10 @@ public class SyncResponse implements Serializable, SyncResponseInt {
         return this.applications;
     }
 
+    public void setApplications(List<SyncApplicationInt> applications) {
+        this.applications = applications;
+    }
+
     @Override
     public String getPassword() {
         return this.password;
@@ -25,6 +25,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.*;
@@ -39,12 +40,12 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.hmdm.event.DeviceBatteryLevelUpdatedEvent;
-import com.hmdm.event.DeviceInfoUpdatedEvent;
 import com.hmdm.event.DeviceLocationUpdatedEvent;
 import com.hmdm.event.EventService;
 import com.hmdm.persistence.CustomerDAO;
@@ -57,12 +58,18 @@ import com.hmdm.persistence.domain.Customer;
 import com.hmdm.rest.filter.BaseIPFilter;
 import com.hmdm.rest.json.*;
 import com.hmdm.security.SecurityContext;
+import com.hmdm.persistence.domain.DeviceIdentity;
+import com.hmdm.persistence.domain.DeviceInfoUpdate;
+import com.hmdm.service.DeviceInfoUpdateBuffer;
+import com.hmdm.service.SyncConfigurationSnapshot;
+import com.hmdm.service.SyncSnapshotCache;
 import com.hmdm.util.CryptoUtil;
+import com.hmdm.util.EntityTagUtil;
 import com.hmdm.util.FileUtil;
+import com.hmdm.util.SignedJsonResponse;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hmdm.persistence.UnsecureDAO;
 import com.hmdm.persistence.domain.Application;
 import com.hmdm.persistence.domain.Configuration;
@@ -96,6 +103,16 @@ public class SyncResource {
      */
     private EventService eventService;
 
+    /**
+     * <p>A cache for the device-independent parts of the responses to configuration synchronization requests.</p>
+     */
+    private SyncSnapshotCache syncSnapshotCache;
+
+    /**
+     * <p>A buffer for the info reported by devices.</p>
+     */
+    private DeviceInfoUpdateBuffer deviceInfoUpdateBuffer;
+
     /**
      * <p>A list of hooks to be executed against the response to device confoguration synchronization request.</p>
      */
@@ -113,6 +130,7 @@ public class SyncResource {
     private static final String HEADER_CPU_ARCH = "X-CPU-Arch";
     private static final String HEADER_ENROLLMENT_SIGNATURE = "X-Request-Signature";
     private static final String HEADER_RESPONSE_SIGNATURE = "X-Response-Signature";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
 
     private String mobileAppName;
     private String vendor;
@@ -132,6 +150,8 @@ public class SyncResource {
                         Injector injector,
                         CustomerDAO customerDAO,
                         DeviceDAO deviceDAO,
+                        SyncSnapshotCache syncSnapshotCache,
+                        DeviceInfoUpdateBuffer deviceInfoUpdateBuffer,
                         @Named("base.url") String baseUrl,
                         @Named("secure.enrollment") boolean secureEnrollment,
                         @Named("hash.secret") String hashSecret,
@@ -144,6 +164,8 @@ public class SyncResource {
         this.eventService = eventService;
         this.customerDAO = customerDAO;
         this.deviceDAO = deviceDAO;
+        this.syncSnapshotCache = syncSnapshotCache;
+        this.deviceInfoUpdateBuffer = deviceInfoUpdateBuffer;
         this.baseUrl = baseUrl;
         this.secureEnrollment = secureEnrollment;
         this.hashSecret = hashSecret;
@@ -172,7 +194,7 @@ public class SyncResource {
     @Path("/configuration/{deviceId}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response enrollDevice(DeviceCreateOptions createOptions,
+    public javax.ws.rs.core.Response enrollDevice(DeviceCreateOptions createOptions,
                                  @PathParam("deviceId")
                                      @ApiParam("An identifier of device within MDM server")
                                              String number,
@@ -183,7 +205,7 @@ public class SyncResource {
         if (secureEnrollment) {
             if (!CryptoUtil.checkRequestSignature(request.getHeader(HEADER_ENROLLMENT_SIGNATURE), hashSecret + number)) {
                 logger.warn("Failed to setup device {}: signature mismatch", number);
-                return Response.PERMISSION_DENIED();
+                return entity(Response.PERMISSION_DENIED());
             }
         }
 
@@ -215,31 +237,32 @@ public class SyncResource {
                 // Protection against double enrollment
                 if (preventDuplicateEnrollment && dbDevice.getLastUpdate() != 0l) {
                     logger.warn("Device {} already enrolled. To enroll, delete device from the list and add back", dbDevice.getNumber());
-                    return Response.DEVICE_EXISTS();
+                    return entity(Response.DEVICE_EXISTS());
                 }
 
                 return getDeviceSettingInternal(dbDevice, migration, foundByImeiOrSerial, request, response);
             } else {
                 logger.warn("Requested device {} was not found", number);
-                return Response.DEVICE_NOT_FOUND_ERROR();
+                return entity(Response.DEVICE_NOT_FOUND_ERROR());
             }
         } catch (Exception e) {
             logger.error("Unexpected error when getting device settings", e);
             e.printStackTrace();
-            return Response.INTERNAL_ERROR();
+            return entity(Response.INTERNAL_ERROR());
         }
     }
 
     // =================================================================================================================
     @ApiOperation(
             value = "Get device settings",
-            notes = "Gets the device info and settings from the MDM server.",
+            notes = "Gets the device info and settings from the MDM server. If the ETag of the previous response is " +
+                    "passed in If-None-Match header and the settings are not changed, then 304 is returned with no body.",
             response = SyncResponse.class
     )
     @GET
     @Path("/configuration/{deviceId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getDeviceSetting(@PathParam("deviceId")
+    public javax.ws.rs.core.Response getDeviceSetting(@PathParam("deviceId")
                                      @ApiParam("An identifier of device within MDM server")
                                      String number,
                                      @Context HttpServletRequest request,
@@ -249,7 +272,7 @@ public class SyncResource {
         if (secureEnrollment) {
             if (!CryptoUtil.checkRequestSignature(request.getHeader(HEADER_ENROLLMENT_SIGNATURE), hashSecret + number)) {
                 logger.warn("Failed to setup device {}: signature mismatch", number);
-                return Response.PERMISSION_DENIED();
+                return entity(Response.PERMISSION_DENIED());
             }
         }
 
@@ -284,18 +307,19 @@ public class SyncResource {
                 return getDeviceSettingInternal(dbDevice, migration, foundByImeiOrSerial, request, response);
             } else {
                 logger.warn("Requested device {} was not found", number);
-                return Response.DEVICE_NOT_FOUND_ERROR();
+                return entity(Response.DEVICE_NOT_FOUND_ERROR());
             }
         } catch (Exception e) {
             logger.error("Unexpected error when getting device settings", e);
             e.printStackTrace();
-            return Response.INTERNAL_ERROR();
+            return entity(Response.INTERNAL_ERROR());
         }
     }
 
-    private Response getDeviceSettingInternal(Device dbDevice, boolean migration, boolean foundByImeiOrSerial,
-                                           HttpServletRequest request,
-                                           HttpServletResponse response) throws UnsupportedEncodingException {
+    private javax.ws.rs.core.Response getDeviceSettingInternal(Device dbDevice, boolean migration,
+                                                               boolean foundByImeiOrSerial,
+                                                               HttpServletRequest request,
+                                                               HttpServletResponse response) throws IOException {
 
         if (!migration && dbDevice.getOldNumber() != null) {
             // If a device requested the configuration by new device ID, the migration is completed
@@ -303,8 +327,6 @@ public class SyncResource {
             dbDevice.setOldNumber(null);
         }
 
-        final Customer customer = this.customerDAO.findById(dbDevice.getCustomerId());
-
         String cpuArch = request.getHeader(HEADER_CPU_ARCH);
         if (cpuArch == null) {
             // Default
@@ -316,39 +338,26 @@ public class SyncResource {
                 cpuArch = cpuArch.substring(0, i);
             }
         }
+        // Other architectures get the default URLs of split applications, so they share the same snapshot
+        final String snapshotArch = cpuArch.equals(Application.ARCH_ARM64) || cpuArch.equals(Application.ARCH_ARMEABI)
+                ? cpuArch : "";
 
-        Settings settings = this.unsecureDAO.getSettings(dbDevice.getCustomerId());
-        final List<Application> applications = this.unsecureDAO.getPlainConfigurationApplications(
-                dbDevice.getCustomerId(), dbDevice.getConfigurationId()
-        );
-
-        for (Application app: applications) {
-            final String icon = app.getIcon();
-            if (icon != null) {
-                if (!icon.trim().isEmpty()) {
-                    String iconUrl = FileUtil.createFileUrl(this.baseUrl,
-                            URLEncoder.encode(customer.getFilesDir(), "UTF8"),
-                            URLEncoder.encode(icon, "UTF8"));
-                    app.setIcon(iconUrl);
-                }
-            }
-            if (app.isSplit()) {
-                if (cpuArch.equals(Application.ARCH_ARM64)) {
-                    app.setUrl(app.getUrlArm64());
-                } else if (cpuArch.equals(Application.ARCH_ARMEABI)) {
-                    app.setUrl(app.getUrlArmeabi());
-                }
-            }
-        }
+        final int customerId = dbDevice.getCustomerId();
+        final int configurationId = dbDevice.getConfigurationId();
+        final SyncConfigurationSnapshot snapshot = this.syncSnapshotCache.get(configurationId, snapshotArch,
+                () -> compileSnapshot(customerId, configurationId, snapshotArch));
 
-        Configuration configuration = this.unsecureDAO.getConfigurationByIdWithAppSettings(dbDevice.getConfigurationId());
+        final Settings settings = snapshot.getSettings();
+        final Configuration configuration = snapshot.getConfiguration();
 
         SyncResponse data;
         if (configuration.isUseDefaultDesignSettings()) {
-            data = new SyncResponse(settings, configuration.getPassword(), applications, dbDevice);
+            data = new SyncResponse(settings, configuration.getPassword(), null, dbDevice);
         } else {
-            data = new SyncResponse(configuration, applications, dbDevice);
+            data = new SyncResponse(configuration, null, dbDevice);
         }
+        // The lists are copied since the hooks may modify them
+        data.setApplications(new ArrayList<>(snapshot.getApplications()));
 
         data.setGps(configuration.getGps());
         data.setBluetooth(configuration.getBluetooth());
@@ -402,14 +411,7 @@ public class SyncResource {
 
         data.setKioskMode(configuration.isKioskMode());
         if (data.isKioskMode()) {
-            Integer contentAppId = configuration.getContentAppId();
-            if (contentAppId != null) {
-                ApplicationVersion applicationVersion = this.unsecureDAO.findApplicationVersionById(contentAppId);
-                if (applicationVersion != null) {
-                    Application application = this.unsecureDAO.findApplicationById(applicationVersion.getApplicationId());
-                    data.setMainApp(application.getPkg());
-                }
-            }
+            data.setMainApp(snapshot.getMainApp());
         }
 
         data.setKioskHome(configuration.getKioskHome() != null && configuration.getKioskHome() ? true : null);
@@ -450,31 +452,7 @@ public class SyncResource {
                 .map(s -> new SyncApplicationSetting(s, dbDevice1))
                 .collect(Collectors.toList()));
 
-        final List<ConfigurationFile> configurationFiles = this.unsecureDAO.getConfigurationFiles(dbDevice);
-        configurationFiles.forEach(
-                file -> {
-                    if (file.getExternalUrl() != null) {
-                        file.setUrl(file.getExternalUrl());
-                    } else if (file.getFilePath() != null) {
-                        final String url = FileUtil.createFileUrl(this.baseUrl, customer.getFilesDir(), file.getFilePath());
-                        file.setUrl(url);
-                    }
-                }
-        );
-        // Guard occasional empty entries to avoid failures on earlier versions of the launcher
-        configurationFiles.removeIf(file -> {
-            if (file.getDevicePath() == null) {
-                logger.warn("ConfigurationFile id " + file.getId() + ": devicePath=null, skipping for safety purposes");
-                return true;
-            }
-            if (!file.isRemove() && file.getUrl() == null) {
-                logger.warn("ConfigurationFile id " + file.getId() + ": url=null and not marked to remove, skipping for safety purposes");
-                return true;
-            }
-            return false;
-        });
-
-        data.setFiles(configurationFiles.stream().map(SyncConfigurationFile::new).collect(Collectors.toList()));
+        data.setFiles(new ArrayList<>(snapshot.getFiles()));
 
         // Rebranding data
         if (!mobileAppName.equals("")) {
@@ -503,20 +481,129 @@ public class SyncResource {
 
         response.setHeader(HEADER_IP_ADDRESS, remoteAddrResolver.getRemoteAddr(request));
 
+        // The response is serialized once and the same bytes are signed and sent to device
+        final SignedJsonResponse signedResponse = SignedJsonResponse.OK(hashSecret, syncResponse);
+
         // Always add signature to enable "soft" security implementation
 //        if (secureEnrollment) {
             // Add a signature to avoid MITM attack
-            response.setHeader(HEADER_RESPONSE_SIGNATURE, CryptoUtil.getDataSignature(hashSecret, syncResponse));
+            response.setHeader(HEADER_RESPONSE_SIGNATURE, signedResponse.getSignature());
 //        }
 
-        return Response.OK(syncResponse);
+        // The data signature depends on every part of the response including the device-specific settings and the
+        // changes made by hooks, so it is used as the entity tag. The device which already has the same configuration
+        // gets an empty response signed with the device number to prevent it from being replayed to other devices
+        final EntityTag entityTag = new EntityTag(signedResponse.getSignature());
+        if ("GET".equals(request.getMethod())
+                && EntityTagUtil.isMatched(request.getHeader(HEADER_IF_NONE_MATCH), entityTag.getValue())) {
+            logger.debug("Configuration of device {} is not modified", dbDevice.getNumber());
+            response.setHeader(HEADER_RESPONSE_SIGNATURE,
+                    CryptoUtil.getSHA1String(hashSecret + dbDevice.getNumber() + entityTag.getValue()));
+            return javax.ws.rs.core.Response.notModified(entityTag).build();
+        }
+
+        return javax.ws.rs.core.Response.ok(signedResponse.getContent(), MediaType.APPLICATION_JSON_TYPE)
+                .tag(entityTag)
+                .build();
 
     }
 
+    /**
+     * <p>Wraps the specified response to client for returning from methods which may also return the pre-serialized
+     * content.</p>
+     */
+    private static javax.ws.rs.core.Response entity(Response response) {
+        return javax.ws.rs.core.Response.ok(response).build();
+    }
+
+    /**
+     * <p>Compiles the device-independent part of the response to configuration synchronization request.</p>
+     *
+     * @param customerId an ID of the customer account owning the configuration.
+     * @param configurationId an ID of the configuration.
+     * @param cpuArch a CPU architecture to resolve the URLs of split applications for or empty string for default URLs.
+     * @return a snapshot to be shared by all devices of the configuration having the same CPU architecture.
+     */
+    private SyncConfigurationSnapshot compileSnapshot(int customerId, int configurationId, String cpuArch) {
+        final Customer customer = this.customerDAO.findById(customerId);
+
+        Settings settings = this.unsecureDAO.getSettings(customerId);
+        final List<Application> applications = this.unsecureDAO.getPlainConfigurationApplications(
+                customerId, configurationId
+        );
+
+        for (Application app: applications) {
+            final String icon = app.getIcon();
+            if (icon != null) {
+                if (!icon.trim().isEmpty()) {
+                    try {
+                        String iconUrl = FileUtil.createFileUrl(this.baseUrl,
+                                URLEncoder.encode(customer.getFilesDir(), "UTF8"),
+                                URLEncoder.encode(icon, "UTF8"));
+                        app.setIcon(iconUrl);
+                    } catch (UnsupportedEncodingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            if (app.isSplit()) {
+                if (cpuArch.equals(Application.ARCH_ARM64)) {
+                    app.setUrl(app.getUrlArm64());
+                } else if (cpuArch.equals(Application.ARCH_ARMEABI)) {
+                    app.setUrl(app.getUrlArmeabi());
+                }
+            }
+        }
+
+        Configuration configuration = this.unsecureDAO.getConfigurationByIdWithAppSettings(configurationId);
+
+        String mainApp = null;
+        if (configuration.isKioskMode()) {
+            Integer contentAppId = configuration.getContentAppId();
+            if (contentAppId != null) {
+                ApplicationVersion applicationVersion = this.unsecureDAO.findApplicationVersionById(contentAppId);
+                if (applicationVersion != null) {
+                    Application application = this.unsecureDAO.findApplicationById(applicationVersion.getApplicationId());
+                    mainApp = application.getPkg();
+                }
+            }
+        }
+
+        final List<ConfigurationFile> configurationFiles = this.unsecureDAO.getConfigurationFiles(configurationId);
+        configurationFiles.forEach(
+                file -> {
+                    if (file.getExternalUrl() != null) {
+                        file.setUrl(file.getExternalUrl());
+                    } else if (file.getFilePath() != null) {
+                        final String url = FileUtil.createFileUrl(this.baseUrl, customer.getFilesDir(), file.getFilePath());
+                        file.setUrl(url);
+                    }
+                }
+        );
+        // Guard occasional empty entries to avoid failures on earlier versions of the launcher
+        configurationFiles.removeIf(file -> {
+            if (file.getDevicePath() == null) {
+                logger.warn("ConfigurationFile id " + file.getId() + ": devicePath=null, skipping for safety purposes");
+                return true;
+            }
+            if (!file.isRemove() && file.getUrl() == null) {
+                logger.warn("ConfigurationFile id " + file.getId() + ": url=null and not marked to remove, skipping for safety purposes");
+                return true;
+            }
+            return false;
+        });
+
+        return new SyncConfigurationSnapshot(configurationId, cpuArch, settings, configuration,
+                applications.stream().map(SyncApplication::new).collect(Collectors.toList()),
+                configurationFiles.stream().map(SyncConfigurationFile::new).collect(Collectors.toList()),
+                mainApp);
+    }
+
     // =================================================================================================================
     @ApiOperation(
             value = "Update device info",
-            notes = "Updates the device info on the MDM server.",
+            notes = "Updates the device info on the MDM server. The info is written asynchronously, the latest info " +
+                    "from the same device supersedes the previous one if it has not been written yet.",
             response = Response.class
     )
     @POST
@@ -529,64 +616,36 @@ public class SyncResource {
         logger.debug("/public/sync/info --> {}", deviceInfo);
 
         try {
-            Device dbDevice = this.unsecureDAO.getDeviceByNumber(deviceInfo.getDeviceId());
-            boolean migration = false;
-
-            if (dbDevice == null) {
-                dbDevice = this.unsecureDAO.getDeviceByOldNumber(deviceInfo.getDeviceId());
-                migration = dbDevice != null;
-            }
-
-            // Device creation on demand
-            if (dbDevice == null) {
-                if (unsecureDAO.isSingleCustomer()) {
-                    dbDevice = unsecureDAO.createNewDeviceOnDemand(deviceInfo.getDeviceId());
-                } else {
-                    logger.warn("Not allowed to create devices in the multi-tenant setup");
-                }
-            }
-
-            if (dbDevice != null) {
-                if (!migration && dbDevice.getOldNumber() != null) {
+            Integer deviceId = null;
+            final DeviceIdentity identity = this.unsecureDAO.getDeviceIdentityByNumber(deviceInfo.getDeviceId());
+            if (identity != null) {
+                deviceId = identity.getId();
+                if (identity.getOldNumber() != null) {
                     // If a device sends data using a new device ID, the migration is completed
-                    this.unsecureDAO.completeDeviceMigration(dbDevice.getId());
-                    dbDevice.setOldNumber(null);
-                }
-
-                ObjectMapper objectMapper = new ObjectMapper();
-                DeviceInfo prevInfo = null;
-                try {
-                    prevInfo = objectMapper.readValue(dbDevice.getInfo(), DeviceInfo.class);
-                } catch (Exception e) {
-                }
-                if (prevInfo != null && prevInfo.getImei() != null && deviceInfo.getImei() != null &&
-                        !prevInfo.getImei().equals(deviceInfo.getImei())) {
-                    dbDevice.setImeiUpdateTs(System.currentTimeMillis());
-                }
-                this.unsecureDAO.updateDeviceInfo(dbDevice.getId(),
-                        objectMapper.writeValueAsString(deviceInfo),
-                        dbDevice.getImeiUpdateTs(),
-                        remoteAddrResolver.getRemoteAddr(request));
-
-                boolean needUpdate = false;
-                if (deviceInfo.getCustom1() != null) {
-                    dbDevice.setCustom1(deviceInfo.getCustom1());
-                    needUpdate = true;
+                    this.unsecureDAO.completeDeviceMigration(identity.getId());
                 }
-                if (deviceInfo.getCustom2() != null) {
-                    dbDevice.setCustom2(deviceInfo.getCustom2());
-                    needUpdate = true;
-                }
-                if (deviceInfo.getCustom3() != null) {
-                    dbDevice.setCustom3(deviceInfo.getCustom3());
-                    needUpdate = true;
+            } else {
+                Device dbDevice = this.unsecureDAO.getDeviceByOldNumber(deviceInfo.getDeviceId());
+
+                // Device creation on demand
+                if (dbDevice == null) {
+                    if (unsecureDAO.isSingleCustomer()) {
+                        dbDevice = unsecureDAO.createNewDeviceOnDemand(deviceInfo.getDeviceId());
+                    } else {
+                        logger.warn("Not allowed to create devices in the multi-tenant setup");
+                    }
                 }
-                if (needUpdate) {
-                    this.unsecureDAO.updateDeviceCustomProperties(dbDevice.getId(), dbDevice);
+                if (dbDevice != null) {
+                    deviceId = dbDevice.getId();
                 }
+            }
+
+            if (deviceId != null) {
+                final String remoteAddr = remoteAddrResolver.getRemoteAddr(request);
+                this.deviceInfoUpdateBuffer.submit(new DeviceInfoUpdate(deviceId, deviceInfo, remoteAddr));
 
                 if (deviceInfo.getBatteryLevel() != null) {
-                    this.eventService.fireEvent(new DeviceBatteryLevelUpdatedEvent(dbDevice.getId(), deviceInfo.getBatteryLevel()));
+                    this.eventService.fireEvent(new DeviceBatteryLevelUpdatedEvent(deviceId, deviceInfo.getBatteryLevel()));
                 }
 
                 final DeviceLocation location = deviceInfo.getLocation();
@@ -594,13 +653,11 @@ public class SyncResource {
                     List<DeviceLocation> locations = new LinkedList<>();
                     locations.add(deviceInfo.getLocation());
                     this.eventService.fireEvent(
-                            new DeviceLocationUpdatedEvent(dbDevice.getId(), locations, false)
+                            new DeviceLocationUpdatedEvent(deviceId, locations, false)
                     );
                 }
 
-                this.eventService.fireEvent(new DeviceInfoUpdatedEvent(dbDevice.getId()));
-
-                response.setHeader(HEADER_IP_ADDRESS, remoteAddrResolver.getRemoteAddr(request));
+                response.setHeader(HEADER_IP_ADDRESS, remoteAddr);
                 return Response.OK();
             } else {
                 logger.warn("Requested device {} was not found", deviceInfo.getDeviceId());